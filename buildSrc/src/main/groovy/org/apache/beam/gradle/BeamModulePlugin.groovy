@@ -1800,6 +1800,11 @@ class BeamModulePlugin implements Plugin<Project> {
             // that ends up on the runtime classpath.
             args 'org.apache.beam'
           }
+          // Specify -Pprofiler=gc on the command line to run the benchmarks with a JMH profiler,
+          // such as the GC profiler which reports allocation rates next to throughput.
+          if (project.hasProperty("profiler")) {
+            args '-prof', project.getProperty("profiler")
+          }
           // Reduce forks to 3
           args '-f=3'
           args '-foe=true'
@@ -69,6 +69,14 @@ public final class MonitoringInfoConstants {
         extractUrn(MonitoringInfoSpecs.Enum.API_REQUEST_COUNT);
     public static final String API_REQUEST_LATENCIES =
         extractUrn(MonitoringInfoSpecs.Enum.API_REQUEST_LATENCIES);
+    public static final String DATA_CHANNEL_FLUSH_SIZE_LIMIT =
+        extractUrn(MonitoringInfoSpecs.Enum.DATA_CHANNEL_FLUSH_SIZE_LIMIT);
+    public static final String DATA_CHANNEL_FLUSH_LINGER_MSECS =
+        extractUrn(MonitoringInfoSpecs.Enum.DATA_CHANNEL_FLUSH_LINGER_MSECS);
+    public static final String ELEMENT_PROCESSING_LATENCY_MICROS =
+        extractUrn(MonitoringInfoSpecs.Enum.ELEMENT_PROCESSING_LATENCY_MICROS);
+    public static final String PTRANSFORM_ALLOCATED_BYTES =
+        extractUrn(MonitoringInfoSpecs.Enum.PTRANSFORM_ALLOCATED_BYTES);
 
     static {
       // Validate that compile time constants match the values stored in the protos.
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.runners.direct.WatermarkManager.FiredTimers;
+import org.apache.beam.runners.direct.WatermarkManager.TimerUpdate;
+import org.apache.beam.runners.local.Bundle;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ArrayListMultimap;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ListMultimap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the watermark bookkeeping of the DirectRunner over synthetic graphs, without
+ * executing any elements.
+ *
+ * <p>Each round commits a bundle for every step of the graph, each of which sets an event time
+ * timer for the key of the bundle, then refreshes the watermarks and completes the timers which
+ * fired. Timers are set {@code keys} rounds ahead, so every step has about {@code keys} keys with
+ * pending timers. Lives in the package of the {@link WatermarkManager} since it isn't public.
+ */
+public class WatermarkManagerBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class SyntheticPipeline {
+    private static final String ROOT = "root";
+
+    @Param({"10", "100"})
+    public int steps;
+
+    @Param({"chain", "fanOut"})
+    public String shape;
+
+    @Param({"1", "1000"})
+    public int keys;
+
+    SyntheticGraph graph;
+    WatermarkManager<String, ? super String> watermarkManager;
+    List<StructuralKey<Integer>> structuralKeys;
+    @Nullable TestBundle rootBundle;
+    long round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      graph = new SyntheticGraph();
+      for (int i = 0; i < steps; i++) {
+        String step = "step" + i;
+        String input;
+        if ("chain".equals(shape)) {
+          input = i == 0 ? ROOT + ".out" : "step" + (i - 1) + ".out";
+        } else if ("fanOut".equals(shape)) {
+          input = ROOT + ".out";
+        } else {
+          throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        graph.addStep(step, input);
+      }
+      structuralKeys = new ArrayList<>();
+      for (int i = 0; i < keys; i++) {
+        structuralKeys.add(StructuralKey.of(i, VarIntCoder.of()));
+      }
+      watermarkManager = WatermarkManager.create(Instant::now, graph, step -> step);
+      rootBundle = null;
+      round = 0;
+    }
+
+    /** Commits a bundle for every step, refreshes the watermarks and completes fired timers. */
+    void processRound() {
+      round++;
+      Instant timestamp = new Instant(round);
+      StructuralKey<Integer> key = structuralKeys.get((int) (round % keys));
+
+      // The root keeps a residual at the current timestamp, as an unbounded source would.
+      TestBundle residual = new TestBundle(null, key, timestamp);
+      TestBundle rootOutput = new TestBundle(ROOT + ".out", key, timestamp);
+      watermarkManager.updateWatermarks(
+          rootBundle,
+          TimerUpdate.empty(),
+          ROOT,
+          residual,
+          Collections.singletonList(rootOutput),
+          BoundedWindow.TIMESTAMP_MAX_VALUE);
+      rootBundle = residual;
+
+      TimerData timer =
+          TimerData.of(
+              "timer" + round,
+              StateNamespaces.global(),
+              timestamp.plus(keys),
+              timestamp.plus(keys),
+              TimeDomain.EVENT_TIME);
+      Map<String, TestBundle> outputs = new HashMap<>();
+      outputs.put(rootOutput.getPCollection(), rootOutput);
+      for (String step : graph.steps) {
+        TestBundle output = new TestBundle(step + ".out", key, timestamp);
+        watermarkManager.updateWatermarks(
+            outputs.get(graph.inputs.get(step)),
+            TimerUpdate.builder(key).setTimer(timer).build(),
+            step,
+            null,
+            Collections.singletonList(output),
+            BoundedWindow.TIMESTAMP_MAX_VALUE);
+        outputs.put(output.getPCollection(), output);
+      }
+
+      watermarkManager.refreshAll();
+      for (FiredTimers<String> fired :
+          watermarkManager.extractFiredTimers(Collections.emptyList())) {
+        watermarkManager.updateWatermarks(
+            null,
+            TimerUpdate.builder(fired.getKey()).withCompletedTimers(fired.getTimers()).build(),
+            fired.getExecutable(),
+            null,
+            Collections.emptyList(),
+            BoundedWindow.TIMESTAMP_MAX_VALUE);
+      }
+    }
+  }
+
+  @Benchmark
+  public void processRound(SyntheticPipeline pipeline) {
+    pipeline.processRound();
+  }
+
+  /** A graph of steps with a single input each, fed by a single root. */
+  static class SyntheticGraph implements ExecutableGraph<String, String> {
+    private final List<String> steps = new ArrayList<>();
+    private final Map<String, String> inputs = new HashMap<>();
+    private final ListMultimap<String, String> consumers = ArrayListMultimap.create();
+
+    void addStep(String step, String input) {
+      steps.add(step);
+      inputs.put(step, input);
+      consumers.put(input, step);
+    }
+
+    @Override
+    public Collection<String> getRootTransforms() {
+      return Collections.singletonList(SyntheticPipeline.ROOT);
+    }
+
+    @Override
+    public Collection<String> getExecutables() {
+      return steps;
+    }
+
+    @Override
+    public String getProducer(String collection) {
+      return collection.substring(0, collection.length() - ".out".length());
+    }
+
+    @Override
+    public Collection<String> getProduced(String producer) {
+      return Collections.singletonList(producer + ".out");
+    }
+
+    @Override
+    public Collection<String> getPerElementInputs(String transform) {
+      String input = inputs.get(transform);
+      return input == null ? Collections.emptyList() : Collections.singletonList(input);
+    }
+
+    @Override
+    public Collection<String> getPerElementConsumers(String collection) {
+      return consumers.get(collection);
+    }
+  }
+
+  /** An empty bundle with a key and a timestamp. */
+  static class TestBundle implements Bundle<Object, String> {
+    private final @Nullable String pCollection;
+    private final StructuralKey<?> key;
+    private final Instant timestamp;
+
+    TestBundle(@Nullable String pCollection, StructuralKey<?> key, Instant timestamp) {
+      this.pCollection = pCollection;
+      this.key = key;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public @Nullable String getPCollection() {
+      return pCollection;
+    }
+
+    @Override
+    public StructuralKey<?> getKey() {
+      return key;
+    }
+
+    @Override
+    public Instant getMinimumTimestamp() {
+      return timestamp;
+    }
+
+    @Override
+    public Instant getSynchronizedProcessingOutputWatermark() {
+      return timestamp;
+    }
+
+    @Override
+    public Iterator<WindowedValue<Object>> iterator() {
+      return Collections.emptyIterator();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the fixed pool and the work-stealing pool which {@link ExecutorServiceParallelExecutor}
+ * executes bundles on.
+ *
+ * <p>Each operation schedules {@code bundlesPerKey} bundles for each of {@code keys} keys from a
+ * single thread, as the driver of the DirectRunner does for the output of a {@code GroupByKey}.
+ * Bundles of the same key are executed serially, so every completed bundle submits the next bundle
+ * of its key from the worker which executed it. Each bundle burns {@code bundleTokens} of CPU.
+ */
+public class WorkerPoolBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Workers {
+    @Param({"fixed", "workStealing"})
+    public String pool;
+
+    @Param({"4", "256"})
+    public int keys;
+
+    @Param({"16"})
+    public int bundlesPerKey;
+
+    @Param({"100", "10000"})
+    public long bundleTokens;
+
+    ExecutorService executorService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      executorService =
+          ExecutorServiceParallelExecutor.newWorkerPool(
+              Runtime.getRuntime().availableProcessors(), "workStealing".equals(pool));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      executorService.shutdownNow();
+    }
+
+    /** Executes all bundles of all keys and returns how many were executed. */
+    int executeKeyedBundles() throws InterruptedException {
+      CountDownLatch done = new CountDownLatch(keys * bundlesPerKey);
+      AtomicInteger executed = new AtomicInteger();
+      List<TransformExecutorService> serialServices = new ArrayList<>(keys);
+      for (int key = 0; key < keys; key++) {
+        serialServices.add(TransformExecutorServices.serial(executorService));
+      }
+      for (int bundle = 0; bundle < bundlesPerKey; bundle++) {
+        for (TransformExecutorService service : serialServices) {
+          service.schedule(new Bundle(service, done, executed));
+        }
+      }
+      done.await();
+      return executed.get();
+    }
+
+    private class Bundle implements TransformExecutor {
+      private final TransformExecutorService service;
+      private final CountDownLatch done;
+      private final AtomicInteger executed;
+
+      Bundle(TransformExecutorService service, CountDownLatch done, AtomicInteger executed) {
+        this.service = service;
+        this.done = done;
+        this.executed = executed;
+      }
+
+      @Override
+      public void run() {
+        Blackhole.consumeCPU(bundleTokens);
+        executed.incrementAndGet();
+        // Submits the next bundle of the key, like a completed DirectTransformExecutor does.
+        service.complete(this);
+        done.countDown();
+      }
+    }
+  }
+
+  @Benchmark
+  public int keyedBundles(Workers workers) throws InterruptedException {
+    return workers.executeKeyedBundles();
+  }
+}
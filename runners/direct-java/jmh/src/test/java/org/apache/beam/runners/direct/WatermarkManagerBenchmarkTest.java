@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.beam.runners.direct.WatermarkManagerBenchmark.SyntheticPipeline;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WatermarkManagerBenchmark}. */
+@RunWith(JUnit4.class)
+public class WatermarkManagerBenchmarkTest {
+  @Test
+  public void testChain() throws Exception {
+    assertWatermarksAdvance("chain");
+  }
+
+  @Test
+  public void testFanOut() throws Exception {
+    assertWatermarksAdvance("fanOut");
+  }
+
+  private static void assertWatermarksAdvance(String shape) {
+    SyntheticPipeline pipeline = new SyntheticPipeline();
+    pipeline.steps = 10;
+    pipeline.shape = shape;
+    pipeline.keys = 10;
+    pipeline.setUp();
+    for (int i = 0; i < 100; i++) {
+      new WatermarkManagerBenchmark().processRound(pipeline);
+    }
+    // Every step is only held by the root and by its pending timers.
+    for (String step : pipeline.graph.getExecutables()) {
+      Instant outputWatermark = pipeline.watermarkManager.getWatermarks(step).getOutputWatermark();
+      assertTrue(
+          step + " output watermark " + outputWatermark, outputWatermark.isAfter(new Instant(50)));
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.beam.runners.direct.WorkerPoolBenchmark.Workers;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WorkerPoolBenchmark}. */
+@RunWith(JUnit4.class)
+public class WorkerPoolBenchmarkTest {
+  @Test
+  public void testFixedPool() throws Exception {
+    assertAllBundlesExecuted("fixed");
+  }
+
+  @Test
+  public void testWorkStealingPool() throws Exception {
+    assertAllBundlesExecuted("workStealing");
+  }
+
+  private static void assertAllBundlesExecuted(String pool) throws Exception {
+    Workers workers = new Workers();
+    workers.pool = pool;
+    workers.keys = 8;
+    workers.bundlesPerKey = 4;
+    workers.bundleTokens = 10;
+    workers.setUp();
+    try {
+      for (int i = 0; i < 10; i++) {
+        assertEquals(32, workers.executeKeyedBundles());
+      }
+    } finally {
+      workers.tearDown();
+    }
+  }
+}
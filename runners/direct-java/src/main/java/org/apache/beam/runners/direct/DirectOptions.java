@@ -54,6 +54,33 @@ public interface DirectOptions extends PipelineOptions, ApplicationNameOptions {
 
   void setEnforceEncodability(boolean test);
 
+  /**
+   * Whether the DirectRunner should favor throughput over checking the pipeline against the Beam
+   * model.
+   *
+   * <p>In performance mode the DirectRunner does not enforce immutability or encodability,
+   * regardless of {@link #isEnforceImmutability()} and {@link #isEnforceEncodability()}, and fuses
+   * chains of stateless {@link org.apache.beam.sdk.transforms.ParDo ParDos} so that each chain
+   * processes a bundle within a single evaluator, without materializing the intermediate {@link
+   * org.apache.beam.sdk.values.PCollection PCollections}. A {@code ParDo} is fused into its
+   * producer if it is a {@code ParDo} without side inputs, state, timers or splitting that is the
+   * only consumer of its input. Bundles are executed by a work-stealing pool of {@link
+   * #getTargetParallelism()} workers.
+   *
+   * <p>Pipelines should be tested without performance mode, as mutations of elements and
+   * unencodable elements are not detected.
+   */
+  @Default.Boolean(false)
+  @Description(
+      "Runs the pipeline in performance mode: immutability and encodability are not enforced, "
+          + "regardless of enforceImmutability and enforceEncodability, and chains of stateless "
+          + "ParDos without side inputs are fused into a single evaluator, which is executed by a "
+          + "work-stealing pool. Suited to small batch jobs on a single host; pipelines should be "
+          + "tested without it.")
+  boolean isPerformanceMode();
+
+  void setPerformanceMode(boolean performanceMode);
+
   @Default.InstanceFactory(AvailableParallelismFactory.class)
   @Description(
       "Controls the amount of target parallelism the DirectRunner will use. Defaults to"
@@ -63,6 +63,10 @@ import org.joda.time.Duration;
  * appropriate for executing unit tests and performs additional work to ensure that behavior
  * contained within a {@link Pipeline} does not break assumptions within the Beam model, to improve
  * the ability to execute a {@link Pipeline} at scale on a distributed backend.
+ *
+ * <p>With {@link DirectOptions#isPerformanceMode()} the {@link DirectRunner} skips these checks and
+ * fuses chains of stateless {@link org.apache.beam.sdk.transforms.ParDo ParDos}, executing them on
+ * a work-stealing pool, which makes it suitable for small batch pipelines on a single host.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
@@ -99,6 +103,9 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
     // Utilities for creating enforcements
     static Set<Enforcement> enabled(DirectOptions options) {
       EnumSet<Enforcement> enabled = EnumSet.noneOf(Enforcement.class);
+      if (options.isPerformanceMode()) {
+        return Collections.unmodifiableSet(enabled);
+      }
       if (options.isEnforceEncodability()) {
         enabled.add(ENCODABILITY);
       }
@@ -206,6 +213,7 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
       PipelineExecutor executor =
           ExecutorServiceParallelExecutor.create(
               options.getTargetParallelism(),
+              options.isPerformanceMode(),
               registry,
               Enforcement.defaultModelEnforcements(enabledEnforcements),
               context,
@@ -355,6 +355,11 @@ class EvaluationContext {
     return graph.getStepName(application);
   }
 
+  /** Returns the graph of the {@link Pipeline} being executed. */
+  DirectGraph getGraph() {
+    return graph;
+  }
+
   /** Returns all of the steps in this {@link Pipeline}. */
   Collection<AppliedPTransform<?, ?, ?>> getSteps() {
     return graph.getExecutables();
@@ -28,12 +28,14 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
 import org.apache.beam.runners.local.ExecutionDriver;
 import org.apache.beam.runners.local.ExecutionDriver.DriverState;
+import org.apache.beam.runners.local.LocalExecutors;
 import org.apache.beam.runners.local.PipelineMessageReceiver;
 import org.apache.beam.sdk.Pipeline;
 import org.apache.beam.sdk.PipelineResult.State;
@@ -42,6 +44,7 @@ import org.apache.beam.sdk.runners.AppliedPTransform;
 import org.apache.beam.sdk.util.UserCodeException;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PValue;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.CacheLoader;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.LoadingCache;
@@ -68,8 +71,16 @@ final class ExecutorServiceParallelExecutor
         BundleProcessor<PCollection<?>, CommittedBundle<?>, AppliedPTransform<?, ?, ?>> {
   private static final Logger LOG = LoggerFactory.getLogger(ExecutorServiceParallelExecutor.class);
 
+  /**
+   * How long a driver running on its own thread pauses between iterations, so that it doesn't keep
+   * a core busy while bundles are executing.
+   */
+  private static final long DRIVER_PAUSE_MICROS = 100;
+
   private final int targetParallelism;
   private final ExecutorService executorService;
+  // Runs the ExecutionDriver on its own thread, or null if it shares the executorService.
+  private final @Nullable ScheduledExecutorService driverExecutor;
 
   private final TransformEvaluatorRegistry registry;
 
@@ -85,33 +96,45 @@ final class ExecutorServiceParallelExecutor
 
   private AtomicReference<State> pipelineState = new AtomicReference<>(State.RUNNING);
 
+  /**
+   * Creates a {@link ExecutorServiceParallelExecutor}.
+   *
+   * @param workStealing whether the workers should be a work-stealing pool, rather than a fixed
+   *     pool with a single shared queue
+   */
   public static ExecutorServiceParallelExecutor create(
       int targetParallelism,
+      boolean workStealing,
       TransformEvaluatorRegistry registry,
       Map<String, Collection<ModelEnforcementFactory>> transformEnforcements,
       EvaluationContext context,
       ExecutorService metricsExecutor) {
     return new ExecutorServiceParallelExecutor(
-        targetParallelism, registry, transformEnforcements, context, metricsExecutor);
+        targetParallelism, workStealing, registry, transformEnforcements, context, metricsExecutor);
   }
 
   private ExecutorServiceParallelExecutor(
       int targetParallelism,
+      boolean workStealing,
       TransformEvaluatorRegistry registry,
       Map<String, Collection<ModelEnforcementFactory>> transformEnforcements,
       EvaluationContext context,
       ExecutorService metricsExecutor) {
     this.targetParallelism = targetParallelism;
     this.metricsExecutor = metricsExecutor;
-    // Don't use Daemon threads for workers. The Pipeline should continue to execute even if there
-    // are no other active threads (for example, because waitUntilFinish was not called)
-    this.executorService =
-        Executors.newFixedThreadPool(
-            targetParallelism,
-            new ThreadFactoryBuilder()
-                .setThreadFactory(MoreExecutors.platformThreadFactory())
-                .setNameFormat("direct-runner-worker")
-                .build());
+    this.executorService = newWorkerPool(targetParallelism, workStealing);
+    if (workStealing) {
+      // A driver resubmitted from a worker would go to the back of that worker's local queue,
+      // behind the bundles it has just scheduled.
+      this.driverExecutor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setThreadFactory(MoreExecutors.platformThreadFactory())
+                  .setNameFormat("direct-runner-driver")
+                  .build());
+    } else {
+      this.driverExecutor = null;
+    }
     this.registry = registry;
     this.evaluationContext = context;
 
@@ -130,6 +153,25 @@ final class ExecutorServiceParallelExecutor
     executorFactory = new DirectTransformExecutor.Factory(context, registry, transformEnforcements);
   }
 
+  /**
+   * Returns the pool which executes bundles, either a work-stealing pool or a fixed pool with a
+   * single shared queue.
+   */
+  @VisibleForTesting
+  static ExecutorService newWorkerPool(int targetParallelism, boolean workStealing) {
+    // Don't use Daemon threads for workers. The Pipeline should continue to execute even if there
+    // are no other active threads (for example, because waitUntilFinish was not called)
+    if (workStealing) {
+      return LocalExecutors.newWorkStealingPool(targetParallelism, "direct-runner-worker");
+    }
+    return Executors.newFixedThreadPool(
+        targetParallelism,
+        new ThreadFactoryBuilder()
+            .setThreadFactory(MoreExecutors.platformThreadFactory())
+            .setNameFormat("direct-runner-worker")
+            .build());
+  }
+
   private CacheLoader<StepAndKey, TransformExecutorService>
       serialTransformExecutorServiceCacheLoader() {
     return new CacheLoader<StepAndKey, TransformExecutorService>() {
@@ -180,7 +222,7 @@ final class ExecutorServiceParallelExecutor
     final ExecutionDriver executionDriver =
         QuiescenceDriver.create(
             evaluationContext, graph, this, visibleUpdates, pendingRootBundles.build());
-    executorService.submit(
+    Runnable driverLoop =
         new Runnable() {
           @Override
           public void run() {
@@ -202,11 +244,18 @@ final class ExecutorServiceParallelExecutor
                       String.format("Unknown %s %s", DriverState.class.getSimpleName(), drive));
               }
               shutdownIfNecessary(newPipelineState);
-            } else {
+            } else if (driverExecutor == null) {
               executorService.submit(this);
+            } else {
+              driverExecutor.schedule(this, DRIVER_PAUSE_MICROS, TimeUnit.MICROSECONDS);
             }
           }
-        });
+        };
+    if (driverExecutor == null) {
+      executorService.submit(driverLoop);
+    } else {
+      driverExecutor.submit(driverLoop);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -338,6 +387,13 @@ final class ExecutorServiceParallelExecutor
     } catch (final RuntimeException re) {
       errors.add(re);
     }
+    if (driverExecutor != null) {
+      try {
+        driverExecutor.shutdown();
+      } catch (final RuntimeException re) {
+        errors.add(re);
+      }
+    }
     try {
       metricsExecutor.shutdown();
     } catch (final RuntimeException re) {
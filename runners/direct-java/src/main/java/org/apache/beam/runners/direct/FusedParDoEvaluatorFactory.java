@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.beam.runners.core.InMemoryBundleFinalizer.Finalization;
+import org.apache.beam.runners.core.metrics.MetricUpdates;
+import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
+import org.apache.beam.runners.direct.CommittedResult.OutputType;
+import org.apache.beam.runners.local.StructuralKey;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.transforms.DoFnSchemaInformation;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.reflect.DoFnSignature;
+import org.apache.beam.sdk.transforms.reflect.DoFnSignatures;
+import org.apache.beam.sdk.util.UserCodeException;
+import org.apache.beam.sdk.util.construction.ParDoTranslation;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.TupleTag;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
+import org.joda.time.Instant;
+
+/**
+ * A {@link TransformEvaluatorFactory} for {@link ParDo.MultiOutput} that fuses chains of stateless
+ * {@link ParDo ParDos} into a single evaluator.
+ *
+ * <p>An output of a {@link ParDo} that is only consumed by a fusible {@link ParDo} is never
+ * materialized. Elements output to it are processed by an evaluator for the consumer as soon as
+ * they are output, and the outputs of the consumer are committed as outputs of the bundle of the
+ * producer. The consumer is never scheduled, and its watermarks follow those of its producer, as
+ * it has no pending elements, timers or holds of its own.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+final class FusedParDoEvaluatorFactory implements TransformEvaluatorFactory {
+  private final EvaluationContext evaluationContext;
+  private final ParDoEvaluatorFactory<?, ?> parDoFactory;
+  private final Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers;
+  private final Map<AppliedPTransform<?, ?, ?>, DoFnSchemaInformation> schemaInformation =
+      new ConcurrentHashMap<>();
+
+  static FusedParDoEvaluatorFactory create(
+      EvaluationContext evaluationContext, ParDoEvaluatorFactory<?, ?> parDoFactory) {
+    return new FusedParDoEvaluatorFactory(
+        evaluationContext, parDoFactory, fusedConsumers(evaluationContext.getGraph()));
+  }
+
+  private FusedParDoEvaluatorFactory(
+      EvaluationContext evaluationContext,
+      ParDoEvaluatorFactory<?, ?> parDoFactory,
+      Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers) {
+    this.evaluationContext = evaluationContext;
+    this.parDoFactory = parDoFactory;
+    this.fusedConsumers = fusedConsumers;
+  }
+
+  /**
+   * Returns the consumer of each output of a {@link ParDo} in the graph which is fused into the
+   * {@link ParDo}.
+   *
+   * <p>A consumer is fused into its producer if it is the only consumer of the output, and it is a
+   * {@link ParDo} without side inputs, state, timers, splitting or a requirement for stable input.
+   */
+  @VisibleForTesting
+  static Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers(DirectGraph graph) {
+    Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers = new HashMap<>();
+    for (AppliedPTransform<?, ?, ?> producer : graph.getExecutables()) {
+      if (!(producer.getTransform() instanceof ParDo.MultiOutput)) {
+        continue;
+      }
+      for (PCollection<?> output : producer.getOutputs().values()) {
+        List<AppliedPTransform<?, ?, ?>> consumers = graph.getPerElementConsumers(output);
+        if (consumers.size() == 1 && isFusible(graph, consumers.get(0))) {
+          fusedConsumers.put(output, consumers.get(0));
+        }
+      }
+    }
+    return Collections.unmodifiableMap(fusedConsumers);
+  }
+
+  private static boolean isFusible(DirectGraph graph, AppliedPTransform<?, ?, ?> consumer) {
+    if (!(consumer.getTransform() instanceof ParDo.MultiOutput)) {
+      return false;
+    }
+    ParDo.MultiOutput<?, ?> parDo = (ParDo.MultiOutput<?, ?>) consumer.getTransform();
+    DoFnSignature signature = DoFnSignatures.signatureForDoFn(parDo.getFn());
+    return parDo.getSideInputs().isEmpty()
+        && graph.getPerElementInputs(consumer).size() == 1
+        && !signature.usesState()
+        && !signature.usesTimers()
+        && !signature.processElement().isSplittable()
+        && !signature.processElement().requiresStableInput();
+  }
+
+  @Override
+  public <T> TransformEvaluator<T> forApplication(
+      AppliedPTransform<?, ?, ?> application, CommittedBundle<?> inputBundle) throws Exception {
+    @SuppressWarnings("unchecked")
+    DoFnLifecycleManagerRemovingTransformEvaluator<T> evaluator =
+        (DoFnLifecycleManagerRemovingTransformEvaluator<T>)
+            parDoFactory.<T>forApplication(application, inputBundle);
+    List<FusedBundle<?>> fusedBundles = new ArrayList<>();
+    fuseOutputs(evaluator, application, inputBundle, fusedBundles);
+    if (fusedBundles.isEmpty()) {
+      return evaluator;
+    }
+    return new FusedParDoEvaluator<>(evaluator, fusedBundles);
+  }
+
+  /**
+   * Redirects each output of the {@code producer} that has a fused consumer to an evaluator for
+   * that consumer, recursively. The bundles are added to {@code fusedBundles} in topological order.
+   */
+  private void fuseOutputs(
+      DoFnLifecycleManagerRemovingTransformEvaluator<?> producerEvaluator,
+      AppliedPTransform<?, ?, ?> producer,
+      CommittedBundle<?> inputBundle,
+      List<FusedBundle<?>> fusedBundles)
+      throws Exception {
+    for (Map.Entry<TupleTag<?>, PCollection<?>> output : producer.getOutputs().entrySet()) {
+      AppliedPTransform<?, ?, ?> consumer = fusedConsumers.get(output.getValue());
+      if (consumer == null) {
+        continue;
+      }
+      DoFnLifecycleManagerRemovingTransformEvaluator<?> consumerEvaluator =
+          createEvaluator(consumer, output.getValue(), inputBundle.getKey());
+      FusedBundle<?> bundle =
+          new FusedBundle<>(output.getValue(), consumer, consumerEvaluator, inputBundle);
+      producerEvaluator
+          .getParDoEvaluator()
+          .getOutputManager()
+          .replaceBundle(output.getKey(), bundle);
+      fusedBundles.add(bundle);
+      fuseOutputs(consumerEvaluator, consumer, inputBundle, fusedBundles);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private DoFnLifecycleManagerRemovingTransformEvaluator<?> createEvaluator(
+      AppliedPTransform<?, ?, ?> consumer, PCollection<?> input, StructuralKey<?> key)
+      throws Exception {
+    ParDo.MultiOutput<?, ?> parDo = (ParDo.MultiOutput<?, ?>) consumer.getTransform();
+    return ((ParDoEvaluatorFactory) parDoFactory)
+        .createEvaluator(
+            (AppliedPTransform) consumer,
+            input,
+            key,
+            Collections.emptyList(),
+            parDo.getMainOutputTag(),
+            parDo.getAdditionalOutputTags().getAll(),
+            schemaInformation.computeIfAbsent(consumer, ParDoTranslation::getSchemaInformation),
+            Collections.emptyMap());
+  }
+
+  @Override
+  public void cleanup() throws Exception {
+    parDoFactory.cleanup();
+  }
+
+  /**
+   * An {@link UncommittedBundle} which processes each element added to it with the evaluator of a
+   * fused consumer, reporting the metrics of the consumer under its own step.
+   */
+  private class FusedBundle<T> implements UncommittedBundle<T> {
+    private final PCollection<T> pCollection;
+    private final DoFnLifecycleManagerRemovingTransformEvaluator<T> consumerEvaluator;
+    private final CommittedBundle<?> inputBundle;
+    private final MetricsContainerImpl metricsContainer;
+
+    @SuppressWarnings("unchecked")
+    FusedBundle(
+        PCollection<T> pCollection,
+        AppliedPTransform<?, ?, ?> consumer,
+        DoFnLifecycleManagerRemovingTransformEvaluator<?> consumerEvaluator,
+        CommittedBundle<?> inputBundle) {
+      this.pCollection = pCollection;
+      this.consumerEvaluator =
+          (DoFnLifecycleManagerRemovingTransformEvaluator<T>) consumerEvaluator;
+      this.inputBundle = inputBundle;
+      this.metricsContainer = new MetricsContainerImpl(consumer.getFullName());
+    }
+
+    @Override
+    public PCollection<T> getPCollection() {
+      return pCollection;
+    }
+
+    @Override
+    public UncommittedBundle<T> add(WindowedValue<T> element) {
+      try (Closeable metricsScope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+        consumerEvaluator.processElement(element);
+      } catch (Exception e) {
+        throw UserCodeException.wrap(e);
+      }
+      return this;
+    }
+
+    @Override
+    public CommittedBundle<T> commit(Instant synchronizedProcessingTime) {
+      throw new IllegalStateException(
+          String.format(
+              "Fused %s %s is never committed", PCollection.class.getSimpleName(), pCollection));
+    }
+
+    TransformResult<T> finishBundle() throws Exception {
+      TransformResult<T> result;
+      try (Closeable metricsScope = MetricsEnvironment.scopedMetricsContainer(metricsContainer)) {
+        result = consumerEvaluator.finishBundle();
+      }
+      MetricUpdates updates = metricsContainer.getCumulative();
+      evaluationContext.getMetrics().commitPhysical(inputBundle, updates);
+      evaluationContext.getMetrics().commitLogical(inputBundle, updates);
+      return result;
+    }
+  }
+
+  /**
+   * A {@link TransformEvaluator} for a chain of fused {@link ParDo ParDos}, which produces the
+   * result of the first {@link ParDo} with the outputs of every {@link ParDo} in the chain.
+   */
+  private static class FusedParDoEvaluator<InputT> implements TransformEvaluator<InputT> {
+    private final TransformEvaluator<InputT> producerEvaluator;
+    private final List<FusedBundle<?>> fusedBundles;
+
+    FusedParDoEvaluator(
+        TransformEvaluator<InputT> producerEvaluator, List<FusedBundle<?>> fusedBundles) {
+      this.producerEvaluator = producerEvaluator;
+      this.fusedBundles = fusedBundles;
+    }
+
+    @Override
+    public void processElement(WindowedValue<InputT> element) throws Exception {
+      producerEvaluator.processElement(element);
+    }
+
+    @Override
+    public TransformResult<InputT> finishBundle() throws Exception {
+      TransformResult<InputT> result = producerEvaluator.finishBundle();
+      List<UncommittedBundle<?>> outputs = new ArrayList<>();
+      List<Finalization> finalizations = new ArrayList<>(result.getBundleFinalizations());
+      addUnfusedOutputs(result, outputs);
+      // Consumers are finished after their producers, as finishing a producer may output to them.
+      for (FusedBundle<?> fusedBundle : fusedBundles) {
+        TransformResult<?> fusedResult = fusedBundle.finishBundle();
+        addUnfusedOutputs(fusedResult, outputs);
+        finalizations.addAll(fusedResult.getBundleFinalizations());
+      }
+
+      StepTransformResult.Builder<InputT> builder =
+          StepTransformResult.<InputT>withHold(result.getTransform(), result.getWatermarkHold())
+              .withState(result.getState())
+              .withTimerUpdate(result.getTimerUpdate())
+              .withMetricUpdates(result.getLogicalMetricUpdates())
+              .withBundleFinalizations(finalizations)
+              .addUnprocessedElements(result.getUnprocessedElements())
+              .addOutput(outputs);
+      for (OutputType outputType : result.getOutputTypes()) {
+        builder.withAdditionalOutput(outputType);
+      }
+      return builder.build();
+    }
+
+    private static void addUnfusedOutputs(
+        TransformResult<?> result, List<UncommittedBundle<?>> outputs) {
+      for (UncommittedBundle<?> output : result.getOutputBundles()) {
+        if (!(output instanceof FusedBundle)) {
+          outputs.add(output);
+        }
+      }
+    }
+  }
+}
@@ -303,5 +303,14 @@ class ParDoEvaluator<InputT> implements TransformEvaluator<InputT> {
       checkArgument(bundles.containsKey(tag), "Unknown output tag %s", tag);
       (bundles.get(tag)).add((WindowedValue) output);
     }
+
+    /**
+     * Replaces the bundle that elements output to {@code tag} are added to. Must be called before
+     * any element is output to {@code tag}.
+     */
+    void replaceBundle(TupleTag<?> tag, UncommittedBundle<?> bundle) {
+      checkArgument(bundles.containsKey(tag), "Unknown output tag %s", tag);
+      bundles.put(tag, bundle);
+    }
   }
 }
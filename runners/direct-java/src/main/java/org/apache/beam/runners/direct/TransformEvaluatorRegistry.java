@@ -70,17 +70,21 @@ class TransformEvaluatorRegistry {
    */
   public static TransformEvaluatorRegistry javaSdkNativeRegistry(
       EvaluationContext ctxt, PipelineOptions options) {
+    ParDoEvaluatorFactory<?, ?> parDoFactory =
+        new ParDoEvaluatorFactory<>(
+            ctxt,
+            ParDoEvaluator.defaultRunnerFactory(),
+            ParDoEvaluatorFactory.basicDoFnCacheLoader(),
+            options);
     ImmutableMap<String, TransformEvaluatorFactory> primitives =
         ImmutableMap.<String, TransformEvaluatorFactory>builder()
             // Beam primitives
             .put(READ_TRANSFORM_URN, new ReadEvaluatorFactory(ctxt, options))
             .put(
                 PAR_DO_TRANSFORM_URN,
-                new ParDoEvaluatorFactory<>(
-                    ctxt,
-                    ParDoEvaluator.defaultRunnerFactory(),
-                    ParDoEvaluatorFactory.basicDoFnCacheLoader(),
-                    options))
+                options.as(DirectOptions.class).isPerformanceMode()
+                    ? FusedParDoEvaluatorFactory.create(ctxt, parDoFactory)
+                    : parDoFactory)
             .put(FLATTEN_TRANSFORM_URN, new FlattenEvaluatorFactory(ctxt))
             .put(ASSIGN_WINDOWS_TRANSFORM_URN, new WindowEvaluatorFactory(ctxt))
             .put(IMPULSE_TRANSFORM_URN, new ImpulseEvaluatorFactory(ctxt))
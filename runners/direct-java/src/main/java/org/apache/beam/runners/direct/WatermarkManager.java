@@ -231,13 +231,14 @@ class WatermarkManager<ExecutableT, CollectionT> {
     // This tracks only the quantity of timers at each timestamp, for quickly getting the cross-key
     // minimum
     private final SortedMultiset<TimerData> pendingTimers;
+    private final SortedMultiset<Instant> pendingTimerOutputTimestamps;
 
     // Entries in this table represent the authoritative timestamp for which
     // a per-key-and-StateNamespace timer is set.
     private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers;
 
-    // This per-key sorted set allows quick retrieval of timers that should fire for a key
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> objectTimers;
+    // This allows quick retrieval of the keys with timers that should fire and of their timers
+    private final KeyedTimers objectTimers;
 
     private final AtomicReference<Instant> currentWatermark;
 
@@ -260,7 +261,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
           new BundleByElementTimestampComparator().compound(Ordering.arbitrary());
       this.pendingElements = TreeMultiset.create(pendingBundleComparator);
       this.pendingTimers = TreeMultiset.create();
-      this.objectTimers = new HashMap<>();
+      this.pendingTimerOutputTimestamps = TreeMultiset.create();
+      this.objectTimers = new KeyedTimers();
       this.existingTimers = new HashMap<>();
       this.currentWatermark = new AtomicReference<>(BoundedWindow.TIMESTAMP_MIN_VALUE);
       this.timerUpdateNotification = timerUpdateNotification;
@@ -318,26 +320,26 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
     @VisibleForTesting
     synchronized Instant getEarliestTimerTimestamp() {
-      if (pendingTimers.isEmpty()) {
+      if (pendingTimerOutputTimestamps.isEmpty()) {
         return BoundedWindow.TIMESTAMP_MAX_VALUE;
       } else {
-        return getMinimumOutputTimestamp(pendingTimers);
+        return pendingTimerOutputTimestamps.firstEntry().getElement();
       }
     }
 
-    private Instant getMinimumOutputTimestamp(SortedMultiset<TimerData> timers) {
-      Instant minimumOutputTimestamp = timers.firstEntry().getElement().getOutputTimestamp();
-      for (TimerData timerData : timers) {
-        minimumOutputTimestamp =
-            INSTANT_ORDERING.min(timerData.getOutputTimestamp(), minimumOutputTimestamp);
+    private void addPendingTimer(TimerData timer) {
+      pendingTimers.add(timer);
+      pendingTimerOutputTimestamps.add(timer.getOutputTimestamp());
+    }
+
+    private void removePendingTimer(TimerData timer) {
+      if (pendingTimers.remove(timer)) {
+        pendingTimerOutputTimestamps.remove(timer.getOutputTimestamp());
       }
-      return minimumOutputTimestamp;
     }
 
     @VisibleForTesting
     synchronized void updateTimers(TimerUpdate update) {
-      NavigableSet<TimerData> keyTimers =
-          objectTimers.computeIfAbsent(update.key, k -> new TreeSet<>());
       Map<String, TimerData> existingTimersForKey =
           existingTimers.computeIfAbsent(update.key, k -> Maps.newHashMap());
 
@@ -347,16 +349,16 @@ class WatermarkManager<ExecutableT, CollectionT> {
           newSetTimers.add(timer.stringKey());
           @Nullable TimerData existingTimer = existingTimersForKey.get(timer.stringKey());
           if (existingTimer == null) {
-            pendingTimers.add(timer);
-            keyTimers.add(timer);
+            addPendingTimer(timer);
+            objectTimers.add(update.key, timer);
           } else {
             // reinitialize the timer even if identical,
             // because it might be removed from objectTimers
             // by timer push back
-            pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
-            pendingTimers.add(timer);
-            keyTimers.add(timer);
+            removePendingTimer(existingTimer);
+            objectTimers.remove(update.key, existingTimer);
+            addPendingTimer(timer);
+            objectTimers.add(update.key, timer);
           }
 
           existingTimersForKey.put(timer.stringKey(), timer);
@@ -368,8 +370,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
           @Nullable TimerData existingTimer = existingTimersForKey.get(timer.stringKey());
 
           if (existingTimer != null) {
-            pendingTimers.remove(existingTimer);
-            keyTimers.remove(existingTimer);
+            removePendingTimer(existingTimer);
+            objectTimers.remove(update.key, existingTimer);
             existingTimersForKey.remove(existingTimer.stringKey());
           }
         }
@@ -378,8 +380,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
       for (TimerData timer : update.getCompletedTimers()) {
         if (TimeDomain.EVENT_TIME.equals(timer.getDomain())) {
           if (!newSetTimers.contains(timer.stringKey())) {
-            keyTimers.remove(timer);
-            pendingTimers.remove(timer);
+            objectTimers.remove(update.key, timer);
+            removePendingTimer(timer);
             existingTimersForKey.remove(timer.stringKey());
           }
         }
@@ -395,7 +397,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
     @VisibleForTesting
     synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredEventTimeTimers() {
-      return extractFiredTimers(currentWatermark.get(), objectTimers);
+      return objectTimers.extractFiredTimers(currentWatermark.get());
     }
 
     @Override
@@ -507,11 +509,12 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
     private final Collection<? extends Watermark> inputWms;
     private final Collection<Bundle<?, ?>> pendingBundles;
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> processingTimers;
-    private final Map<StructuralKey<?>, NavigableSet<TimerData>> synchronizedProcessingTimers;
+    private final KeyedTimers processingTimers;
+    private final KeyedTimers synchronizedProcessingTimers;
     private final Map<StructuralKey<?>, Map<String, TimerData>> existingTimers;
 
     private final NavigableSet<TimerData> pendingTimers;
+    private final SortedMultiset<Instant> pendingTimerOutputTimestamps;
 
     private AtomicReference<Instant> earliestHold;
 
@@ -525,10 +528,11 @@ class WatermarkManager<ExecutableT, CollectionT> {
       this.name = name;
       this.inputWms = inputWms;
       this.pendingBundles = new HashSet<>();
-      this.processingTimers = new HashMap<>();
-      this.synchronizedProcessingTimers = new HashMap<>();
+      this.processingTimers = new KeyedTimers();
+      this.synchronizedProcessingTimers = new KeyedTimers();
       this.existingTimers = new HashMap<>();
       this.pendingTimers = new TreeSet<>();
+      this.pendingTimerOutputTimestamps = TreeMultiset.create();
       Instant initialHold = BoundedWindow.TIMESTAMP_MAX_VALUE;
       for (Watermark wm : inputWms) {
         initialHold = INSTANT_ORDERING.min(initialHold, wm.get());
@@ -592,30 +596,27 @@ class WatermarkManager<ExecutableT, CollectionT> {
      * timestamp across timers that have been delivered but have not been completed.
      */
     public synchronized Instant getEarliestTimerTimestamp() {
-      Instant earliest = THE_END_OF_TIME.get();
-      for (NavigableSet<TimerData> timers : processingTimers.values()) {
-        if (!timers.isEmpty()) {
-          earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(timers), earliest);
-        }
-      }
-      for (NavigableSet<TimerData> timers : synchronizedProcessingTimers.values()) {
-        if (!timers.isEmpty()) {
-          earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(timers), earliest);
-        }
-      }
-      if (!pendingTimers.isEmpty()) {
-        earliest = INSTANT_ORDERING.min(getMinimumOutputTimestamp(pendingTimers), earliest);
+      Instant earliest =
+          INSTANT_ORDERING.min(
+              processingTimers.getEarliestOutputTimestamp(),
+              synchronizedProcessingTimers.getEarliestOutputTimestamp());
+      if (!pendingTimerOutputTimestamps.isEmpty()) {
+        earliest =
+            INSTANT_ORDERING.min(pendingTimerOutputTimestamps.firstEntry().getElement(), earliest);
       }
       return earliest;
     }
 
-    private Instant getMinimumOutputTimestamp(NavigableSet<TimerData> timers) {
-      Instant minimumOutputTimestamp = timers.first().getOutputTimestamp();
-      for (TimerData timerData : timers) {
-        minimumOutputTimestamp =
-            INSTANT_ORDERING.min(timerData.getOutputTimestamp(), minimumOutputTimestamp);
+    private void addPendingTimer(TimerData timer) {
+      if (pendingTimers.add(timer)) {
+        pendingTimerOutputTimestamps.add(timer.getOutputTimestamp());
+      }
+    }
+
+    private void removePendingTimer(TimerData timer) {
+      if (pendingTimers.remove(timer)) {
+        pendingTimerOutputTimestamps.remove(timer.getOutputTimestamp());
       }
-      return minimumOutputTimestamp;
     }
 
     private synchronized void updateTimers(TimerUpdate update) {
@@ -624,34 +625,32 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
       HashSet<String> newSetTimers = Sets.newHashSet();
       for (TimerData addedTimer : update.setTimers.values()) {
-        NavigableSet<TimerData> timerQueue =
-            processQueueForDomain(update.key, addedTimer.getDomain());
+        KeyedTimers timerQueue = processQueueForDomain(addedTimer.getDomain());
         if (timerQueue == null) {
           continue;
         }
         newSetTimers.add(addedTimer.stringKey());
         @Nullable TimerData existingTimer = existingTimersForKey.get(addedTimer.stringKey());
         if (existingTimer == null) {
-          timerQueue.add(addedTimer);
+          timerQueue.add(update.key, addedTimer);
         } else if (!existingTimer.equals(addedTimer)) {
-          timerQueue.remove(existingTimer);
-          timerQueue.add(addedTimer);
+          timerQueue.remove(update.key, existingTimer);
+          timerQueue.add(update.key, addedTimer);
         } // else the timer is already set identically, so noop.
 
         existingTimersForKey.put(addedTimer.stringKey(), addedTimer);
       }
 
       for (TimerData deletedTimer : update.deletedTimers.values()) {
-        NavigableSet<TimerData> timerQueue =
-            processQueueForDomain(update.key, deletedTimer.getDomain());
+        KeyedTimers timerQueue = processQueueForDomain(deletedTimer.getDomain());
         if (timerQueue == null) {
           continue;
         }
         String timerKey = deletedTimer.stringKey();
         @Nullable TimerData existingTimer = existingTimersForKey.get(timerKey);
         if (existingTimer != null) {
-          pendingTimers.remove(existingTimer);
-          timerQueue.remove(existingTimer);
+          removePendingTimer(existingTimer);
+          timerQueue.remove(update.key, existingTimer);
           existingTimersForKey.remove(timerKey);
         }
       }
@@ -659,7 +658,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
       for (TimerData completedTimer : update.completedTimers) {
         String timerKey = completedTimer.stringKey();
         if (!newSetTimers.contains(timerKey)) {
-          pendingTimers.remove(completedTimer);
+          removePendingTimer(completedTimer);
           existingTimersForKey.remove(timerKey);
         }
       }
@@ -675,13 +674,12 @@ class WatermarkManager<ExecutableT, CollectionT> {
       Map<StructuralKey<?>, List<TimerData>> firedTimers;
       switch (domain) {
         case PROCESSING_TIME:
-          firedTimers = extractFiredTimers(firingTime, processingTimers);
+          firedTimers = processingTimers.extractFiredTimers(firingTime);
           break;
         case SYNCHRONIZED_PROCESSING_TIME:
           firedTimers =
-              extractFiredTimers(
-                  INSTANT_ORDERING.min(firingTime, earliestHold.get()),
-                  synchronizedProcessingTimers);
+              synchronizedProcessingTimers.extractFiredTimers(
+                  INSTANT_ORDERING.min(firingTime, earliestHold.get()));
           break;
         default:
           throw new IllegalArgumentException(
@@ -689,20 +687,18 @@ class WatermarkManager<ExecutableT, CollectionT> {
                   + " and gave a non-processing time domain "
                   + domain);
       }
-      for (Map.Entry<StructuralKey<?>, ? extends Collection<TimerData>> firedTimer :
-          firedTimers.entrySet()) {
-        pendingTimers.addAll(firedTimer.getValue());
+      for (List<TimerData> keyFiredTimers : firedTimers.values()) {
+        keyFiredTimers.forEach(this::addPendingTimer);
       }
       return firedTimers;
     }
 
-    private @Nullable NavigableSet<TimerData> processQueueForDomain(
-        StructuralKey<?> key, TimeDomain timeDomain) {
+    private @Nullable KeyedTimers processQueueForDomain(TimeDomain timeDomain) {
       switch (timeDomain) {
         case PROCESSING_TIME:
-          return processingTimers.computeIfAbsent(key, k -> new TreeSet<>());
+          return processingTimers;
         case SYNCHRONIZED_PROCESSING_TIME:
-          return synchronizedProcessingTimers.computeIfAbsent(key, k -> new TreeSet<>());
+          return synchronizedProcessingTimers;
         default:
           return null;
       }
@@ -831,33 +827,109 @@ class WatermarkManager<ExecutableT, CollectionT> {
   private static final Ordering<Instant> INSTANT_ORDERING = Ordering.natural();
 
   /**
-   * For each (Object, NavigableSet) pair in the provided map, remove each Timer that is before the
-   * latestTime argument and put in the result with the same key, then remove all of the keys which
-   * have no more pending timers.
+   * The pending timers of each key, ordered by their timestamps, along with an index of the keys
+   * ordered by their earliest timer and the output timestamps of all timers.
    *
-   * <p>The result collection retains ordering of timers (from earliest to latest).
+   * <p>Extracting fired timers only visits the keys which have timers to fire, and the earliest
+   * output timestamp is available without walking the timers, so neither cost grows with the
+   * number of keys with pending timers. Guarded by the watermark which owns it.
    */
-  private static synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(
-      Instant latestTime, Map<StructuralKey<?>, NavigableSet<TimerData>> objectTimers) {
-    Map<StructuralKey<?>, List<TimerData>> result = new HashMap<>();
-    Set<StructuralKey<?>> emptyKeys = new HashSet<>();
-    for (Map.Entry<StructuralKey<?>, NavigableSet<TimerData>> pendingTimers :
-        objectTimers.entrySet()) {
-      NavigableSet<TimerData> timers = pendingTimers.getValue();
-      if (!timers.isEmpty() && timers.first().getTimestamp().isBefore(latestTime)) {
-        ArrayList<TimerData> keyFiredTimers = new ArrayList<>();
-        result.put(pendingTimers.getKey(), keyFiredTimers);
-        while (!timers.isEmpty() && timers.first().getTimestamp().isBefore(latestTime)) {
-          keyFiredTimers.add(timers.first());
-          timers.remove(timers.first());
+  private static class KeyedTimers {
+    private static final Ordering<Object> KEY_ORDERING = Ordering.arbitrary();
+
+    private final Map<StructuralKey<?>, KeyTimers> timersByKey;
+    private final NavigableSet<KeyTimers> keysByEarliestTimer;
+    private final SortedMultiset<Instant> outputTimestamps;
+
+    private KeyedTimers() {
+      this.timersByKey = new HashMap<>();
+      this.keysByEarliestTimer =
+          new TreeSet<>(
+              (keyTimers, otherKeyTimers) ->
+                  ComparisonChain.start()
+                      .compare(keyTimers.timers.first(), otherKeyTimers.timers.first())
+                      .compare(keyTimers, otherKeyTimers, KEY_ORDERING)
+                      .result());
+      this.outputTimestamps = TreeMultiset.create();
+    }
+
+    /** Adds the timer to the timers of the key. */
+    public void add(StructuralKey<?> key, TimerData timer) {
+      KeyTimers keyTimers = timersByKey.computeIfAbsent(key, KeyTimers::new);
+      // The position of a key in the index depends on its earliest timer, so it is removed from
+      // the index before its timers change.
+      if (!keyTimers.timers.isEmpty()) {
+        keysByEarliestTimer.remove(keyTimers);
+      }
+      if (keyTimers.timers.add(timer)) {
+        outputTimestamps.add(timer.getOutputTimestamp());
+      }
+      keysByEarliestTimer.add(keyTimers);
+    }
+
+    /** Removes the timer from the timers of the key, if present. */
+    public void remove(StructuralKey<?> key, TimerData timer) {
+      KeyTimers keyTimers = timersByKey.get(key);
+      if (keyTimers == null) {
+        return;
+      }
+      keysByEarliestTimer.remove(keyTimers);
+      if (keyTimers.timers.remove(timer)) {
+        outputTimestamps.remove(timer.getOutputTimestamp());
+      }
+      if (keyTimers.timers.isEmpty()) {
+        timersByKey.remove(key);
+      } else {
+        keysByEarliestTimer.add(keyTimers);
+      }
+    }
+
+    /**
+     * Returns the earliest output timestamp across all timers, or THE_END_OF_TIME if there are no
+     * timers.
+     */
+    public Instant getEarliestOutputTimestamp() {
+      return outputTimestamps.isEmpty()
+          ? THE_END_OF_TIME.get()
+          : outputTimestamps.firstEntry().getElement();
+    }
+
+    /**
+     * Removes each timer that is before the latestTime argument and returns them grouped by key.
+     *
+     * <p>The result collection retains ordering of timers (from earliest to latest).
+     */
+    public Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(Instant latestTime) {
+      Map<StructuralKey<?>, List<TimerData>> result = new HashMap<>();
+      while (!keysByEarliestTimer.isEmpty()
+          && keysByEarliestTimer.first().timers.first().getTimestamp().isBefore(latestTime)) {
+        KeyTimers keyTimers = keysByEarliestTimer.pollFirst();
+        List<TimerData> keyFiredTimers = new ArrayList<>();
+        while (!keyTimers.timers.isEmpty()
+            && keyTimers.timers.first().getTimestamp().isBefore(latestTime)) {
+          TimerData timer = keyTimers.timers.pollFirst();
+          outputTimestamps.remove(timer.getOutputTimestamp());
+          keyFiredTimers.add(timer);
+        }
+        result.put(keyTimers.key, keyFiredTimers);
+        if (keyTimers.timers.isEmpty()) {
+          timersByKey.remove(keyTimers.key);
+        } else {
+          keysByEarliestTimer.add(keyTimers);
         }
       }
-      if (timers.isEmpty()) {
-        emptyKeys.add(pendingTimers.getKey());
+      return result;
+    }
+
+    private static class KeyTimers {
+      private final StructuralKey<?> key;
+      private final NavigableSet<TimerData> timers;
+
+      private KeyTimers(StructuralKey<?> key) {
+        this.key = key;
+        this.timers = new TreeSet<>();
       }
     }
-    objectTimers.keySet().removeAll(emptyKeys);
-    return result;
   }
 
   ////////////////////////////////////////////////////////////////////////////////////////////////
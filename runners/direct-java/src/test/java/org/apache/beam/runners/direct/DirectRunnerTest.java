@@ -19,6 +19,7 @@ package org.apache.beam.runners.direct;
 
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
@@ -66,6 +67,11 @@ import org.apache.beam.sdk.io.CountingSource;
 import org.apache.beam.sdk.io.GenerateSequence;
 import org.apache.beam.sdk.io.Read;
 import org.apache.beam.sdk.io.UnboundedSource;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.MetricNameFilter;
+import org.apache.beam.sdk.metrics.MetricResult;
+import org.apache.beam.sdk.metrics.Metrics;
+import org.apache.beam.sdk.metrics.MetricsFilter;
 import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -97,6 +103,7 @@ import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.sdk.values.TypeDescriptors;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Iterables;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.hamcrest.Matchers;
 import org.joda.time.Duration;
@@ -484,6 +491,76 @@ public class DirectRunnerTest implements Serializable {
     pipeline.run();
   }
 
+  /** Tests that a {@link DoFn} that mutates an output succeeds in performance mode. */
+  @Test
+  public void testMutatingOutputInPerformanceModeSucceeds() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setPerformanceMode(true);
+    Pipeline pipeline = Pipeline.create(options);
+
+    pipeline
+        .apply(Create.of(42))
+        .apply(
+            ParDo.of(
+                new DoFn<Integer, List<Integer>>() {
+                  @ProcessElement
+                  public void processElement(ProcessContext c) {
+                    List<Integer> outputList = Arrays.asList(1, 2, 3, 4);
+                    c.output(outputList);
+                    outputList.set(0, 37);
+                    c.output(outputList);
+                  }
+                }));
+
+    pipeline.run();
+  }
+
+  /**
+   * Tests that fused chains of {@link ParDo ParDos} produce the same output in performance mode,
+   * and report metrics under the step which reported them.
+   */
+  @Test
+  public void testPerformanceModeFusesParDos() {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setPerformanceMode(true);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<Integer> sum =
+        pipeline
+            .apply(Create.of(1, 2, 3))
+            .apply("AddOne", MapElements.into(TypeDescriptors.integers()).via(i -> i + 1))
+            .apply(
+                "Counting",
+                ParDo.of(
+                    new DoFn<Integer, Integer>() {
+                      private final Counter elements =
+                          Metrics.counter(DirectRunnerTest.class, "elements");
+
+                      @ProcessElement
+                      public void processElement(ProcessContext c) {
+                        elements.inc();
+                        c.output(c.element() * 2);
+                      }
+                    }))
+            .apply(Sum.integersGlobally());
+    PAssert.thatSingleton(sum).isEqualTo(18);
+
+    PipelineResult result = pipeline.run();
+    MetricResult<Long> elements =
+        Iterables.getOnlyElement(
+            result
+                .metrics()
+                .queryMetrics(
+                    MetricsFilter.builder()
+                        .addNameFilter(MetricNameFilter.named(DirectRunnerTest.class, "elements"))
+                        .build())
+                .getCounters());
+    assertThat(elements.getKey().stepName(), containsString("Counting"));
+    assertThat(elements.getCommitted(), equalTo(3L));
+  }
+
   /**
    * Tests that a {@link DoFn} that mutates an output with a good equals() fails in the {@link
    * DirectRunner}.
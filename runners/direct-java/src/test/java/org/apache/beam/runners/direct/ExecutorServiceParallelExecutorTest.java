@@ -80,6 +80,7 @@ public class ExecutorServiceParallelExecutorTest {
             metricsExecutorService);
     ExecutorServiceParallelExecutor.create(
             2,
+            false,
             TransformEvaluatorRegistry.javaSdkNativeRegistry(
                 context, PipelineOptionsFactory.create().as(DirectOptions.class)),
             emptyMap(),
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.Serializable;
+import java.util.Map;
+import org.apache.beam.sdk.runners.AppliedPTransform;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.View;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionView;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link FusedParDoEvaluatorFactory}. */
+@RunWith(JUnit4.class)
+public class FusedParDoEvaluatorFactoryTest implements Serializable {
+  @Rule
+  public transient TestPipeline p = TestPipeline.create().enableAbandonedNodeEnforcement(false);
+
+  @Test
+  public void fusesOnlyConsumersOfParDoOutputsThatAreStatelessAndUnshared() {
+    PCollection<Integer> created = p.apply(Create.of(1, 2, 3));
+    PCollection<Integer> first = created.apply("First", ParDo.of(new IdentityFn<>()));
+    PCollection<Integer> second = first.apply("Second", ParDo.of(new IdentityFn<>()));
+    PCollection<Integer> third = second.apply("Third", ParDo.of(new IdentityFn<>()));
+    second.apply("Fourth", ParDo.of(new IdentityFn<>()));
+
+    PCollectionView<Integer> view = created.apply(View.asSingleton());
+    third.apply("WithSideInput", ParDo.of(new IdentityFn<Integer>()).withSideInputs(view));
+
+    PCollection<KV<String, Integer>> keyed =
+        created.apply(
+            "Keyed",
+            ParDo.of(
+                new DoFn<Integer, KV<String, Integer>>() {
+                  @ProcessElement
+                  public void processElement(ProcessContext c) {
+                    c.output(KV.of("key", c.element()));
+                  }
+                }));
+    keyed.apply(
+        "Stateful",
+        ParDo.of(
+            new DoFn<KV<String, Integer>, Integer>() {
+              @StateId("state")
+              private final StateSpec<ValueState<Integer>> stateSpec = StateSpecs.value();
+
+              @ProcessElement
+              public void processElement(ProcessContext c) {}
+            }));
+
+    DirectGraph graph = DirectGraphs.getGraph(p);
+    Map<PCollection<?>, AppliedPTransform<?, ?, ?>> fusedConsumers =
+        FusedParDoEvaluatorFactory.fusedConsumers(graph);
+
+    assertEquals(graph.getProducer(second), fusedConsumers.get(first));
+    // Second has two consumers, WithSideInput has a side input and Stateful uses state.
+    assertFalse(fusedConsumers.containsKey(second));
+    assertFalse(fusedConsumers.containsKey(third));
+    assertFalse(fusedConsumers.containsKey(keyed));
+  }
+
+  private static class IdentityFn<T> extends DoFn<T, T> {
+    @ProcessElement
+    public void processElement(ProcessContext c) {
+      c.output(c.element());
+    }
+  }
+}
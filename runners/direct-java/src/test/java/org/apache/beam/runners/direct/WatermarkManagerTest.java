@@ -24,6 +24,7 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
@@ -32,6 +33,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -1652,6 +1654,64 @@ public class WatermarkManagerTest implements Serializable {
     assertThat(fired.entrySet(), empty());
   }
 
+  @Test
+  public void inputWatermarkFiresOnlyTimersBeforeWatermarkAcrossKeys() {
+    Watermark mockWatermark = Mockito.mock(Watermark.class);
+
+    AppliedPTransformInputWatermark underTest =
+        new AppliedPTransformInputWatermark(
+            "underTest", ImmutableList.of(mockWatermark), update -> {});
+
+    // Each key has an early timer and a late timer, whose output timestamps are in reverse order.
+    List<StructuralKey<String>> keys = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      StructuralKey<String> key = StructuralKey.of("key" + i, StringUtf8Coder.of());
+      keys.add(key);
+      TimerData early =
+          TimerData.of(
+              "early",
+              StateNamespaces.global(),
+              new Instant(100 + i),
+              new Instant(500 - i),
+              TimeDomain.EVENT_TIME);
+      TimerData late =
+          TimerData.of(
+              "late",
+              StateNamespaces.global(),
+              new Instant(1000 + i),
+              new Instant(1000 + i),
+              TimeDomain.EVENT_TIME);
+      underTest.updateTimers(TimerUpdate.builder(key).setTimer(early).setTimer(late).build());
+    }
+    assertEquals(new Instant(491), underTest.getEarliestTimerTimestamp());
+
+    when(mockWatermark.get()).thenReturn(new Instant(105));
+    underTest.refresh();
+    Map<StructuralKey<?>, List<TimerData>> fired = underTest.extractFiredEventTimeTimers();
+    assertThat(fired.keySet(), containsInAnyOrder(keys.subList(0, 5).toArray()));
+    for (List<TimerData> keyFired : fired.values()) {
+      assertThat(keyFired, hasSize(1));
+      assertEquals("early", keyFired.get(0).getTimerId());
+    }
+
+    // Fired timers hold the output watermark until they are completed.
+    assertEquals(new Instant(491), underTest.getEarliestTimerTimestamp());
+    for (Map.Entry<StructuralKey<?>, List<TimerData>> keyFired : fired.entrySet()) {
+      underTest.updateTimers(
+          TimerUpdate.builder(keyFired.getKey()).withCompletedTimers(keyFired.getValue()).build());
+    }
+    assertEquals(new Instant(491), underTest.getEarliestTimerTimestamp());
+    assertThat(underTest.extractFiredEventTimeTimers().entrySet(), empty());
+
+    when(mockWatermark.get()).thenReturn(new Instant(2000));
+    underTest.refresh();
+    fired = underTest.extractFiredEventTimeTimers();
+    assertThat(fired.keySet(), containsInAnyOrder(keys.toArray()));
+    assertThat(fired.get(keys.get(0)), hasSize(1));
+    assertThat(fired.get(keys.get(9)), hasSize(2));
+    assertThat(underTest.extractFiredEventTimeTimers().entrySet(), empty());
+  }
+
   @Test
   public void timerUpdateBuilderBuildAddsAllAddedTimers() {
     TimerData set =
@@ -148,7 +148,9 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
     this.environmentCaches =
         createEnvironmentCaches(
-            serverFactory -> createServerInfo(jobInfo, serverFactory),
+            provider ->
+                createServerInfo(
+                    jobInfo, provider.getServerFactory(), provider.getDataServerFactory()),
             getMaxEnvironmentClients(jobInfo));
     this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
     this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
@@ -168,7 +170,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.environmentExpirationMillis = getEnvironmentExpirationMillis(jobInfo);
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
     this.environmentCaches =
-        createEnvironmentCaches(serverFactory -> serverInfo, getMaxEnvironmentClients(jobInfo));
+        createEnvironmentCaches(provider -> serverInfo, getMaxEnvironmentClients(jobInfo));
     this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
     this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
     this.evictedActiveClients = Sets.newConcurrentHashSet();
@@ -185,7 +187,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
   }
 
   private ImmutableList<EnvironmentCacheAndLock> createEnvironmentCaches(
-      ThrowingFunction<ServerFactory, ServerInfo> serverInfoCreator, int count) {
+      ThrowingFunction<EnvironmentFactory.Provider, ServerInfo> serverInfoCreator, int count) {
 
     ImmutableList.Builder<EnvironmentCacheAndLock> caches = ImmutableList.builder();
     for (int i = 0; i < count; i++) {
@@ -240,8 +242,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
                           environment, BeamUrns.getUrn(StandardEnvironments.Environments.DOCKER));
                   EnvironmentFactory.Provider environmentFactoryProvider =
                       environmentFactoryProviderMap.get(environment.getUrn());
-                  ServerFactory serverFactory = environmentFactoryProvider.getServerFactory();
-                  ServerInfo serverInfo = serverInfoCreator.apply(serverFactory);
+                  ServerInfo serverInfo = serverInfoCreator.apply(environmentFactoryProvider);
                   String workerId = stageIdGenerator.getId();
                   serverInfo
                       .getProvisioningServer()
@@ -668,9 +669,11 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     }
   }
 
-  private ServerInfo createServerInfo(JobInfo jobInfo, ServerFactory serverFactory)
+  private ServerInfo createServerInfo(
+      JobInfo jobInfo, ServerFactory serverFactory, ServerFactory dataServerFactory)
       throws IOException {
     Preconditions.checkNotNull(serverFactory, "serverFactory can not be null");
+    Preconditions.checkNotNull(dataServerFactory, "dataServerFactory can not be null");
 
     PortablePipelineOptions portableOptions =
         PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions())
@@ -701,9 +704,9 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
         GrpcFnServer.allocatePortAndCreateFor(
             GrpcDataService.create(
                 portableOptions, executor, OutboundObserverFactory.serverDirect()),
-            serverFactory);
+            dataServerFactory);
     GrpcFnServer<GrpcStateService> stateServer =
-        GrpcFnServer.allocatePortAndCreateFor(GrpcStateService.create(), serverFactory);
+        GrpcFnServer.allocatePortAndCreateFor(GrpcStateService.create(), dataServerFactory);
 
     ServerInfo serverInfo =
         new AutoValue_DefaultJobBundleFactory_ServerInfo.Builder()
@@ -51,5 +51,13 @@ public interface EnvironmentFactory {
     default ServerFactory getServerFactory() {
       return ServerFactory.createDefault();
     }
+
+    /**
+     * Create the {@link ServerFactory} for the data and state services of this environment, which
+     * carry the elements and state of every bundle. Defaults to {@link #getServerFactory()}.
+     */
+    default ServerFactory getDataServerFactory() {
+      return getServerFactory();
+    }
   }
 }
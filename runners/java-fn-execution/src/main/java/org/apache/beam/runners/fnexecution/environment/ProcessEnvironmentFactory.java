@@ -29,9 +29,12 @@ import org.apache.beam.runners.fnexecution.logging.GrpcLoggingService;
 import org.apache.beam.runners.fnexecution.provisioning.StaticGrpcProvisionService;
 import org.apache.beam.sdk.fn.IdGenerator;
 import org.apache.beam.sdk.fn.server.GrpcFnServer;
+import org.apache.beam.sdk.fn.server.ServerFactory;
+import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.RemoteEnvironmentOptions;
 import org.apache.beam.sdk.util.construction.BeamUrns;
+import org.apache.beam.vendor.grpc.v1p69p0.io.netty.channel.epoll.Epoll;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
@@ -45,6 +48,12 @@ public class ProcessEnvironmentFactory implements EnvironmentFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProcessEnvironmentFactory.class);
 
+  /**
+   * The experiment which serves the data and state services of process environments on a Unix
+   * domain socket.
+   */
+  public static final String DOMAIN_SOCKET_DATA_EXPERIMENT = "beam_fn_api_domain_socket_data";
+
   public static ProcessEnvironmentFactory create(
       ProcessManager processManager,
       GrpcFnServer<StaticGrpcProvisionService> provisioningServiceServer,
@@ -154,5 +163,27 @@ public class ProcessEnvironmentFactory implements EnvironmentFactory {
           idGenerator,
           pipelineOptions);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The forked SDK harness runs on the same host, so with the {@link
+     * #DOMAIN_SOCKET_DATA_EXPERIMENT} experiment the data and state services listen on a Unix
+     * domain socket rather than on a TCP port. This skips the loopback TCP stack on the path of
+     * every element, while the other services keep using the default {@link ServerFactory}.
+     */
+    @Override
+    public ServerFactory getDataServerFactory() {
+      if (ExperimentalOptions.hasExperiment(pipelineOptions, DOMAIN_SOCKET_DATA_EXPERIMENT)) {
+        if (Epoll.isAvailable()) {
+          return ServerFactory.createEpollDomainSocket();
+        }
+        LOG.warn(
+            "Ignoring the {} experiment since Unix domain sockets are not available: {}",
+            DOMAIN_SOCKET_DATA_EXPERIMENT,
+            Epoll.unavailabilityCause().toString());
+      }
+      return getServerFactory();
+    }
   }
 }
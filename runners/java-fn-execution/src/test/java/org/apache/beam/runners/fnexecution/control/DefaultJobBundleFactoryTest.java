@@ -18,8 +18,12 @@
 package org.apache.beam.runners.fnexecution.control;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
@@ -28,8 +32,10 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -39,6 +45,8 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.InstructionResponse;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleDescriptor;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.RemoteGrpcPort;
 import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Coder;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Components;
@@ -46,11 +54,13 @@ import org.apache.beam.model.pipeline.v1.RunnerApi.Environment;
 import org.apache.beam.model.pipeline.v1.RunnerApi.ExecutableStagePayload;
 import org.apache.beam.model.pipeline.v1.RunnerApi.FunctionSpec;
 import org.apache.beam.model.pipeline.v1.RunnerApi.PCollection;
+import org.apache.beam.model.pipeline.v1.RunnerApi.PTransform;
 import org.apache.beam.model.pipeline.v1.RunnerApi.WindowingStrategy;
 import org.apache.beam.runners.fnexecution.artifact.ArtifactRetrievalService;
 import org.apache.beam.runners.fnexecution.data.GrpcDataService;
 import org.apache.beam.runners.fnexecution.environment.EnvironmentFactory;
 import org.apache.beam.runners.fnexecution.environment.EnvironmentFactory.Provider;
+import org.apache.beam.runners.fnexecution.environment.ProcessEnvironmentFactory;
 import org.apache.beam.runners.fnexecution.environment.RemoteEnvironment;
 import org.apache.beam.runners.fnexecution.logging.GrpcLoggingService;
 import org.apache.beam.runners.fnexecution.provisioning.JobInfo;
@@ -61,6 +71,7 @@ import org.apache.beam.runners.fnexecution.state.StateRequestHandler;
 import org.apache.beam.sdk.fn.IdGenerator;
 import org.apache.beam.sdk.fn.IdGenerators;
 import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator;
+import org.apache.beam.sdk.fn.data.RemoteGrpcPortRead;
 import org.apache.beam.sdk.fn.server.GrpcFnServer;
 import org.apache.beam.sdk.fn.server.ServerFactory;
 import org.apache.beam.sdk.options.ExperimentalOptions;
@@ -71,6 +82,7 @@ import org.apache.beam.sdk.util.construction.PipelineOptionsTranslation;
 import org.apache.beam.sdk.util.construction.graph.ExecutableStage;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.Struct;
+import org.apache.beam.vendor.grpc.v1p69p0.io.netty.channel.epoll.Epoll;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Before;
@@ -80,6 +92,7 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -298,6 +311,8 @@ public class DefaultJobBundleFactoryTest {
             any(), any(), any(), any(), any(), any()))
         .thenReturn(envFactoryA);
     when(environmentProviderFactoryA.getServerFactory()).thenReturn(serverFactory);
+    // The data and state servers fall back to the server factory of the environment.
+    when(environmentProviderFactoryA.getDataServerFactory()).thenCallRealMethod();
 
     Environment environmentB = Environment.newBuilder().setUrn("env:urn:b").build();
     EnvironmentFactory envFactoryB = mock(EnvironmentFactory.class);
@@ -308,6 +323,7 @@ public class DefaultJobBundleFactoryTest {
             any(), any(), any(), any(), any(), any()))
         .thenReturn(envFactoryB);
     when(environmentProviderFactoryB.getServerFactory()).thenReturn(serverFactory);
+    when(environmentProviderFactoryB.getDataServerFactory()).thenCallRealMethod();
 
     Map<String, Provider> environmentFactoryProviderMap =
         ImmutableMap.of(
@@ -324,6 +340,67 @@ public class DefaultJobBundleFactoryTest {
     verify(envFactoryB).createEnvironment(eq(environmentB), any());
   }
 
+  @Test
+  public void servesDataAndStateOfProcessEnvironmentsOnDomainSocket() throws Exception {
+    assumeTrue(Epoll.isAvailable());
+    ExperimentalOptions options = PipelineOptionsFactory.as(ExperimentalOptions.class);
+    ExperimentalOptions.addExperiment(
+        options, ProcessEnvironmentFactory.DOMAIN_SOCKET_DATA_EXPERIMENT);
+    EnvironmentFactory.Provider processProvider = new ProcessEnvironmentFactory.Provider(options);
+    List<String> controlUrls = new ArrayList<>();
+    // Chooses the server factories like a process environment, without forking a harness.
+    EnvironmentFactory.Provider provider =
+        new EnvironmentFactory.Provider() {
+          @Override
+          public EnvironmentFactory createEnvironmentFactory(
+              GrpcFnServer<FnApiControlClientPoolService> controlServiceServer,
+              GrpcFnServer<GrpcLoggingService> loggingServiceServer,
+              GrpcFnServer<ArtifactRetrievalService> retrievalServiceServer,
+              GrpcFnServer<StaticGrpcProvisionService> provisioningServiceServer,
+              ControlClientPool clientPool,
+              IdGenerator idGenerator) {
+            controlUrls.add(controlServiceServer.getApiServiceDescriptor().getUrl());
+            return envFactory;
+          }
+
+          @Override
+          public ServerFactory getServerFactory() {
+            return processProvider.getServerFactory();
+          }
+
+          @Override
+          public ServerFactory getDataServerFactory() {
+            return processProvider.getDataServerFactory();
+          }
+        };
+
+    try (DefaultJobBundleFactory bundleFactory =
+        DefaultJobBundleFactory.create(
+            JobInfo.create(
+                "testJob", "testJob", "token", PipelineOptionsTranslation.toProto(options)),
+            ImmutableMap.of(environment.getUrn(), provider))) {
+      bundleFactory.forStage(getExecutableStage(environment));
+    }
+
+    ArgumentCaptor<ProcessBundleDescriptor> descriptor =
+        ArgumentCaptor.forClass(ProcessBundleDescriptor.class);
+    verify(instructionHandler).registerProcessBundleDescriptor(descriptor.capture());
+    assertThat(
+        descriptor.getValue().getStateApiServiceDescriptor().getUrl(), startsWith("unix://"));
+    List<String> dataUrls = new ArrayList<>();
+    for (PTransform transform : descriptor.getValue().getTransformsMap().values()) {
+      if (RemoteGrpcPortRead.URN.equals(transform.getSpec().getUrn())) {
+        dataUrls.add(
+            RemoteGrpcPort.parseFrom(transform.getSpec().getPayload())
+                .getApiServiceDescriptor()
+                .getUrl());
+      }
+    }
+    assertThat(dataUrls, contains(startsWith("unix://")));
+    // The other services keep listening on TCP.
+    assertThat(controlUrls, contains(not(startsWith("unix://"))));
+  }
+
   @Test
   public void expiresEnvironment() throws Exception {
     ServerFactory serverFactory = ServerFactory.createDefault();
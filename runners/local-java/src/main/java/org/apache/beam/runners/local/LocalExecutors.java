@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Factories for the {@link ExecutorService ExecutorServices} used to execute local pipelines. */
+public final class LocalExecutors {
+  private LocalExecutors() {}
+
+  /**
+   * Returns a work-stealing {@link ExecutorService} with the provided {@code parallelism}.
+   *
+   * <p>Work submitted from a worker thread, such as the work that follows the completion of a
+   * bundle, is queued on the local queue of that worker rather than on a single queue shared by all
+   * workers, and idle workers steal work from busy ones. Work is executed in submission order
+   * within each queue.
+   *
+   * <p>Unlike the threads of {@link ForkJoinPool#commonPool()}, the workers are not daemon threads,
+   * so a pipeline continues to execute even if there are no other live threads. Their context
+   * {@link ClassLoader} is the context {@link ClassLoader} of the thread that creates the pool,
+   * like that of the threads of a {@link java.util.concurrent.ThreadPoolExecutor}, rather than the
+   * system {@link ClassLoader}.
+   *
+   * @param parallelism the number of workers
+   * @param namePrefix the prefix of the names of the workers, which are numbered from zero
+   */
+  public static ExecutorService newWorkStealingPool(int parallelism, String namePrefix) {
+    return new ForkJoinPool(
+        parallelism,
+        new WorkerThreadFactory(namePrefix, Thread.currentThread().getContextClassLoader()),
+        null,
+        true);
+  }
+
+  /** Creates named, non-daemon workers with the given context {@link ClassLoader}. */
+  private static class WorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+    private final String namePrefix;
+    private final ClassLoader contextClassLoader;
+    private final AtomicInteger workers = new AtomicInteger();
+
+    private WorkerThreadFactory(String namePrefix, ClassLoader contextClassLoader) {
+      this.namePrefix = namePrefix;
+      this.contextClassLoader = contextClassLoader;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+      ForkJoinWorkerThread worker = new ForkJoinWorkerThread(pool) {};
+      worker.setName(namePrefix + "-" + workers.getAndIncrement());
+      worker.setDaemon(false);
+      worker.setContextClassLoader(contextClassLoader);
+      return worker;
+    }
+  }
+}
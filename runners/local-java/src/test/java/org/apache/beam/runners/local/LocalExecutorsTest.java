@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link LocalExecutors}. */
+@RunWith(JUnit4.class)
+public class LocalExecutorsTest {
+  @Test
+  public void workStealingPoolUsesNamedNonDaemonWorkers() throws Exception {
+    ExecutorService executor = LocalExecutors.newWorkStealingPool(2, "test-worker");
+    try {
+      Thread worker = executor.submit(Thread::currentThread).get();
+      assertThat(worker.getName(), Matchers.startsWith("test-worker-"));
+      assertFalse(worker.isDaemon());
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void workStealingPoolWorkersUseContextClassLoaderOfCreatingThread() throws Exception {
+    ClassLoader original = Thread.currentThread().getContextClassLoader();
+    ClassLoader contextClassLoader = new URLClassLoader(new URL[0], original);
+    ExecutorService executor;
+    Thread.currentThread().setContextClassLoader(contextClassLoader);
+    try {
+      executor = LocalExecutors.newWorkStealingPool(2, "test-worker");
+    } finally {
+      Thread.currentThread().setContextClassLoader(original);
+    }
+    try {
+      ClassLoader workerClassLoader =
+          executor.submit(() -> Thread.currentThread().getContextClassLoader()).get();
+      assertSame(contextClassLoader, workerClassLoader);
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void workStealingPoolExecutesWorkSubmittedByWorkers() throws Exception {
+    ExecutorService executor = LocalExecutors.newWorkStealingPool(2, "test-worker");
+    CountDownLatch done = new CountDownLatch(100);
+    try {
+      executor.submit(
+          () -> {
+            for (int i = 0; i < 100; i++) {
+              executor.submit(done::countDown);
+            }
+          });
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
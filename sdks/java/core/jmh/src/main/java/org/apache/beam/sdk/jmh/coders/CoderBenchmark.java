@@ -0,0 +1,534 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.beam.sdk.coders.BigDecimalCoder;
+import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
+import org.apache.beam.sdk.coders.BigIntegerCoder;
+import org.apache.beam.sdk.coders.BitSetCoder;
+import org.apache.beam.sdk.coders.BooleanCoder;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.InstantCoder;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.LengthPrefixCoder;
+import org.apache.beam.sdk.coders.ListCoder;
+import org.apache.beam.sdk.coders.MapCoder;
+import org.apache.beam.sdk.coders.NullableCoder;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.SnappyCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.coders.ZstdCoder;
+import org.apache.beam.sdk.schemas.JavaFieldSchema;
+import org.apache.beam.sdk.schemas.NoSuchSchemaException;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.SchemaRegistry;
+import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.Row;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks encoding and decoding with the built-in {@link Coder coders}.
+ *
+ * <p>Each invocation encodes or decodes {@link #VALUES_PER_INVOCATION} values, generated upfront
+ * for every combination of {@link CoderCase} and {@link ValueSize}. Values vary in size around the
+ * nominal size of the {@link ValueSize} to avoid measuring a single, perfectly predicted shape.
+ *
+ * <p>Allocation rates are reported when running with the GC profiler ({@code -prof gc}), for
+ * example with {@code ./gradlew :sdks:java:core:jmh:jmh -Pprofiler=gc}.
+ */
+@OperationsPerInvocation(CoderBenchmark.VALUES_PER_INVOCATION)
+public class CoderBenchmark {
+  static final int VALUES_PER_INVOCATION = 1024;
+
+  /** Nominal sizes of the generated values. */
+  public enum ValueSize {
+    /** Scalars of a few bytes, collections of a few elements. */
+    SMALL(8, 4, 14),
+    /** Strings and byte arrays of a few hundred bytes, collections of tens of elements. */
+    MEDIUM(256, 32, 35),
+    /** Strings and byte arrays of several kilobytes, collections of hundreds of elements. */
+    LARGE(8192, 512, 63);
+
+    final int bytes;
+    final int elements;
+    final int longBits;
+
+    ValueSize(int bytes, int elements, int longBits) {
+      this.bytes = bytes;
+      this.elements = elements;
+      this.longBits = longBits;
+    }
+  }
+
+  /** A {@link DefaultSchema schema-inferred} type used to benchmark {@code SchemaCoder}. */
+  @DefaultSchema(JavaFieldSchema.class)
+  public static class SchemaPojo {
+    public String name = "";
+    public long id;
+    public double score;
+    public @Nullable String comment;
+    public List<Integer> counts = new ArrayList<>();
+  }
+
+  /** The coders under benchmark, with a generator for values of a given size. */
+  public enum CoderCase {
+    BOOLEAN {
+      @Override
+      Coder<?> coder() {
+        return BooleanCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return random.nextBoolean();
+      }
+    },
+    VAR_INT {
+      @Override
+      Coder<?> coder() {
+        return VarIntCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return (int) smallLong(random, size);
+      }
+    },
+    VAR_LONG {
+      @Override
+      Coder<?> coder() {
+        return VarLongCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return smallLong(random, size);
+      }
+    },
+    BIG_ENDIAN_INTEGER {
+      @Override
+      Coder<?> coder() {
+        return BigEndianIntegerCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return random.nextInt();
+      }
+    },
+    BIG_ENDIAN_LONG {
+      @Override
+      Coder<?> coder() {
+        return BigEndianLongCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return random.nextLong();
+      }
+    },
+    DOUBLE {
+      @Override
+      Coder<?> coder() {
+        return DoubleCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return random.nextDouble();
+      }
+    },
+    INSTANT {
+      @Override
+      Coder<?> coder() {
+        return InstantCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return new Instant(random.nextInt(Integer.MAX_VALUE) * 1000L);
+      }
+    },
+    BIG_INTEGER {
+      @Override
+      Coder<?> coder() {
+        return BigIntegerCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return new BigInteger(8 * length(random, size.bytes), random);
+      }
+    },
+    BIG_DECIMAL {
+      @Override
+      Coder<?> coder() {
+        return BigDecimalCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return new BigDecimal(new BigInteger(8 * length(random, size.bytes), random), 4);
+      }
+    },
+    BYTE_ARRAY {
+      @Override
+      Coder<?> coder() {
+        return ByteArrayCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return bytes(random, size.bytes);
+      }
+    },
+    STRING_UTF8 {
+      @Override
+      Coder<?> coder() {
+        return StringUtf8Coder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return string(random, size.bytes);
+      }
+    },
+    BIT_SET {
+      @Override
+      Coder<?> coder() {
+        return BitSetCoder.of();
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return BitSet.valueOf(bytes(random, size.bytes));
+      }
+    },
+    NULLABLE_STRING {
+      @Override
+      Coder<?> coder() {
+        return NullableCoder.of(StringUtf8Coder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        // Benchmark values can't be null, the null case is covered by the ROW and SCHEMA cases.
+        return string(random, size.bytes);
+      }
+    },
+    LENGTH_PREFIX_STRING {
+      @Override
+      Coder<?> coder() {
+        return LengthPrefixCoder.of(StringUtf8Coder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return string(random, size.bytes);
+      }
+    },
+    KV_STRING_LONG {
+      @Override
+      Coder<?> coder() {
+        return KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return KV.of(string(random, size.bytes), smallLong(random, size));
+      }
+    },
+    ITERABLE_LONG {
+      @Override
+      Coder<?> coder() {
+        return IterableCoder.of(VarLongCoder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return longs(random, size);
+      }
+    },
+    LIST_STRING {
+      @Override
+      Coder<?> coder() {
+        return ListCoder.of(StringUtf8Coder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        int count = length(random, size.elements);
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+          list.add(string(random, ValueSize.SMALL.bytes));
+        }
+        return list;
+      }
+    },
+    MAP_STRING_LONG {
+      @Override
+      Coder<?> coder() {
+        return MapCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        int count = length(random, size.elements);
+        Map<String, Long> map = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+          map.put(string(random, ValueSize.SMALL.bytes) + i, smallLong(random, size));
+        }
+        return map;
+      }
+    },
+    SNAPPY_BYTE_ARRAY {
+      @Override
+      Coder<?> coder() {
+        return SnappyCoder.of(ByteArrayCoder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return compressibleBytes(random, size.bytes);
+      }
+    },
+    ZSTD_BYTE_ARRAY {
+      @Override
+      Coder<?> coder() {
+        return ZstdCoder.of(ByteArrayCoder.of());
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return compressibleBytes(random, size.bytes);
+      }
+    },
+    SERIALIZABLE_STRING {
+      @Override
+      Coder<?> coder() {
+        return SerializableCoder.of(String.class);
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return string(random, size.bytes);
+      }
+    },
+    ROW {
+      @Override
+      Coder<?> coder() {
+        return RowCoder.of(ROW_SCHEMA);
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        return Row.withSchema(ROW_SCHEMA)
+            .addValues(
+                string(random, size.bytes),
+                smallLong(random, size),
+                random.nextDouble(),
+                random.nextBoolean() ? null : string(random, ValueSize.SMALL.bytes),
+                ints(random, size))
+            .build();
+      }
+    },
+    SCHEMA {
+      @Override
+      Coder<?> coder() {
+        try {
+          return SchemaRegistry.createDefault().getSchemaCoder(SchemaPojo.class);
+        } catch (NoSuchSchemaException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      @Override
+      Object value(Random random, ValueSize size) {
+        SchemaPojo pojo = new SchemaPojo();
+        pojo.name = string(random, size.bytes);
+        pojo.id = smallLong(random, size);
+        pojo.score = random.nextDouble();
+        pojo.comment = random.nextBoolean() ? null : string(random, ValueSize.SMALL.bytes);
+        pojo.counts = ints(random, size);
+        return pojo;
+      }
+    };
+
+    abstract Coder<?> coder();
+
+    abstract Object value(Random random, ValueSize size);
+  }
+
+  private static final Schema ROW_SCHEMA =
+      Schema.builder()
+          .addStringField("name")
+          .addInt64Field("id")
+          .addDoubleField("score")
+          .addNullableField("comment", Schema.FieldType.STRING)
+          .addArrayField("counts", Schema.FieldType.INT32)
+          .build();
+
+  /** Returns a length that is uniformly distributed between half and one and a half nominal. */
+  private static int length(Random random, int nominal) {
+    return Math.max(1, nominal / 2 + random.nextInt(nominal + 1));
+  }
+
+  /** Returns a non-negative long of at most {@link ValueSize#longBits} bits. */
+  private static long smallLong(Random random, ValueSize size) {
+    return random.nextLong() & ((1L << (1 + random.nextInt(size.longBits))) - 1);
+  }
+
+  private static byte[] bytes(Random random, int nominal) {
+    byte[] bytes = new byte[length(random, nominal)];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  /** Returns bytes with a limited alphabet and repetitions, similar to serialized records. */
+  private static byte[] compressibleBytes(Random random, int nominal) {
+    byte[] bytes = new byte[length(random, nominal)];
+    for (int i = 0; i < bytes.length; i++) {
+      if (i >= 8 && random.nextInt(4) == 0) {
+        bytes[i] = bytes[i - 8];
+      } else {
+        bytes[i] = (byte) ('a' + random.nextInt(16));
+      }
+    }
+    return bytes;
+  }
+
+  private static String string(Random random, int nominal) {
+    int length = length(random, nominal);
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      // Mostly ASCII with the occasional multi-byte character.
+      if (random.nextInt(32) == 0) {
+        builder.append((char) (0x400 + random.nextInt(256)));
+      } else {
+        builder.append((char) ('a' + random.nextInt(26)));
+      }
+    }
+    return builder.toString();
+  }
+
+  private static List<Long> longs(Random random, ValueSize size) {
+    int count = length(random, size.elements);
+    List<Long> longs = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      longs.add(smallLong(random, size));
+    }
+    return longs;
+  }
+
+  private static List<Integer> ints(Random random, ValueSize size) {
+    int count = length(random, size.elements);
+    List<Integer> ints = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ints.add(random.nextInt(1 << 16));
+    }
+    return ints;
+  }
+
+  /** Values and their encodings for one combination of {@link CoderCase} and {@link ValueSize}. */
+  @State(Scope.Benchmark)
+  public static class CoderState {
+    @Param public CoderCase coderCase = CoderCase.STRING_UTF8;
+
+    @Param public ValueSize valueSize = ValueSize.SMALL;
+
+    Coder<Object> coder;
+    Object[] values;
+    byte[][] encoded;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+      Random random = new Random(314159);
+      coder = (Coder<Object>) coderCase.coder();
+      values = new Object[VALUES_PER_INVOCATION];
+      encoded = new byte[VALUES_PER_INVOCATION][];
+      for (int i = 0; i < VALUES_PER_INVOCATION; i++) {
+        values[i] = coderCase.value(random, valueSize);
+        encoded[i] = CoderUtils.encodeToByteArray(coder, values[i]);
+      }
+    }
+  }
+
+  /** Output to {@link Blackhole}, so that only the allocations of the coder are measured. */
+  @State(Scope.Benchmark)
+  public static class BlackholeOutput {
+    OutputStream stream;
+
+    @Setup
+    public void setup(Blackhole bh) {
+      stream =
+          new OutputStream() {
+            @Override
+            public void write(int b) {
+              bh.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+              bh.consume(b);
+            }
+          };
+    }
+  }
+
+  @Benchmark
+  public void encode(CoderState state, BlackholeOutput output) throws IOException {
+    for (Object value : state.values) {
+      state.coder.encode(value, output.stream);
+    }
+  }
+
+  @Benchmark
+  public void decode(CoderState state, Blackhole bh) throws IOException {
+    for (byte[] bytes : state.encoded) {
+      bh.consume(CoderUtils.decodeFromByteArray(state.coder, bytes));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.beam.sdk.jmh.coders.CoderBenchmark.BlackholeOutput;
+import org.apache.beam.sdk.jmh.coders.CoderBenchmark.CoderCase;
+import org.apache.beam.sdk.jmh.coders.CoderBenchmark.CoderState;
+import org.apache.beam.sdk.jmh.coders.CoderBenchmark.ValueSize;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Tests for {@link CoderBenchmark}. */
+@RunWith(JUnit4.class)
+public class CoderBenchmarkTest {
+  private final Blackhole bh =
+      new Blackhole(
+          "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+
+  @Test
+  public void testAllCoderCases() throws Exception {
+    BlackholeOutput output = new BlackholeOutput();
+    output.setup(bh);
+    for (CoderCase coderCase : CoderCase.values()) {
+      for (ValueSize valueSize : ValueSize.values()) {
+        CoderState state = new CoderState();
+        state.coderCase = coderCase;
+        state.valueSize = valueSize;
+        state.setup();
+
+        // Decoded values re-encode to the same number of bytes. The bytes themselves may differ,
+        // e.g. for maps with a different iteration order.
+        for (int i = 0; i < state.encoded.length; i++) {
+          assertEquals(
+              coderCase + "/" + valueSize,
+              state.encoded[i].length,
+              CoderUtils.encodeToByteArray(
+                      state.coder, CoderUtils.decodeFromByteArray(state.coder, state.encoded[i]))
+                  .length);
+        }
+        new CoderBenchmark().encode(state, output);
+        new CoderBenchmark().decode(state, bh);
+      }
+    }
+  }
+}
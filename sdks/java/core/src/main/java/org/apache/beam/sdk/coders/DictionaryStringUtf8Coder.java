@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link Coder} for {@link String}s that encodes the values of a fixed dictionary as small
+ * integer references instead of their UTF-8 bytes.
+ *
+ * <p>This is intended for low-cardinality string data, such as country codes or event types, whose
+ * likely values are known when the pipeline is constructed. A value found in the dictionary is
+ * encoded as the varint {@code index + 1}. Any other value is encoded as a {@code 0} followed by
+ * its {@link StringUtf8Coder} encoding, so the coder accepts every string. The dictionary is part
+ * of the coder and is therefore shipped once with the pipeline rather than with the data.
+ *
+ * <p>The encoding is deterministic, so this coder may be used for the keys of a {@link
+ * org.apache.beam.sdk.transforms.GroupByKey} as well as for values and user state.
+ *
+ * <p>This coder is only understood by the Java SDK, which translates it with the URN {@code
+ * beam:coder:java:string_dictionary:v1}, and must be chosen explicitly, for example with {@link
+ * org.apache.beam.sdk.values.PCollection#setCoder}. It does not change the encoding of {@link
+ * RowCoder}, whose {@link String} fields are always encoded with {@link StringUtf8Coder}.
+ */
+public class DictionaryStringUtf8Coder extends CustomCoder<String> {
+  private static final StringUtf8Coder STRING_CODER = StringUtf8Coder.of();
+  // Reference written before values which are not in the dictionary.
+  private static final int NOT_IN_DICTIONARY = 0;
+
+  private final List<String> dictionary;
+  private transient @Nullable Map<String, Integer> references;
+
+  /** Returns a {@link DictionaryStringUtf8Coder} for the given distinct dictionary values. */
+  public static DictionaryStringUtf8Coder of(List<String> dictionary) {
+    return new DictionaryStringUtf8Coder(ImmutableList.copyOf(dictionary));
+  }
+
+  /** Returns a {@link DictionaryStringUtf8Coder} for the given distinct dictionary values. */
+  public static DictionaryStringUtf8Coder of(String... dictionary) {
+    return of(Arrays.asList(dictionary));
+  }
+
+  private DictionaryStringUtf8Coder(List<String> dictionary) {
+    this.dictionary = dictionary;
+    // Validate the dictionary eagerly.
+    references();
+  }
+
+  private Map<String, Integer> references() {
+    Map<String, Integer> result = references;
+    if (result == null) {
+      Map<String, Integer> builder = new HashMap<>(dictionary.size() * 2);
+      for (int i = 0; i < dictionary.size(); ++i) {
+        Integer previous = builder.put(dictionary.get(i), i + 1);
+        checkArgument(previous == null, "Duplicate dictionary value %s", dictionary.get(i));
+      }
+      // An immutable map is safely published to other threads using this coder.
+      result = ImmutableMap.copyOf(builder);
+      references = result;
+    }
+    return result;
+  }
+
+  /** Returns the dictionary values, in the order of their references. */
+  public List<String> getDictionary() {
+    return dictionary;
+  }
+
+  @Override
+  public void encode(String value, OutputStream outStream) throws IOException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null String");
+    }
+    Integer reference = references().get(value);
+    if (reference != null) {
+      VarInt.encode(reference.intValue(), outStream);
+    } else {
+      VarInt.encode(NOT_IN_DICTIONARY, outStream);
+      STRING_CODER.encode(value, outStream);
+    }
+  }
+
+  @Override
+  public String decode(InputStream inStream) throws IOException {
+    int reference = VarInt.decodeInt(inStream);
+    if (reference == NOT_IN_DICTIONARY) {
+      return STRING_CODER.decode(inStream);
+    }
+    if (reference < 0 || reference > dictionary.size()) {
+      throw new CoderException(
+          String.format(
+              "Invalid dictionary reference %d for a dictionary of %d values",
+              reference, dictionary.size()));
+    }
+    return dictionary.get(reference - 1);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Every value has a single encoding, either as a reference or as a string.
+   */
+  @Override
+  public void verifyDeterministic() {}
+
+  @Override
+  public boolean consistentWithEquals() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@code true}. {@link #getEncodedElementByteSize} only looks the value up in the
+   *     dictionary.
+   */
+  @Override
+  public boolean isRegisterByteSizeObserverCheap(String value) {
+    return true;
+  }
+
+  @Override
+  protected long getEncodedElementByteSize(String value) throws Exception {
+    if (value == null) {
+      throw new CoderException("cannot encode a null String");
+    }
+    Integer reference = references().get(value);
+    if (reference != null) {
+      return VarInt.getLength(reference.intValue());
+    }
+    return VarInt.getLength(NOT_IN_DICTIONARY) + STRING_CODER.getEncodedElementByteSize(value);
+  }
+
+  @Override
+  public TypeDescriptor<String> getEncodedTypeDescriptor() {
+    return TypeDescriptors.strings();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof DictionaryStringUtf8Coder)) {
+      return false;
+    }
+    return dictionary.equals(((DictionaryStringUtf8Coder) other).dictionary);
+  }
+
+  @Override
+  public int hashCode() {
+    return dictionary.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "DictionaryStringUtf8Coder{dictionarySize=" + dictionary.size() + "}";
+  }
+}
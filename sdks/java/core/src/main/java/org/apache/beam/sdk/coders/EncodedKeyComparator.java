@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import org.apache.beam.sdk.transforms.SerializableComparator;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link java.util.Comparator} over the encoded form of values which orders them as their
+ * decoded values would be ordered, without decoding them.
+ *
+ * <p>The comparator is derived from the {@link Coder} that produced the bytes, which must encode
+ * values in the {@link Coder.Context#OUTER outer} context (as done by {@link
+ * org.apache.beam.sdk.util.CoderUtils#encodeToByteArray(Coder, Object)}). The following coders are
+ * supported, see {@link #isSupported(Coder)}:
+ *
+ * <ul>
+ *   <li>{@link VarIntCoder}, {@link VarLongCoder}, {@link BigEndianShortCoder}, {@link
+ *       BigEndianIntegerCoder}, {@link BigEndianLongCoder}, {@link ByteCoder}, {@link
+ *       DoubleCoder} and {@link FloatCoder}, in numeric order as defined by the respective {@code
+ *       compare} method of the boxed type.
+ *   <li>{@link BooleanCoder}, with {@code false} before {@code true}.
+ *   <li>{@link InstantCoder}, in chronological order.
+ *   <li>{@link StringUtf8Coder}, in the order of {@link String#compareTo(String)}.
+ *   <li>{@link ByteArrayCoder}, in unsigned lexicographic order.
+ *   <li>{@link NullableCoder} of a supported coder, with {@code null} first.
+ *   <li>{@link KvCoder} of supported coders, ordered by key and then by value.
+ * </ul>
+ *
+ * <p>Unlike an unsigned lexicographic comparison of the encoded bytes, this orders negative
+ * numbers before positive ones and variable length encodings by value rather than by their bytes.
+ */
+public final class EncodedKeyComparator implements SerializableComparator<byte[]> {
+
+  private final Segment segment;
+
+  private EncodedKeyComparator(Segment segment) {
+    this.segment = segment;
+  }
+
+  /** Returns whether {@link #of(Coder)} supports values encoded with {@code coder}. */
+  public static boolean isSupported(Coder<?> coder) {
+    return segmentFor(coder, false) != null;
+  }
+
+  /**
+   * Returns an {@link EncodedKeyComparator} for values encoded with {@code coder}.
+   *
+   * @throws IllegalArgumentException if the coder is not supported
+   */
+  public static EncodedKeyComparator of(Coder<?> coder) {
+    Segment segment = segmentFor(coder, false);
+    checkArgument(segment != null, "Encoded values of %s can not be compared", coder);
+    return new EncodedKeyComparator(segment);
+  }
+
+  @Override
+  public int compare(byte[] a, byte[] b) {
+    return segment.compare(a, 0, a.length, b, 0, b.length);
+  }
+
+  /**
+   * Compares the encoded value in {@code a[aOffset, aOffset + aLength)} with the one in {@code
+   * b[bOffset, bOffset + bLength)}.
+   */
+  public int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+    return segment.compare(a, aOffset, aOffset + aLength, b, bOffset, bOffset + bLength);
+  }
+
+  private static @Nullable Segment segmentFor(Coder<?> coder, boolean nested) {
+    if (coder instanceof VarIntCoder) {
+      return new VarIntSegment();
+    } else if (coder instanceof VarLongCoder) {
+      return new VarLongSegment();
+    } else if (coder instanceof BigEndianShortCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.SHORT, 2);
+    } else if (coder instanceof BigEndianIntegerCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.INT, 4);
+    } else if (coder instanceof BigEndianLongCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.LONG, 8);
+    } else if (coder instanceof InstantCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.UNSIGNED, 8);
+    } else if (coder instanceof DoubleCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.DOUBLE, 8);
+    } else if (coder instanceof FloatCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.FLOAT, 4);
+    } else if (coder instanceof BooleanCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.UNSIGNED, 1);
+    } else if (coder instanceof ByteCoder) {
+      return new FixedWidthSegment(FixedWidthSegment.BYTE, 1);
+    } else if (coder instanceof StringUtf8Coder) {
+      return new BytesSegment(nested, true);
+    } else if (coder instanceof ByteArrayCoder) {
+      return new BytesSegment(nested, false);
+    } else if (coder instanceof NullableCoder) {
+      Segment valueSegment = segmentFor(((NullableCoder<?>) coder).getValueCoder(), nested);
+      return valueSegment == null ? null : new NullableSegment(valueSegment);
+    } else if (coder instanceof KvCoder) {
+      KvCoder<?, ?> kvCoder = (KvCoder<?, ?>) coder;
+      Segment keySegment = segmentFor(kvCoder.getKeyCoder(), true);
+      Segment valueSegment = segmentFor(kvCoder.getValueCoder(), nested);
+      return keySegment == null || valueSegment == null
+          ? null
+          : new KvSegment(keySegment, valueSegment);
+    }
+    return null;
+  }
+
+  /**
+   * Compares one encoded value within a larger encoding. Values start at the given positions and
+   * the enclosing encodings end before the given ends.
+   */
+  private abstract static class Segment implements Serializable {
+    abstract int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd);
+
+    /** Returns the number of bytes of the value starting at {@code pos}. */
+    abstract int length(byte[] bytes, int pos, int end);
+  }
+
+  private static class VarIntSegment extends Segment {
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      return Integer.compare(
+          (int) decodeVarLong(a, aPos, aEnd), (int) decodeVarLong(b, bPos, bEnd));
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      return varLength(bytes, pos, end);
+    }
+  }
+
+  private static class VarLongSegment extends Segment {
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      return Long.compare(decodeVarLong(a, aPos, aEnd), decodeVarLong(b, bPos, bEnd));
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      return varLength(bytes, pos, end);
+    }
+  }
+
+  private static class FixedWidthSegment extends Segment {
+    static final int SHORT = 0;
+    static final int INT = 1;
+    static final int LONG = 2;
+    static final int UNSIGNED = 3;
+    static final int DOUBLE = 4;
+    static final int FLOAT = 5;
+    static final int BYTE = 6;
+
+    private final int type;
+    private final int width;
+
+    FixedWidthSegment(int type, int width) {
+      this.type = type;
+      this.width = width;
+    }
+
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      checkBounds(aPos + width, aEnd);
+      checkBounds(bPos + width, bEnd);
+      long x = readBigEndian(a, aPos, width);
+      long y = readBigEndian(b, bPos, width);
+      switch (type) {
+        case SHORT:
+          return Short.compare((short) x, (short) y);
+        case INT:
+          return Integer.compare((int) x, (int) y);
+        case LONG:
+          return Long.compare(x, y);
+        case DOUBLE:
+          return Double.compare(Double.longBitsToDouble(x), Double.longBitsToDouble(y));
+        case FLOAT:
+          return Float.compare(Float.intBitsToFloat((int) x), Float.intBitsToFloat((int) y));
+        case BYTE:
+          return Byte.compare((byte) x, (byte) y);
+        default:
+          return Long.compareUnsigned(x, y);
+      }
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      return width;
+    }
+  }
+
+  /**
+   * Compares byte strings, which are prefixed with their varint length when nested. Strings are
+   * compared as UTF-8 which, apart from supplementary characters, orders like UTF-16 code units.
+   */
+  private static class BytesSegment extends Segment {
+    private final boolean nested;
+    private final boolean utf8;
+
+    BytesSegment(boolean nested, boolean utf8) {
+      this.nested = nested;
+      this.utf8 = utf8;
+    }
+
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      int aLength = aEnd - aPos;
+      int bLength = bEnd - bPos;
+      if (nested) {
+        int aPrefix = varLength(a, aPos, aEnd);
+        int bPrefix = varLength(b, bPos, bEnd);
+        aLength = (int) decodeVarLong(a, aPos, aEnd);
+        bLength = (int) decodeVarLong(b, bPos, bEnd);
+        aPos += aPrefix;
+        bPos += bPrefix;
+        checkBounds(aPos + aLength, aEnd);
+        checkBounds(bPos + bLength, bEnd);
+      }
+      int common = Math.min(aLength, bLength);
+      for (int i = 0; i < common; ++i) {
+        int x = a[aPos + i] & 0xff;
+        int y = b[bPos + i] & 0xff;
+        if (x != y) {
+          // The first differing bytes either both start a character or are both continuation
+          // bytes. Lead bytes 0xEE and 0xEF encode U+E000 to U+FFFF, which UTF-16 orders after the
+          // surrogate pairs of the supplementary characters encoded with lead bytes 0xF0 to 0xF4.
+          if (utf8 && x >= 0xEE && y >= 0xEE && (x >= 0xF0) != (y >= 0xF0)) {
+            return x >= 0xF0 ? -1 : 1;
+          }
+          return x - y;
+        }
+      }
+      return Integer.compare(aLength, bLength);
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      if (!nested) {
+        return end - pos;
+      }
+      return varLength(bytes, pos, end) + (int) decodeVarLong(bytes, pos, end);
+    }
+  }
+
+  private static class NullableSegment extends Segment {
+    private final Segment valueSegment;
+
+    NullableSegment(Segment valueSegment) {
+      this.valueSegment = valueSegment;
+    }
+
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      checkBounds(aPos + 1, aEnd);
+      checkBounds(bPos + 1, bEnd);
+      // NullableCoder writes 0 before null and 1 before present values.
+      int result = Integer.compare(a[aPos], b[bPos]);
+      if (result != 0 || a[aPos] == 0) {
+        return result;
+      }
+      return valueSegment.compare(a, aPos + 1, aEnd, b, bPos + 1, bEnd);
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      checkBounds(pos + 1, end);
+      return bytes[pos] == 0 ? 1 : 1 + valueSegment.length(bytes, pos + 1, end);
+    }
+  }
+
+  private static class KvSegment extends Segment {
+    private final Segment keySegment;
+    private final Segment valueSegment;
+
+    KvSegment(Segment keySegment, Segment valueSegment) {
+      this.keySegment = keySegment;
+      this.valueSegment = valueSegment;
+    }
+
+    @Override
+    int compare(byte[] a, int aPos, int aEnd, byte[] b, int bPos, int bEnd) {
+      int result = keySegment.compare(a, aPos, aEnd, b, bPos, bEnd);
+      if (result != 0) {
+        return result;
+      }
+      return valueSegment.compare(
+          a,
+          aPos + keySegment.length(a, aPos, aEnd),
+          aEnd,
+          b,
+          bPos + keySegment.length(b, bPos, bEnd),
+          bEnd);
+    }
+
+    @Override
+    int length(byte[] bytes, int pos, int end) {
+      int keyLength = keySegment.length(bytes, pos, end);
+      return keyLength + valueSegment.length(bytes, pos + keyLength, end);
+    }
+  }
+
+  private static long readBigEndian(byte[] bytes, int pos, int width) {
+    long result = 0;
+    for (int i = 0; i < width; ++i) {
+      result = (result << 8) | (bytes[pos + i] & 0xff);
+    }
+    // Sign extend values narrower than a long.
+    int shift = 64 - 8 * width;
+    return width == 8 ? result : (result << shift) >> shift;
+  }
+
+  /** Decodes the varint at {@code pos} as written by {@link org.apache.beam.sdk.util.VarInt}. */
+  private static long decodeVarLong(byte[] bytes, int pos, int end) {
+    long result = 0;
+    int shift = 0;
+    int b;
+    do {
+      checkBounds(pos + 1, end);
+      checkArgument(shift < 64, "Malformed varint");
+      b = bytes[pos++];
+      result |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
+  private static int varLength(byte[] bytes, int pos, int end) {
+    int start = pos;
+    do {
+      checkBounds(pos + 1, end);
+    } while ((bytes[pos++] & 0x80) != 0);
+    return pos - start;
+  }
+
+  private static void checkBounds(int required, int end) {
+    checkArgument(required <= end, "Truncated encoded value");
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.beam.sdk.coders;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
@@ -30,8 +32,28 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** A sub-class of SchemaCoder that can only encode {@link Row} instances. */
 public class RowCoder extends SchemaCoder<Row> {
+  private final boolean lazyDecoding;
+  private transient @Nullable Coder<Row> lazyDecodingCoder;
+
   public static RowCoder of(Schema schema) {
-    return new RowCoder(schema);
+    return new RowCoder(schema, false);
+  }
+
+  /**
+   * Returns a {@link RowCoder} with the same encoding as this one that decodes fields lazily.
+   *
+   * <p>Decoded rows keep their encoded bytes and only decode a field the first time it is
+   * accessed, which avoids materializing fields that are never read. Rows that are re-encoded with
+   * this schema are written by copying the original bytes. This setting is not preserved when the
+   * coder is translated to a portable pipeline representation.
+   */
+  public RowCoder withLazyDecoding() {
+    return new RowCoder(schema, true);
+  }
+
+  /** Returns whether this coder decodes fields lazily. See {@link #withLazyDecoding()}. */
+  public boolean isLazyDecoding() {
+    return lazyDecoding;
   }
 
   /** Override encoding positions for the given schema. */
@@ -44,12 +66,24 @@ public class RowCoder extends SchemaCoder<Row> {
     RowCoderGenerator.clearRowCoderCache();
   }
 
-  private RowCoder(Schema schema) {
+  private RowCoder(Schema schema, boolean lazyDecoding) {
     super(
         schema,
         TypeDescriptors.rows(),
         SerializableFunctions.identity(),
         SerializableFunctions.identity());
+    this.lazyDecoding = lazyDecoding;
+  }
+
+  @Override
+  public Row decode(InputStream inStream) throws IOException {
+    if (!lazyDecoding) {
+      return super.decode(inStream);
+    }
+    if (lazyDecodingCoder == null) {
+      lazyDecodingCoder = RowCoderGenerator.generateLazilyDecoding(schema);
+    }
+    return lazyDecodingCoder.decode(inStream);
   }
 
   @Override
@@ -61,11 +95,11 @@ public class RowCoder extends SchemaCoder<Row> {
       return false;
     }
     RowCoder rowCoder = (RowCoder) o;
-    return schema.equals(rowCoder.schema);
+    return schema.equals(rowCoder.schema) && lazyDecoding == rowCoder.lazyDecoding;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema);
+    return Objects.hash(schema, lazyDecoding);
   }
 }
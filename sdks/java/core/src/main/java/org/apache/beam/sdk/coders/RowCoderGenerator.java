@@ -20,13 +20,16 @@ package org.apache.beam.sdk.coders;
 import static org.apache.beam.sdk.util.ByteBuddyUtils.getClassLoadingStrategy;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import javax.annotation.Nullable;
@@ -50,16 +53,21 @@ import net.bytebuddy.implementation.bytecode.member.MethodInvocation;
 import net.bytebuddy.implementation.bytecode.member.MethodReturn;
 import net.bytebuddy.implementation.bytecode.member.MethodVariableAccess;
 import net.bytebuddy.matcher.ElementMatchers;
+import org.apache.beam.sdk.annotations.Internal;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.schemas.Schema.Field;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
 import org.apache.beam.sdk.schemas.SchemaCoder;
 import org.apache.beam.sdk.util.StringUtils;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.util.common.ReflectHelpers;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.RowWithEncodedFields;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Maps;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.io.ByteStreams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -136,6 +144,14 @@ public abstract class RowCoderGenerator {
   @GuardedBy("cacheLock")
   private static final Map<UUID, WithStackTrace<Coder<Row>>> GENERATED_CODERS = Maps.newHashMap();
 
+  // Cache for the lazily decoding variants of the generated coders.
+  @GuardedBy("cacheLock")
+  private static final Map<UUID, Coder<Row>> LAZY_DECODING_CODERS = Maps.newHashMap();
+
+  // Cache for the coders of field values sharing the encoding of the generated coders.
+  @GuardedBy("cacheLock")
+  private static final Map<UUID, FieldValueCoder> FIELD_VALUE_CODERS = Maps.newHashMap();
+
   @GuardedBy("cacheLock")
   private static final Map<UUID, WithStackTrace<Map<String, Integer>>> ENCODING_POSITION_OVERRIDES =
       Maps.newHashMap();
@@ -194,6 +210,35 @@ public abstract class RowCoderGenerator {
   static void clearRowCoderCache() {
     synchronized (cacheLock) {
       GENERATED_CODERS.clear();
+      LAZY_DECODING_CODERS.clear();
+      FIELD_VALUE_CODERS.clear();
+    }
+  }
+
+  /**
+   * Returns a {@link Coder} for the given schema that produces rows whose fields are decoded only
+   * when accessed. The encoding is identical to the one of the coder returned by {@link
+   * #generate(Schema)}, and rows produced by the returned coder are re-encoded by copying their
+   * original bytes.
+   */
+  public static Coder<Row> generateLazilyDecoding(Schema schema) {
+    UUID uuid = Preconditions.checkNotNull(schema.getUUID());
+    synchronized (cacheLock) {
+      generate(schema);
+      return Preconditions.checkNotNull(LAZY_DECODING_CODERS.get(uuid));
+    }
+  }
+
+  /**
+   * Returns a {@link FieldValueCoder} that encodes the field values of rows with the given schema
+   * exactly like the coder returned by {@link #generate(Schema)} encodes the rows themselves.
+   */
+  @Internal
+  public static FieldValueCoder fieldValueCoder(Schema schema) {
+    UUID uuid = Preconditions.checkNotNull(schema.getUUID());
+    synchronized (cacheLock) {
+      generate(schema);
+      return Preconditions.checkNotNull(FIELD_VALUE_CODERS.get(uuid));
     }
   }
 
@@ -269,6 +314,10 @@ public abstract class RowCoderGenerator {
       }
       String stackTrace = getStackTrace();
       GENERATED_CODERS.put(uuid, new WithStackTrace<>(rowCoder, stackTrace));
+      LAZY_DECODING_CODERS.put(
+          uuid,
+          new LazyDecodingRowCoder(schema, rowCoder, componentCoders, encodingPosToRowIndex));
+      FIELD_VALUE_CODERS.put(uuid, new FieldValueCoder(componentCoders, encodingPosToRowIndex));
       LOG.debug(
           "Created row coder for uuid {} with encoding positions {} at {}",
           uuid,
@@ -337,7 +386,11 @@ public abstract class RowCoderGenerator {
         .method(ElementMatchers.named("encode"))
         .intercept(new EncodeInstruction())
         .method(ElementMatchers.named("decode"))
-        .intercept(new DecodeInstruction());
+        .intercept(new DecodeInstruction())
+        .method(ElementMatchers.named("isRegisterByteSizeObserverCheap"))
+        .intercept(new ByteSizeInstruction("isRegisterByteSizeObserverCheapDelegate"))
+        .method(ElementMatchers.named("registerByteSizeObserver"))
+        .intercept(new ByteSizeInstruction("registerByteSizeObserverDelegate"));
   }
 
   private static class EncodeInstruction implements Implementation {
@@ -404,12 +457,15 @@ public abstract class RowCoderGenerator {
         OutputStream outputStream,
         boolean hasNullableFields)
         throws IOException {
+      // Rows decoded lazily by this coder can be re-encoded by copying their original bytes. The
+      // encoding positions array is shared with the lazily decoding coder and identifies it.
+      if (value instanceof RowWithEncodedFields
+          && ((RowWithEncodedFields) value).writeEncodedTo(encodingPosToIndex, outputStream)) {
+        return;
+      }
       checkState(value.getFieldCount() == value.getSchema().getFieldCount());
       checkState(encodingPosToIndex.length == value.getFieldCount());
 
-      // Encode the field count. This allows us to handle compatible schema changes.
-      VAR_INT_CODER.encode(value.getFieldCount(), outputStream);
-
       if (hasNullableFields) {
         // If the row has null fields, extract the values out once so that both scanNullFields and
         // the encoding can share it and avoid having to extract them twice.
@@ -418,18 +474,12 @@ public abstract class RowCoderGenerator {
         for (int idx = 0; idx < fieldValues.length; ++idx) {
           fieldValues[idx] = value.getValue(idx);
         }
-
-        // Encode a bitmap for the null fields to save having to encode a bunch of nulls.
-        NULL_LIST_CODER.encode(scanNullFields(fieldValues, encodingPosToIndex), outputStream);
-        for (int encodingPos = 0; encodingPos < fieldValues.length; ++encodingPos) {
-          @Nullable Object fieldValue = fieldValues[encodingPosToIndex[encodingPos]];
-          if (fieldValue != null) {
-            coders[encodingPos].encode(fieldValue, outputStream);
-          }
-        }
+        encodeFieldValues(coders, encodingPosToIndex, fieldValues, outputStream);
       } else {
-        // Otherwise, we know all fields are non-null, so the null list is always empty.
+        // Encode the field count. This allows us to handle compatible schema changes.
+        VAR_INT_CODER.encode(value.getFieldCount(), outputStream);
 
+        // Otherwise, we know all fields are non-null, so the null list is always empty.
         NULL_LIST_CODER.encode(EMPTY_BIT_SET, outputStream);
         for (int encodingPos = 0; encodingPos < value.getFieldCount(); ++encodingPos) {
           @Nullable Object fieldValue = value.getValue(encodingPosToIndex[encodingPos]);
@@ -440,6 +490,26 @@ public abstract class RowCoderGenerator {
       }
     }
 
+    // Encodes the values of the fields of a row, indexed by row index.
+    @SuppressWarnings("unchecked")
+    static void encodeFieldValues(
+        Coder[] coders, int[] encodingPosToIndex, Object[] fieldValues, OutputStream outputStream)
+        throws IOException {
+      checkState(encodingPosToIndex.length == fieldValues.length);
+
+      // Encode the field count. This allows us to handle compatible schema changes.
+      VAR_INT_CODER.encode(fieldValues.length, outputStream);
+
+      // Encode a bitmap for the null fields to save having to encode a bunch of nulls.
+      NULL_LIST_CODER.encode(scanNullFields(fieldValues, encodingPosToIndex), outputStream);
+      for (int encodingPos = 0; encodingPos < fieldValues.length; ++encodingPos) {
+        @Nullable Object fieldValue = fieldValues[encodingPosToIndex[encodingPos]];
+        if (fieldValue != null) {
+          coders[encodingPos].encode(fieldValue, outputStream);
+        }
+      }
+    }
+
     // Figure out which fields of the Row are null, and returns a BitSet. This allows us to save
     // on encoding each null field separately.
     private static BitSet scanNullFields(Object[] fieldValues, int[] encodingPosToIndex) {
@@ -455,6 +525,115 @@ public abstract class RowCoderGenerator {
     }
   }
 
+  private static class ByteSizeInstruction implements Implementation {
+    static final ForLoadedType LOADED_TYPE = new ForLoadedType(ByteSizeInstruction.class);
+
+    private final String delegateName;
+
+    ByteSizeInstruction(String delegateName) {
+      this.delegateName = delegateName;
+    }
+
+    @Override
+    public ByteCodeAppender appender(Target implementationTarget) {
+      return (methodVisitor, implementationContext, instrumentedMethod) -> {
+        List<StackManipulation> manipulations = new ArrayList<>();
+        // Array of coders.
+        manipulations.add(MethodVariableAccess.loadThis());
+        manipulations.add(
+            FieldAccess.forField(
+                    implementationContext
+                        .getInstrumentedType()
+                        .getDeclaredFields()
+                        .filter(ElementMatchers.named(CODERS_FIELD_NAME))
+                        .getOnly())
+                .read());
+        manipulations.add(MethodVariableAccess.loadThis());
+        manipulations.add(
+            FieldAccess.forField(
+                    implementationContext
+                        .getInstrumentedType()
+                        .getDeclaredFields()
+                        .filter(ElementMatchers.named(POSITIONS_FIELD_NAME))
+                        .getOnly())
+                .read());
+        // The method arguments: the element, and for registerByteSizeObserver the observer.
+        // (offset 1, as offset 0 is always "this").
+        for (int i = 1; i <= instrumentedMethod.getParameters().size(); ++i) {
+          manipulations.add(MethodVariableAccess.REFERENCE.loadFrom(i));
+        }
+        manipulations.add(
+            MethodInvocation.invoke(
+                LOADED_TYPE
+                    .getDeclaredMethods()
+                    .filter(ElementMatchers.isStatic().and(ElementMatchers.named(delegateName)))
+                    .getOnly()));
+        manipulations.add(MethodReturn.of(instrumentedMethod.getReturnType()));
+        StackManipulation.Size size =
+            new StackManipulation.Compound(manipulations)
+                .apply(methodVisitor, implementationContext);
+        return new ByteCodeAppender.Size(size.getMaximalSize(), instrumentedMethod.getStackSize());
+      };
+    }
+
+    @Override
+    public InstrumentedType prepare(InstrumentedType instrumentedType) {
+      return instrumentedType;
+    }
+
+    // The isRegisterByteSizeObserverCheap method of the generated Coder delegates to this method.
+    // Sizing a row never encodes the row itself, so it is cheap unless one of the field Coders
+    // would have to encode its value.
+    @SuppressWarnings("unchecked")
+    static boolean isRegisterByteSizeObserverCheapDelegate(
+        Coder[] coders, int[] encodingPosToIndex, Row value) {
+      if (value instanceof RowWithEncodedFields
+          && ((RowWithEncodedFields) value).getEncodedSize(encodingPosToIndex) >= 0) {
+        return true;
+      }
+      for (int encodingPos = 0; encodingPos < encodingPosToIndex.length; ++encodingPos) {
+        @Nullable Object fieldValue = value.getValue(encodingPosToIndex[encodingPos]);
+        if (fieldValue != null
+            && !coders[encodingPos].isRegisterByteSizeObserverCheap(fieldValue)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // The registerByteSizeObserver method of the generated Coder delegates to this method. The
+    // size is computed from the same layout written by encodeDelegate, without encoding the row.
+    @SuppressWarnings("unchecked")
+    static void registerByteSizeObserverDelegate(
+        Coder[] coders, int[] encodingPosToIndex, Row value, ElementByteSizeObserver observer)
+        throws Exception {
+      if (value instanceof RowWithEncodedFields) {
+        long encodedSize = ((RowWithEncodedFields) value).getEncodedSize(encodingPosToIndex);
+        if (encodedSize >= 0) {
+          observer.update(encodedSize);
+          return;
+        }
+      }
+      checkState(encodingPosToIndex.length == value.getFieldCount());
+
+      // The field count.
+      observer.update((long) VarInt.getLength(value.getFieldCount()));
+      int lastNullEncodingPos = -1;
+      for (int encodingPos = 0; encodingPos < encodingPosToIndex.length; ++encodingPos) {
+        @Nullable Object fieldValue = value.getValue(encodingPosToIndex[encodingPos]);
+        if (fieldValue == null) {
+          lastNullEncodingPos = encodingPos;
+        } else {
+          coders[encodingPos].registerByteSizeObserver(fieldValue, observer);
+        }
+      }
+      // The null bitmap is written by BitSetCoder as a length-prefixed BitSet.toByteArray(), which
+      // has one byte for every 8 bits up to and including the highest set bit.
+      int nullBitmapBytes = (lastNullEncodingPos + 8) / 8;
+      observer.update((long) VarInt.getLength(nullBitmapBytes) + nullBitmapBytes);
+    }
+  }
+
   private static class DecodeInstruction implements Implementation {
     static final ForLoadedType LOADED_TYPE = new ForLoadedType(DecodeInstruction.class);
 
@@ -511,6 +690,18 @@ public abstract class RowCoderGenerator {
     static Row decodeDelegate(
         Schema schema, Coder[] coders, int[] encodingPosToIndex, InputStream inputStream)
         throws IOException {
+      Object[] fieldValues = decodeFieldValues(coders, encodingPosToIndex, inputStream);
+      // We call attachValues instead of setValues. setValues validates every element in the list
+      // is of the proper type, potentially converts to the internal type Row stores, and copies
+      // all values. Since we assume that decode is always being called on a previously-encoded
+      // Row, the values should already be validated and of the correct type. So, we can save
+      // some processing by simply transferring ownership of the list to the Row.
+      return Row.withSchema(schema).attachValues(fieldValues);
+    }
+
+    // Decodes the values of the fields of a row, indexed by row index.
+    static Object[] decodeFieldValues(
+        Coder[] coders, int[] encodingPosToIndex, InputStream inputStream) throws IOException {
       int fieldCount = VAR_INT_CODER.decode(inputStream);
 
       BitSet nullFields = NULL_LIST_CODER.decode(inputStream);
@@ -533,12 +724,244 @@ public abstract class RowCoderGenerator {
         int rowIndex = encodingPosToIndex[encodingPos];
         fieldValues[rowIndex] = null;
       }
-      // We call attachValues instead of setValues. setValues validates every element in the list
-      // is of the proper type, potentially converts to the internal type Row stores, and copies
-      // all values. Since we assume that decode is always being called on a previously-encoded
-      // Row, the values should already be validated and of the correct type. So, we can save
-      // some processing by simply transferring ownership of the list to the Row.
-      return Row.withSchema(schema).attachValues(fieldValues);
+      return fieldValues;
+    }
+  }
+
+  /**
+   * Encodes the field values of a row, as returned by {@link Row#getValue(int)} and indexed by
+   * field index, in the encoding of a generated row coder. This allows user types with a schema to
+   * be encoded directly from and decoded directly into their field values, without creating a
+   * {@link Row}.
+   */
+  @Internal
+  public static final class FieldValueCoder {
+    private final Coder[] coders;
+    private final int[] encodingPosToIndex;
+
+    private FieldValueCoder(Coder[] coders, int[] encodingPosToIndex) {
+      this.coders = coders;
+      this.encodingPosToIndex = encodingPosToIndex;
+    }
+
+    /** Encodes the given field values, which are indexed by field index. */
+    public void encode(@Nullable Object[] fieldValues, OutputStream outputStream)
+        throws IOException {
+      EncodeInstruction.encodeFieldValues(coders, encodingPosToIndex, fieldValues, outputStream);
+    }
+
+    /** Decodes the field values of a row, indexed by field index. */
+    public @Nullable Object[] decode(InputStream inputStream) throws IOException {
+      return DecodeInstruction.decodeFieldValues(coders, encodingPosToIndex, inputStream);
+    }
+
+    /** Returns whether sizing the given field values is cheap, see {@link Coder}. */
+    @SuppressWarnings("unchecked")
+    public boolean isRegisterByteSizeObserverCheap(@Nullable Object[] fieldValues) {
+      for (int encodingPos = 0; encodingPos < encodingPosToIndex.length; ++encodingPos) {
+        @Nullable Object fieldValue = fieldValues[encodingPosToIndex[encodingPos]];
+        if (fieldValue != null
+            && !coders[encodingPos].isRegisterByteSizeObserverCheap(fieldValue)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Notifies the observer of the encoded size of the given field values. */
+    @SuppressWarnings("unchecked")
+    public void registerByteSizeObserver(
+        @Nullable Object[] fieldValues, ElementByteSizeObserver observer) throws Exception {
+      checkState(encodingPosToIndex.length == fieldValues.length);
+      observer.update((long) VarInt.getLength(fieldValues.length));
+      int lastNullEncodingPos = -1;
+      for (int encodingPos = 0; encodingPos < encodingPosToIndex.length; ++encodingPos) {
+        @Nullable Object fieldValue = fieldValues[encodingPosToIndex[encodingPos]];
+        if (fieldValue == null) {
+          lastNullEncodingPos = encodingPos;
+        } else {
+          coders[encodingPos].registerByteSizeObserver(fieldValue, observer);
+        }
+      }
+      // See ByteSizeInstruction.registerByteSizeObserverDelegate.
+      int nullBitmapBytes = (lastNullEncodingPos + 8) / 8;
+      observer.update((long) VarInt.getLength(nullBitmapBytes) + nullBitmapBytes);
+    }
+  }
+
+  /**
+   * A {@link Coder} that shares the encoding of a generated row coder, but decodes into {@link
+   * RowWithEncodedFields}. Decoding only copies the encoded bytes and records the offset of each
+   * field; fixed-width, varint and length-prefixed fields are skipped without being materialized.
+   */
+  private static class LazyDecodingRowCoder extends CustomCoder<Row> {
+    private static final int VARINT_WIDTH = -1;
+    private static final int LENGTH_PREFIXED_WIDTH = -2;
+    private static final int UNKNOWN_WIDTH = 0;
+
+    private final Schema schema;
+    private final Coder<Row> delegate;
+    private final Coder[] coders;
+    private final int[] encodingPosToIndex;
+    // Coders indexed by row index instead of encoding position.
+    private final Coder[] rowIndexCoders;
+    // Encoded widths of the fields indexed by encoding position, or one of the special values
+    // above.
+    private final int[] encodedWidths;
+
+    LazyDecodingRowCoder(
+        Schema schema, Coder<Row> delegate, Coder[] coders, int[] encodingPosToIndex) {
+      this.schema = schema;
+      this.delegate = delegate;
+      this.coders = coders;
+      this.encodingPosToIndex = encodingPosToIndex;
+      this.rowIndexCoders = new Coder[coders.length];
+      this.encodedWidths = new int[coders.length];
+      for (int encodingPos = 0; encodingPos < coders.length; ++encodingPos) {
+        rowIndexCoders[encodingPosToIndex[encodingPos]] = coders[encodingPos];
+        encodedWidths[encodingPos] = encodedWidth(coders[encodingPos]);
+      }
+    }
+
+    private static int encodedWidth(Coder coder) {
+      if (coder instanceof ByteCoder || coder instanceof BooleanCoder) {
+        return 1;
+      } else if (coder instanceof BigEndianShortCoder) {
+        return 2;
+      } else if (coder instanceof FloatCoder) {
+        return 4;
+      } else if (coder instanceof DoubleCoder || coder instanceof InstantCoder) {
+        return 8;
+      } else if (coder instanceof VarIntCoder || coder instanceof VarLongCoder) {
+        return VARINT_WIDTH;
+      } else if (coder instanceof StringUtf8Coder || coder instanceof ByteArrayCoder) {
+        return LENGTH_PREFIXED_WIDTH;
+      }
+      return UNKNOWN_WIDTH;
+    }
+
+    @Override
+    public void encode(Row value, OutputStream outStream) throws IOException {
+      delegate.encode(value, outStream);
+    }
+
+    @Override
+    public Row decode(InputStream inStream) throws IOException {
+      RecordingInputStream recorder = new RecordingInputStream(inStream);
+      int fieldCount = VAR_INT_CODER.decode(recorder);
+      BitSet nullFields = NULL_LIST_CODER.decode(recorder);
+      int[] fieldOffsets = new int[coders.length];
+      Arrays.fill(fieldOffsets, -1);
+      // As in decodeDelegate, extra fields written with a newer schema are dropped, and missing
+      // fields are left null.
+      int decodedFieldCount = Math.min(fieldCount, coders.length);
+      for (int encodingPos = 0; encodingPos < decodedFieldCount; ++encodingPos) {
+        if (!nullFields.get(encodingPos)) {
+          fieldOffsets[encodingPosToIndex[encodingPos]] = recorder.getPosition();
+          skipField(encodingPos, recorder);
+        }
+      }
+      // The recorded bytes are only a valid encoding under this schema if the field counts match.
+      @Nullable Object encodingKey = fieldCount == coders.length ? encodingPosToIndex : null;
+      return Row.withSchema(schema)
+          .withEncodedFields(recorder.toByteArray(), fieldOffsets, rowIndexCoders, encodingKey);
+    }
+
+    private void skipField(int encodingPos, RecordingInputStream recorder) throws IOException {
+      int width = encodedWidths[encodingPos];
+      if (width > 0) {
+        recorder.skipFully(width);
+      } else if (width == VARINT_WIDTH) {
+        recorder.skipVarInt();
+      } else if (width == LENGTH_PREFIXED_WIDTH) {
+        recorder.skipFully(VarInt.decodeInt(recorder));
+      } else {
+        // No cheap way to find the end of the field, so decode it and throw the value away.
+        coders[encodingPos].decode(recorder);
+      }
+    }
+
+    @Override
+    public boolean isRegisterByteSizeObserverCheap(Row value) {
+      return delegate.isRegisterByteSizeObserverCheap(value);
+    }
+
+    @Override
+    public void registerByteSizeObserver(Row value, ElementByteSizeObserver observer)
+        throws Exception {
+      delegate.registerByteSizeObserver(value, observer);
+    }
+
+    @Override
+    public void verifyDeterministic() throws NonDeterministicException {
+      delegate.verifyDeterministic();
+    }
+
+    @Override
+    public boolean consistentWithEquals() {
+      return delegate.consistentWithEquals();
+    }
+  }
+
+  /** An {@link InputStream} that keeps a copy of every byte read from the underlying stream. */
+  private static class RecordingInputStream extends InputStream {
+    private final InputStream inputStream;
+    private byte[] buffer = new byte[64];
+    private int position = 0;
+
+    RecordingInputStream(InputStream inputStream) {
+      this.inputStream = inputStream;
+    }
+
+    int getPosition() {
+      return position;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int additional) {
+      if (position + additional > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + additional));
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = inputStream.read();
+      if (b >= 0) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) b;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = inputStream.read(b, off, len);
+      if (read > 0) {
+        ensureCapacity(read);
+        System.arraycopy(b, off, buffer, position, read);
+        position += read;
+      }
+      return read;
+    }
+
+    void skipFully(int length) throws IOException {
+      ensureCapacity(length);
+      ByteStreams.readFully(inputStream, buffer, position, length);
+      position += length;
+    }
+
+    void skipVarInt() throws IOException {
+      int b;
+      do {
+        b = read();
+        if (b < 0) {
+          throw new EOFException("Reached end of stream while reading a varint");
+        }
+      } while ((b & 0x80) != 0);
     }
   }
 }
@@ -124,6 +124,17 @@ public class StringUtf8Coder extends AtomicCoder<String> {
     return TYPE_DESCRIPTOR;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@code true}. {@link #getEncodedElementByteSize} computes the UTF-8 length of the
+   *     string without encoding it.
+   */
+  @Override
+  public boolean isRegisterByteSizeObserverCheap(String value) {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -28,7 +28,7 @@ import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.net.HostAndPor
 
 /** Creates a {@link SocketAddress} based upon a supplied string. */
 public class SocketAddressFactory {
-  private static final String UNIX_DOMAIN_SOCKET_PREFIX = "unix://";
+  static final String UNIX_DOMAIN_SOCKET_PREFIX = "unix://";
 
   /** Parse a {@link SocketAddress} from the given string. */
   public static SocketAddress createFrom(String value) {
@@ -18,16 +18,19 @@
 package org.apache.beam.sdk.fn.data;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -52,6 +55,16 @@ import org.slf4j.LoggerFactory;
  *
  * <p>The default time-based buffer threshold can be overridden by specifying the experiment {@code
  * data_buffer_time_limit_ms=<milliseconds>}
+ *
+ * <p>Specifying the experiment {@code data_buffer_adaptive} chooses the flush size of each endpoint
+ * from its observed output rate instead, aiming to deliver each element within the target latency
+ * given by the experiment {@code data_buffer_target_latency_ms=<milliseconds>}. A periodic thread
+ * flushes the endpoints whose oldest buffered element has waited for the target latency, less the
+ * 99th percentile of the recent times taken to hand data to the outbound stream. An endpoint then
+ * flushes its own buffer once it has buffered the bytes it is expected to produce in that time,
+ * bounded by the size-based threshold. The rate of an endpoint is only measured while bundles
+ * write to it. When handing data to the outbound stream takes more than half of the target latency,
+ * the stream is pushing back, and the flush sizes are doubled to send fewer and larger messages.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
@@ -68,11 +81,25 @@ public class BeamFnDataOutboundAggregator {
   public static final int DEFAULT_BUFFER_LIMIT_BYTES = 1_000_000;
   public static final String DATA_BUFFER_TIME_LIMIT_MS = "data_buffer_time_limit_ms=";
   public static final long DEFAULT_BUFFER_LIMIT_TIME_MS = -1L;
+  public static final String DATA_BUFFER_ADAPTIVE = "data_buffer_adaptive";
+  public static final String DATA_BUFFER_TARGET_LATENCY_MS = "data_buffer_target_latency_ms=";
+  public static final long DEFAULT_TARGET_LATENCY_MS = 100L;
+  // The smallest flush size chosen for an endpoint in adaptive mode.
+  @VisibleForTesting static final int MIN_ADAPTIVE_SIZE_LIMIT = 4096;
+  private static final long MIN_LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
   private static final Logger LOG = LoggerFactory.getLogger(BeamFnDataOutboundAggregator.class);
   private final int sizeLimit;
   private final long timeLimit;
+  // The target latency in adaptive mode, or 0 if the flush limits are fixed.
+  private final long targetLatencyNanos;
+  // Whether a flushing thread runs, so that receivers must synchronize on flushLock.
+  private final boolean hasFlushThread;
+  // The recent times taken to hand data to outboundObserver, which grow when the stream pushes
+  // back. Updated by whichever thread flushes, and read when reporting progress.
+  private final SendTimes sendTimes = new SendTimes();
   private final Supplier<String> processBundleRequestIdSupplier;
+  // Concurrent since the size limits of the receivers are read when reporting progress.
   @VisibleForTesting final Map<String, Receiver<?>> outputDataReceivers;
   @VisibleForTesting final Map<TimerEndpoint, Receiver<?>> outputTimersReceivers;
   private final StreamObserver<Elements> outboundObserver;
@@ -89,8 +116,13 @@ public class BeamFnDataOutboundAggregator {
       boolean collectElementsIfNoFlushes) {
     this.sizeLimit = getSizeLimit(options);
     this.timeLimit = getTimeLimit(options);
+    this.targetLatencyNanos =
+        ExperimentalOptions.hasExperiment(options, DATA_BUFFER_ADAPTIVE)
+            ? TimeUnit.MILLISECONDS.toNanos(getTargetLatency(options))
+            : 0L;
+    this.hasFlushThread = timeLimit > 0 || targetLatencyNanos > 0;
     this.collectElementsIfNoFlushes = collectElementsIfNoFlushes;
-    this.outputDataReceivers = new HashMap<>();
+    this.outputDataReceivers = new ConcurrentHashMap<>();
     this.outputTimersReceivers = new HashMap<>();
     this.outboundObserver = outboundObserver;
     this.processBundleRequestIdSupplier = processBundleRequestIdSupplier;
@@ -99,19 +131,72 @@ public class BeamFnDataOutboundAggregator {
     this.hasFlushedForBundle = false;
   }
 
-  /** Starts the flushing daemon thread if data_buffer_time_limit_ms is set. */
+  /**
+   * Starts the flushing daemon thread if data_buffer_time_limit_ms or data_buffer_adaptive is set.
+   */
   public void start() {
-    if (timeLimit > 0 && this.flushFuture == null) {
+    if (hasFlushThread && this.flushFuture == null) {
+      Runnable flushTask;
+      long periodNanos;
+      if (isAdaptive()) {
+        // Check often enough that buffered data waits for at most a quarter more than its linger.
+        flushTask = this::flushExpired;
+        periodNanos = Math.max(MIN_LINGER_NANOS, targetLatencyNanos / 4);
+      } else {
+        flushTask = this::flush;
+        periodNanos = TimeUnit.MILLISECONDS.toNanos(timeLimit);
+      }
       this.flushFuture =
           Executors.newSingleThreadScheduledExecutor(
                   new ThreadFactoryBuilder()
                       .setDaemon(true)
                       .setNameFormat("DataBufferOutboundFlusher-thread")
                       .build())
-              .scheduleAtFixedRate(this::flush, timeLimit, timeLimit, TimeUnit.MILLISECONDS);
+              .scheduleAtFixedRate(flushTask, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
     }
   }
 
+  /** Returns whether the flush limits are chosen from the observed output of each endpoint. */
+  public boolean isAdaptive() {
+    return targetLatencyNanos > 0;
+  }
+
+  /**
+   * Returns the number of buffered bytes after which the data endpoint of the transform is flushed.
+   *
+   * <p>This may be called from any thread.
+   */
+  public long getSizeLimit(String pTransformId) {
+    Receiver<?> receiver = outputDataReceivers.get(pTransformId);
+    return receiver == null ? sizeLimit : receiver.sizeLimit;
+  }
+
+  /**
+   * Returns how long buffered data waits to be flushed if the size limit isn't reached, or {@code
+   * -1} if it isn't flushed based on time.
+   *
+   * <p>This may be called from any thread.
+   */
+  public long getLingerMillis() {
+    return isAdaptive() ? TimeUnit.NANOSECONDS.toMillis(lingerNanos()) : timeLimit;
+  }
+
+  private long lingerNanos() {
+    return Math.max(MIN_LINGER_NANOS, targetLatencyNanos - sendTimes.p99Nanos());
+  }
+
+  /**
+   * Returns the flush size limit for an endpoint producing the given rate, which buffers about as
+   * much as it produces in the linger time.
+   */
+  private int adaptiveSizeLimit(double bytesPerNano) {
+    double limit = bytesPerNano * lingerNanos();
+    if (sendTimes.p99Nanos() > targetLatencyNanos / 2) {
+      limit *= 2;
+    }
+    return (int) Math.min(sizeLimit, Math.max(MIN_ADAPTIVE_SIZE_LIMIT, limit));
+  }
+
   /**
    * Register the outbound data logical endpoint, returns the FnDataReceiver for processing the
    * endpoint's outbound data.
@@ -122,7 +207,7 @@ public class BeamFnDataOutboundAggregator {
           "Outbound data endpoint already registered for " + pTransformId);
     }
     Receiver<T> receiver = new Receiver<>(coder);
-    if (timeLimit > 0) {
+    if (hasFlushThread) {
       outputDataReceivers.put(pTransformId, receiver);
       return data -> {
         checkFlushThreadException();
@@ -147,7 +232,7 @@ public class BeamFnDataOutboundAggregator {
           "Outbound timers endpoint already registered for " + timerKey);
     }
     Receiver<T> receiver = new Receiver<>(coder);
-    if (timeLimit > 0) {
+    if (hasFlushThread) {
       outputTimersReceivers.put(timerKey, receiver);
       return timers -> {
         checkFlushThreadException();
@@ -166,11 +251,50 @@ public class BeamFnDataOutboundAggregator {
     }
     Elements.Builder elements = convertBufferForTransmission();
     if (elements.getDataCount() > 0 || elements.getTimersCount() > 0) {
-      outboundObserver.onNext(elements.build());
+      send(elements.build());
+    }
+    hasFlushedForBundle = true;
+  }
+
+  /** Flushes the buffer of a single endpoint, which has reached its own size limit. */
+  private void flushEndpoint(Receiver<?> receiver) {
+    Elements.Builder elements =
+        convertBuffersForTransmission(
+            endpoint -> endpoint == receiver && endpoint.bufferedSize() > 0);
+    if (elements.getDataCount() > 0 || elements.getTimersCount() > 0) {
+      send(elements.build());
     }
     hasFlushedForBundle = true;
   }
 
+  /** Flushes the endpoints whose oldest buffered element has waited for the linger time. */
+  private void flushExpired() {
+    try {
+      synchronized (flushLock) {
+        if (bytesWrittenSinceFlush == 0) {
+          return;
+        }
+        Elements.Builder elements = convertBuffersForTransmission(lingerNanos());
+        if (elements.getDataCount() > 0 || elements.getTimersCount() > 0) {
+          send(elements.build());
+          hasFlushedForBundle = true;
+        }
+      }
+    } catch (Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  private void send(Elements elements) {
+    if (!isAdaptive()) {
+      outboundObserver.onNext(elements);
+      return;
+    }
+    long startNanos = System.nanoTime();
+    outboundObserver.onNext(elements);
+    sendTimes.record(System.nanoTime() - startNanos);
+  }
+
   /**
    * Closes the streams for all registered outbound endpoints. Should be called at the end of each
    * bundle. Returns the buffered Elements if the BeamFnDataOutboundAggregator started with
@@ -182,7 +306,7 @@ public class BeamFnDataOutboundAggregator {
       return null;
     }
     Elements.Builder bufferedElements;
-    if (timeLimit > 0) {
+    if (hasFlushThread) {
       synchronized (flushLock) {
         bufferedElements = convertBufferForTransmission();
       }
@@ -216,7 +340,7 @@ public class BeamFnDataOutboundAggregator {
     if (collectElementsIfNoFlushes && !hasFlushedForBundle) {
       return bufferedElements.build();
     }
-    outboundObserver.onNext(bufferedElements.build());
+    send(bufferedElements.build());
     // This is now at the end of a bundle, so we reset hasFlushedForBundle to prepare for new
     // bundles.
     hasFlushedForBundle = false;
@@ -235,12 +359,32 @@ public class BeamFnDataOutboundAggregator {
   }
 
   private Elements.Builder convertBufferForTransmission() {
+    return convertBuffersForTransmission(0L);
+  }
+
+  /**
+   * Converts the buffers of the endpoints whose oldest buffered element has waited for at least
+   * {@code lingerNanos}, which is only measured in adaptive mode. Zero converts all buffers.
+   */
+  private Elements.Builder convertBuffersForTransmission(long lingerNanos) {
+    long nowNanos = lingerNanos == 0 ? 0L : System.nanoTime();
+    Elements.Builder bufferedElements =
+        convertBuffersForTransmission(receiver -> receiver.shouldFlush(lingerNanos, nowNanos));
+    if (lingerNanos == 0) {
+      bytesWrittenSinceFlush = 0L;
+    }
+    return bufferedElements;
+  }
+
+  /** Converts the buffers of the endpoints which match {@code shouldFlush}. */
+  private Elements.Builder convertBuffersForTransmission(Predicate<Receiver<?>> shouldFlush) {
     Elements.Builder bufferedElements = Elements.newBuilder();
     for (Map.Entry<String, Receiver<?>> entry : outputDataReceivers.entrySet()) {
-      if (entry.getValue().bufferedSize() == 0) {
+      if (!shouldFlush.test(entry.getValue())) {
         continue;
       }
       ByteString bytes = entry.getValue().toByteStringAndResetBuffer();
+      bytesWrittenSinceFlush -= bytes.size();
       bufferedElements
           .addDataBuilder()
           .setInstructionId(processBundleRequestIdSupplier.get())
@@ -248,10 +392,11 @@ public class BeamFnDataOutboundAggregator {
           .setData(bytes);
     }
     for (Map.Entry<TimerEndpoint, Receiver<?>> entry : outputTimersReceivers.entrySet()) {
-      if (entry.getValue().bufferedSize() == 0) {
+      if (!shouldFlush.test(entry.getValue())) {
         continue;
       }
       ByteString bytes = entry.getValue().toByteStringAndResetBuffer();
+      bytesWrittenSinceFlush -= bytes.size();
       bufferedElements
           .addTimersBuilder()
           .setInstructionId(processBundleRequestIdSupplier.get())
@@ -259,7 +404,6 @@ public class BeamFnDataOutboundAggregator {
           .setTimerFamilyId(entry.getKey().timerFamilyId)
           .setTimers(bytes);
     }
-    bytesWrittenSinceFlush = 0L;
     return bufferedElements;
   }
 
@@ -275,7 +419,7 @@ public class BeamFnDataOutboundAggregator {
 
   /** Check if the flush thread failed with an exception. */
   private void checkFlushThreadException() throws IOException {
-    if (timeLimit > 0 && flushFuture.isDone()) {
+    if (hasFlushThread && flushFuture.isDone()) {
       try {
         flushFuture.get();
         throw new IOException("Periodic flushing thread finished unexpectedly.");
@@ -310,6 +454,16 @@ public class BeamFnDataOutboundAggregator {
     return DEFAULT_BUFFER_LIMIT_BYTES;
   }
 
+  private static long getTargetLatency(PipelineOptions options) {
+    List<String> experiments = options.as(ExperimentalOptions.class).getExperiments();
+    for (String experiment : experiments == null ? Collections.<String>emptyList() : experiments) {
+      if (experiment.startsWith(DATA_BUFFER_TARGET_LATENCY_MS)) {
+        return Long.parseLong(experiment.substring(DATA_BUFFER_TARGET_LATENCY_MS.length()));
+      }
+    }
+    return DEFAULT_TARGET_LATENCY_MS;
+  }
+
   private static long getTimeLimit(PipelineOptions options) {
     List<String> experiments = options.as(ExperimentalOptions.class).getExperiments();
     for (String experiment : experiments == null ? Collections.<String>emptyList() : experiments) {
@@ -326,17 +480,33 @@ public class BeamFnDataOutboundAggregator {
     private final Coder<T> coder;
     private long perBundleByteCount;
     private long perBundleElementCount;
+    // The endpoint is flushed once this much is buffered. Only changes in adaptive mode.
+    private volatile int sizeLimit;
+    // The fields below are only maintained in adaptive mode.
+    // When the oldest buffered element was written.
+    private long bufferStartNanos;
+    // When the buffer was last flushed, or the first element of the bundle was written. Zero
+    // until then, so that the time between bundles doesn't lower the observed rate.
+    private long lastFlushNanos;
+    private double bytesPerNano;
 
     public Receiver(Coder<T> coder) {
       this.output = new ByteStringOutputStream();
       this.coder = coder;
       this.perBundleByteCount = 0L;
       this.perBundleElementCount = 0L;
+      this.sizeLimit = BeamFnDataOutboundAggregator.this.sizeLimit;
     }
 
     @Override
     public void accept(T input) throws Exception {
       int size = output.size();
+      if (size == 0 && isAdaptive()) {
+        bufferStartNanos = System.nanoTime();
+        if (lastFlushNanos == 0) {
+          lastFlushNanos = bufferStartNanos;
+        }
+      }
       coder.encode(input, output);
       if (output.size() - size == 0) {
         output.write(0);
@@ -345,8 +515,10 @@ public class BeamFnDataOutboundAggregator {
       bytesWrittenSinceFlush += delta;
       perBundleByteCount += delta;
       perBundleElementCount += 1;
-      if (bytesWrittenSinceFlush > sizeLimit) {
+      if (bytesWrittenSinceFlush > BeamFnDataOutboundAggregator.this.sizeLimit) {
         flushInternal();
+      } else if (output.size() > sizeLimit) {
+        flushEndpoint(this);
       }
     }
 
@@ -362,13 +534,34 @@ public class BeamFnDataOutboundAggregator {
       return output.size();
     }
 
+    private boolean shouldFlush(long lingerNanos, long nowNanos) {
+      return output.size() > 0 && (lingerNanos == 0 || nowNanos - bufferStartNanos >= lingerNanos);
+    }
+
     public ByteString toByteStringAndResetBuffer() {
+      if (isAdaptive()) {
+        recordFlush(output.size());
+      }
       return this.output.toByteStringAndReset();
     }
 
+    /** Updates the observed output rate and the size limit chosen from it. */
+    private void recordFlush(int bytes) {
+      if (bytes == 0 || lastFlushNanos == 0) {
+        return;
+      }
+      long nowNanos = System.nanoTime();
+      double rate = (double) bytes / Math.max(1L, nowNanos - lastFlushNanos);
+      bytesPerNano = bytesPerNano == 0 ? rate : bytesPerNano + (rate - bytesPerNano) / 4;
+      sizeLimit = adaptiveSizeLimit(bytesPerNano);
+      lastFlushNanos = nowNanos;
+    }
+
     public void resetStats() {
       this.perBundleElementCount = 0L;
       this.perBundleByteCount = 0L;
+      // The rate is measured again from the first element of the next bundle.
+      this.lastFlushNanos = 0L;
     }
 
     @Override
@@ -410,4 +603,26 @@ public class BeamFnDataOutboundAggregator {
       return "pTransformId: " + pTransformId + " timerFamilyId: " + timerFamilyId;
     }
   }
+
+  /** The most recent times taken to send data, along with their 99th percentile. */
+  private static class SendTimes {
+    private static final int SAMPLES = 128;
+    private final long[] samples = new long[SAMPLES];
+    private int count;
+    private int next;
+    private volatile long p99Nanos;
+
+    synchronized void record(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % SAMPLES;
+      count = Math.min(count + 1, SAMPLES);
+      long[] sorted = Arrays.copyOf(samples, count);
+      Arrays.sort(sorted);
+      p99Nanos = sorted[(int) Math.ceil(count * 0.99) - 1];
+    }
+
+    long p99Nanos() {
+      return p99Nanos;
+    }
+  }
 }
@@ -185,6 +185,27 @@ public interface SdkHarnessOptions extends PipelineOptions, MemoryMonitorOptions
 
   void setMaxCacheMemoryUsagePercent(@NonNegative float value);
 
+  /**
+   * Size (in MB) of an off-heap tier for the process wide cache within the SDK harness. Entries
+   * evicted from the process wide cache which support it, such as side inputs and user state, are
+   * kept encoded outside of the Java heap and decoded again on their next lookup. Defaults to 0,
+   * which disables the off-heap tier.
+   *
+   * <p>CAUTION: The off-heap tier is allocated as direct memory, which is limited by {@code
+   * -XX:MaxDirectMemorySize}.
+   */
+  @Description(
+      "The size (in MB) of an off-heap tier for the process wide cache within the SDK harness. "
+          + "Entries evicted from the process wide cache which support it, such as side inputs "
+          + "and user state, are kept encoded outside of the Java heap. Defaults to 0, which "
+          + "disables the off-heap tier. CAUTION: The off-heap tier is allocated as direct "
+          + "memory, which is limited by -XX:MaxDirectMemorySize.")
+  @Default.Integer(0)
+  @NonNegative
+  int getMaxOffHeapCacheMemoryUsageMb();
+
+  void setMaxOffHeapCacheMemoryUsageMb(@NonNegative int value);
+
   /**
    * An instance of this class will be used to specify the maximum amount of memory to allocate to a
    * cache within an SDK harness instance.
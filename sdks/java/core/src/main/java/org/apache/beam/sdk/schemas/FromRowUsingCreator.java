@@ -47,7 +47,10 @@ import org.checkerframework.checker.nullness.qual.Nullable;
   "nullness", // TODO(https://github.com/apache/beam/issues/20497)
   "rawtypes"
 })
-class FromRowUsingCreator<T> implements SerializableFunction<Row, T>, Function<Row, T> {
+class FromRowUsingCreator<T>
+    implements SerializableFunction<Row, T>,
+        Function<Row, T>,
+        SchemaCoder.FromFieldValuesFunction<T> {
   private final TypeDescriptor<T> typeDescriptor;
   private final GetterBasedSchemaProvider schemaProvider;
   private final Factory<SchemaUserTypeCreator> schemaTypeCreatorFactory;
@@ -102,6 +105,22 @@ class FromRowUsingCreator<T> implements SerializableFunction<Row, T>, Function<R
     return (T) creator.create(params);
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public T fromFieldValues(Schema schema, @Nullable Object[] fieldValues) {
+    if (fieldConverters == null) {
+      initFieldConverters(schema);
+    }
+    checkState(fieldConverters.length == fieldValues.length, "Unexpected field count");
+
+    // The values are owned by the caller, so they are converted in place.
+    for (int i = 0; i < fieldValues.length; ++i) {
+      fieldValues[i] = fieldConverters[i].apply(fieldValues[i]);
+    }
+    SchemaUserTypeCreator creator = schemaTypeCreatorFactory.create(typeDescriptor, schema);
+    return (T) creator.create(fieldValues);
+  }
+
   private synchronized void initFieldConverters(Schema schema) {
     if (fieldConverters == null) {
       CachingFactory<List<FieldValueTypeInformation>> typeFactory =
@@ -112,7 +112,7 @@ public abstract class GetterBasedSchemaProvider implements SchemaProvider {
   }
 
   private class ToRowWithValueGetters<T extends @NonNull Object>
-      implements SerializableFunction<T, Row> {
+      implements SchemaCoder.ToFieldValuesFunction<T> {
     private final Schema schema;
     private final Factory<List<FieldValueGetter<T, Object>>> getterFactory;
 
@@ -135,6 +135,24 @@ public abstract class GetterBasedSchemaProvider implements SchemaProvider {
       return Row.withSchema(schema).withFieldValueGetters(getterFactory, input);
     }
 
+    @Override
+    public @Nullable Object[] toFieldValues(T input) {
+      // The same getters as used by the RowWithGetters returned by apply.
+      List<FieldValueGetter<T, Object>> getters =
+          getterFactory.create(TypeDescriptor.of(input.getClass()), schema);
+      @Nullable Object[] fieldValues = new Object[getters.size()];
+      for (int i = 0; i < fieldValues.length; ++i) {
+        @Nullable Object fieldValue = getters.get(i).get(input);
+        // The same check as RowWithGetters.getValue, which the encoded Row would perform.
+        Schema.Field field = schema.getField(i);
+        if (fieldValue == null && !field.getType().getNullable()) {
+          throw new RuntimeException("Null value set on non-nullable field " + field);
+        }
+        fieldValues[i] = fieldValue;
+      }
+      return fieldValues;
+    }
+
     private GetterBasedSchemaProvider getOuter() {
       return GetterBasedSchemaProvider.this;
     }
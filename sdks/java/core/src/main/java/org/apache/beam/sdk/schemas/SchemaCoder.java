@@ -33,6 +33,7 @@ import org.apache.beam.sdk.schemas.Schema.Field;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
 import org.apache.beam.sdk.transforms.SerializableFunction;
 import org.apache.beam.sdk.util.SerializableUtils;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.Row;
 import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
@@ -48,6 +49,7 @@ public class SchemaCoder<T> extends CustomCoder<T> {
   private final SerializableFunction<T, Row> toRowFunction;
   private final SerializableFunction<Row, T> fromRowFunction;
   private transient @Nullable Coder<Row> delegateCoder;
+  private transient RowCoderGenerator.@Nullable FieldValueCoder fieldValueCoder;
 
   protected SchemaCoder(
       Schema schema,
@@ -116,16 +118,85 @@ public class SchemaCoder<T> extends CustomCoder<T> {
     return delegateCoder;
   }
 
+  private RowCoderGenerator.FieldValueCoder getFieldValueCoder() {
+    if (fieldValueCoder == null) {
+      fieldValueCoder = RowCoderGenerator.fieldValueCoder(schema);
+    }
+    return fieldValueCoder;
+  }
+
+  /**
+   * A function converting a user type to a {@link Row} that can also return the field values of
+   * that row without creating it. {@link SchemaCoder} then encodes the values directly.
+   */
+  interface ToFieldValuesFunction<T> extends SerializableFunction<T, Row> {
+    /** Returns the values of {@code apply(value)}, as returned by {@link Row#getValue(int)}. */
+    @Nullable Object[] toFieldValues(T value);
+  }
+
+  /**
+   * A function converting a {@link Row} to a user type that can also create the user type from
+   * the field values of the row. {@link SchemaCoder} then decodes into the values directly.
+   */
+  interface FromFieldValuesFunction<T> extends SerializableFunction<Row, T> {
+    /**
+     * Returns the user type for a row with the given schema and values. The array may be modified.
+     */
+    T fromFieldValues(Schema schema, @Nullable Object[] fieldValues);
+  }
+
   @Override
+  @SuppressWarnings("unchecked")
   public void encode(T value, OutputStream outStream) throws IOException {
+    if (toRowFunction instanceof ToFieldValuesFunction) {
+      // Read the fields straight off the user type instead of wrapping it in a Row.
+      getFieldValueCoder()
+          .encode(((ToFieldValuesFunction<T>) toRowFunction).toFieldValues(value), outStream);
+      return;
+    }
     getDelegateCoder().encode(toRowFunction.apply(value), outStream);
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public T decode(InputStream inStream) throws IOException {
+    if (fromRowFunction instanceof FromFieldValuesFunction) {
+      return ((FromFieldValuesFunction<T>) fromRowFunction)
+          .fromFieldValues(schema, getFieldValueCoder().decode(inStream));
+    }
     return fromRowFunction.apply(getDelegateCoder().decode(inStream));
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The generated {@link Row} coders size rows from their field values without encoding them,
+   * so this is cheap whenever the coders of the row's fields are.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean isRegisterByteSizeObserverCheap(T value) {
+    if (toRowFunction instanceof ToFieldValuesFunction) {
+      return getFieldValueCoder()
+          .isRegisterByteSizeObserverCheap(
+              ((ToFieldValuesFunction<T>) toRowFunction).toFieldValues(value));
+    }
+    return getDelegateCoder().isRegisterByteSizeObserverCheap(toRowFunction.apply(value));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void registerByteSizeObserver(T value, ElementByteSizeObserver observer)
+      throws Exception {
+    if (toRowFunction instanceof ToFieldValuesFunction) {
+      getFieldValueCoder()
+          .registerByteSizeObserver(
+              ((ToFieldValuesFunction<T>) toRowFunction).toFieldValues(value), observer);
+      return;
+    }
+    getDelegateCoder().registerByteSizeObserver(toRowFunction.apply(value), observer);
+  }
+
   @Override
   public void verifyDeterministic()
       throws org.apache.beam.sdk.coders.Coder.NonDeterministicException {
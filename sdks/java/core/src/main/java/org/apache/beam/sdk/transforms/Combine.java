@@ -19,9 +19,13 @@ package org.apache.beam.sdk.transforms;
 
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UTFDataFormatException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,15 +34,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import org.apache.beam.sdk.annotations.Internal;
+import org.apache.beam.sdk.coders.AtomicCoder;
 import org.apache.beam.sdk.coders.CannotProvideCoderException;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.coders.DelegateCoder;
+import org.apache.beam.sdk.coders.DoubleCoder;
 import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.StructuredCoder;
 import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.coders.VoidCoder;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.CombineFnBase.AbstractGlobalCombineFn;
@@ -55,6 +62,7 @@ import org.apache.beam.sdk.util.AppliedCombineFn;
 import org.apache.beam.sdk.util.NameUtils;
 import org.apache.beam.sdk.util.NameUtils.NameOverride;
 import org.apache.beam.sdk.util.SerializableUtils;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollectionList;
@@ -704,6 +712,9 @@ public class Combine {
 
     @Override
     public Coder<int[]> getAccumulatorCoder(CoderRegistry registry, Coder<Integer> inputCoder) {
+      if (inputCoder instanceof VarIntCoder) {
+        return VarIntAccumulatorCoder.INSTANCE;
+      }
       return DelegateCoder.of(
           inputCoder, new ToIntegerCodingFunction(), new FromIntegerCodingFunction());
     }
@@ -735,6 +746,35 @@ public class Combine {
       }
     }
 
+    /** Encodes the accumulator like {@link VarIntCoder} encodes its value, without boxing it. */
+    private static final class VarIntAccumulatorCoder extends AtomicCoder<int[]> {
+      private static final VarIntAccumulatorCoder INSTANCE = new VarIntAccumulatorCoder();
+
+      @Override
+      public void encode(int[] value, OutputStream outStream) throws IOException {
+        VarInt.encode(value[0], outStream);
+      }
+
+      @Override
+      public int[] decode(InputStream inStream) throws IOException, CoderException {
+        try {
+          return wrap(VarInt.decodeInt(inStream));
+        } catch (EOFException | UTFDataFormatException exn) {
+          throw new CoderException(exn);
+        }
+      }
+
+      @Override
+      public boolean isRegisterByteSizeObserverCheap(int[] value) {
+        return true;
+      }
+
+      @Override
+      protected long getEncodedElementByteSize(int[] value) {
+        return VarInt.getLength(value[0]);
+      }
+    }
+
     private static final class FromIntegerCodingFunction
         implements DelegateCoder.CodingFunction<Integer, int[]> {
       @Override
@@ -802,6 +842,9 @@ public class Combine {
 
     @Override
     public Coder<long[]> getAccumulatorCoder(CoderRegistry registry, Coder<Long> inputCoder) {
+      if (inputCoder instanceof VarLongCoder) {
+        return VarLongAccumulatorCoder.INSTANCE;
+      }
       return DelegateCoder.of(inputCoder, new ToLongCodingFunction(), new FromLongCodingFunction());
     }
 
@@ -832,6 +875,35 @@ public class Combine {
       }
     }
 
+    /** Encodes the accumulator like {@link VarLongCoder} encodes its value, without boxing it. */
+    private static final class VarLongAccumulatorCoder extends AtomicCoder<long[]> {
+      private static final VarLongAccumulatorCoder INSTANCE = new VarLongAccumulatorCoder();
+
+      @Override
+      public void encode(long[] value, OutputStream outStream) throws IOException {
+        VarInt.encode(value[0], outStream);
+      }
+
+      @Override
+      public long[] decode(InputStream inStream) throws IOException, CoderException {
+        try {
+          return wrap(VarInt.decodeLong(inStream));
+        } catch (EOFException | UTFDataFormatException exn) {
+          throw new CoderException(exn);
+        }
+      }
+
+      @Override
+      public boolean isRegisterByteSizeObserverCheap(long[] value) {
+        return true;
+      }
+
+      @Override
+      protected long getEncodedElementByteSize(long[] value) {
+        return VarInt.getLength(value[0]);
+      }
+    }
+
     private static final class FromLongCodingFunction
         implements DelegateCoder.CodingFunction<Long, long[]> {
       @Override
@@ -900,6 +972,9 @@ public class Combine {
 
     @Override
     public Coder<double[]> getAccumulatorCoder(CoderRegistry registry, Coder<Double> inputCoder) {
+      if (inputCoder instanceof DoubleCoder) {
+        return DoubleAccumulatorCoder.INSTANCE;
+      }
       return DelegateCoder.of(
           inputCoder, new ToDoubleCodingFunction(), new FromDoubleCodingFunction());
     }
@@ -931,6 +1006,40 @@ public class Combine {
       }
     }
 
+    /** Encodes the accumulator like {@link DoubleCoder} encodes its value, without boxing it. */
+    private static final class DoubleAccumulatorCoder extends AtomicCoder<double[]> {
+      private static final DoubleAccumulatorCoder INSTANCE = new DoubleAccumulatorCoder();
+
+      @Override
+      public void encode(double[] value, OutputStream outStream) throws IOException {
+        new DataOutputStream(outStream).writeDouble(value[0]);
+      }
+
+      @Override
+      public double[] decode(InputStream inStream) throws IOException, CoderException {
+        try {
+          return wrap(new DataInputStream(inStream).readDouble());
+        } catch (EOFException | UTFDataFormatException exn) {
+          throw new CoderException(exn);
+        }
+      }
+
+      @Override
+      public void verifyDeterministic() throws NonDeterministicException {
+        DoubleCoder.of().verifyDeterministic();
+      }
+
+      @Override
+      public boolean isRegisterByteSizeObserverCheap(double[] value) {
+        return true;
+      }
+
+      @Override
+      protected long getEncodedElementByteSize(double[] value) {
+        return 8;
+      }
+    }
+
     private static final class FromDoubleCodingFunction
         implements DelegateCoder.CodingFunction<Double, double[]> {
       @Override
@@ -20,12 +20,21 @@ package org.apache.beam.sdk.transforms;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
 
 import com.google.auto.value.AutoValue;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.UUID;
 import javax.annotation.Nullable;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.state.BagState;
 import org.apache.beam.sdk.state.CombiningState;
 import org.apache.beam.sdk.state.StateSpec;
@@ -36,6 +45,7 @@ import org.apache.beam.sdk.state.TimerSpec;
 import org.apache.beam.sdk.state.TimerSpecs;
 import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.ShardedKey;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.KV;
@@ -43,6 +53,7 @@ import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.MoreObjects;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.AbstractIterator;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Iterables;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -118,7 +129,7 @@ public class GroupIntoBatches<K, InputT>
   public abstract static class BatchingParams<InputT> implements Serializable {
     public static <InputT> BatchingParams<InputT> createDefault() {
       return new AutoValue_GroupIntoBatches_BatchingParams(
-          Long.MAX_VALUE, Long.MAX_VALUE, null, Duration.ZERO);
+          Long.MAX_VALUE, Long.MAX_VALUE, null, Duration.ZERO, 0L, false);
     }
 
     public static <InputT> BatchingParams<InputT> create(
@@ -126,8 +137,23 @@ public class GroupIntoBatches<K, InputT>
         long batchSizeBytes,
         SerializableFunction<InputT, Long> elementByteSize,
         Duration maxBufferingDuration) {
+      return create(batchSize, batchSizeBytes, elementByteSize, maxBufferingDuration, 0L, false);
+    }
+
+    public static <InputT> BatchingParams<InputT> create(
+        long batchSize,
+        long batchSizeBytes,
+        SerializableFunction<InputT, Long> elementByteSize,
+        Duration maxBufferingDuration,
+        long chunkSizeBytes,
+        boolean batchMetricsEnabled) {
       return new AutoValue_GroupIntoBatches_BatchingParams(
-          batchSize, batchSizeBytes, elementByteSize, maxBufferingDuration);
+          batchSize,
+          batchSizeBytes,
+          elementByteSize,
+          maxBufferingDuration,
+          chunkSizeBytes,
+          batchMetricsEnabled);
     }
 
     public abstract long getBatchSize();
@@ -139,6 +165,15 @@ public class GroupIntoBatches<K, InputT>
 
     public abstract Duration getMaxBufferingDuration();
 
+    /**
+     * The size of the chunks of encoded elements that buffered elements are stored in, or {@code 0}
+     * if each element is stored individually.
+     */
+    public abstract long getChunkSizeBytes();
+
+    /** Whether the fill and flush latency of each emitted batch are reported as distributions. */
+    public abstract boolean isBatchMetricsEnabled();
+
     public SerializableFunction<InputT, Long> getWeigher(Coder<InputT> valueCoder) {
       SerializableFunction<InputT, Long> weigher = getElementByteSize();
       if (getBatchSizeBytes() < Long.MAX_VALUE) {
@@ -220,7 +255,9 @@ public class GroupIntoBatches<K, InputT>
             batchSize,
             params.getBatchSizeBytes(),
             params.getElementByteSize(),
-            params.getMaxBufferingDuration()));
+            params.getMaxBufferingDuration(),
+            params.getChunkSizeBytes(),
+            params.isBatchMetricsEnabled()));
   }
 
   /** @see #ofByteSize(long) */
@@ -231,7 +268,9 @@ public class GroupIntoBatches<K, InputT>
             params.getBatchSize(),
             batchSizeBytes,
             params.getElementByteSize(),
-            params.getMaxBufferingDuration()));
+            params.getMaxBufferingDuration(),
+            params.getChunkSizeBytes(),
+            params.isBatchMetricsEnabled()));
   }
 
   /** @see #ofByteSize(long, SerializableFunction) */
@@ -243,7 +282,9 @@ public class GroupIntoBatches<K, InputT>
             params.getBatchSize(),
             batchSizeBytes,
             getElementByteSize,
-            params.getMaxBufferingDuration()));
+            params.getMaxBufferingDuration(),
+            params.getChunkSizeBytes(),
+            params.isBatchMetricsEnabled()));
   }
 
   /**
@@ -260,7 +301,57 @@ public class GroupIntoBatches<K, InputT>
             params.getBatchSize(),
             params.getBatchSizeBytes(),
             params.getElementByteSize(),
-            duration));
+            duration,
+            params.getChunkSizeBytes(),
+            params.isBatchMetricsEnabled()));
+  }
+
+  /**
+   * Stores buffered elements in state as chunks of encoded elements of about {@code
+   * chunkSizeBytes}, rather than one state value per element.
+   *
+   * <p>Each element is encoded with the input value coder once, when it is buffered. A chunk is
+   * appended to the buffered state once it is full, so runners whose state appends are expensive
+   * append one value per chunk instead of one per element, and read a few large values when the
+   * batch is emitted. The chunk that is being filled is kept in a single {@link ValueState}, which
+   * each element rewrites, so chunks should be small relative to the batch.
+   *
+   * <p>Buffering in chunks uses different state than buffering each element, so a pipeline can't be
+   * updated to start or stop buffering in chunks.
+   *
+   * <p>When batching by byte size without an element byte size function, the length of the
+   * encoded element is used as its byte size, so elements aren't measured separately.
+   */
+  public GroupIntoBatches<K, InputT> withChunkedBuffering(long chunkSizeBytes) {
+    checkArgument(chunkSizeBytes > 0, "chunk size should be a positive value");
+    return new GroupIntoBatches<>(
+        BatchingParams.create(
+            params.getBatchSize(),
+            params.getBatchSizeBytes(),
+            params.getElementByteSize(),
+            params.getMaxBufferingDuration(),
+            chunkSizeBytes,
+            params.isBatchMetricsEnabled()));
+  }
+
+  /**
+   * Reports the following {@link Distribution distributions} for each emitted batch:
+   *
+   * <ul>
+   *   <li>{@code batch-fill-percent}: how full the batch is, relative to the tighter of its element
+   *       count and byte size limits. It is not reported if neither limit is set.
+   *   <li>{@code flush-latency-millis}: the time taken to read and emit the batch.
+   * </ul>
+   */
+  public GroupIntoBatches<K, InputT> withBatchMetrics() {
+    return new GroupIntoBatches<>(
+        BatchingParams.create(
+            params.getBatchSize(),
+            params.getBatchSizeBytes(),
+            params.getElementByteSize(),
+            params.getMaxBufferingDuration(),
+            params.getChunkSizeBytes(),
+            true));
   }
 
   /**
@@ -334,6 +425,26 @@ public class GroupIntoBatches<K, InputT>
     KvCoder<K, InputT> inputCoder = (KvCoder<K, InputT>) input.getCoder();
     final Coder<InputT> valueCoder = (Coder<InputT>) inputCoder.getCoderArguments().get(1);
 
+    BatchMetrics batchMetrics =
+        params.isBatchMetricsEnabled()
+            ? new BatchMetrics(params.getBatchSize(), params.getBatchSizeBytes())
+            : null;
+    if (params.getChunkSizeBytes() > 0) {
+      // Chunked buffering encodes each element anyway, so the encoded size is used unless the
+      // user asked for a different measure.
+      return input.apply(
+          ParDo.of(
+              new ChunkedGroupIntoBatchesDoFn<>(
+                  params.getBatchSize(),
+                  params.getBatchSizeBytes(),
+                  params.getElementByteSize(),
+                  params.getMaxBufferingDuration(),
+                  allowedLateness,
+                  valueCoder,
+                  params.getChunkSizeBytes(),
+                  batchMetrics)));
+    }
+
     SerializableFunction<InputT, Long> weigher = params.getWeigher(valueCoder);
     return input.apply(
         ParDo.of(
@@ -343,7 +454,44 @@ public class GroupIntoBatches<K, InputT>
                 weigher,
                 params.getMaxBufferingDuration(),
                 allowedLateness,
-                valueCoder)));
+                valueCoder,
+                batchMetrics)));
+  }
+
+  /** The distributions reported for each emitted batch, see {@link #withBatchMetrics()}. */
+  private static class BatchMetrics implements Serializable {
+    private final long batchSize;
+    private final long batchSizeBytes;
+    private final @Nullable Distribution batchFillPercent;
+    private final Distribution flushLatencyMillis;
+
+    BatchMetrics(long batchSize, long batchSizeBytes) {
+      this.batchSize = batchSize;
+      this.batchSizeBytes = batchSizeBytes;
+      // The fill of a batch is only meaningful if it has a size limit.
+      this.batchFillPercent =
+          batchSize != Long.MAX_VALUE || batchSizeBytes != Long.MAX_VALUE
+              ? Metrics.distribution(GroupIntoBatches.class, "batch-fill-percent")
+              : null;
+      this.flushLatencyMillis =
+          Metrics.distribution(GroupIntoBatches.class, "flush-latency-millis");
+    }
+
+    /** Reports a batch of the given size that was read and emitted since {@code startMillis}. */
+    void update(long numElements, long numBytes, long startMillis) {
+      if (batchFillPercent != null) {
+        // How full the batch is, as a percentage of the tighter of its limits.
+        long percent = 0;
+        if (batchSize != Long.MAX_VALUE) {
+          percent = 100 * numElements / batchSize;
+        }
+        if (batchSizeBytes != Long.MAX_VALUE) {
+          percent = Math.max(percent, 100 * numBytes / batchSizeBytes);
+        }
+        batchFillPercent.update(percent);
+      }
+      flushLatencyMillis.update(System.currentTimeMillis() - startMillis);
+    }
   }
 
   @VisibleForTesting
@@ -412,19 +560,23 @@ public class GroupIntoBatches<K, InputT>
 
     private final long prefetchFrequency;
 
+    private final @Nullable BatchMetrics batchMetrics;
+
     GroupIntoBatchesDoFn(
         long batchSize,
         long batchSizeBytes,
         @Nullable SerializableFunction<InputT, Long> weigher,
         Duration maxBufferingDuration,
         Duration allowedLateness,
-        Coder<InputT> inputValueCoder) {
+        Coder<InputT> inputValueCoder,
+        @Nullable BatchMetrics batchMetrics) {
       this.batchSize = batchSize;
       this.batchSizeBytes = batchSizeBytes;
       this.weigher = weigher;
       this.maxBufferingDuration = maxBufferingDuration;
       this.allowedLateness = allowedLateness;
       this.batchSpec = StateSpecs.bag(inputValueCoder);
+      this.batchMetrics = batchMetrics;
 
       Combine.BinaryCombineLongFn sumCombineFn =
           new Combine.BinaryCombineLongFn() {
@@ -654,11 +806,15 @@ public class GroupIntoBatches<K, InputT>
         CombiningState<Long, long[], Long> storedBatchSizeBytes,
         ValueState<Long> timerTs,
         CombiningState<Long, long[], Long> minBufferedTs) {
+      long startMillis = batchMetrics != null ? System.currentTimeMillis() : 0L;
       Iterable<InputT> values = batch.read();
       // When the timer fires, batch state might be empty
       if (!Iterables.isEmpty(values)) {
         receiver.outputWithTimestamp(
             KV.of(key, values), Instant.ofEpochMilli(minBufferedTs.read()));
+        if (batchMetrics != null) {
+          batchMetrics.update(storedBatchSize.read(), storedBatchSizeBytes.read(), startMillis);
+        }
       }
       clearState(batch, storedBatchSize, storedBatchSizeBytes, timerTs, minBufferedTs);
     }
@@ -676,4 +832,403 @@ public class GroupIntoBatches<K, InputT>
       minBufferedTs.clear();
     }
   }
+
+  /**
+   * Batches elements like {@link GroupIntoBatchesDoFn}, but buffers them as chunks of encoded
+   * elements. It has its own state, so that only transforms which buffer in chunks have it.
+   *
+   * <p>The encoded elements of the chunk that is not full yet are kept in a single value, so each
+   * element rewrites that value once. The chunk is appended to the buffered chunks once it is full.
+   */
+  private static class ChunkedGroupIntoBatchesDoFn<K, InputT>
+      extends DoFn<KV<K, InputT>, KV<K, Iterable<InputT>>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkedGroupIntoBatchesDoFn.class);
+    private final long batchSize;
+    private final long batchSizeBytes;
+    @Nullable private final SerializableFunction<InputT, Long> weigher;
+    private final Duration maxBufferingDuration;
+
+    private final Duration allowedLateness;
+
+    // This timer manages the watermark hold if there is no buffering timer.
+    private static final String TIMER_HOLD_ID = "watermarkHold";
+
+    @TimerId(TIMER_HOLD_ID)
+    private final TimerSpec holdTimerSpec = TimerSpecs.timer(TimeDomain.EVENT_TIME);
+
+    // This timer expires when it's time to batch and output the buffered data.
+    private static final String END_OF_BUFFERING_ID = "endOfBuffering";
+
+    @TimerId(END_OF_BUFFERING_ID)
+    private final TimerSpec bufferingTimer = TimerSpecs.timer(TimeDomain.PROCESSING_TIME);
+
+    // The full chunks of encoded elements that will go in the next batch.
+    private static final String CHUNKS_ID = "chunks";
+
+    @StateId(CHUNKS_ID)
+    private final StateSpec<BagState<byte[]>> chunksSpec;
+
+    // The encoded elements of the chunk which is not full yet.
+    private static final String OPEN_CHUNK_ID = "openChunk";
+
+    @StateId(OPEN_CHUNK_ID)
+    private final StateSpec<ValueState<byte[]>> openChunkSpec;
+
+    // The size of the current batch.
+    private static final String NUM_ELEMENTS_IN_BATCH_ID = "numElementsInBatch";
+
+    @StateId(NUM_ELEMENTS_IN_BATCH_ID)
+    private final StateSpec<CombiningState<Long, long[], Long>> batchSizeSpec;
+
+    // The byte size of the current batch.
+    private static final String NUM_BYTES_IN_BATCH_ID = "numBytesInBatch";
+
+    @StateId(NUM_BYTES_IN_BATCH_ID)
+    private final StateSpec<CombiningState<Long, long[], Long>> batchSizeBytesSpec;
+
+    // The timestamp of the current active timer.
+    private static final String TIMER_TIMESTAMP = "timerTs";
+
+    @StateId(TIMER_TIMESTAMP)
+    private final StateSpec<ValueState<Long>> timerTsSpec;
+
+    // The minimum element timestamp currently buffered. This is used to set the output timestamp
+    // on the timer which ensures that the watermark correctly tracks the buffered elements.
+    private static final String MIN_BUFFERED_TS = "minBufferedTs";
+
+    @StateId(MIN_BUFFERED_TS)
+    private final StateSpec<CombiningState<Long, long[], Long>> minBufferedTsSpec;
+
+    private final long prefetchFrequency;
+
+    private final Coder<InputT> inputValueCoder;
+    private final long chunkSizeBytes;
+    private final @Nullable BatchMetrics batchMetrics;
+
+    ChunkedGroupIntoBatchesDoFn(
+        long batchSize,
+        long batchSizeBytes,
+        @Nullable SerializableFunction<InputT, Long> weigher,
+        Duration maxBufferingDuration,
+        Duration allowedLateness,
+        Coder<InputT> inputValueCoder,
+        long chunkSizeBytes,
+        @Nullable BatchMetrics batchMetrics) {
+      this.batchSize = batchSize;
+      this.batchSizeBytes = batchSizeBytes;
+      this.weigher = weigher;
+      this.maxBufferingDuration = maxBufferingDuration;
+      this.allowedLateness = allowedLateness;
+      this.inputValueCoder = inputValueCoder;
+      this.chunkSizeBytes = chunkSizeBytes;
+      this.batchMetrics = batchMetrics;
+      this.chunksSpec = StateSpecs.bag(ByteArrayCoder.of());
+      this.openChunkSpec = StateSpecs.value(ByteArrayCoder.of());
+
+      Combine.BinaryCombineLongFn sumCombineFn =
+          new Combine.BinaryCombineLongFn() {
+            @Override
+            public long identity() {
+              return 0L;
+            }
+
+            @Override
+            public long apply(long left, long right) {
+              return left + right;
+            }
+          };
+
+      Combine.BinaryCombineLongFn minCombineFn =
+          new Combine.BinaryCombineLongFn() {
+            @Override
+            public long identity() {
+              return BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis();
+            }
+
+            @Override
+            public long apply(long left, long right) {
+              return Math.min(left, right);
+            }
+          };
+
+      this.batchSizeSpec = StateSpecs.combining(sumCombineFn);
+      this.batchSizeBytesSpec = StateSpecs.combining(sumCombineFn);
+      this.timerTsSpec = StateSpecs.value();
+      this.minBufferedTsSpec = StateSpecs.combining(minCombineFn);
+
+      // Prefetch every 20% of batchSize elements. Do not prefetch if batchSize is too little
+      this.prefetchFrequency = ((batchSize / 5) <= 1) ? Long.MAX_VALUE : (batchSize / 5);
+    }
+
+    @Override
+    public Duration getAllowedTimestampSkew() {
+      // This is required since flush is sometimes called from processElement. This is safe because
+      // a watermark hold will always be set using timer.withOutputTimestamp.
+      return Duration.millis(Long.MAX_VALUE);
+    }
+
+    @ProcessElement
+    public void processElement(
+        @TimerId(END_OF_BUFFERING_ID) Timer bufferingTimer,
+        @TimerId(TIMER_HOLD_ID) Timer holdTimer,
+        @StateId(CHUNKS_ID) BagState<byte[]> chunks,
+        @StateId(OPEN_CHUNK_ID) ValueState<byte[]> openChunk,
+        @StateId(NUM_ELEMENTS_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSize,
+        @StateId(NUM_BYTES_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSizeBytes,
+        @StateId(TIMER_TIMESTAMP) ValueState<Long> timerTs,
+        @StateId(MIN_BUFFERED_TS) CombiningState<Long, long[], Long> minBufferedTs,
+        @Element KV<K, InputT> element,
+        @Timestamp Instant elementTs,
+        BoundedWindow window,
+        OutputReceiver<KV<K, Iterable<InputT>>> receiver) {
+
+      final boolean shouldCareAboutWeight = batchSizeBytes != Long.MAX_VALUE;
+      final boolean shouldCareAboutMaxBufferingDuration =
+          maxBufferingDuration.isLongerThan(Duration.ZERO);
+
+      if (shouldCareAboutWeight) {
+        storedBatchSizeBytes.readLater();
+      }
+      storedBatchSize.readLater();
+      minBufferedTs.readLater();
+      openChunk.readLater();
+
+      // Make sure we always include the current timestamp in the minBufferedTs.
+      minBufferedTs.add(elementTs.getMillis());
+
+      LOG.debug("*** BATCH *** Add element for window {} ", window);
+      byte[] encodedValue = encode(element.getValue());
+      if (shouldCareAboutWeight) {
+        final long elementWeight =
+            weigher != null ? weigher.apply(element.getValue()) : encodedValue.length;
+        if (elementWeight + storedBatchSizeBytes.read() > batchSizeBytes) {
+          // See GroupIntoBatchesDoFn: a batch is fired early rather than over its byte size limit.
+          LOG.debug("*** EARLY FIRE OF BATCH *** for window {}", window.toString());
+          flushBatch(
+              receiver,
+              element.getKey(),
+              chunks,
+              openChunk,
+              storedBatchSize,
+              storedBatchSizeBytes,
+              timerTs,
+              minBufferedTs);
+          bufferingTimer.clear();
+          holdTimer.clear();
+        }
+        storedBatchSizeBytes.add(elementWeight);
+      }
+      addToChunk(encodedValue, chunks, openChunk);
+      // Blind add is supported with combiningState
+      storedBatchSize.add(1L);
+      // Add the timestamp back into minBufferedTs as it might be cleared by flushBatch above.
+      minBufferedTs.add(elementTs.getMillis());
+
+      final long num = storedBatchSize.read();
+
+      // If this is the first element in the batch or if the timer's output timestamp needs
+      // modifying, then set a timer.
+      long oldOutputTs =
+          MoreObjects.firstNonNull(
+              minBufferedTs.read(), BoundedWindow.TIMESTAMP_MAX_VALUE.getMillis());
+      boolean needsNewTimer = num == 1 || minBufferedTs.read() != oldOutputTs;
+      if (needsNewTimer) {
+        if (shouldCareAboutMaxBufferingDuration) {
+          long targetTs =
+              MoreObjects.firstNonNull(
+                  timerTs.read(),
+                  bufferingTimer.getCurrentRelativeTime().getMillis()
+                      + maxBufferingDuration.getMillis());
+          bufferingTimer
+              .withOutputTimestamp(Instant.ofEpochMilli(minBufferedTs.read()))
+              .set(Instant.ofEpochMilli(targetTs));
+        } else {
+          // The only way to hold the watermark is to set a timer. Since there is no buffering
+          // timer, we set a dummy timer at the end of the window to manage the hold.
+          Instant windowEnd = window.maxTimestamp().plus(allowedLateness);
+          holdTimer.withOutputTimestamp(Instant.ofEpochMilli(minBufferedTs.read())).set(windowEnd);
+        }
+      }
+
+      if (num % prefetchFrequency == 0) {
+        // Prefetch data and modify chunks state (readLater() modifies this)
+        chunks.readLater();
+      }
+
+      if (num >= batchSize
+          || (shouldCareAboutWeight && storedBatchSizeBytes.read() >= batchSizeBytes)) {
+        LOG.debug("*** END OF BATCH *** for window {}", window.toString());
+        flushBatch(
+            receiver,
+            element.getKey(),
+            chunks,
+            openChunk,
+            storedBatchSize,
+            storedBatchSizeBytes,
+            timerTs,
+            minBufferedTs);
+        bufferingTimer.clear();
+        holdTimer.clear();
+      }
+    }
+
+    @OnTimer(END_OF_BUFFERING_ID)
+    public void onBufferingTimer(
+        OutputReceiver<KV<K, Iterable<InputT>>> receiver,
+        @Timestamp Instant timestamp,
+        @Key K key,
+        @StateId(CHUNKS_ID) BagState<byte[]> chunks,
+        @StateId(OPEN_CHUNK_ID) ValueState<byte[]> openChunk,
+        @StateId(NUM_ELEMENTS_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSize,
+        @StateId(NUM_BYTES_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSizeBytes,
+        @StateId(TIMER_TIMESTAMP) ValueState<Long> timerTs,
+        @StateId(MIN_BUFFERED_TS) CombiningState<Long, long[], Long> minBufferedTs,
+        @TimerId(TIMER_HOLD_ID) Timer holdTimer) {
+      LOG.debug(
+          "*** END OF BUFFERING *** for timer timestamp {} with buffering duration {}",
+          timestamp,
+          maxBufferingDuration);
+      flushBatch(
+          receiver,
+          key,
+          chunks,
+          openChunk,
+          storedBatchSize,
+          storedBatchSizeBytes,
+          timerTs,
+          minBufferedTs);
+      // Generally this is a noop, since holdTimer is not set if bufferingTimer is set. However we
+      // delete the holdTimer here in order to allow users to modify this policy on pipeline update.
+      holdTimer.clear();
+    }
+
+    @OnWindowExpiration
+    public void onWindowExpiration(
+        OutputReceiver<KV<K, Iterable<InputT>>> receiver,
+        @Key K key,
+        @StateId(CHUNKS_ID) BagState<byte[]> chunks,
+        @StateId(OPEN_CHUNK_ID) ValueState<byte[]> openChunk,
+        @StateId(NUM_ELEMENTS_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSize,
+        @StateId(NUM_BYTES_IN_BATCH_ID) CombiningState<Long, long[], Long> storedBatchSizeBytes,
+        @StateId(TIMER_TIMESTAMP) ValueState<Long> timerTs,
+        @StateId(MIN_BUFFERED_TS) CombiningState<Long, long[], Long> minBufferedTs) {
+      flushBatch(
+          receiver,
+          key,
+          chunks,
+          openChunk,
+          storedBatchSize,
+          storedBatchSizeBytes,
+          timerTs,
+          minBufferedTs);
+    }
+
+    @OnTimer(TIMER_HOLD_ID)
+    public void onHoldTimer() {
+      // Do nothing. The associated watermark hold will be automatically removed.
+    }
+
+    private void flushBatch(
+        OutputReceiver<KV<K, Iterable<InputT>>> receiver,
+        K key,
+        BagState<byte[]> chunks,
+        ValueState<byte[]> openChunk,
+        CombiningState<Long, long[], Long> storedBatchSize,
+        CombiningState<Long, long[], Long> storedBatchSizeBytes,
+        ValueState<Long> timerTs,
+        CombiningState<Long, long[], Long> minBufferedTs) {
+      long startMillis = batchMetrics != null ? System.currentTimeMillis() : 0L;
+      // When the timer fires, batch state might be empty. The element count tells without
+      // decoding the first chunk.
+      if (storedBatchSize.read() > 0) {
+        byte[] lastChunk = openChunk.read();
+        Iterable<byte[]> encodedChunks =
+            lastChunk == null
+                ? chunks.read()
+                : Iterables.concat(chunks.read(), Collections.singletonList(lastChunk));
+        receiver.outputWithTimestamp(
+            KV.of(key, new DecodingIterable<>(inputValueCoder, encodedChunks)),
+            Instant.ofEpochMilli(minBufferedTs.read()));
+        if (batchMetrics != null) {
+          batchMetrics.update(storedBatchSize.read(), storedBatchSizeBytes.read(), startMillis);
+        }
+      }
+      chunks.clear();
+      openChunk.clear();
+      storedBatchSize.clear();
+      storedBatchSizeBytes.clear();
+      timerTs.clear();
+      minBufferedTs.clear();
+    }
+
+    private byte[] encode(InputT value) {
+      try {
+        return CoderUtils.encodeToByteArray(inputValueCoder, value, Coder.Context.NESTED);
+      } catch (CoderException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * Appends an encoded element to the open chunk. A full chunk is appended to the buffered chunks
+     * instead of being written back, so the open chunk never grows past the chunk size.
+     */
+    private void addToChunk(
+        byte[] encodedValue, BagState<byte[]> chunks, ValueState<byte[]> openChunk) {
+      byte[] chunk = openChunk.read();
+      if (chunk == null) {
+        chunk = encodedValue;
+      } else {
+        int openLength = chunk.length;
+        chunk = Arrays.copyOf(chunk, openLength + encodedValue.length);
+        System.arraycopy(encodedValue, 0, chunk, openLength, encodedValue.length);
+      }
+      if (chunk.length < chunkSizeBytes) {
+        openChunk.write(chunk);
+      } else {
+        chunks.add(chunk);
+        openChunk.clear();
+      }
+    }
+  }
+
+  /** The elements of a batch, decoded from its chunks of encoded elements as they are iterated. */
+  private static class DecodingIterable<T> implements Iterable<T> {
+    private final Coder<T> coder;
+    private final Iterable<byte[]> chunks;
+
+    DecodingIterable(Coder<T> coder, Iterable<byte[]> chunks) {
+      this.coder = coder;
+      this.chunks = chunks;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      Iterator<byte[]> chunkIterator = chunks.iterator();
+      return new AbstractIterator<T>() {
+        private @Nullable ByteArrayInputStream chunk;
+
+        @Override
+        protected T computeNext() {
+          while (chunk == null || chunk.available() == 0) {
+            if (!chunkIterator.hasNext()) {
+              return endOfData();
+            }
+            chunk = new ByteArrayInputStream(chunkIterator.next());
+          }
+          try {
+            return coder.decode(chunk);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+    }
+
+    @Override
+    public String toString() {
+      return Iterables.toString(this);
+    }
+  }
 }
@@ -18,9 +18,13 @@
 package org.apache.beam.sdk.transforms;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UTFDataFormatException;
 import java.util.Objects;
 import org.apache.beam.sdk.coders.AtomicCoder;
 import org.apache.beam.sdk.coders.BigEndianLongCoder;
@@ -174,19 +178,28 @@ public class Mean {
   }
 
   static class CountSumCoder<NumT extends Number> extends AtomicCoder<CountSum<NumT>> {
+    // The encoding of BigEndianLongCoder for the count followed by DoubleCoder for the sum, written
+    // directly to avoid boxing both.
     private static final Coder<Long> LONG_CODER = BigEndianLongCoder.of();
     private static final Coder<Double> DOUBLE_CODER = DoubleCoder.of();
 
     @Override
     public void encode(CountSum<NumT> value, OutputStream outStream)
         throws CoderException, IOException {
-      LONG_CODER.encode(value.count, outStream);
-      DOUBLE_CODER.encode(value.sum, outStream);
+      DataOutputStream dataOutStream = new DataOutputStream(outStream);
+      dataOutStream.writeLong(value.count);
+      dataOutStream.writeDouble(value.sum);
     }
 
     @Override
     public CountSum<NumT> decode(InputStream inStream) throws CoderException, IOException {
-      return new CountSum<>(LONG_CODER.decode(inStream), DOUBLE_CODER.decode(inStream));
+      try {
+        DataInputStream dataInStream = new DataInputStream(inStream);
+        long count = dataInStream.readLong();
+        return new CountSum<>(count, dataInStream.readDouble());
+      } catch (EOFException | UTFDataFormatException exn) {
+        throw new CoderException(exn);
+      }
     }
 
     @Override
@@ -194,5 +207,15 @@ public class Mean {
       LONG_CODER.verifyDeterministic();
       DOUBLE_CODER.verifyDeterministic();
     }
+
+    @Override
+    public boolean isRegisterByteSizeObserverCheap(CountSum<NumT> value) {
+      return true;
+    }
+
+    @Override
+    protected long getEncodedElementByteSize(CountSum<NumT> value) {
+      return 16;
+    }
   }
 }
@@ -38,12 +38,21 @@ import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.io.BaseEncodin
 public final class CoderUtils {
   private CoderUtils() {} // Non-instantiable
 
-  private static ThreadLocal<SoftReference<ExposedByteArrayOutputStream>> threadLocalOutputStream =
-      new ThreadLocal<>();
+  /**
+   * The maximum number of nested calls to {@code encodeToByteArray} that reuse a thread local
+   * stream. Deeper calls allocate a new stream.
+   */
+  private static final int MAX_THREAD_LOCAL_STREAMS = 4;
+
+  /** The thread local streams, indexed by the nesting depth of {@code encodeToByteArray} calls. */
+  @SuppressWarnings("unchecked")
+  private static ThreadLocal<SoftReference<ExposedByteArrayOutputStream>[]>
+      threadLocalOutputStreams =
+          ThreadLocal.withInitial(() -> new SoftReference[MAX_THREAD_LOCAL_STREAMS]);
 
-  /** If true, a call to {@code encodeToByteArray} is already on the call stack. */
-  private static ThreadLocal<Boolean> threadLocalOutputStreamInUse =
-      ThreadLocal.withInitial(() -> false);
+  /** The number of calls to {@code encodeToByteArray} currently on the call stack. */
+  private static ThreadLocal<int[]> threadLocalOutputStreamDepth =
+      ThreadLocal.withInitial(() -> new int[1]);
 
   /**
    * Encodes the given value using the specified Coder, and returns the encoded bytes.
@@ -57,20 +66,21 @@ public final class CoderUtils {
 
   public static <T> byte[] encodeToByteArray(Coder<T> coder, T value, Coder.Context context)
       throws CoderException {
-    if (threadLocalOutputStreamInUse.get()) {
-      // encodeToByteArray() is called recursively and the thread local stream is in use,
+    int[] depth = threadLocalOutputStreamDepth.get();
+    if (depth[0] >= MAX_THREAD_LOCAL_STREAMS) {
+      // encodeToByteArray() is called recursively and all of the thread local streams are in use,
       // allocating a new one.
       ByteArrayOutputStream stream = new ExposedByteArrayOutputStream();
       encodeToSafeStream(coder, value, stream, context);
       return stream.toByteArray();
     } else {
-      threadLocalOutputStreamInUse.set(true);
+      ByteArrayOutputStream stream = getThreadLocalOutputStream(depth[0]);
+      depth[0]++;
       try {
-        ByteArrayOutputStream stream = getThreadLocalOutputStream();
         encodeToSafeStream(coder, value, stream, context);
         return stream.toByteArray();
       } finally {
-        threadLocalOutputStreamInUse.set(false);
+        depth[0]--;
       }
     }
   }
@@ -147,12 +157,13 @@ public final class CoderUtils {
     }
   }
 
-  private static ByteArrayOutputStream getThreadLocalOutputStream() {
-    SoftReference<ExposedByteArrayOutputStream> refStream = threadLocalOutputStream.get();
+  private static ByteArrayOutputStream getThreadLocalOutputStream(int depth) {
+    SoftReference<ExposedByteArrayOutputStream>[] refStreams = threadLocalOutputStreams.get();
+    SoftReference<ExposedByteArrayOutputStream> refStream = refStreams[depth];
     ExposedByteArrayOutputStream stream = refStream == null ? null : refStream.get();
     if (stream == null) {
       stream = new ExposedByteArrayOutputStream();
-      threadLocalOutputStream.set(new SoftReference<>(stream));
+      refStreams[depth] = new SoftReference<>(stream);
     }
     stream.reset();
     return stream;
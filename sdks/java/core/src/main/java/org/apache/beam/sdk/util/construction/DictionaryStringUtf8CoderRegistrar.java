@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.util.construction;
+
+import com.google.auto.service.AutoService;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.DictionaryStringUtf8Coder;
+import org.apache.beam.sdk.coders.ListCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.construction.CoderTranslation.TranslationContext;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
+
+/**
+ * Coder registrar for {@link DictionaryStringUtf8Coder}, which is translated with its own URN and
+ * its dictionary as the payload rather than as a Java serialized coder.
+ */
+@AutoService(CoderTranslatorRegistrar.class)
+@SuppressWarnings({
+  "rawtypes" // TODO(https://github.com/apache/beam/issues/20447)
+})
+public class DictionaryStringUtf8CoderRegistrar implements CoderTranslatorRegistrar {
+  public static final String DICTIONARY_STRING_UTF8_CODER_URN =
+      "beam:coder:java:string_dictionary:v1";
+
+  @Override
+  public Map<Class<? extends Coder>, String> getCoderURNs() {
+    return ImmutableMap.of(DictionaryStringUtf8Coder.class, DICTIONARY_STRING_UTF8_CODER_URN);
+  }
+
+  @Override
+  public Map<Class<? extends Coder>, CoderTranslator<? extends Coder>> getCoderTranslators() {
+    return ImmutableMap.of(DictionaryStringUtf8Coder.class, new Translator());
+  }
+
+  private static class Translator implements CoderTranslator<DictionaryStringUtf8Coder> {
+    private static final ListCoder<String> DICTIONARY_CODER = ListCoder.of(StringUtf8Coder.of());
+
+    @Override
+    public List<? extends Coder<?>> getComponents(DictionaryStringUtf8Coder from) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public byte[] getPayload(DictionaryStringUtf8Coder from) {
+      try {
+        return CoderUtils.encodeToByteArray(DICTIONARY_CODER, from.getDictionary());
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to encode the dictionary of " + from, e);
+      }
+    }
+
+    @Override
+    public DictionaryStringUtf8Coder fromComponents(
+        List<Coder<?>> components, byte[] payload, TranslationContext context) {
+      try {
+        return DictionaryStringUtf8Coder.of(
+            CoderUtils.decodeFromByteArray(DICTIONARY_CODER, payload));
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to decode the dictionary of a coder", e);
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.apache.beam.sdk.annotations.Internal;
+import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.schemas.Factory;
 import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
 import org.apache.beam.sdk.schemas.FieldValueGetter;
@@ -844,6 +845,20 @@ public abstract class Row implements Serializable {
       return new RowWithGetters<>(schema, fieldValueGetterFactory, getterTarget);
     }
 
+    // Creates a Row whose fields are lazily decoded from their encoded form. No verification is
+    // done; fieldOffsets and fieldCoders are indexed by field index and must match the schema.
+    @Internal
+    public Row withEncodedFields(
+        byte[] encoded,
+        int[] fieldOffsets,
+        Coder[] fieldCoders,
+        @Nullable Object encodingKey) {
+      checkState(this.values.isEmpty());
+      checkArgument(fieldOffsets.length == schema.getFieldCount());
+      checkArgument(fieldCoders.length == schema.getFieldCount());
+      return new RowWithEncodedFields(schema, encoded, fieldOffsets, fieldCoders, encodingKey);
+    }
+
     public Row build() {
       checkNotNull(schema);
 
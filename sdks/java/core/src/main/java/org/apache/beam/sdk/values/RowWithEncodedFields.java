@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.values;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.beam.sdk.annotations.Internal;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A concrete subclass of {@link Row} that is backed by the encoded form of the row.
+ *
+ * <p>Fields are decoded from the encoded bytes the first time they are accessed and cached
+ * afterwards, so transforms that only touch a few fields of a wide schema never pay for decoding
+ * the rest. If the row is re-encoded by the coder that produced it, the original bytes are copied
+ * verbatim.
+ *
+ * <p>Rows may be read by several threads at once. Each decoded field is published safely, and all
+ * threads see the value that was cached first.
+ */
+@Internal
+@SuppressWarnings({
+  "nullness", // TODO(https://github.com/apache/beam/issues/20497)
+  "rawtypes"
+})
+public class RowWithEncodedFields extends Row {
+  private final byte[] encoded;
+  // Offset of the encoded value of each field, indexed by row index. -1 for null fields.
+  private final int[] fieldOffsets;
+  // Coder of each field, indexed by row index.
+  private final Coder[] fieldCoders;
+  // Identifies the coder that is able to reuse the encoded bytes, or null if the bytes may not be
+  // reused as is (e.g. because they were written with a different version of the schema).
+  private final @Nullable Object encodingKey;
+  // The decoded value of each field, indexed by row index. Null until the field is decoded, and
+  // NULL_VALUE for decoded null fields.
+  private final AtomicReferenceArray<Object> values;
+
+  private static final Object NULL_VALUE = new Object();
+
+  RowWithEncodedFields(
+      Schema schema,
+      byte[] encoded,
+      int[] fieldOffsets,
+      Coder[] fieldCoders,
+      @Nullable Object encodingKey) {
+    super(schema);
+    this.encoded = encoded;
+    this.fieldOffsets = fieldOffsets;
+    this.fieldCoders = fieldCoders;
+    this.encodingKey = encodingKey;
+    this.values = new AtomicReferenceArray<>(fieldOffsets.length);
+  }
+
+  @Override
+  @SuppressWarnings({"TypeParameterUnusedInFormals", "unchecked"})
+  public <T extends @Nullable Object> T getValue(int fieldIdx) {
+    if (fieldIdx < 0 || fieldIdx >= fieldOffsets.length) {
+      throw new IllegalArgumentException("No field at index " + fieldIdx);
+    }
+    Object value = values.get(fieldIdx);
+    if (value == null) {
+      Object decodedValue = decodeField(fieldIdx);
+      value = decodedValue == null ? NULL_VALUE : decodedValue;
+      if (!values.compareAndSet(fieldIdx, null, value)) {
+        // Another thread decoded the field first.
+        value = values.get(fieldIdx);
+      }
+    }
+    return value == NULL_VALUE ? null : (T) value;
+  }
+
+  private @Nullable Object decodeField(int fieldIdx) {
+    int offset = fieldOffsets[fieldIdx];
+    if (offset < 0) {
+      return null;
+    }
+    try {
+      return fieldCoders[fieldIdx].decode(
+          new ByteArrayInputStream(encoded, offset, encoded.length - offset));
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Unable to decode field " + getSchema().getField(fieldIdx).getName(), e);
+    }
+  }
+
+  @Override
+  public int getFieldCount() {
+    return fieldOffsets.length;
+  }
+
+  @Override
+  public List<@Nullable Object> getValues() {
+    List<@Nullable Object> result = new ArrayList<>(fieldOffsets.length);
+    for (int i = 0; i < fieldOffsets.length; ++i) {
+      result.add(getValue(i));
+    }
+    return result;
+  }
+
+  /**
+   * Writes the encoded bytes backing this row to {@code outputStream} if they were produced by the
+   * coder identified by {@code encodingKey}. Returns false, without writing anything, otherwise.
+   */
+  @Internal
+  public boolean writeEncodedTo(Object encodingKey, OutputStream outputStream)
+      throws IOException {
+    if (this.encodingKey == null || this.encodingKey != encodingKey) {
+      return false;
+    }
+    outputStream.write(encoded);
+    return true;
+  }
+
+  /**
+   * Returns the size of the encoded bytes backing this row if they were produced by the coder
+   * identified by {@code encodingKey}, or -1 otherwise.
+   */
+  @Internal
+  public long getEncodedSize(Object encodingKey) {
+    if (this.encodingKey == null || this.encodingKey != encodingKey) {
+      return -1;
+    }
+    return encoded.length;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.junit.Assert.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Test case for {@link DictionaryStringUtf8Coder}. */
+@RunWith(JUnit4.class)
+public class DictionaryStringUtf8CoderTest {
+
+  private static final DictionaryStringUtf8Coder TEST_CODER =
+      DictionaryStringUtf8Coder.of("US", "DE");
+
+  private static final List<String> TEST_VALUES = Arrays.asList("US", "DE", "", "FR");
+
+  /**
+   * Generated data to check that the wire format has not changed. To regenerate, see {@link
+   * org.apache.beam.sdk.coders.PrintBase64Encodings}.
+   */
+  private static final List<String> TEST_ENCODINGS = Arrays.asList("AQ", "Ag", "AAA", "AAJGUg");
+
+  @Test
+  public void testDecodeEncodeEqual() throws Exception {
+    for (String value : TEST_VALUES) {
+      CoderProperties.coderDecodeEncodeEqual(TEST_CODER, value);
+      CoderProperties.coderDeterministic(TEST_CODER, value, value);
+    }
+  }
+
+  @Test
+  public void testWireFormatEncode() throws Exception {
+    CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
+  }
+
+  @Test
+  public void testSerializable() throws Exception {
+    CoderProperties.coderSerializable(TEST_CODER);
+  }
+
+  @Test
+  public void testRegisterByteSizeObserver() throws Exception {
+    CoderProperties.testByteCount(
+        TEST_CODER, Coder.Context.NESTED, TEST_VALUES.toArray(new String[0]));
+  }
+
+  @Test
+  public void testDuplicateDictionaryValues() {
+    assertThrows(IllegalArgumentException.class, () -> DictionaryStringUtf8Coder.of("a", "a"));
+  }
+
+  @Test
+  public void testInvalidReference() {
+    assertThrows(
+        CoderException.class,
+        () -> CoderUtils.decodeFromByteArray(TEST_CODER, new byte[] {3}));
+  }
+}
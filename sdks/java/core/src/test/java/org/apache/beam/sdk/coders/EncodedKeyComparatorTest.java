@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.SerializableUtils;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link EncodedKeyComparator}. */
+@RunWith(JUnit4.class)
+public class EncodedKeyComparatorTest {
+
+  /** Checks that sorting the encoded values orders them like {@code comparator}. */
+  private static <T> void assertOrderMatches(
+      Coder<T> coder, Comparator<T> comparator, List<T> values) throws Exception {
+    EncodedKeyComparator encodedComparator = EncodedKeyComparator.of(coder);
+    for (T x : values) {
+      byte[] xBytes = CoderUtils.encodeToByteArray(coder, x);
+      for (T y : values) {
+        byte[] yBytes = CoderUtils.encodeToByteArray(coder, y);
+        assertEquals(
+            String.format("Comparing %s with %s", x, y),
+            Integer.signum(comparator.compare(x, y)),
+            Integer.signum(encodedComparator.compare(xBytes, yBytes)));
+      }
+    }
+  }
+
+  private static <T extends Comparable<T>> void assertNaturalOrder(Coder<T> coder, List<T> values)
+      throws Exception {
+    assertOrderMatches(coder, Comparator.naturalOrder(), values);
+  }
+
+  @Test
+  public void testNumbers() throws Exception {
+    assertNaturalOrder(
+        VarIntCoder.of(), Arrays.asList(Integer.MIN_VALUE, -300, -1, 0, 1, 127, 128, 300, 1 << 30));
+    assertNaturalOrder(
+        VarLongCoder.of(), Arrays.asList(Long.MIN_VALUE, -1L, 0L, 1L, 1L << 40, Long.MAX_VALUE));
+    assertNaturalOrder(
+        BigEndianShortCoder.of(),
+        Arrays.asList(Short.MIN_VALUE, (short) -1, (short) 0, (short) 1, Short.MAX_VALUE));
+    assertNaturalOrder(
+        BigEndianIntegerCoder.of(), Arrays.asList(Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE));
+    assertNaturalOrder(
+        BigEndianLongCoder.of(), Arrays.asList(Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE));
+    assertNaturalOrder(
+        ByteCoder.of(), Arrays.asList(Byte.MIN_VALUE, (byte) -1, (byte) 0, (byte) 1));
+    assertNaturalOrder(
+        DoubleCoder.of(),
+        Arrays.asList(
+            Double.NEGATIVE_INFINITY, -2.5, -0.0, 0.0, Double.MIN_VALUE, 3.0, Double.NaN));
+    assertNaturalOrder(
+        FloatCoder.of(), Arrays.asList(Float.NEGATIVE_INFINITY, -2.5f, -0.0f, 0.0f, 3.0f));
+  }
+
+  @Test
+  public void testBooleansAndInstants() throws Exception {
+    assertNaturalOrder(BooleanCoder.of(), Arrays.asList(false, true));
+    assertNaturalOrder(
+        InstantCoder.of(),
+        Arrays.asList(new Instant(-1000L), new Instant(0L), new Instant(1L), new Instant(5000L)));
+  }
+
+  @Test
+  public void testStrings() throws Exception {
+    // U+FFFF sorts after the surrogate pair of U+1F600 in UTF-16, but before it in UTF-8.
+    List<String> values =
+        Arrays.asList("", "a", "ab", "b", "\u00e9", "\ud83d\ude00", "\ud83d\ude00a", "\uffff");
+    assertNaturalOrder(StringUtf8Coder.of(), values);
+    assertNaturalOrder(NullableCoder.of(StringUtf8Coder.of()), values);
+  }
+
+  @Test
+  public void testByteArrays() throws Exception {
+    List<byte[]> values =
+        Arrays.asList(new byte[0], new byte[] {0}, new byte[] {0, 1}, new byte[] {(byte) 0xff});
+    EncodedKeyComparator comparator = EncodedKeyComparator.of(ByteArrayCoder.of());
+    for (int i = 0; i < values.size(); ++i) {
+      for (int j = 0; j < values.size(); ++j) {
+        assertEquals(
+            Integer.signum(Integer.compare(i, j)),
+            Integer.signum(comparator.compare(values.get(i), values.get(j))));
+      }
+    }
+  }
+
+  @Test
+  public void testNullsFirst() throws Exception {
+    assertOrderMatches(
+        NullableCoder.of(VarLongCoder.of()),
+        Comparator.nullsFirst(Comparator.<Long>naturalOrder()),
+        Arrays.asList(null, -1L, 0L, 1L));
+  }
+
+  @Test
+  public void testKvs() throws Exception {
+    List<KV<String, Long>> values = new ArrayList<>();
+    for (String key : Arrays.asList("", "a", "aa", "b")) {
+      for (long value : new long[] {-5L, 0L, 300L}) {
+        values.add(KV.of(key, value));
+      }
+    }
+    assertOrderMatches(
+        KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of()),
+        Comparator.comparing(KV<String, Long>::getKey).thenComparing(KV::getValue),
+        values);
+  }
+
+  @Test
+  public void testCompareRanges() throws Exception {
+    EncodedKeyComparator comparator = EncodedKeyComparator.of(VarIntCoder.of());
+    byte[] bytes = new byte[] {9, 5, 9, 9, 3, 9};
+    assertTrue(comparator.compare(bytes, 1, 1, bytes, 4, 1) > 0);
+    assertEquals(0, comparator.compare(bytes, 1, 1, bytes, 1, 1));
+  }
+
+  @Test
+  public void testUnsupportedCoders() {
+    assertFalse(EncodedKeyComparator.isSupported(ListCoder.of(VarIntCoder.of())));
+    assertFalse(
+        EncodedKeyComparator.isSupported(
+            KvCoder.of(StringUtf8Coder.of(), ListCoder.of(VarIntCoder.of()))));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> EncodedKeyComparator.of(SerializableCoder.of(String.class)));
+  }
+
+  @Test
+  public void testSerializable() throws Exception {
+    KvCoder<String, Long> coder = KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+    EncodedKeyComparator comparator = SerializableUtils.clone(EncodedKeyComparator.of(coder));
+    assertTrue(
+        comparator.compare(
+                CoderUtils.encodeToByteArray(coder, KV.of("a", -1L)),
+                CoderUtils.encodeToByteArray(coder, KV.of("a", 1L)))
+            < 0);
+  }
+}
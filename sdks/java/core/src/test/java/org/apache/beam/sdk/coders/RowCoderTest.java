@@ -17,17 +17,23 @@
  */
 package org.apache.beam.sdk.coders;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
 import org.apache.beam.sdk.schemas.Schema;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
@@ -35,6 +41,7 @@ import org.apache.beam.sdk.schemas.Schema.LogicalType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType.Value;
 import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.Row;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
@@ -626,4 +633,153 @@ public class RowCoderTest {
     Row decoded = RowCoder.of(schema2).decode(new ByteArrayInputStream(os.toByteArray()));
     assertEquals(expected, decoded);
   }
+
+  @Test
+  public void testLazyDecoding() throws Exception {
+    Schema nestedSchema = Schema.builder().addInt32Field("f1_int").addStringField("f1_str").build();
+    Schema schema =
+        Schema.builder()
+            .addInt64Field("f_int64")
+            .addNullableField("f_string", FieldType.STRING)
+            .addDoubleField("f_double")
+            .addArrayField("f_array", FieldType.STRING)
+            .addRowField("f_row", nestedSchema)
+            .addDateTimeField("f_datetime")
+            .build();
+    Row row =
+        Row.withSchema(schema)
+            .addValues(
+                3L,
+                null,
+                1.5d,
+                Arrays.asList("one", "two"),
+                Row.withSchema(nestedSchema).addValues(18, "foobar").build(),
+                new DateTime().withDate(1979, 3, 14).withZone(DateTimeZone.UTC))
+            .build();
+
+    RowCoder eagerCoder = RowCoder.of(schema);
+    RowCoder coder = eagerCoder.withLazyDecoding();
+    CoderProperties.coderDecodeEncodeEqual(coder, row);
+
+    byte[] encoded = CoderUtils.encodeToByteArray(eagerCoder, row);
+    Row decoded = CoderUtils.decodeFromByteArray(coder, encoded);
+    assertEquals("foobar", decoded.getRow("f_row").getString("f1_str"));
+    assertEquals(null, decoded.getString("f_string"));
+    assertEquals(row, decoded);
+    // Re-encoding a lazily decoded row copies the original bytes.
+    assertArrayEquals(encoded, CoderUtils.encodeToByteArray(eagerCoder, decoded));
+  }
+
+  @Test
+  public void testLazyDecodingFromConcurrentReaders() throws Exception {
+    Schema schema =
+        Schema.builder()
+            .addArrayField("f_array", FieldType.STRING)
+            .addNullableField("f_string", FieldType.STRING)
+            .build();
+    Row row = Row.withSchema(schema).addValues(Arrays.asList("one", "two"), null).build();
+    RowCoder eagerCoder = RowCoder.of(schema);
+    Row decoded =
+        CoderUtils.decodeFromByteArray(
+            eagerCoder.withLazyDecoding(), CoderUtils.encodeToByteArray(eagerCoder, row));
+
+    // All readers see the same decoded value of a field.
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Object>> arrays = new ArrayList<>();
+      for (int i = 0; i < 16; ++i) {
+        arrays.add(executor.submit(() -> decoded.getArray("f_array")));
+      }
+      for (Future<Object> array : arrays) {
+        assertSame(arrays.get(0).get(), array.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(row, decoded);
+  }
+
+  @Test
+  public void testLazyDecodingEncodingPositionRemoveFields() throws Exception {
+    Schema schema1 =
+        Schema.builder()
+            .addNullableField("f_int32", FieldType.INT32)
+            .addNullableField("f_string", FieldType.STRING)
+            .addNullableField("f_boolean", FieldType.BOOLEAN)
+            .build();
+    Schema schema2 =
+        Schema.builder()
+            .addNullableField("f_int32", FieldType.INT32)
+            .addNullableField("f_string", FieldType.STRING)
+            .build();
+
+    Row row =
+        Row.withSchema(schema1)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .withFieldValue("f_boolean", true)
+            .build();
+    Row expected =
+        Row.withSchema(schema2)
+            .withFieldValue("f_int32", 42)
+            .withFieldValue("f_string", "hello world!")
+            .build();
+
+    byte[] encoded = CoderUtils.encodeToByteArray(RowCoder.of(schema1), row);
+    Row decoded =
+        RowCoder.of(schema2).withLazyDecoding().decode(new ByteArrayInputStream(encoded));
+    assertEquals(expected, decoded);
+    // The original bytes contain a field unknown to schema2, so they must not be reused.
+    assertArrayEquals(
+        CoderUtils.encodeToByteArray(RowCoder.of(schema2), expected),
+        CoderUtils.encodeToByteArray(RowCoder.of(schema2), decoded));
+  }
+
+  @Test
+  public void testRegisterByteSizeObserver() throws Exception {
+    Schema nestedSchema =
+        Schema.builder()
+            .addInt32Field("f1_int")
+            .addNullableField("f1_str", FieldType.STRING)
+            .build();
+    Schema.Builder builder =
+        Schema.builder()
+            .addInt64Field("f_int64")
+            .addDoubleField("f_double")
+            .addArrayField("f_array", FieldType.STRING)
+            .addMapField("f_map", FieldType.STRING, FieldType.INT32)
+            .addRowField("f_row", nestedSchema)
+            .addDateTimeField("f_datetime");
+    // Enough nullable fields for the null bitmap to span several bytes.
+    for (int i = 0; i < 12; ++i) {
+      builder.addNullableField("f_nullable" + i, FieldType.STRING);
+    }
+    Schema schema = builder.build();
+
+    Row.Builder rowBuilder =
+        Row.withSchema(schema)
+            .addValues(
+                3L,
+                1.5d,
+                Arrays.asList("one", "two", "\u00e9\u4e2d"),
+                ImmutableMap.of("a", 1, "b", 2),
+                Row.withSchema(nestedSchema).addValues(18, null).build(),
+                new DateTime().withDate(1979, 3, 14).withZone(DateTimeZone.UTC));
+    for (int i = 0; i < 12; ++i) {
+      rowBuilder.addValue(i == 9 ? null : "value" + i);
+    }
+    Row row = rowBuilder.build();
+    Row.FieldValueBuilder allNullsBuilder = Row.fromRow(row);
+    for (int i = 0; i < 12; ++i) {
+      allNullsBuilder.withFieldValue("f_nullable" + i, null);
+    }
+    Row allNulls = allNullsBuilder.build();
+
+    RowCoder coder = RowCoder.of(schema);
+    CoderProperties.testByteCount(coder, Coder.Context.NESTED, new Row[] {row, allNulls});
+    CoderProperties.testByteCount(
+        coder.withLazyDecoding(),
+        Coder.Context.NESTED,
+        new Row[] {CoderUtils.clone(coder.withLazyDecoding(), row)});
+  }
 }
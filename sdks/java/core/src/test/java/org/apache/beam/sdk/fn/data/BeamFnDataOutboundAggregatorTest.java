@@ -17,8 +17,12 @@
  */
 package org.apache.beam.sdk.fn.data;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -26,7 +30,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
@@ -207,6 +214,73 @@ public class BeamFnDataOutboundAggregatorTest {
     Assert.assertEquals(messageWithData(new byte[1]), values.get(0));
   }
 
+  @Test
+  public void testAdaptiveLinger() throws Exception {
+    BlockingQueue<Elements> values = new LinkedBlockingQueue<>();
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_adaptive", "data_buffer_target_latency_ms=4"));
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(values::add).build(),
+            false);
+    assertTrue(aggregator.isAdaptive());
+    assertThat(aggregator.getLingerMillis(), lessThanOrEqualTo(4L));
+
+    // Test that a slow endpoint is flushed once its data has waited for the target latency.
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+    for (int i = 0; i < 3; ++i) {
+      dataReceiver.accept(new byte[1]);
+      Elements flushed = values.poll(30, TimeUnit.SECONDS);
+      assertNotNull("Buffered data was not flushed", flushed);
+      Assert.assertEquals(messageWithData(new byte[1]), flushed);
+    }
+
+    // Test that the size limit of a slow data endpoint shrinks to the minimum.
+    if (!endpoint.isTimer()) {
+      assertEquals(
+          BeamFnDataOutboundAggregator.MIN_ADAPTIVE_SIZE_LIMIT,
+          aggregator.getSizeLimit(endpoint.getTransformId()));
+    }
+    aggregator.discard();
+  }
+
+  @Test
+  public void testAdaptiveSizeLimitIsBounded() throws Exception {
+    List<Elements> values = new ArrayList<>();
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(
+            Arrays.asList(
+                "data_buffer_adaptive",
+                "data_buffer_target_latency_ms=60000",
+                "data_buffer_size_limit=100"));
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(values::add).build(),
+            false);
+
+    // Test that a fast endpoint still flushes at the configured size limit.
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+    for (int i = 0; i < 5; ++i) {
+      dataReceiver.accept(new byte[51]);
+      dataReceiver.accept(new byte[51]);
+      assertEquals(i + 1, values.size());
+    }
+    if (!endpoint.isTimer()) {
+      assertEquals(100L, aggregator.getSizeLimit(endpoint.getTransformId()));
+    }
+    aggregator.discard();
+  }
+
   @Test
   public void testConfiguredTimeLimitExceptionPropagation() throws Exception {
     PipelineOptions options = PipelineOptionsFactory.create();
@@ -18,7 +18,9 @@
 package org.apache.beam.sdk.schemas;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 
 import com.google.auto.value.AutoValue;
@@ -26,6 +28,7 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.function.Supplier;
+import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
 import org.apache.beam.sdk.coders.RowCoder;
 import org.apache.beam.sdk.schemas.Schema.Field;
@@ -34,6 +37,7 @@ import org.apache.beam.sdk.schemas.annotations.DefaultSchema;
 import org.apache.beam.sdk.schemas.logicaltypes.NanosInstant;
 import org.apache.beam.sdk.schemas.utils.SchemaTestUtils;
 import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.Row;
 import org.apache.beam.sdk.values.TypeDescriptor;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
@@ -75,6 +79,18 @@ public class SchemaCoderTest {
       assertNotEquals(autovalueCoder.getToRowFunction(), javabeanCoder.getToRowFunction());
       assertNotEquals(autovalueCoder.getFromRowFunction(), javabeanCoder.getFromRowFunction());
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void encode_nullNonNullableField_throws() throws NoSuchSchemaException {
+      SchemaCoder<SimplePojo> coder = coderFrom(TypeDescriptor.of(SimplePojo.class));
+      SimplePojo pojo = new SimplePojo(null, 9001, 0L, new DateTime());
+
+      RuntimeException thrown =
+          assertThrows(RuntimeException.class, () -> CoderUtils.encodeToByteArray(coder, pojo));
+      assertThat(
+          thrown.getMessage(), Matchers.startsWith("Null value set on non-nullable field"));
+    }
   }
 
   @AutoValue
@@ -313,6 +329,33 @@ public class SchemaCoderTest {
       }
     }
 
+    @Test
+    public void coderDecodeEncodeEqual() throws Exception {
+      for (Supplier<Object> testValue : testValues) {
+        CoderProperties.coderDecodeEncodeEqual(coder, testValue.get());
+      }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void encodingMatchesRowCoder() throws Exception {
+      // User types are encoded from their field values, which must match encoding their rows.
+      RowCoder rowCoder = RowCoder.of(coder.getSchema());
+      for (Supplier<Object> testValue : testValues) {
+        Object value = testValue.get();
+        assertArrayEquals(
+            CoderUtils.encodeToByteArray(rowCoder, (Row) coder.getToRowFunction().apply(value)),
+            CoderUtils.encodeToByteArray(coder, value));
+      }
+    }
+
+    @Test
+    public void testByteCount() throws Exception {
+      for (Supplier<Object> testValue : testValues) {
+        CoderProperties.testByteCount(coder, Coder.Context.NESTED, new Object[] {testValue.get()});
+      }
+    }
+
     @Test
     public void verifyDeterministic() throws Exception {
       if (expectDeterministic) {
@@ -26,9 +26,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.apache.beam.sdk.PipelineResult;
 import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.metrics.DistributionResult;
+import org.apache.beam.sdk.metrics.MetricNameFilter;
+import org.apache.beam.sdk.metrics.MetricResult;
+import org.apache.beam.sdk.metrics.MetricsFilter;
 import org.apache.beam.sdk.testing.NeedsRunner;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
@@ -37,6 +42,8 @@ import org.apache.beam.sdk.testing.TestStream.ElementEvent;
 import org.apache.beam.sdk.testing.TestStream.Event;
 import org.apache.beam.sdk.testing.TestStream.ProcessingTimeEvent;
 import org.apache.beam.sdk.testing.TestStream.WatermarkEvent;
+import org.apache.beam.sdk.testing.UsesAttemptedMetrics;
+import org.apache.beam.sdk.testing.UsesDistributionMetrics;
 import org.apache.beam.sdk.testing.UsesOnWindowExpiration;
 import org.apache.beam.sdk.testing.UsesStatefulParDo;
 import org.apache.beam.sdk.testing.UsesTestStream;
@@ -164,6 +171,131 @@ public class GroupIntoBatchesTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  @Category({
+    ValidatesRunner.class,
+    NeedsRunner.class,
+    UsesTimersInParDo.class,
+    UsesStatefulParDo.class,
+    UsesOnWindowExpiration.class
+  })
+  public void testInGlobalWindowChunkedBuffering() {
+    // Chunks hold a couple of encoded names, so batches span several chunks.
+    PCollection<KV<String, Iterable<String>>> collection =
+        pipeline
+            .apply("Input data", Create.of(createTestData(ODD_NUM_ELEMENTS)))
+            .apply(GroupIntoBatches.<String, String>ofSize(BATCH_SIZE).withChunkedBuffering(12))
+            // set output coder
+            .setCoder(KvCoder.of(StringUtf8Coder.of(), IterableCoder.of(StringUtf8Coder.of())));
+    PAssert.that("Incorrect batch size in one or more elements", collection)
+        .satisfies(
+            new SerializableFunction<Iterable<KV<String, Iterable<String>>>, Void>() {
+              @Override
+              public Void apply(Iterable<KV<String, Iterable<String>>> input) {
+                assertTrue(checkBatchSizes(input));
+                return null;
+              }
+            });
+    PAssert.that(
+            "Incorrect batched elements",
+            collection.apply(Values.create()).apply(Flatten.iterables()))
+        .containsInAnyOrder(
+            createTestData(ODD_NUM_ELEMENTS).stream()
+                .map(KV::getValue)
+                .collect(Collectors.toList()));
+    PAssert.thatSingleton("Incorrect collection size", collection.apply("Count", Count.globally()))
+        .isEqualTo(ODD_NUM_ELEMENTS / BATCH_SIZE + 1);
+    pipeline.run();
+  }
+
+  @Test
+  @Category({
+    ValidatesRunner.class,
+    NeedsRunner.class,
+    UsesTimersInParDo.class,
+    UsesStatefulParDo.class,
+    UsesOnWindowExpiration.class
+  })
+  public void testInGlobalWindowChunkedBufferingByteSize() {
+    PCollection<KV<String, Iterable<String>>> collection =
+        pipeline
+            .apply("Input data", Create.of(data))
+            .apply(
+                GroupIntoBatches.<String, String>ofByteSize(BATCH_SIZE_BYTES)
+                    .withChunkedBuffering(BATCH_SIZE_BYTES))
+            // set output coder
+            .setCoder(KvCoder.of(StringUtf8Coder.of(), IterableCoder.of(StringUtf8Coder.of())));
+    PAssert.that("Incorrect batch size in one or more elements", collection)
+        .satisfies(
+            new SerializableFunction<Iterable<KV<String, Iterable<String>>>, Void>() {
+              @Override
+              public Void apply(Iterable<KV<String, Iterable<String>>> input) {
+                assertTrue(checkBatchByteSizes(input));
+                return null;
+              }
+            });
+    PAssert.thatSingleton(
+            "Incorrect number of batched elements",
+            collection
+                .apply(Values.create())
+                .apply(Flatten.iterables())
+                .apply("Count", Count.globally()))
+        .isEqualTo(EVEN_NUM_ELEMENTS);
+    pipeline.run();
+  }
+
+  @Test
+  @Category({
+    NeedsRunner.class,
+    UsesTimersInParDo.class,
+    UsesStatefulParDo.class,
+    UsesOnWindowExpiration.class,
+    UsesAttemptedMetrics.class,
+    UsesDistributionMetrics.class
+  })
+  public void testBatchMetrics() {
+    PCollection<KV<String, String>> input = pipeline.apply("Input data", Create.of(data));
+    input.apply("BySize", GroupIntoBatches.<String, String>ofSize(BATCH_SIZE).withBatchMetrics());
+    input.apply("WithoutMetrics", GroupIntoBatches.<String, String>ofSize(BATCH_SIZE));
+    input.apply(
+        "ByDuration",
+        GroupIntoBatches.<String, String>ofSize(Long.MAX_VALUE)
+            .withMaxBufferingDuration(Duration.standardSeconds(1))
+            .withBatchMetrics());
+    PipelineResult result = pipeline.run();
+
+    // Both batches of BySize are full.
+    DistributionResult fill = queryDistribution(result, "BySize", "batch-fill-percent");
+    assertEquals(EVEN_NUM_ELEMENTS / BATCH_SIZE, fill.getCount());
+    assertEquals(100, fill.getMin());
+    assertEquals(100, fill.getMax());
+    assertEquals(
+        EVEN_NUM_ELEMENTS / BATCH_SIZE,
+        queryDistribution(result, "BySize", "flush-latency-millis").getCount());
+
+    // Metrics are only reported when requested, and fill only relative to a size limit.
+    assertEquals(0, queryDistributions(result, "WithoutMetrics").size());
+    assertEquals(0, queryDistributions(result, "ByDuration", "batch-fill-percent").size());
+    assertTrue(queryDistribution(result, "ByDuration", "flush-latency-millis").getCount() > 0);
+  }
+
+  private static List<MetricResult<DistributionResult>> queryDistributions(
+      PipelineResult result, String step, String... names) {
+    MetricsFilter.Builder filter = MetricsFilter.builder().addStep(step);
+    if (names.length == 0) {
+      filter.addNameFilter(MetricNameFilter.inNamespace(GroupIntoBatches.class));
+    }
+    for (String name : names) {
+      filter.addNameFilter(MetricNameFilter.named(GroupIntoBatches.class, name));
+    }
+    return Lists.newArrayList(result.metrics().queryMetrics(filter.build()).getDistributions());
+  }
+
+  private static DistributionResult queryDistribution(
+      PipelineResult result, String step, String name) {
+    return Iterables.getOnlyElement(queryDistributions(result, step, name)).getAttempted();
+  }
+
   @Test
   @Category({
     ValidatesRunner.class,
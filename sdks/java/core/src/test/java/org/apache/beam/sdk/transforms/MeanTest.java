@@ -18,14 +18,19 @@
 package org.apache.beam.sdk.transforms;
 
 import static org.apache.beam.sdk.testing.CombineFnTester.testCombineFn;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 import java.util.List;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.DoubleCoder;
 import org.apache.beam.sdk.testing.CoderProperties;
 import org.apache.beam.sdk.transforms.Mean.CountSum;
 import org.apache.beam.sdk.transforms.Mean.CountSumCoder;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -53,6 +58,25 @@ public class MeanTest {
     }
   }
 
+  @Test
+  public void testCountSumCoderWireFormat() throws Exception {
+    for (CountSum<Number> value : TEST_VALUES) {
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      BigEndianLongCoder.of().encode(value.count, expected);
+      DoubleCoder.of().encode(value.sum, expected);
+      assertArrayEquals(expected.toByteArray(), CoderUtils.encodeToByteArray(TEST_CODER, value));
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCountSumCoderByteCount() throws Exception {
+    CoderProperties.testByteCount(
+        TEST_CODER,
+        Coder.Context.NESTED,
+        (CountSum<Number>[]) TEST_VALUES.toArray(new CountSum<?>[0]));
+  }
+
   @Test
   public void testCountSumCoderSerializable() throws Exception {
     CoderProperties.coderSerializable(TEST_CODER);
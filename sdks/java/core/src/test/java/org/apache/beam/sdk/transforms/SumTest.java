@@ -18,15 +18,19 @@
 package org.apache.beam.sdk.transforms;
 
 import static org.apache.beam.sdk.testing.CombineFnTester.testCombineFn;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
 import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
 import org.apache.beam.sdk.coders.BigEndianLongCoder;
+import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderRegistry;
 import org.apache.beam.sdk.coders.DoubleCoder;
 import org.apache.beam.sdk.coders.VarIntCoder;
 import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Lists;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -114,4 +118,32 @@ public class SumTest {
         sumDoubleFn.getAccumulatorCoder(STANDARD_REGISTRY, DoubleCoder.of()),
         sumDoubleFn.getAccumulatorCoder(STANDARD_REGISTRY, DoubleCoder.of()));
   }
+
+  @Test
+  public void testAccumulatorCoderWireFormat() throws Exception {
+    Coder<int[]> intCoder =
+        Sum.ofIntegers().getAccumulatorCoder(STANDARD_REGISTRY, VarIntCoder.of());
+    for (int value : new int[] {0, -1, 300, Integer.MAX_VALUE}) {
+      assertArrayEquals(
+          CoderUtils.encodeToByteArray(VarIntCoder.of(), value),
+          CoderUtils.encodeToByteArray(intCoder, new int[] {value}));
+      CoderProperties.testByteCount(intCoder, Coder.Context.NESTED, new int[][] {{value}});
+    }
+
+    Coder<long[]> longCoder =
+        Sum.ofLongs().getAccumulatorCoder(STANDARD_REGISTRY, VarLongCoder.of());
+    for (long value : new long[] {0L, -1L, 300L, Long.MIN_VALUE}) {
+      byte[] encoded = CoderUtils.encodeToByteArray(VarLongCoder.of(), value);
+      assertArrayEquals(encoded, CoderUtils.encodeToByteArray(longCoder, new long[] {value}));
+      assertEquals(value, CoderUtils.decodeFromByteArray(longCoder, encoded)[0]);
+    }
+
+    Coder<double[]> doubleCoder =
+        Sum.ofDoubles().getAccumulatorCoder(STANDARD_REGISTRY, DoubleCoder.of());
+    for (double value : new double[] {0.0, -1.5, Double.NaN, Double.MAX_VALUE}) {
+      assertArrayEquals(
+          CoderUtils.encodeToByteArray(DoubleCoder.of(), value),
+          CoderUtils.encodeToByteArray(doubleCoder, new double[] {value}));
+    }
+  }
 }
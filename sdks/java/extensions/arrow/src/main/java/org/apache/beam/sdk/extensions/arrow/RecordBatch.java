@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.util.TransferPair;
+import org.apache.beam.sdk.coders.DefaultCoder;
+import org.apache.beam.sdk.schemas.Schema;
+
+/**
+ * A batch of rows stored in columnar form as a serialized Arrow record batch.
+ *
+ * <p>The batch is kept in the Arrow IPC streaming format on the Java heap, so instances are
+ * immutable and do not own any off-heap memory. Transforms that operate on the batch materialize
+ * it into a {@link VectorSchemaRoot} with {@link #open(BufferAllocator)}, process whole columns at
+ * a time, and release the Arrow buffers before returning.
+ */
+@DefaultCoder(RecordBatchCoder.class)
+public final class RecordBatch {
+  private static final BufferAllocator ALLOCATOR = new RootAllocator(Long.MAX_VALUE);
+
+  private final byte[] ipcBytes;
+  private final int rowCount;
+  private @Nullable Schema schema;
+
+  private RecordBatch(byte[] ipcBytes, int rowCount) {
+    this.ipcBytes = ipcBytes;
+    this.rowCount = rowCount;
+  }
+
+  /** Serializes the current contents of {@code vectorSchemaRoot} into a {@link RecordBatch}. */
+  public static RecordBatch of(VectorSchemaRoot vectorSchemaRoot) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ArrowStreamWriter writer =
+        new ArrowStreamWriter(
+            vectorSchemaRoot, new DictionaryProvider.MapDictionaryProvider(), out)) {
+      writer.start();
+      writer.writeBatch();
+      writer.end();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to serialize Arrow record batch", e);
+    }
+    return new RecordBatch(out.toByteArray(), vectorSchemaRoot.getRowCount());
+  }
+
+  /** Creates a {@link RecordBatch} from bytes in the Arrow IPC streaming format. */
+  static RecordBatch fromIpcBytes(byte[] ipcBytes, int rowCount) {
+    return new RecordBatch(ipcBytes, rowCount);
+  }
+
+  /** Returns the Arrow IPC streaming format representation of this batch. */
+  byte[] getIpcBytes() {
+    return ipcBytes;
+  }
+
+  /** Returns the number of rows in this batch. */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the Beam {@link Schema} of the rows in this batch. */
+  public Schema getSchema() {
+    Schema result = schema;
+    if (result == null) {
+      try {
+        result =
+            ArrowConversion.ArrowSchemaTranslator.toBeamSchema(
+                ArrowConversion.arrowSchemaFromInput(new ByteArrayInputStream(ipcBytes)));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to read Arrow schema", e);
+      }
+      schema = result;
+    }
+    return result;
+  }
+
+  /**
+   * Loads this batch into a new {@link VectorSchemaRoot} allocated from {@code allocator}. The
+   * caller owns the returned root and is responsible for closing it.
+   */
+  public VectorSchemaRoot open(BufferAllocator allocator) {
+    try (ArrowStreamReader reader =
+        new ArrowStreamReader(new ByteArrayInputStream(ipcBytes), allocator)) {
+      VectorSchemaRoot readerRoot = reader.getVectorSchemaRoot();
+      reader.loadNextBatch();
+      // The reader closes its root, so move the buffers to vectors owned by the caller.
+      List<FieldVector> vectors = new ArrayList<>(readerRoot.getFieldVectors().size());
+      for (FieldVector vector : readerRoot.getFieldVectors()) {
+        TransferPair transferPair = vector.getTransferPair(allocator);
+        transferPair.transfer();
+        vectors.add((FieldVector) transferPair.getTo());
+      }
+      return new VectorSchemaRoot(
+          readerRoot.getSchema().getFields(), vectors, readerRoot.getRowCount());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to deserialize Arrow record batch", e);
+    }
+  }
+
+  /** Like {@link #open(BufferAllocator)}, using a process-wide allocator. */
+  public VectorSchemaRoot open() {
+    return open(ALLOCATOR);
+  }
+
+  static BufferAllocator allocator() {
+    return ALLOCATOR;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RecordBatch)) {
+      return false;
+    }
+    RecordBatch that = (RecordBatch) o;
+    return rowCount == that.rowCount && Arrays.equals(ipcBytes, that.ipcBytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(ipcBytes);
+  }
+
+  @Override
+  public String toString() {
+    return "RecordBatch{rowCount=" + rowCount + ", bytes=" + ipcBytes.length + "}";
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.coders.CoderProvider;
+import org.apache.beam.sdk.coders.CoderProviders;
+import org.apache.beam.sdk.coders.DefaultCoder;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.TypeDescriptor;
+
+/**
+ * A {@link org.apache.beam.sdk.coders.Coder} for {@link RecordBatch}.
+ *
+ * <p>The encoding is the row count as a varint, followed by the length-prefixed Arrow IPC stream
+ * (schema message followed by a single record batch message).
+ */
+public class RecordBatchCoder extends AtomicCoder<RecordBatch> {
+  private static final RecordBatchCoder INSTANCE = new RecordBatchCoder();
+  private static final ByteArrayCoder BYTE_ARRAY_CODER = ByteArrayCoder.of();
+
+  public static RecordBatchCoder of() {
+    return INSTANCE;
+  }
+
+  /** Returns a {@link CoderProvider} used by {@link DefaultCoder} on {@link RecordBatch}. */
+  public static CoderProvider getCoderProvider() {
+    return CoderProviders.forCoder(TypeDescriptor.of(RecordBatch.class), INSTANCE);
+  }
+
+  private RecordBatchCoder() {}
+
+  @Override
+  public void encode(RecordBatch value, OutputStream outStream) throws IOException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null RecordBatch");
+    }
+    VarInt.encode(value.getRowCount(), outStream);
+    BYTE_ARRAY_CODER.encode(value.getIpcBytes(), outStream);
+  }
+
+  @Override
+  public RecordBatch decode(InputStream inStream) throws IOException {
+    int rowCount = VarInt.decodeInt(inStream);
+    return RecordBatch.fromIpcBytes(BYTE_ARRAY_CODER.decode(inStream), rowCount);
+  }
+
+  @Override
+  public void verifyDeterministic() {}
+
+  @Override
+  public boolean consistentWithEquals() {
+    return true;
+  }
+
+  @Override
+  public boolean isRegisterByteSizeObserverCheap(RecordBatch value) {
+    return true;
+  }
+
+  @Override
+  protected long getEncodedElementByteSize(RecordBatch value) throws Exception {
+    int length = value.getIpcBytes().length;
+    return VarInt.getLength(value.getRowCount()) + VarInt.getLength(length) + length;
+  }
+
+  @Override
+  public TypeDescriptor<RecordBatch> getEncodedTypeDescriptor() {
+    return TypeDescriptor.of(RecordBatch.class);
+  }
+}
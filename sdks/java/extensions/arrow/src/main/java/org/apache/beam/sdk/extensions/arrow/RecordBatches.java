@@ -0,0 +1,560 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.arrow.memory.util.ArrowBufPointer;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FloatingPointVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.FlatMapElements;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.transforms.Sum;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
+
+/**
+ * {@link PTransform}s that operate on {@link PCollection}s of {@link RecordBatch}es a column at a
+ * time.
+ *
+ * <p>Compared to the equivalent transforms in {@link org.apache.beam.sdk.schemas.transforms} these
+ * do not create a {@link Row} per element: {@link #select} only rearranges column buffers, {@link
+ * #filterLongs} and {@link #filterDoubles} evaluate their predicate on the primitive values of a
+ * single column and copy the selected positions of every other column in bulk, and the sum
+ * aggregations loop over primitive values.
+ *
+ * <p>The {@link PCollection}s of {@link RecordBatch}es returned by these transforms are encoded
+ * with {@link RecordBatchCoder}.
+ */
+public class RecordBatches {
+
+  private RecordBatches() {}
+
+  /** Returns a {@link PTransform} that keeps only the given columns, in the given order. */
+  public static Select select(String... fieldNames) {
+    return new Select(ImmutableList.copyOf(fieldNames));
+  }
+
+  /** A predicate on the values of an integer column. */
+  public interface LongPredicate extends Serializable {
+    boolean test(long value);
+  }
+
+  /** A predicate on the values of a floating-point column. */
+  public interface DoublePredicate extends Serializable {
+    boolean test(double value);
+  }
+
+  /**
+   * Returns a {@link PTransform} that keeps only the rows for which {@code predicate} returns true
+   * for the value of integer column {@code fieldName}. Rows where the column is null are dropped.
+   */
+  public static Filter filterLongs(String fieldName, LongPredicate predicate) {
+    return new Filter(fieldName, new LongColumnFilter(predicate));
+  }
+
+  /**
+   * Returns a {@link PTransform} that keeps only the rows for which {@code predicate} returns true
+   * for the value of floating-point column {@code fieldName}. Rows where the column is null are
+   * dropped.
+   */
+  public static Filter filterDoubles(String fieldName, DoublePredicate predicate) {
+    return new Filter(fieldName, new DoubleColumnFilter(predicate));
+  }
+
+  /**
+   * Returns a {@link PTransform} that keeps only the rows for which {@code predicate} returns true
+   * for the value of column {@code fieldName}. Values are passed to the predicate as returned by
+   * {@link FieldVector#getObject(int)}, which boxes every value; prefer {@link #filterLongs} or
+   * {@link #filterDoubles} for numeric columns.
+   */
+  public static <FieldT> Filter filter(
+      String fieldName, SerializableFunction<FieldT, Boolean> predicate) {
+    return new Filter(fieldName, new ObjectColumnFilter<>(predicate));
+  }
+
+  /** Returns a {@link PTransform} that sums an integer column over all batches. */
+  public static PTransform<PCollection<RecordBatch>, PCollection<Long>> sumLongs(
+      String fieldName) {
+    return new PTransform<PCollection<RecordBatch>, PCollection<Long>>() {
+      @Override
+      public PCollection<Long> expand(PCollection<RecordBatch> input) {
+        // Avoid capturing the enclosing transform in the serialized function.
+        String column = fieldName;
+        return input
+            .apply(
+                "SumBatches",
+                MapElements.into(TypeDescriptors.longs())
+                    .via(batch -> sumAsLong(batch, column)))
+            .apply("SumGlobally", Sum.longsGlobally());
+      }
+    };
+  }
+
+  /** Returns a {@link PTransform} that sums a floating-point column over all batches. */
+  public static PTransform<PCollection<RecordBatch>, PCollection<Double>> sumDoubles(
+      String fieldName) {
+    return new PTransform<PCollection<RecordBatch>, PCollection<Double>>() {
+      @Override
+      public PCollection<Double> expand(PCollection<RecordBatch> input) {
+        // Avoid capturing the enclosing transform in the serialized function.
+        String column = fieldName;
+        return input
+            .apply(
+                "SumBatches",
+                MapElements.into(TypeDescriptors.doubles())
+                    .via(batch -> sumAsDouble(batch, column)))
+            .apply("SumGlobally", Sum.doublesGlobally());
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link PTransform} that sums integer column {@code valueField} for each value of
+   * string column {@code keyField}. Each batch is pre-aggregated without materializing a key per
+   * row. Rows where either column is null are skipped.
+   */
+  public static PTransform<PCollection<RecordBatch>, PCollection<KV<String, Long>>> sumLongsPerKey(
+      String keyField, String valueField) {
+    return new PTransform<PCollection<RecordBatch>, PCollection<KV<String, Long>>>() {
+      @Override
+      public PCollection<KV<String, Long>> expand(PCollection<RecordBatch> input) {
+        // Avoid capturing the enclosing transform in the serialized function.
+        String keyColumn = keyField;
+        String valueColumn = valueField;
+        return input
+            .apply(
+                "SumBatchesPerKey",
+                FlatMapElements.into(
+                        TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.longs()))
+                    .via(batch -> sumAsLongPerKey(batch, keyColumn, valueColumn)))
+            .apply("SumPerKey", Sum.longsPerKey());
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link PTransform} that sums floating-point column {@code valueField} for each value
+   * of string column {@code keyField}. Each batch is pre-aggregated without materializing a key per
+   * row. Rows where either column is null are skipped.
+   */
+  public static PTransform<PCollection<RecordBatch>, PCollection<KV<String, Double>>>
+      sumDoublesPerKey(String keyField, String valueField) {
+    return new PTransform<PCollection<RecordBatch>, PCollection<KV<String, Double>>>() {
+      @Override
+      public PCollection<KV<String, Double>> expand(PCollection<RecordBatch> input) {
+        // Avoid capturing the enclosing transform in the serialized function.
+        String keyColumn = keyField;
+        String valueColumn = valueField;
+        return input
+            .apply(
+                "SumBatchesPerKey",
+                FlatMapElements.into(
+                        TypeDescriptors.kvs(TypeDescriptors.strings(), TypeDescriptors.doubles()))
+                    .via(batch -> sumAsDoublePerKey(batch, keyColumn, valueColumn)))
+            .apply("SumPerKey", Sum.doublesPerKey());
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link PTransform} that converts each {@link RecordBatch} to its rows. The schema
+   * must match the schema of the batches.
+   */
+  public static ToRows toRows(Schema schema) {
+    return new ToRows(schema);
+  }
+
+  /** Implementation of {@link #select}. */
+  public static class Select
+      extends PTransform<PCollection<RecordBatch>, PCollection<RecordBatch>> {
+    private final List<String> fieldNames;
+
+    private Select(List<String> fieldNames) {
+      this.fieldNames = fieldNames;
+    }
+
+    @Override
+    public PCollection<RecordBatch> expand(PCollection<RecordBatch> input) {
+      List<String> fieldNames = this.fieldNames;
+      return input
+          .apply(
+              MapElements.into(TypeDescriptor.of(RecordBatch.class))
+                  .via(batch -> select(batch, fieldNames)))
+          .setCoder(RecordBatchCoder.of());
+    }
+  }
+
+  /** Implementation of {@link #filterLongs}, {@link #filterDoubles} and {@link #filter}. */
+  public static class Filter
+      extends PTransform<PCollection<RecordBatch>, PCollection<RecordBatch>> {
+    private final String fieldName;
+    private final ColumnFilter columnFilter;
+
+    private Filter(String fieldName, ColumnFilter columnFilter) {
+      this.fieldName = fieldName;
+      this.columnFilter = columnFilter;
+    }
+
+    @Override
+    public PCollection<RecordBatch> expand(PCollection<RecordBatch> input) {
+      return input
+          .apply(ParDo.of(new FilterFn(fieldName, columnFilter)))
+          .setCoder(RecordBatchCoder.of());
+    }
+  }
+
+  private static class FilterFn extends DoFn<RecordBatch, RecordBatch> {
+    private final String fieldName;
+    private final ColumnFilter columnFilter;
+
+    FilterFn(String fieldName, ColumnFilter columnFilter) {
+      this.fieldName = fieldName;
+      this.columnFilter = columnFilter;
+    }
+
+    @ProcessElement
+    public void processElement(@Element RecordBatch batch, OutputReceiver<RecordBatch> out) {
+      RecordBatch filtered = filter(batch, fieldName, columnFilter);
+      // Don't emit empty batches.
+      if (filtered.getRowCount() > 0) {
+        out.output(filtered);
+      }
+    }
+  }
+
+  /** Implementation of {@link #toRows}. */
+  public static class ToRows extends PTransform<PCollection<RecordBatch>, PCollection<Row>> {
+    private final Schema schema;
+
+    private ToRows(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public PCollection<Row> expand(PCollection<RecordBatch> input) {
+      return input.apply(ParDo.of(new ToRowsFn(schema))).setRowSchema(schema);
+    }
+  }
+
+  private static class ToRowsFn extends DoFn<RecordBatch, Row> {
+    private final Schema schema;
+
+    ToRowsFn(Schema schema) {
+      this.schema = schema;
+    }
+
+    @ProcessElement
+    public void processElement(@Element RecordBatch batch, OutputReceiver<Row> out) {
+      try (VectorSchemaRoot root = batch.open()) {
+        ArrowConversion.RecordBatchRowIterator rows =
+            ArrowConversion.rowsFromRecordBatch(schema, root);
+        while (rows.hasNext()) {
+          // The rows returned by the iterator read from the vectors, so copy the values out before
+          // the vectors are released.
+          Row view = rows.next();
+          Row.Builder builder = Row.withSchema(schema);
+          for (int i = 0; i < schema.getFieldCount(); ++i) {
+            builder.addValue(view.getValue(i));
+          }
+          out.output(builder.build());
+        }
+      }
+    }
+  }
+
+  static RecordBatch select(RecordBatch batch, List<String> fieldNames) {
+    try (VectorSchemaRoot root = batch.open()) {
+      List<Field> fields = new ArrayList<>(fieldNames.size());
+      List<FieldVector> vectors = new ArrayList<>(fieldNames.size());
+      for (String fieldName : fieldNames) {
+        FieldVector vector = getVector(root, fieldName);
+        fields.add(vector.getField());
+        vectors.add(vector);
+      }
+      // The projected root shares its buffers with root, which releases them.
+      return RecordBatch.of(new VectorSchemaRoot(fields, vectors, root.getRowCount()));
+    }
+  }
+
+  /**
+   * Selects the rows of a column to keep. Implementations check the type of the column once and
+   * then loop over its values with the accessors of that type.
+   */
+  private interface ColumnFilter extends Serializable {
+    /**
+     * Stores the positions of the rows to keep in ascending order at the start of {@code selected}
+     * and returns their number.
+     */
+    int select(String fieldName, FieldVector column, int rowCount, int[] selected);
+  }
+
+  private static class LongColumnFilter implements ColumnFilter {
+    private final LongPredicate predicate;
+
+    LongColumnFilter(LongPredicate predicate) {
+      this.predicate = predicate;
+    }
+
+    @Override
+    public int select(String fieldName, FieldVector column, int rowCount, int[] selected) {
+      BaseIntVector ints = asIntVector(fieldName, column);
+      int selectedCount = 0;
+      for (int i = 0; i < rowCount; ++i) {
+        if (!column.isNull(i) && predicate.test(ints.getValueAsLong(i))) {
+          selected[selectedCount++] = i;
+        }
+      }
+      return selectedCount;
+    }
+  }
+
+  private static class DoubleColumnFilter implements ColumnFilter {
+    private final DoublePredicate predicate;
+
+    DoubleColumnFilter(DoublePredicate predicate) {
+      this.predicate = predicate;
+    }
+
+    @Override
+    public int select(String fieldName, FieldVector column, int rowCount, int[] selected) {
+      FloatingPointVector doubles = asFloatingPointVector(fieldName, column);
+      int selectedCount = 0;
+      for (int i = 0; i < rowCount; ++i) {
+        if (!column.isNull(i) && predicate.test(doubles.getValueAsDouble(i))) {
+          selected[selectedCount++] = i;
+        }
+      }
+      return selectedCount;
+    }
+  }
+
+  private static class ObjectColumnFilter<FieldT> implements ColumnFilter {
+    private final SerializableFunction<FieldT, Boolean> predicate;
+
+    ObjectColumnFilter(SerializableFunction<FieldT, Boolean> predicate) {
+      this.predicate = predicate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int select(String fieldName, FieldVector column, int rowCount, int[] selected) {
+      int selectedCount = 0;
+      for (int i = 0; i < rowCount; ++i) {
+        if (Boolean.TRUE.equals(predicate.apply((FieldT) column.getObject(i)))) {
+          selected[selectedCount++] = i;
+        }
+      }
+      return selectedCount;
+    }
+  }
+
+  static RecordBatch filterLongs(RecordBatch batch, String fieldName, LongPredicate predicate) {
+    return filter(batch, fieldName, new LongColumnFilter(predicate));
+  }
+
+  static RecordBatch filterDoubles(
+      RecordBatch batch, String fieldName, DoublePredicate predicate) {
+    return filter(batch, fieldName, new DoubleColumnFilter(predicate));
+  }
+
+  static <FieldT> RecordBatch filter(
+      RecordBatch batch, String fieldName, SerializableFunction<FieldT, Boolean> predicate) {
+    return filter(batch, fieldName, new ObjectColumnFilter<>(predicate));
+  }
+
+  private static RecordBatch filter(
+      RecordBatch batch, String fieldName, ColumnFilter columnFilter) {
+    try (VectorSchemaRoot root = batch.open()) {
+      FieldVector column = getVector(root, fieldName);
+      int rowCount = root.getRowCount();
+      int[] selected = new int[rowCount];
+      int selectedCount = columnFilter.select(fieldName, column, rowCount, selected);
+      if (selectedCount == rowCount) {
+        return batch;
+      }
+
+      try (VectorSchemaRoot result =
+          VectorSchemaRoot.create(root.getSchema(), RecordBatch.allocator())) {
+        result.allocateNew();
+        for (int vectorIdx = 0; vectorIdx < root.getFieldVectors().size(); ++vectorIdx) {
+          FieldVector from = root.getVector(vectorIdx);
+          FieldVector to = result.getVector(vectorIdx);
+          for (int i = 0; i < selectedCount; ++i) {
+            to.copyFromSafe(selected[i], i, from);
+          }
+        }
+        result.setRowCount(selectedCount);
+        return RecordBatch.of(result);
+      }
+    }
+  }
+
+  static long sumAsLong(RecordBatch batch, String fieldName) {
+    try (VectorSchemaRoot root = batch.open()) {
+      FieldVector column = getVector(root, fieldName);
+      BaseIntVector ints = asIntVector(fieldName, column);
+      long sum = 0;
+      for (int i = 0; i < root.getRowCount(); ++i) {
+        if (!column.isNull(i)) {
+          sum += ints.getValueAsLong(i);
+        }
+      }
+      return sum;
+    }
+  }
+
+  static double sumAsDouble(RecordBatch batch, String fieldName) {
+    try (VectorSchemaRoot root = batch.open()) {
+      FieldVector column = getVector(root, fieldName);
+      FloatingPointVector doubles = asFloatingPointVector(fieldName, column);
+      double sum = 0;
+      for (int i = 0; i < root.getRowCount(); ++i) {
+        if (!column.isNull(i)) {
+          sum += doubles.getValueAsDouble(i);
+        }
+      }
+      return sum;
+    }
+  }
+
+  static List<KV<String, Long>> sumAsLongPerKey(
+      RecordBatch batch, String keyField, String valueField) {
+    try (VectorSchemaRoot root = batch.open()) {
+      VarCharVector keys = asVarCharVector(keyField, getVector(root, keyField));
+      FieldVector column = getVector(root, valueField);
+      BaseIntVector ints = asIntVector(valueField, column);
+      // Keys point into the buffers of the key column, so a string is only created per distinct
+      // key.
+      Map<ArrowBufPointer, long[]> sums = new HashMap<>();
+      ArrowBufPointer key = new ArrowBufPointer();
+      for (int i = 0; i < root.getRowCount(); ++i) {
+        if (keys.isNull(i) || column.isNull(i)) {
+          continue;
+        }
+        keys.getDataPointer(i, key);
+        long[] sum = sums.get(key);
+        if (sum == null) {
+          sum = new long[1];
+          sums.put(key, sum);
+          key = new ArrowBufPointer();
+        }
+        sum[0] += ints.getValueAsLong(i);
+      }
+      List<KV<String, Long>> result = new ArrayList<>(sums.size());
+      for (Map.Entry<ArrowBufPointer, long[]> entry : sums.entrySet()) {
+        result.add(KV.of(decodeString(entry.getKey()), entry.getValue()[0]));
+      }
+      return result;
+    }
+  }
+
+  static List<KV<String, Double>> sumAsDoublePerKey(
+      RecordBatch batch, String keyField, String valueField) {
+    try (VectorSchemaRoot root = batch.open()) {
+      VarCharVector keys = asVarCharVector(keyField, getVector(root, keyField));
+      FieldVector column = getVector(root, valueField);
+      FloatingPointVector doubles = asFloatingPointVector(valueField, column);
+      // Keys point into the buffers of the key column, so a string is only created per distinct
+      // key.
+      Map<ArrowBufPointer, double[]> sums = new HashMap<>();
+      ArrowBufPointer key = new ArrowBufPointer();
+      for (int i = 0; i < root.getRowCount(); ++i) {
+        if (keys.isNull(i) || column.isNull(i)) {
+          continue;
+        }
+        keys.getDataPointer(i, key);
+        double[] sum = sums.get(key);
+        if (sum == null) {
+          sum = new double[1];
+          sums.put(key, sum);
+          key = new ArrowBufPointer();
+        }
+        sum[0] += doubles.getValueAsDouble(i);
+      }
+      List<KV<String, Double>> result = new ArrayList<>(sums.size());
+      for (Map.Entry<ArrowBufPointer, double[]> entry : sums.entrySet()) {
+        result.add(KV.of(decodeString(entry.getKey()), entry.getValue()[0]));
+      }
+      return result;
+    }
+  }
+
+  private static String decodeString(ArrowBufPointer pointer) {
+    byte[] bytes = new byte[(int) pointer.getLength()];
+    pointer.getBuf().getBytes(pointer.getOffset(), bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static BaseIntVector asIntVector(String fieldName, FieldVector column) {
+    checkArgument(
+        column instanceof BaseIntVector,
+        "Field %s has type %s, expected an integer type",
+        fieldName,
+        column.getField().getType());
+    return (BaseIntVector) column;
+  }
+
+  private static FloatingPointVector asFloatingPointVector(String fieldName, FieldVector column) {
+    checkArgument(
+        column instanceof FloatingPointVector,
+        "Field %s has type %s, expected a floating-point type",
+        fieldName,
+        column.getField().getType());
+    return (FloatingPointVector) column;
+  }
+
+  private static VarCharVector asVarCharVector(String fieldName, FieldVector column) {
+    checkArgument(
+        column instanceof VarCharVector,
+        "Field %s has type %s, expected a string type",
+        fieldName,
+        column.getField().getType());
+    return (VarCharVector) column;
+  }
+
+  private static FieldVector getVector(VectorSchemaRoot root, String fieldName) {
+    FieldVector vector = root.getVector(fieldName);
+    checkArgument(
+        vector != null,
+        "Unknown field %s, expected one of %s",
+        fieldName,
+        Arrays.toString(root.getSchema().getFields().toArray()));
+    return vector;
+  }
+}
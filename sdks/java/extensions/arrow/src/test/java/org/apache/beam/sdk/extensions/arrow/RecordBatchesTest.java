@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.util.Text;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TypeDescriptors;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RecordBatchesTest {
+  private static final int ROW_COUNT = 10;
+  private static final Schema SCHEMA =
+      Schema.builder().addInt64Field("id").addDoubleField("score").addStringField("name").build();
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  private BufferAllocator allocator;
+  private RecordBatch batch;
+
+  @Before
+  public void init() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    batch = batchOf(0, ROW_COUNT);
+  }
+
+  /** Returns a batch of {@code rowCount} rows with consecutive ids starting at {@code firstId}. */
+  private RecordBatch batchOf(int firstId, int rowCount) {
+    List<String> names = new ArrayList<>(rowCount);
+    for (int i = 0; i < rowCount; i++) {
+      names.add("name" + (firstId + i));
+    }
+    return batchOf(firstId, names);
+  }
+
+  /** Returns a batch with the given names and consecutive ids starting at {@code firstId}. */
+  private RecordBatch batchOf(int firstId, List<String> names) {
+    int rowCount = names.size();
+    org.apache.arrow.vector.types.pojo.Schema schema =
+        new org.apache.arrow.vector.types.pojo.Schema(
+            asList(
+                field("id", new ArrowType.Int(64, true)),
+                field("score", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("name", new ArrowType.Utf8())));
+    try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+      root.allocateNew();
+      BigIntVector ids = (BigIntVector) root.getVector("id");
+      Float8Vector scores = (Float8Vector) root.getVector("score");
+      VarCharVector nameVector = (VarCharVector) root.getVector("name");
+      for (int i = 0; i < rowCount; i++) {
+        int id = firstId + i;
+        ids.setSafe(i, id);
+        scores.setSafe(i, id * .5);
+        nameVector.setSafe(i, new Text(names.get(i)));
+      }
+      root.setRowCount(rowCount);
+      return RecordBatch.of(root);
+    }
+  }
+
+  private static Row row(long id) {
+    return Row.withSchema(SCHEMA).addValues(id, id * .5, "name" + id).build();
+  }
+
+  @After
+  public void teardown() {
+    allocator.close();
+  }
+
+  @Test
+  public void testCoder() throws Exception {
+    CoderProperties.coderDecodeEncodeEqual(RecordBatchCoder.of(), batch);
+    CoderProperties.coderDeterministic(RecordBatchCoder.of(), batch, batch);
+  }
+
+  @Test
+  public void testSchema() {
+    assertThat(batch.getSchema(), equalTo(SCHEMA));
+  }
+
+  @Test
+  public void testSelect() {
+    RecordBatch selected = RecordBatches.select(batch, ImmutableList.of("name", "id"));
+
+    assertThat(selected.getRowCount(), equalTo(ROW_COUNT));
+    assertThat(
+        selected.getSchema(),
+        equalTo(Schema.builder().addStringField("name").addInt64Field("id").build()));
+    try (VectorSchemaRoot root = selected.open(allocator)) {
+      assertThat(root.getVector("name").getObject(3), equalTo(new Text("name3")));
+      assertThat(root.getVector("id").getObject(3), equalTo(3L));
+    }
+  }
+
+  @Test
+  public void testFilter() {
+    RecordBatch filtered = RecordBatches.filterLongs(batch, "id", id -> id % 3 == 0);
+
+    assertThat(filtered.getRowCount(), equalTo(4));
+    try (VectorSchemaRoot root = filtered.open(allocator)) {
+      assertThat(root.getVector("id").getObject(1), equalTo(3L));
+      assertThat(root.getVector("score").getObject(2), equalTo(3.0));
+      assertThat(root.getVector("name").getObject(3), equalTo(new Text("name9")));
+    }
+  }
+
+  @Test
+  public void testFilterDoubles() {
+    RecordBatch filtered = RecordBatches.filterDoubles(batch, "score", score -> score >= 4.0);
+
+    assertThat(filtered.getRowCount(), equalTo(2));
+    try (VectorSchemaRoot root = filtered.open(allocator)) {
+      assertThat(root.getVector("id").getObject(0), equalTo(8L));
+      assertThat(root.getVector("name").getObject(1), equalTo(new Text("name9")));
+    }
+  }
+
+  @Test
+  public void testFilterObjects() {
+    RecordBatch filtered =
+        RecordBatches.filter(batch, "name", (Text name) -> name.toString().endsWith("7"));
+
+    assertThat(filtered.getRowCount(), equalTo(1));
+    try (VectorSchemaRoot root = filtered.open(allocator)) {
+      assertThat(root.getVector("id").getObject(0), equalTo(7L));
+    }
+  }
+
+  @Test
+  public void testFilterAllRows() {
+    assertThat(RecordBatches.filterLongs(batch, "id", id -> true), equalTo(batch));
+    assertThat(RecordBatches.filterLongs(batch, "id", id -> false).getRowCount(), equalTo(0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFilterWrongType() {
+    RecordBatches.filterDoubles(batch, "id", score -> true);
+  }
+
+  @Test
+  public void testSum() {
+    assertThat(RecordBatches.sumAsLong(batch, "id"), equalTo(45L));
+    assertThat(RecordBatches.sumAsDouble(batch, "score"), equalTo(22.5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSumWrongType() {
+    RecordBatches.sumAsLong(batch, "name");
+  }
+
+  @Test
+  public void testSumPerKey() {
+    RecordBatch keyed = batchOf(0, ImmutableList.of("a", "b", "a", "c", "a", "b"));
+
+    assertThat(
+        RecordBatches.sumAsLongPerKey(keyed, "name", "id"),
+        containsInAnyOrder(KV.of("a", 6L), KV.of("b", 6L), KV.of("c", 3L)));
+    assertThat(
+        RecordBatches.sumAsDoublePerKey(keyed, "name", "score"),
+        containsInAnyOrder(KV.of("a", 3.0), KV.of("b", 3.0), KV.of("c", 1.5)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSumPerKeyWrongKeyType() {
+    RecordBatches.sumAsLongPerKey(batch, "id", "id");
+  }
+
+  @Test
+  public void testSumPerKeyAcrossBatches() {
+    PCollection<RecordBatch> batches =
+        pipeline.apply(
+            Create.of(
+                batchOf(0, ImmutableList.of("a", "b", "a")),
+                batchOf(3, ImmutableList.of("b", "c")),
+                batchOf(5, ImmutableList.<String>of())));
+
+    PAssert.that(batches.apply(RecordBatches.sumLongsPerKey("name", "id")))
+        .containsInAnyOrder(KV.of("a", 2L), KV.of("b", 4L), KV.of("c", 4L));
+    PAssert.that(batches.apply(RecordBatches.sumDoublesPerKey("name", "score")))
+        .containsInAnyOrder(KV.of("a", 1.0), KV.of("b", 2.0), KV.of("c", 2.0));
+    pipeline.run();
+  }
+
+  @Test
+  public void testTransformsOfEmptyInput() {
+    PCollection<RecordBatch> batches = pipeline.apply(Create.empty(RecordBatchCoder.of()));
+
+    PAssert.that(batches.apply(RecordBatches.toRows(SCHEMA))).empty();
+    PCollection<RecordBatch> filtered = batches.apply(RecordBatches.filterLongs("id", id -> true));
+    PCollection<RecordBatch> selected = batches.apply(RecordBatches.select("name"));
+    assertThat(filtered.getCoder(), equalTo(RecordBatchCoder.of()));
+    assertThat(selected.getCoder(), equalTo(RecordBatchCoder.of()));
+    PAssert.that(filtered).empty();
+    PAssert.that(selected).empty();
+    PAssert.that(batches.apply(RecordBatches.sumLongs("id"))).containsInAnyOrder(0L);
+    PAssert.that(batches.apply(RecordBatches.sumDoubles("score"))).containsInAnyOrder(0.0);
+    PAssert.that(batches.apply(RecordBatches.sumLongsPerKey("name", "id"))).empty();
+    pipeline.run();
+  }
+
+  @Test
+  public void testTransformsAtBatchSizeBoundaries() {
+    // An empty batch, a batch of a single row, and a full batch.
+    PCollection<RecordBatch> batches =
+        pipeline.apply(Create.of(batchOf(0, 0), batchOf(0, 1), batchOf(1, ROW_COUNT)));
+
+    List<Row> expectedRows = new ArrayList<>();
+    for (int id = 0; id <= ROW_COUNT; id++) {
+      expectedRows.add(row(id));
+    }
+    PAssert.that(batches.apply(RecordBatches.toRows(SCHEMA))).containsInAnyOrder(expectedRows);
+    // Batches that keep all of their rows are passed through, those that keep none are dropped.
+    PAssert.that(
+            batches
+                .apply(RecordBatches.filterLongs("id", id -> id < 1))
+                .apply(
+                    MapElements.into(TypeDescriptors.integers()).via(RecordBatch::getRowCount)))
+        .containsInAnyOrder(1);
+    PAssert.that(
+            batches
+                .apply(RecordBatches.select("id"))
+                .apply(
+                    MapElements.into(TypeDescriptors.integers()).via(RecordBatch::getRowCount)))
+        .containsInAnyOrder(0, 1, ROW_COUNT);
+    PAssert.that(batches.apply(RecordBatches.sumLongs("id"))).containsInAnyOrder(55L);
+    pipeline.run();
+  }
+
+  private static Field field(String name, ArrowType type) {
+    return new Field(name, new FieldType(false, type, null, null), Collections.emptyList());
+  }
+}
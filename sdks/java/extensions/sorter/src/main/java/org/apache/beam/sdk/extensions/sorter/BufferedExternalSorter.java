@@ -23,6 +23,7 @@ import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Pr
 import java.io.IOException;
 import java.io.Serializable;
 import org.apache.beam.sdk.extensions.sorter.ExternalSorter.Options.SorterType;
+import org.apache.beam.sdk.transforms.SerializableComparator;
 import org.apache.beam.sdk.values.KV;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -32,7 +33,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  */
 public class BufferedExternalSorter implements Sorter {
   public static Options options() {
-    return new Options("/tmp", 100, SorterType.HADOOP);
+    return new Options("/tmp", 100, SorterType.HADOOP, null);
   }
 
   /** Contains configuration for the sorter. */
@@ -40,12 +41,18 @@ public class BufferedExternalSorter implements Sorter {
     private final String tempLocation;
     private final int memoryMB;
     private final SorterType sorterType;
+    private final @Nullable SerializableComparator<byte[]> keyComparator;
 
-    private Options(String tempLocation, int memoryMB, SorterType sorterType) {
+    private Options(
+        String tempLocation,
+        int memoryMB,
+        SorterType sorterType,
+        @Nullable SerializableComparator<byte[]> keyComparator) {
       checkMemoryMB(memoryMB, sorterType);
       this.tempLocation = tempLocation;
       this.memoryMB = memoryMB;
       this.sorterType = sorterType;
+      this.keyComparator = keyComparator;
     }
 
     /** Sets the path to a temporary location where the sorter writes intermediate files. */
@@ -54,7 +61,7 @@ public class BufferedExternalSorter implements Sorter {
           !tempLocation.startsWith("gs://"),
           "BufferedExternalSorter does not support GCS temporary location");
 
-      return new Options(tempLocation, memoryMB, sorterType);
+      return new Options(tempLocation, memoryMB, sorterType, keyComparator);
     }
 
     /** Returns the configured temporary location. */
@@ -68,7 +75,7 @@ public class BufferedExternalSorter implements Sorter {
      * less than 2048 if sorter type is Hadoop.
      */
     public Options withMemoryMB(int memoryMB) {
-      return new Options(tempLocation, memoryMB, sorterType);
+      return new Options(tempLocation, memoryMB, sorterType, keyComparator);
     }
 
     /** Returns the configured size of the memory buffer. */
@@ -78,7 +85,7 @@ public class BufferedExternalSorter implements Sorter {
 
     /** Sets the external sorter type. */
     public Options withExternalSorterType(SorterType sorterType) {
-      return new Options(tempLocation, memoryMB, sorterType);
+      return new Options(tempLocation, memoryMB, sorterType, keyComparator);
     }
 
     /** Returns the external sorter type. */
@@ -86,6 +93,20 @@ public class BufferedExternalSorter implements Sorter {
       return sorterType;
     }
 
+    /**
+     * Sets the comparator used to order the encoded keys, for example an {@link
+     * org.apache.beam.sdk.coders.EncodedKeyComparator} to sort keys by their decoded values. Keys
+     * are compared in unsigned lexicographic order by default.
+     */
+    public Options withKeyComparator(SerializableComparator<byte[]> keyComparator) {
+      return new Options(tempLocation, memoryMB, sorterType, keyComparator);
+    }
+
+    /** Returns the configured key comparator, or {@code null} for unsigned lexicographic order. */
+    public @Nullable SerializableComparator<byte[]> getKeyComparator() {
+      return keyComparator;
+    }
+
     private static void checkMemoryMB(int memoryMB, SorterType sorterType) {
       checkArgument(memoryMB > 0, "memoryMB must be greater than zero");
       if (sorterType == SorterType.HADOOP) {
@@ -111,9 +132,11 @@ public class BufferedExternalSorter implements Sorter {
     externalSorterOptions.setTempLocation(options.getTempLocation());
     externalSorterOptions.setSorterType(options.getExternalSorterType());
     externalSorterOptions.setMemoryMB(options.getMemoryMB());
+    externalSorterOptions.setKeyComparator(options.getKeyComparator());
 
     InMemorySorter.Options inMemorySorterOptions = new InMemorySorter.Options();
     inMemorySorterOptions.setMemoryMB(options.getMemoryMB());
+    inMemorySorterOptions.setKeyComparator(options.getKeyComparator());
 
     return new BufferedExternalSorter(
         ExternalSorter.create(externalSorterOptions), InMemorySorter.create(inMemorySorterOptions));
@@ -20,6 +20,8 @@ package org.apache.beam.sdk.extensions.sorter;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
 
 import java.io.Serializable;
+import org.apache.beam.sdk.transforms.SerializableComparator;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Does an external sort of the provided values. */
 public abstract class ExternalSorter implements Sorter {
@@ -30,6 +32,7 @@ public abstract class ExternalSorter implements Sorter {
     private String tempLocation = "/tmp";
     private int memoryMB = 100;
     private SorterType sorterType = SorterType.HADOOP;
+    private @Nullable SerializableComparator<byte[]> keyComparator = null;
 
     /** Sorter type. */
     public enum SorterType {
@@ -79,6 +82,20 @@ public abstract class ExternalSorter implements Sorter {
       return sorterType;
     }
 
+    /**
+     * Sets the comparator used to order the encoded keys, or {@code null} for unsigned
+     * lexicographic order.
+     */
+    public Options setKeyComparator(@Nullable SerializableComparator<byte[]> keyComparator) {
+      this.keyComparator = keyComparator;
+      return this;
+    }
+
+    /** Returns the configured key comparator, or {@code null} for unsigned lexicographic order. */
+    public @Nullable SerializableComparator<byte[]> getKeyComparator() {
+      return keyComparator;
+    }
+
     private void checkMemoryMB() {
       checkArgument(memoryMB > 0, "memoryMB must be greater than zero");
       if (getSorterType() == SorterType.HADOOP) {
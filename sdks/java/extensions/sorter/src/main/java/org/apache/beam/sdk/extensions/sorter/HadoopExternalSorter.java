@@ -25,13 +25,17 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import org.apache.beam.sdk.coders.EncodedKeyComparator;
 import org.apache.beam.sdk.values.KV;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.io.SequenceFile.Sorter.RawKeyValueIterator;
@@ -124,10 +128,13 @@ class HadoopExternalSorter extends ExternalSorter {
   private SequenceFile.Sorter getSorter() throws IOException {
     if (sorter == null) {
       FileSystem fs = FileSystem.getLocal(getConf());
+      Comparator<byte[]> keyComparator = options.getKeyComparator();
       sorter =
           new SequenceFile.Sorter(
               fs,
-              new BytesWritable.Comparator(),
+              keyComparator == null
+                  ? new BytesWritable.Comparator()
+                  : new KeyComparator(keyComparator),
               BytesWritable.class,
               BytesWritable.class,
               getConf());
@@ -136,6 +143,38 @@ class HadoopExternalSorter extends ExternalSorter {
     return sorter;
   }
 
+  /**
+   * A {@link RawComparator} applying a comparator of encoded keys to the serialized form of
+   * {@link BytesWritable}, which prefixes the key with its 4 byte length.
+   */
+  private static class KeyComparator implements RawComparator<BytesWritable> {
+    private static final int LENGTH_BYTES = 4;
+
+    private final Comparator<byte[]> keyComparator;
+
+    KeyComparator(Comparator<byte[]> keyComparator) {
+      this.keyComparator = keyComparator;
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      if (keyComparator instanceof EncodedKeyComparator) {
+        // Compares in place without copying the keys.
+        return ((EncodedKeyComparator) keyComparator)
+            .compare(
+                b1, s1 + LENGTH_BYTES, l1 - LENGTH_BYTES, b2, s2 + LENGTH_BYTES, l2 - LENGTH_BYTES);
+      }
+      return keyComparator.compare(
+          Arrays.copyOfRange(b1, s1 + LENGTH_BYTES, s1 + l1),
+          Arrays.copyOfRange(b2, s2 + LENGTH_BYTES, s2 + l2));
+    }
+
+    @Override
+    public int compare(BytesWritable o1, BytesWritable o2) {
+      return keyComparator.compare(o1.copyBytes(), o2.copyBytes());
+    }
+  }
+
   /** An {@link Iterable} producing the iterators over sorted data. */
   private class SortedRecordsIterable implements Iterable<KV<byte[], byte[]>> {
     @Override
@@ -24,8 +24,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import org.apache.beam.sdk.transforms.SerializableComparator;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.primitives.UnsignedBytes;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +46,7 @@ class InMemorySorter implements Sorter {
   /** {@code Options} contains configuration of the sorter. */
   public static class Options implements Serializable {
     private long memoryMB = 100;
+    private @Nullable SerializableComparator<byte[]> keyComparator = null;
 
     /** Sets the size of the memory buffer in megabytes. */
     public void setMemoryMB(long memoryMB) {
@@ -55,10 +58,24 @@ class InMemorySorter implements Sorter {
     public long getMemoryMB() {
       return memoryMB;
     }
+
+    /**
+     * Sets the comparator used to order the encoded keys, or {@code null} for unsigned
+     * lexicographic order.
+     */
+    public void setKeyComparator(@Nullable SerializableComparator<byte[]> keyComparator) {
+      this.keyComparator = keyComparator;
+    }
+
+    /** Returns the configured key comparator, or {@code null} for unsigned lexicographic order. */
+    public @Nullable SerializableComparator<byte[]> getKeyComparator() {
+      return keyComparator;
+    }
   }
 
-  /** The comparator to use to sort the records by key. */
-  private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+  /** The default comparator to use to sort the records by key. */
+  private static final Comparator<byte[]> DEFAULT_COMPARATOR =
+      UnsignedBytes.lexicographicalComparator();
 
   /** How many bytes per word in the running JVM. Assumes 64 bit/8 bytes if unknown. */
   private static final long NUM_BYTES_PER_WORD = getNumBytesPerWord();
@@ -79,6 +96,9 @@ class InMemorySorter implements Sorter {
   /** Maximum size of the buffer in bytes. */
   private final long maxBufferSize;
 
+  /** The comparator to use to sort the records by key. */
+  private final Comparator<byte[]> comparator;
+
   /** Current number of stored bytes. Including estimated overhead bytes. */
   private long numBytes;
 
@@ -91,6 +111,8 @@ class InMemorySorter implements Sorter {
   /** Private constructor. */
   private InMemorySorter(Options options) {
     maxBufferSize = options.getMemoryMB() * 1024L * 1024L;
+    Comparator<byte[]> keyComparator = options.getKeyComparator();
+    comparator = keyComparator == null ? DEFAULT_COMPARATOR : keyComparator;
   }
 
   /** Create a new sorter from provided options. */
@@ -124,7 +146,7 @@ class InMemorySorter implements Sorter {
     sortCalled = true;
 
     Comparator<KV<byte[], byte[]>> kvComparator =
-        (o1, o2) -> COMPARATOR.compare(o1.getKey(), o2.getKey());
+        (o1, o2) -> comparator.compare(o1.getKey(), o2.getKey());
     records.sort(kvComparator);
     return Collections.unmodifiableList(records);
   }
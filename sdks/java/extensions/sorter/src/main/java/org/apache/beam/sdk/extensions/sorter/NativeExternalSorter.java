@@ -20,7 +20,9 @@ package org.apache.beam.sdk.extensions.sorter;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import org.apache.beam.sdk.values.KV;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
@@ -61,9 +63,13 @@ class NativeExternalSorter extends ExternalSorter {
    */
   private NativeFileSorter getSorter() throws IOException {
     if (sorter == null) {
+      Path tempDir = Paths.get(options.getTempLocation());
+      long maxMemory = (long) options.getMemoryMB() * 1024 * 1024;
+      Comparator<byte[]> keyComparator = options.getKeyComparator();
       sorter =
-          new NativeFileSorter(
-              Paths.get(options.getTempLocation()), (long) options.getMemoryMB() * 1024 * 1024);
+          keyComparator == null
+              ? new NativeFileSorter(tempDir, maxMemory)
+              : new NativeFileSorter(tempDir, maxMemory, keyComparator);
     }
     return sorter;
   }
@@ -55,22 +55,29 @@ class NativeFileSorter {
   private static final int MAX_TEMP_FILES = 1024;
   private static final long OBJECT_OVERHEAD = getObjectOverhead();
 
-  private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
-  private static final Comparator<KV<byte[], byte[]>> KV_COMPARATOR =
-      (x, y) -> COMPARATOR.compare(x.getKey(), y.getKey());
+  private static final Comparator<byte[]> DEFAULT_COMPARATOR =
+      UnsignedBytes.lexicographicalComparator();
   private static final ByteArrayCoder CODER = ByteArrayCoder.of();
 
   private final Path tempDir;
   private final long maxMemory;
+  private final Comparator<KV<byte[], byte[]>> kvComparator;
   private final File dataFile;
   private final OutputStream dataStream;
 
   private boolean sortCalled = false;
 
-  /** Create a new file sorter. */
+  /** Create a new file sorter ordering keys in unsigned lexicographic order. */
   public NativeFileSorter(Path tempDir, long maxMemory) throws IOException {
+    this(tempDir, maxMemory, DEFAULT_COMPARATOR);
+  }
+
+  /** Create a new file sorter ordering keys with the given comparator. */
+  public NativeFileSorter(Path tempDir, long maxMemory, Comparator<byte[]> keyComparator)
+      throws IOException {
     this.tempDir = tempDir;
     this.maxMemory = maxMemory;
+    this.kvComparator = (x, y) -> keyComparator.compare(x.getKey(), y.getKey());
 
     this.dataFile = Files.createTempFile(tempDir, "input", "seq").toFile();
     this.dataStream = new BufferedOutputStream(new FileOutputStream(dataFile));
@@ -149,7 +156,7 @@ class NativeFileSorter {
     tempFile.deleteOnExit();
     LOG.debug("Sort and save {}", tempFile);
 
-    tempList.sort(KV_COMPARATOR);
+    tempList.sort(kvComparator);
 
     OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
     try {
@@ -175,7 +182,7 @@ class NativeFileSorter {
         }
       }
 
-      return Iterators.mergeSorted(iterators, KV_COMPARATOR);
+      return Iterators.mergeSorted(iterators, kvComparator);
     };
   }
 
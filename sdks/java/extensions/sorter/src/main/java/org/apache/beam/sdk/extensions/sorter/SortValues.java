@@ -23,6 +23,7 @@ import javax.annotation.Nonnull;
 import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.coders.EncodedKeyComparator;
 import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.transforms.DoFn;
@@ -49,6 +50,11 @@ import org.apache.beam.sdk.values.PCollection;
  * representations it requires the input PCollection to use a {@link KvCoder} for its input, an
  * {@link IterableCoder} for its input values and a {@link KvCoder} for its secondary key-value
  * pairs.
+ *
+ * <p>With {@link #withNaturalKeyOrder()} the secondary keys are instead sorted by the natural
+ * order of their decoded values, for example numerically for {@link
+ * org.apache.beam.sdk.coders.VarLongCoder}, by comparing their encoded form with an {@link
+ * EncodedKeyComparator}.
  */
 public class SortValues<PrimaryKeyT, SecondaryKeyT, ValueT>
     extends PTransform<
@@ -56,9 +62,11 @@ public class SortValues<PrimaryKeyT, SecondaryKeyT, ValueT>
         PCollection<KV<PrimaryKeyT, Iterable<KV<SecondaryKeyT, ValueT>>>>> {
 
   private final BufferedExternalSorter.Options sorterOptions;
+  private final boolean naturalKeyOrder;
 
-  private SortValues(BufferedExternalSorter.Options sorterOptions) {
+  private SortValues(BufferedExternalSorter.Options sorterOptions, boolean naturalKeyOrder) {
     this.sorterOptions = sorterOptions;
+    this.naturalKeyOrder = naturalKeyOrder;
   }
 
   /**
@@ -72,7 +80,16 @@ public class SortValues<PrimaryKeyT, SecondaryKeyT, ValueT>
   public static <PrimaryKeyT, SecondaryKeyT, ValueT>
       SortValues<PrimaryKeyT, SecondaryKeyT, ValueT> create(
           BufferedExternalSorter.Options sorterOptions) {
-    return new SortValues<>(sorterOptions);
+    return new SortValues<>(sorterOptions, false);
+  }
+
+  /**
+   * Returns a {@link SortValues} that sorts by the natural order of the decoded secondary keys
+   * rather than by the lexicographic order of their byte representations. The secondary key coder
+   * must be supported by {@link EncodedKeyComparator#isSupported(Coder)}.
+   */
+  public SortValues<PrimaryKeyT, SecondaryKeyT, ValueT> withNaturalKeyOrder() {
+    return new SortValues<>(sorterOptions, true);
   }
 
   @Override
@@ -87,11 +104,20 @@ public class SortValues<PrimaryKeyT, SecondaryKeyT, ValueT>
           "the secondary key coder of SortValues must be deterministic", e);
     }
 
+    BufferedExternalSorter.Options options = sorterOptions;
+    if (naturalKeyOrder) {
+      if (!EncodedKeyComparator.isSupported(secondaryKeyCoder)) {
+        throw new IllegalStateException(
+            "SortValues can not sort by the natural order of keys encoded with "
+                + secondaryKeyCoder);
+      }
+      options = sorterOptions.withKeyComparator(EncodedKeyComparator.of(secondaryKeyCoder));
+    }
+
     return input
         .apply(
             ParDo.of(
-                new SortValuesDoFn<>(
-                    sorterOptions, secondaryKeyCoder, getValueCoder(input.getCoder()))))
+                new SortValuesDoFn<>(options, secondaryKeyCoder, getValueCoder(input.getCoder()))))
         .setCoder(input.getCoder());
   }
 
@@ -138,6 +138,16 @@ public class ExternalSorterTest {
         1000000);
   }
 
+  @Test
+  public void testKeyComparator() throws Exception {
+    SorterTestUtils.testKeyComparator(
+        ExternalSorter.create(
+            new ExternalSorter.Options()
+                .setTempLocation(getTmpLocation().toString())
+                .setSorterType(sorterType)
+                .setKeyComparator(SorterTestUtils.varLongKeyComparator())));
+  }
+
   @Test
   public void testAddAfterSort() throws Exception {
     SorterTestUtils.testAddAfterSort(
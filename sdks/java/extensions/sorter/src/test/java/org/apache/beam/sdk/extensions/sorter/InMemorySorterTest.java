@@ -59,6 +59,13 @@ public class InMemorySorterTest {
         () -> InMemorySorter.create(new InMemorySorter.Options()), 1000000, 10);
   }
 
+  @Test
+  public void testKeyComparator() throws Exception {
+    InMemorySorter.Options options = new InMemorySorter.Options();
+    options.setKeyComparator(SorterTestUtils.varLongKeyComparator());
+    SorterTestUtils.testKeyComparator(InMemorySorter.create(options));
+  }
+
   @Test
   public void testAddAfterSort() throws Exception {
     SorterTestUtils.testAddAfterSort(InMemorySorter.create(new InMemorySorter.Options()), thrown);
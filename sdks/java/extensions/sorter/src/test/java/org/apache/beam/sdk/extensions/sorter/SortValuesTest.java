@@ -177,6 +177,36 @@ public class SortValuesTest {
     p.run();
   }
 
+  @Test
+  public void testNaturalSecondaryKeyOrder() {
+    // The encoded negative keys would sort after the positive ones.
+    PCollection<KV<String, KV<Long, Integer>>> input =
+        p.apply(
+            Create.of(
+                Arrays.asList(
+                    KV.of("key1", KV.of(300L, 30)),
+                    KV.of("key1", KV.of(-1L, 10)),
+                    KV.of("key1", KV.of(2L, 20)),
+                    KV.of("key2", KV.of(5L, 200)),
+                    KV.of("key2", KV.of(-128L, 100)))));
+
+    PCollection<KV<String, Iterable<KV<Long, Integer>>>> groupedAndSorted =
+        input
+            .apply(GroupByKey.create())
+            .apply(
+                SortValues.<String, Long, Integer>create(BufferedExternalSorter.options())
+                    .withNaturalKeyOrder());
+
+    PAssert.that(groupedAndSorted)
+        .satisfies(
+            new AssertThatHasExpectedContentsForTestSecondaryKeySorting<>(
+                Arrays.asList(
+                    KV.of("key1", Arrays.asList(KV.of(-1L, 10), KV.of(2L, 20), KV.of(300L, 30))),
+                    KV.of("key2", Arrays.asList(KV.of(-128L, 100), KV.of(5L, 200))))));
+
+    p.run();
+  }
+
   static class AssertThatHasExpectedContentsForTestSecondaryKeySorting<SecondaryKeyT, ValueT>
       implements SerializableFunction<
           Iterable<KV<String, Iterable<KV<SecondaryKeyT, ValueT>>>>, Void> {
@@ -21,9 +21,13 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
+import org.apache.beam.sdk.coders.EncodedKeyComparator;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.primitives.UnsignedBytes;
 import org.junit.rules.ExpectedException;
@@ -69,6 +73,32 @@ class SorterTestUtils {
     assertThat(sorted, contains(kvs[0], kvs[1], kvs[2]));
   }
 
+  /** Returns a comparator which sorts keys encoded with {@link VarLongCoder} numerically. */
+  public static EncodedKeyComparator varLongKeyComparator() {
+    return EncodedKeyComparator.of(VarLongCoder.of());
+  }
+
+  /**
+   * Tests a sorter configured with {@link #varLongKeyComparator()}, whose order differs from the
+   * lexicographic order of the encoded keys.
+   */
+  public static void testKeyComparator(Sorter sorter) throws Exception {
+    long[] keys = new long[] {300L, -1L, 0L, 5L, Long.MIN_VALUE, 128L, Long.MAX_VALUE, -300L};
+    for (long key : keys) {
+      sorter.add(KV.of(CoderUtils.encodeToByteArray(VarLongCoder.of(), key), new byte[] {1}));
+    }
+
+    Long prevKey = null;
+    int count = 0;
+    for (KV<byte[], byte[]> record : sorter.sort()) {
+      long key = CoderUtils.decodeFromByteArray(VarLongCoder.of(), record.getKey());
+      assertTrue(prevKey == null || prevKey < key);
+      prevKey = key;
+      ++count;
+    }
+    assertEquals(keys.length, count);
+  }
+
   /** Class that generates a new sorter. Used when performance testing multiple sorter creation. */
   interface SorterGenerator {
     Sorter generateSorter();
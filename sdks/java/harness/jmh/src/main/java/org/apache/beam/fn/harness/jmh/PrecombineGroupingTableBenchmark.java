@@ -24,6 +24,8 @@ import java.util.Random;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.fn.harness.Caches.ClearableCache;
+import org.apache.beam.fn.harness.GroupingTable;
+import org.apache.beam.fn.harness.OpenAddressingGroupingTable;
 import org.apache.beam.fn.harness.PrecombineGroupingTable;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.options.PipelineOptions;
@@ -61,6 +63,9 @@ public class PrecombineGroupingTableBenchmark {
     @Param({"uniform", "normal", "hotKey", "uniqueKeys"})
     public String distribution;
 
+    @Param({"linkedHashMap", "openAddressing"})
+    public String groupingTable;
+
     @Setup(Level.Trial)
     public void setUp() {
       this.elements = generateTestData(distribution);
@@ -113,14 +118,31 @@ public class PrecombineGroupingTableBenchmark {
       throws Exception {
     ClearableCache<Object, Object> cache =
         new ClearableCache<>(Caches.subCache(table.cache, Thread.currentThread().getName()));
-    PrecombineGroupingTable<String, Integer, int[]> groupingTable =
-        PrecombineGroupingTable.combiningAndSampling(
-            table.options,
-            cache,
-            table.sumInts,
-            StringUtf8Coder.of(),
-            .001,
-            Boolean.valueOf(table.globallyWindowed));
+    GroupingTable<String, Integer, int[]> groupingTable;
+    switch (table.groupingTable) {
+      case "linkedHashMap":
+        groupingTable =
+            PrecombineGroupingTable.combiningAndSampling(
+                table.options,
+                cache,
+                table.sumInts,
+                StringUtf8Coder.of(),
+                .001,
+                Boolean.valueOf(table.globallyWindowed));
+        break;
+      case "openAddressing":
+        groupingTable =
+            OpenAddressingGroupingTable.combiningAndSampling(
+                table.options,
+                cache,
+                table.sumInts,
+                StringUtf8Coder.of(),
+                .001,
+                Boolean.valueOf(table.globallyWindowed));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown grouping table: " + table.groupingTable);
+    }
     for (int i = 0, size = table.elements.size(); i < size; ++i) {
       groupingTable.put(table.elements.get(i), blackhole::consume);
     }
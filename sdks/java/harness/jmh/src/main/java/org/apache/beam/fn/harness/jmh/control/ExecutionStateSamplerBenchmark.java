@@ -18,18 +18,32 @@
 package org.apache.beam.fn.harness.jmh.control;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.beam.fn.harness.control.BundleProgressReporter;
+import org.apache.beam.fn.harness.data.PCollectionConsumerRegistry;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleDescriptor;
+import org.apache.beam.model.pipeline.v1.RunnerApi;
 import org.apache.beam.runners.core.metrics.ExecutionStateSampler;
 import org.apache.beam.runners.core.metrics.ExecutionStateTracker;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Labels;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Urns;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
 import org.apache.beam.runners.core.metrics.SimpleExecutionState;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.util.construction.SdkComponents;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.sdk.values.WindowedValues;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -130,6 +144,77 @@ public class ExecutionStateSamplerBenchmark {
     }
   }
 
+  @State(Scope.Thread)
+  public static class HarnessConsumerChain {
+    private static final String[] PCOLLECTIONS = {"pCollection1", "pCollection2", "pCollection3"};
+
+    /** Times one in this many elements through the chain, or none when zero. */
+    @Param({"0", "1000", "1"})
+    public int elementLatencySamplingPeriod;
+
+    public org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionStateTracker tracker;
+    public BundleProgressReporter.InMemory reporterAndRegistrar;
+    public FnDataReceiver<WindowedValue<?>> consumer;
+    public long elementsProcessed;
+
+    @Setup
+    public void setup(HarnessStateSampler sharedState) throws Exception {
+      SdkComponents sdkComponents = SdkComponents.create();
+      String coderId = sdkComponents.registerCoder(StringUtf8Coder.of());
+      ProcessBundleDescriptor.Builder descriptor =
+          ProcessBundleDescriptor.newBuilder()
+              .putAllCoders(sdkComponents.toComponents().getCodersMap());
+      for (String pCollection : PCOLLECTIONS) {
+        descriptor.putPcollections(
+            pCollection, RunnerApi.PCollection.newBuilder().setCoderId(coderId).build());
+      }
+      PipelineOptions options =
+          elementLatencySamplingPeriod == 0
+              ? PipelineOptionsFactory.create()
+              : PipelineOptionsFactory.fromArgs(
+                      "--experiments="
+                          + PCollectionConsumerRegistry.ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT
+                          + "="
+                          + elementLatencySamplingPeriod)
+                  .create();
+      tracker = sharedState.sampler.create();
+      reporterAndRegistrar = new BundleProgressReporter.InMemory();
+      PCollectionConsumerRegistry consumers =
+          new PCollectionConsumerRegistry(
+              tracker, new ShortIdMap(), reporterAndRegistrar, descriptor.build(), null, options);
+
+      // A chain of transforms which pass each element on to the next one.
+      List<FnDataReceiver<WindowedValue<?>>> outputs = new ArrayList<>();
+      for (int i = 0; i < PCOLLECTIONS.length; i++) {
+        int transform = i;
+        consumers.register(
+            PCOLLECTIONS[i],
+            PTRANSFORM + i,
+            PTRANSFORM + i + "Name",
+            (WindowedValue<String> input) -> {
+              if (transform < outputs.size()) {
+                outputs.get(transform).accept(input);
+              } else {
+                elementsProcessed += 1;
+              }
+            });
+      }
+      for (int i = 1; i < PCOLLECTIONS.length; i++) {
+        outputs.add(consumers.getMultiplexingConsumer(PCOLLECTIONS[i]));
+      }
+      consumer = consumers.getMultiplexingConsumer(PCOLLECTIONS[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+      Map<String, ByteString> monitoringData = new HashMap<>();
+      // Print out the monitoring data so that JVM doesn't optimize code away.
+      reporterAndRegistrar.updateFinalMonitoringData(monitoringData);
+      tracker.updateFinalMonitoringData(monitoringData);
+      System.out.println(elementsProcessed + ", " + monitoringData);
+    }
+  }
+
   @Benchmark
   @Threads(512)
   public void testTinyBundleRunnersCoreStateSampler(
@@ -207,4 +292,16 @@ public class ExecutionStateSamplerBenchmark {
     }
     state.tracker.reset();
   }
+
+  @Benchmark
+  @Threads(16)
+  public void testLargeBundleHarnessConsumerChain(HarnessConsumerChain state) throws Exception {
+    state.tracker.start("processBundleId");
+    WindowedValue<String> element = WindowedValues.valueInGlobalWindow("element");
+    for (int i = 0; i < 1000; i++) {
+      state.consumer.accept(element);
+    }
+    state.tracker.reset();
+    state.reporterAndRegistrar.reset();
+  }
 }
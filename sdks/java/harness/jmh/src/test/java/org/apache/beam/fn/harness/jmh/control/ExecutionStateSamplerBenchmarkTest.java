@@ -17,6 +17,7 @@
  */
 package org.apache.beam.fn.harness.jmh.control;
 
+import org.apache.beam.fn.harness.jmh.control.ExecutionStateSamplerBenchmark.HarnessConsumerChain;
 import org.apache.beam.fn.harness.jmh.control.ExecutionStateSamplerBenchmark.HarnessStateSampler;
 import org.apache.beam.fn.harness.jmh.control.ExecutionStateSamplerBenchmark.HarnessStateTracker;
 import org.apache.beam.fn.harness.jmh.control.ExecutionStateSamplerBenchmark.RunnersCoreStateSampler;
@@ -80,4 +81,17 @@ public class ExecutionStateSamplerBenchmarkTest {
     state.tearDown();
     threadState.tearDown();
   }
+
+  @Test
+  public void testLargeBundleHarnessConsumerChain() throws Exception {
+    for (int samplingPeriod : new int[] {0, 1000, 1}) {
+      HarnessStateSampler state = new HarnessStateSampler();
+      HarnessConsumerChain threadState = new HarnessConsumerChain();
+      threadState.elementLatencySamplingPeriod = samplingPeriod;
+      threadState.setup(state);
+      new ExecutionStateSamplerBenchmark().testLargeBundleHarnessConsumerChain(threadState);
+      state.tearDown();
+      threadState.tearDown();
+    }
+  }
 }
@@ -20,6 +20,7 @@ package org.apache.beam.fn.harness;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 
 /**
  * A cache allows for the storage and retrieval of values which are associated with keys.
@@ -53,6 +54,32 @@ public interface Cache<K, V> {
     V shrink();
   }
 
+  /**
+   * An interface that marks an object that can be moved to the off-heap tier of a cache in an
+   * encoded form instead of being evicted completely.
+   *
+   * <p>Objects which are {@link Shrinkable} as well are moved to the off-heap tier instead of being
+   * shrunk if the cache has an off-heap tier.
+   *
+   * <p>This interface may be invoked from any other thread that manipulates the cache causing this
+   * value to be moved. Implementers must ensure thread safety with respect to any side effects
+   * caused.
+   */
+  @ThreadSafe
+  interface Spillable<V> {
+    /** Returns the encoded form of this object, or {@code null} if it can't be encoded. */
+    @Nullable
+    ByteString encode();
+
+    /**
+     * Returns a function which recreates this object from the result of {@link #encode}.
+     *
+     * <p>The function is held on to while the encoded form is stored, so it should not reference
+     * this object.
+     */
+    Function<ByteString, V> decoder();
+  }
+
   /** Looks up the specified key returning {@code null} if the value is not within the cache. */
   @Nullable
   V peek(K key);
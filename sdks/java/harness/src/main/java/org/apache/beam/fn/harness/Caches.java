@@ -19,6 +19,8 @@ package org.apache.beam.fn.harness;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -26,6 +28,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.Cache.Spillable;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.util.Weighted;
@@ -36,6 +39,7 @@ import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.CacheSta
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.RemovalListener;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.RemovalNotification;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.Weigher;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.github.jamm.MemoryMeter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -103,7 +107,10 @@ public final class Caches {
             || Long.highestOneBit(oldSize) != Long.highestOneBit(newSize));
   }
 
-  /** An eviction listener that reduces the size of entries that are {@link Shrinkable}. */
+  /**
+   * An eviction listener that moves entries that are {@link Spillable} to the off-heap tier, if
+   * there is one, and otherwise reduces the size of entries that are {@link Shrinkable}.
+   */
   @VisibleForTesting
   static class ShrinkOnEviction implements RemovalListener<CompositeKey, WeightedValue<Object>> {
 
@@ -111,11 +118,15 @@ public final class Caches {
             CompositeKey, WeightedValue<Object>>
         cache;
     private final LongAdder weightInBytes;
+    private final OffHeapCacheTier offHeapTier;
 
     ShrinkOnEviction(
-        CacheBuilder<CompositeKey, WeightedValue<Object>> cacheBuilder, LongAdder weightInBytes) {
+        CacheBuilder<CompositeKey, WeightedValue<Object>> cacheBuilder,
+        LongAdder weightInBytes,
+        OffHeapCacheTier offHeapTier) {
       this.cache = cacheBuilder.removalListener(this).build();
       this.weightInBytes = weightInBytes;
+      this.offHeapTier = offHeapTier;
     }
 
     public org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.Cache<
@@ -130,19 +141,43 @@ public final class Caches {
       weightInBytes.add(
           -(removalNotification.getKey().getWeight() + removalNotification.getValue().getWeight()));
       if (removalNotification.wasEvicted()) {
-        if (!(removalNotification.getValue().getValue() instanceof Cache.Shrinkable)) {
-          return;
-        }
-        Object updatedEntry = ((Shrinkable<?>) removalNotification.getValue().getValue()).shrink();
-        if (updatedEntry != null) {
-          cache.put(
-              removalNotification.getKey(),
-              addWeightedValue(removalNotification.getKey(), updatedEntry, weightInBytes));
-        }
+        spillOrShrink(
+            cache,
+            weightInBytes,
+            offHeapTier,
+            removalNotification.getKey(),
+            removalNotification.getValue().getValue());
       }
     }
   }
 
+  /**
+   * Moves an entry which was removed from the cache to the off-heap tier if it is {@link
+   * Spillable}, or otherwise inserts a smaller version of it into the cache if it is {@link
+   * Shrinkable}.
+   */
+  private static void spillOrShrink(
+      org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.Cache<
+              CompositeKey, WeightedValue<Object>>
+          cache,
+      LongAdder weightInBytes,
+      OffHeapCacheTier offHeapTier,
+      CompositeKey key,
+      Object value) {
+    if (value instanceof VersionedSpillable) {
+      VersionedSpillable spillable = (VersionedSpillable) value;
+      offHeapTier.put(key, spillable.value, spillable.version);
+      return;
+    }
+    if (!(value instanceof Cache.Shrinkable)) {
+      return;
+    }
+    Object updatedEntry = ((Shrinkable<?>) value).shrink();
+    if (updatedEntry != null) {
+      cache.put(key, addWeightedValue(key, updatedEntry, weightInBytes));
+    }
+  }
+
   /** A cache that never stores any values. */
   public static <K, V> Cache<K, V> noop() {
     return forMaximumBytes(0L);
@@ -158,8 +193,10 @@ public final class Caches {
    * parameters within {@link SdkHarnessOptions}.
    */
   public static <K, V> Cache<K, V> fromOptions(PipelineOptions options) {
+    SdkHarnessOptions harnessOptions = options.as(SdkHarnessOptions.class);
     return forMaximumBytes(
-        ((long) options.as(SdkHarnessOptions.class).getMaxCacheMemoryUsageMb()) << 20);
+        ((long) harnessOptions.getMaxCacheMemoryUsageMb()) << 20,
+        ((long) harnessOptions.getMaxOffHeapCacheMemoryUsageMb()) << 20);
   }
 
   /**
@@ -175,7 +212,8 @@ public final class Caches {
           ((SubCache<?, ?>) cache).cache,
           ((SubCache<?, ?>) cache).keyPrefix.subKey(keyPrefix, additionalKeyPrefix),
           ((SubCache<?, ?>) cache).maxWeightInBytes,
-          ((SubCache<?, ?>) cache).weightInBytes);
+          ((SubCache<?, ?>) cache).weightInBytes,
+          ((SubCache<?, ?>) cache).offHeapTier);
     }
     throw new IllegalArgumentException(
         String.format(
@@ -183,11 +221,64 @@ public final class Caches {
             cache == null ? "null" : cache.getClass()));
   }
 
+  /**
+   * Returns how many more bytes the cache, which is shared with all of its sub caches, can hold
+   * before it has to evict entries. Returns {@code 0} for caches which aren't weight bounded.
+   */
+  public static long remainingWeightInBytes(Cache<?, ?> cache) {
+    if (cache instanceof SubCache) {
+      SubCache<?, ?> subCache = (SubCache<?, ?>) cache;
+      return Math.max(0L, subCache.maxWeightInBytes - subCache.weightInBytes.longValue());
+    }
+    return 0L;
+  }
+
+  /**
+   * Evicts entries from the cache, which is shared with all of its sub caches, until it holds at
+   * most {@code fraction} of its maximum weight. Evicted entries are moved off-heap or shrunk as if
+   * the cache had evicted them itself.
+   *
+   * <p>Used to release memory proactively when the process is under memory pressure. Caches which
+   * aren't weight bounded are left as is.
+   */
+  public static void reduceWeight(Cache<?, ?> cache, double fraction) {
+    if (!(cache instanceof SubCache)) {
+      return;
+    }
+    SubCache<?, ?> subCache = (SubCache<?, ?>) cache;
+    long targetWeightInBytes = (long) (subCache.maxWeightInBytes * fraction);
+    Iterator<Map.Entry<CompositeKey, WeightedValue<Object>>> entries =
+        subCache.cache.asMap().entrySet().iterator();
+    while (subCache.weightInBytes.longValue() > targetWeightInBytes && entries.hasNext()) {
+      Map.Entry<CompositeKey, WeightedValue<Object>> entry = entries.next();
+      // Only the thread which removed the entry may shrink it.
+      if (subCache.cache.asMap().remove(entry.getKey(), entry.getValue())) {
+        spillOrShrink(
+            subCache.cache,
+            subCache.weightInBytes,
+            subCache.offHeapTier,
+            entry.getKey(),
+            entry.getValue().getValue());
+      }
+    }
+  }
+
   @VisibleForTesting
   static <K, V> Cache<K, V> forMaximumBytes(long maximumBytes) {
+    return forMaximumBytes(maximumBytes, 0L);
+  }
+
+  /**
+   * Returns a cache holding up to {@code maximumBytes} on the Java heap. Up to {@code
+   * maximumOffHeapBytes} of {@link Spillable} entries are kept off-heap once evicted.
+   */
+  @VisibleForTesting
+  static <K, V> Cache<K, V> forMaximumBytes(long maximumBytes, long maximumOffHeapBytes) {
     // We specifically use Guava cache since it allows for recursive computeIfAbsent calls
     // preventing deadlock from occurring when a loading function mutates the underlying cache
     LongAdder weightInBytes = new LongAdder();
+    OffHeapCacheTier offHeapTier =
+        maximumOffHeapBytes > 0 ? new OffHeapCacheTier(maximumOffHeapBytes) : null;
     return new SubCache<>(
         new ShrinkOnEviction(
                 CacheBuilder.newBuilder()
@@ -225,11 +316,13 @@ public final class Caches {
                     // recursive computeIfAbsent calls since it doesn't have this limit.
                     .concurrencyLevel(1)
                     .recordStats(),
-                weightInBytes)
+                weightInBytes,
+                offHeapTier)
             .getCache(),
         CompositeKeyPrefix.ROOT,
         maximumBytes,
-        weightInBytes);
+        weightInBytes,
+        offHeapTier);
   }
 
   private static long findWeight(Object o) {
@@ -256,6 +349,46 @@ public final class Caches {
     return rval;
   }
 
+  /**
+   * Like {@link #addWeightedValue(CompositeKey, Object, LongAdder)}, but stores {@link Spillable}
+   * values along with the version of their key in the off-heap tier, see {@link
+   * VersionedSpillable}.
+   */
+  private static WeightedValue<Object> addWeightedValue(
+      CompositeKey key,
+      Object o,
+      LongAdder weightInBytes,
+      @Nullable OffHeapCacheTier offHeapTier,
+      long version) {
+    WeightedValue<Object> rval = addWeightedValue(key, o, weightInBytes);
+    if (offHeapTier == null || !(rval.getValue() instanceof Cache.Spillable)) {
+      return rval;
+    }
+    return WeightedValue.of(
+        new VersionedSpillable((Spillable<?>) rval.getValue(), version), rval.getWeight());
+  }
+
+  /** Returns the value that was stored in the cache by {@link #addWeightedValue}. */
+  private static Object unwrap(WeightedValue<Object> weightedValue) {
+    Object value = weightedValue.getValue();
+    return value instanceof VersionedSpillable ? ((VersionedSpillable) value).value : value;
+  }
+
+  /**
+   * A {@link Spillable} value along with the version its key had in the off-heap tier when the
+   * value was inserted into the cache. The value is only moved off-heap once evicted if the key
+   * wasn't invalidated since.
+   */
+  private static class VersionedSpillable {
+    private final Spillable<?> value;
+    private final long version;
+
+    VersionedSpillable(Spillable<?> value, long version) {
+      this.value = value;
+      this.version = version;
+    }
+  }
+
   /**
    * A view of a cache that operates on keys with a specified key prefix.
    *
@@ -269,6 +402,7 @@ public final class Caches {
     private final CompositeKeyPrefix keyPrefix;
     private final long maxWeightInBytes;
     private final LongAdder weightInBytes;
+    private final OffHeapCacheTier offHeapTier;
 
     SubCache(
         org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.cache.Cache<
@@ -276,20 +410,44 @@ public final class Caches {
             cache,
         CompositeKeyPrefix keyPrefix,
         long maxWeightInBytes,
-        LongAdder weightInBytes) {
+        LongAdder weightInBytes,
+        OffHeapCacheTier offHeapTier) {
       this.cache = cache;
       this.keyPrefix = keyPrefix;
       this.maxWeightInBytes = maxWeightInBytes;
       this.weightInBytes = weightInBytes;
+      this.offHeapTier = offHeapTier;
     }
 
     @Override
     public V peek(K key) {
-      WeightedValue<Object> value = cache.getIfPresent(keyPrefix.valueKey(key));
-      if (value == null) {
+      CompositeKey compositeKey = keyPrefix.valueKey(key);
+      WeightedValue<Object> value = cache.getIfPresent(compositeKey);
+      if (value != null) {
+        return (V) unwrap(value);
+      }
+      if (offHeapTier == null) {
+        return null;
+      }
+      long version = offHeapTier.version(compositeKey);
+      Object restored = offHeapTier.take(compositeKey);
+      if (restored == null) {
         return null;
       }
-      return (V) value.getValue();
+      WeightedValue<Object> weightedValue =
+          addWeightedValue(compositeKey, restored, weightInBytes, offHeapTier, version);
+      // A value which was put concurrently is newer than the restored value.
+      WeightedValue<Object> current = cache.asMap().putIfAbsent(compositeKey, weightedValue);
+      if (current != null) {
+        weightInBytes.add(-(compositeKey.getWeight() + weightedValue.getWeight()));
+        return (V) unwrap(current);
+      }
+      if (offHeapTier.version(compositeKey) != version) {
+        // The key was invalidated while the value was restored, so the value may be stale.
+        cache.asMap().remove(compositeKey, weightedValue);
+        return null;
+      }
+      return (V) restored;
     }
 
     @Override
@@ -297,11 +455,22 @@ public final class Caches {
       try {
         CompositeKey compositeKey = keyPrefix.valueKey(key);
         return (V)
-            cache
-                .get(
+            unwrap(
+                cache.get(
                     compositeKey,
-                    () -> addWeightedValue(compositeKey, loadingFunction.apply(key), weightInBytes))
-                .getValue();
+                    () -> {
+                      if (offHeapTier == null) {
+                        return addWeightedValue(
+                            compositeKey, loadingFunction.apply(key), weightInBytes);
+                      }
+                      long version = offHeapTier.version(compositeKey);
+                      Object value = offHeapTier.take(compositeKey);
+                      if (value == null) {
+                        value = loadingFunction.apply(key);
+                      }
+                      return addWeightedValue(
+                          compositeKey, value, weightInBytes, offHeapTier, version);
+                    }));
       } catch (ExecutionException e) {
         throw new RuntimeException(e);
       }
@@ -310,26 +479,48 @@ public final class Caches {
     @Override
     public void put(K key, V value) {
       CompositeKey compositeKey = keyPrefix.valueKey(key);
-      cache.put(compositeKey, addWeightedValue(compositeKey, value, weightInBytes));
+      if (offHeapTier == null) {
+        cache.put(compositeKey, addWeightedValue(compositeKey, value, weightInBytes));
+        return;
+      }
+      // Invalidating first means that the value replaced by this one is not moved off-heap.
+      offHeapTier.invalidate(compositeKey);
+      cache.put(
+          compositeKey,
+          addWeightedValue(
+              compositeKey,
+              value,
+              weightInBytes,
+              offHeapTier,
+              offHeapTier.version(compositeKey)));
     }
 
     @Override
     public void remove(K key) {
-      cache.invalidate(keyPrefix.valueKey(key));
+      CompositeKey compositeKey = keyPrefix.valueKey(key);
+      if (offHeapTier != null) {
+        offHeapTier.invalidate(compositeKey);
+      }
+      cache.invalidate(compositeKey);
     }
 
     @Override
     public String describeStats() {
       CacheStats stats = cache.stats();
-      return String.format(
-          "used/max %d/%d MB, hit %.2f%%, lookups %d, avg load time %.0f ns, loads %d, evictions %d",
-          weightInBytes.longValue() >> 20,
-          maxWeightInBytes >> 20,
-          stats.hitRate() * 100.,
-          stats.requestCount(),
-          stats.averageLoadPenalty(),
-          stats.loadCount(),
-          stats.evictionCount());
+      String onHeapStats =
+          String.format(
+              "used/max %d/%d MB, hit %.2f%%, lookups %d, avg load time %.0f ns, loads %d, evictions %d",
+              weightInBytes.longValue() >> 20,
+              maxWeightInBytes >> 20,
+              stats.hitRate() * 100.,
+              stats.requestCount(),
+              stats.averageLoadPenalty(),
+              stats.loadCount(),
+              stats.evictionCount());
+      if (offHeapTier == null) {
+        return onHeapStats;
+      }
+      return onHeapStats + ", " + offHeapTier.describeStats();
     }
   }
 
@@ -444,7 +635,8 @@ public final class Caches {
           ((SubCache<K, V>) cache).cache,
           ((SubCache<CompositeKey, V>) cache).keyPrefix,
           ((SubCache<CompositeKey, V>) cache).maxWeightInBytes,
-          ((SubCache<CompositeKey, V>) cache).weightInBytes);
+          ((SubCache<CompositeKey, V>) cache).weightInBytes,
+          ((SubCache<CompositeKey, V>) cache).offHeapTier);
       // We specifically use a weak hash map so that once the key is no longer referenced we don't
       // have to keep track of it anymore and the weak hash map will garbage collect it for us.
       this.weakHashSet = Collections.newSetFromMap(new WeakHashMap<>());
@@ -31,6 +31,7 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.KvCoder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.function.ThrowingFunction;
+import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindows;
@@ -75,7 +76,8 @@ public class CombineRunners {
     private final CombineFn<InputT, AccumT, ?> combineFn;
     private final FnDataReceiver<WindowedValue<KV<KeyT, AccumT>>> output;
     private final Coder<KeyT> keyCoder;
-    private @Nullable PrecombineGroupingTable<KeyT, InputT, AccumT> groupingTable;
+    private final boolean useOpenAddressingTable;
+    private @Nullable GroupingTable<KeyT, InputT, AccumT> groupingTable;
     private boolean isGloballyWindowed;
 
     PrecombineRunner(
@@ -103,23 +105,38 @@ public class CombineRunners {
       this.output = output;
       this.keyCoder = keyCoder;
       this.isGloballyWindowed = isGloballyWindowed;
+      this.useOpenAddressingTable =
+          ExperimentalOptions.hasExperiment(options, OpenAddressingGroupingTable.EXPERIMENT)
+              && OpenAddressingGroupingTable.supportsKeyCoder(keyCoder);
     }
 
-    private PrecombineGroupingTable<KeyT, InputT, AccumT> getGroupingTable() {
+    private GroupingTable<KeyT, InputT, AccumT> getGroupingTable() {
       return checkStateNotNull(
           this.groupingTable,
           "groupingTable not initialized. Did you call this outside of the context of bundle processing?");
     }
 
     void startBundle() {
-      groupingTable =
-          PrecombineGroupingTable.combiningAndSampling(
-              options,
-              Caches.subCache(bundleCache.get(), ptransformId),
-              combineFn,
-              keyCoder,
-              0.001 /*sizeEstimatorSampleRate*/,
-              isGloballyWindowed);
+      Cache<Object, Object> cache = Caches.subCache(bundleCache.get(), ptransformId);
+      if (useOpenAddressingTable) {
+        groupingTable =
+            OpenAddressingGroupingTable.combiningAndSampling(
+                options,
+                cache,
+                combineFn,
+                keyCoder,
+                0.001 /*sizeEstimatorSampleRate*/,
+                isGloballyWindowed);
+      } else {
+        groupingTable =
+            PrecombineGroupingTable.combiningAndSampling(
+                options,
+                cache,
+                combineFn,
+                keyCoder,
+                0.001 /*sizeEstimatorSampleRate*/,
+                isGloballyWindowed);
+      }
     }
 
     void processElement(WindowedValue<KV<KeyT, InputT>> elem) throws Exception {
@@ -43,6 +43,7 @@ import org.apache.beam.fn.harness.logging.LoggingClient;
 import org.apache.beam.fn.harness.logging.LoggingClientFactory;
 import org.apache.beam.fn.harness.state.BeamFnStateGrpcClientCache;
 import org.apache.beam.fn.harness.status.BeamFnStatusClient;
+import org.apache.beam.fn.harness.status.MemoryMonitor;
 import org.apache.beam.fn.harness.stream.HarnessStreamObserverFactories;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.InstructionRequest;
@@ -279,9 +280,11 @@ public class FnHarness {
     ExecutorService executorService =
         options.as(ExecutorOptions.class).getScheduledExecutorService();
     ExecutionStateSampler executionStateSampler =
-        new ExecutionStateSampler(options, System::currentTimeMillis);
+        new ExecutionStateSampler(options, System::currentTimeMillis, metricsShortIds);
 
     final @Nullable DataSampler dataSampler = DataSampler.create(options);
+    // Bundles are processed on virtual threads instead of the executorService when enabled.
+    ExecutorService instructionExecutor = executorService;
 
     // The logging client variable is not used per se, but during its lifetime (until close()) it
     // intercepts logging and sends it to the logging service.
@@ -346,6 +349,14 @@ public class FnHarness {
               processWideCache,
               dataSampler);
 
+      boolean throttleOnMemoryPressure =
+          ExperimentalOptions.hasExperiment(options, MemoryPressureThrottle.EXPERIMENT);
+      MemoryMonitor memoryMonitor = null;
+      if (statusApiServiceDescriptor != null || throttleOnMemoryPressure) {
+        memoryMonitor = MemoryMonitor.fromOptions(options);
+        memoryMonitor.startDaemon();
+      }
+
       BeamFnStatusClient beamFnStatusClient = null;
       if (statusApiServiceDescriptor != null) {
         beamFnStatusClient =
@@ -353,8 +364,16 @@ public class FnHarness {
                 statusApiServiceDescriptor,
                 channelFactory::forDescriptor,
                 processBundleHandler.getBundleProcessorCache(),
-                options,
-                processWideCache);
+                processWideCache,
+                memoryMonitor);
+      }
+
+      ThrowingFunction<InstructionRequest, BeamFnApi.InstructionResponse.Builder> processBundle =
+          processBundleHandler::processBundle;
+      if (throttleOnMemoryPressure) {
+        processBundle =
+            MemoryPressureThrottle.create(memoryMonitor, processWideCache)
+                .throttling(processBundle);
       }
 
       // TODO(https://github.com/apache/beam/issues/20270): Remove once runners no longer send this
@@ -367,9 +386,7 @@ public class FnHarness {
       handlers.put(
           BeamFnApi.InstructionRequest.RequestCase.FINALIZE_BUNDLE,
           finalizeBundleHandler::finalizeBundle);
-      handlers.put(
-          BeamFnApi.InstructionRequest.RequestCase.PROCESS_BUNDLE,
-          processBundleHandler::processBundle);
+      handlers.put(BeamFnApi.InstructionRequest.RequestCase.PROCESS_BUNDLE, processBundle);
       handlers.put(
           BeamFnApi.InstructionRequest.RequestCase.PROCESS_BUNDLE_PROGRESS,
           processBundleHandler::progress);
@@ -403,6 +420,8 @@ public class FnHarness {
 
       LOG.info("Entering instruction processing loop");
 
+      instructionExecutor = VirtualThreads.instructionExecutor(options, executorService);
+
       // The control client immediately dispatches requests to an executor so we execute on the
       // direct executor. If we created separate channels for different stubs we could use
       // directExecutor() when building the channel.
@@ -410,7 +429,7 @@ public class FnHarness {
           new BeamFnControlClient(
               controlStub.withExecutor(MoreExecutors.directExecutor()),
               outboundObserverFactory,
-              executorService,
+              instructionExecutor,
               handlers);
       if (options.as(SdkHarnessOptions.class).getEnableLogViaFnApi()) {
         CompletableFuture.anyOf(control.terminationFuture(), logging.terminationFuture()).get();
@@ -427,6 +446,9 @@ public class FnHarness {
     } finally {
       LOG.info("Shutting SDK harness down.");
       executionStateSampler.stop();
+      if (instructionExecutor != executorService) {
+        instructionExecutor.shutdown();
+      }
       executorService.shutdown();
     }
   }
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import org.apache.beam.fn.harness.status.MemoryMonitor;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.InstructionRequest;
+import org.apache.beam.sdk.function.ThrowingFunction;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.DelegatingCounter;
+import org.apache.beam.sdk.metrics.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backs off from processing more bundles while the {@link MemoryMonitor} finds the harness to be in
+ * GC thrashing, so that a few large bundles which coincide don't run the harness out of memory.
+ *
+ * <p>While thrashing, new bundles wait before they start processing and the process wide cache,
+ * which includes the precombine tables of combining transforms, is reduced every monitoring period
+ * to release memory. The time bundles spent waiting is reported as the process wide {@link
+ * #THROTTLING_MSECS} counter.
+ */
+class MemoryPressureThrottle {
+  private static final Logger LOG = LoggerFactory.getLogger(MemoryPressureThrottle.class);
+
+  /** The experiment which makes the harness back off when it is under memory pressure. */
+  static final String EXPERIMENT = "throttle_on_memory_pressure";
+
+  /** The fraction of its maximum size the cache is reduced to in every period of GC thrashing. */
+  static final double CACHE_FRACTION_KEPT = 0.5;
+
+  static final Counter THROTTLING_MSECS =
+      new DelegatingCounter(
+          MetricName.named(MemoryPressureThrottle.class, "throttling-msecs"), true);
+
+  private final MemoryMonitor memoryMonitor;
+
+  private MemoryPressureThrottle(MemoryMonitor memoryMonitor) {
+    this.memoryMonitor = memoryMonitor;
+  }
+
+  /**
+   * Returns a throttle driven by {@code memoryMonitor}, which reduces {@code cache} whenever the
+   * harness is in GC thrashing.
+   */
+  static MemoryPressureThrottle create(MemoryMonitor memoryMonitor, Cache<?, ?> cache) {
+    memoryMonitor.addThrashingListener(
+        () -> {
+          LOG.warn(
+              "Reducing the cache to {}% of its maximum size due to GC thrashing, cache stats {}.",
+              (int) (CACHE_FRACTION_KEPT * 100),
+              cache.describeStats());
+          Caches.reduceWeight(cache, CACHE_FRACTION_KEPT);
+        });
+    return new MemoryPressureThrottle(memoryMonitor);
+  }
+
+  /** Returns a handler which waits for the harness to leave GC thrashing before {@code handler}. */
+  <T> ThrowingFunction<InstructionRequest, T> throttling(
+      ThrowingFunction<InstructionRequest, T> handler) {
+    return request -> {
+      awaitAdmission(request.getInstructionId());
+      return handler.apply(request);
+    };
+  }
+
+  /** Blocks while the harness is in GC thrashing. */
+  void awaitAdmission(String instructionId) {
+    if (!memoryMonitor.isThrashing()) {
+      return;
+    }
+    long startMillis = System.currentTimeMillis();
+    memoryMonitor.waitForResources("instruction " + instructionId);
+    THROTTLING_MSECS.inc(System.currentTimeMillis() - startMillis);
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import javax.annotation.concurrent.ThreadSafe;
+import org.apache.beam.fn.harness.Cache.Spillable;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.DelegatingCounter;
+import org.apache.beam.sdk.metrics.MetricName;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the encoded form of {@link Spillable} entries evicted from a cache in direct memory, so
+ * that they don't take up space on the Java heap.
+ *
+ * <p>Entries are evicted in least recently used order once the encoded entries exceed the maximum
+ * size. An entry is removed from this tier when it is looked up, since the decoded entry is
+ * inserted into the cache again.
+ *
+ * <p>Each key has a version which is incremented when the key is invalidated. An evicted value is
+ * only stored if the version of its key didn't change since the value was inserted into the cache,
+ * so a value which was replaced or removed while it was being evicted doesn't come back.
+ *
+ * <p>The direct memory of an entry is freed as soon as the entry is removed from this tier, rather
+ * than once the garbage collector finds its buffer.
+ *
+ * <p>Hits, misses and evictions are reported as process wide counters.
+ */
+@ThreadSafe
+class OffHeapCacheTier {
+  static final Counter HITS =
+      new DelegatingCounter(MetricName.named(OffHeapCacheTier.class, "hits"), true);
+  static final Counter MISSES =
+      new DelegatingCounter(MetricName.named(OffHeapCacheTier.class, "misses"), true);
+  static final Counter EVICTIONS =
+      new DelegatingCounter(MetricName.named(OffHeapCacheTier.class, "evictions"), true);
+
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapCacheTier.class);
+
+  // Keys share versions by the hash of the key, so that versions of keys which are not in the cache
+  // aren't retained. Keys of the same stripe only cause each other's values to be dropped.
+  private static final int VERSION_STRIPES = 1024;
+
+  private static final @Nullable MethodHandle FREE_DIRECT_BUFFER = freeDirectBufferHandle();
+
+  private final long maxWeightInBytes;
+  private final long[] versions;
+  // Access ordered so iteration starts with the least recently used entry.
+  private final LinkedHashMap<Object, SpilledValue> entries;
+  private long weightInBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  OffHeapCacheTier(long maxWeightInBytes) {
+    this.maxWeightInBytes = maxWeightInBytes;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.versions = new long[VERSION_STRIPES];
+  }
+
+  /** Returns the current version of the key, see {@link #put}. */
+  synchronized long version(Object key) {
+    return versions[stripe(key)];
+  }
+
+  /**
+   * Stores the encoded form of the value, evicting the least recently used entries if the tier
+   * grows beyond its maximum size.
+   *
+   * <p>The value is dropped if the key was invalidated after {@code version} was read, which
+   * happens when the value was replaced or removed while it was evicted from the cache.
+   */
+  void put(Object key, Spillable<?> value, long version) {
+    ByteString encoded = value.encode();
+    if (encoded == null || encoded.size() > maxWeightInBytes) {
+      synchronized (this) {
+        if (versions[stripe(key)] == version) {
+          free(remove(key));
+        }
+      }
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(encoded.size());
+    encoded.copyTo(buffer);
+    buffer.flip();
+    SpilledValue spilledValue = new SpilledValue(buffer, value.decoder());
+
+    // Buffers are freed once the lock is released.
+    List<SpilledValue> removed = new ArrayList<>();
+    long evicted = 0;
+    synchronized (this) {
+      if (versions[stripe(key)] != version) {
+        removed.add(spilledValue);
+      } else {
+        SpilledValue previous = remove(key);
+        if (previous != null) {
+          removed.add(previous);
+        }
+        entries.put(key, spilledValue);
+        weightInBytes += spilledValue.getWeight();
+        Iterator<SpilledValue> leastRecentlyUsed = entries.values().iterator();
+        while (weightInBytes > maxWeightInBytes && leastRecentlyUsed.hasNext()) {
+          SpilledValue leastRecentlyUsedValue = leastRecentlyUsed.next();
+          weightInBytes -= leastRecentlyUsedValue.getWeight();
+          leastRecentlyUsed.remove();
+          removed.add(leastRecentlyUsedValue);
+          evicted += 1;
+        }
+        evictions += evicted;
+      }
+    }
+    for (SpilledValue removedValue : removed) {
+      free(removedValue);
+    }
+    if (evicted > 0) {
+      EVICTIONS.inc(evicted);
+    }
+  }
+
+  /**
+   * Removes the entry for the key from this tier, returning the decoded value or {@code null} if
+   * there was no entry.
+   */
+  @Nullable
+  Object take(Object key) {
+    SpilledValue spilledValue;
+    synchronized (this) {
+      spilledValue = entries.remove(key);
+      if (spilledValue == null) {
+        misses += 1;
+      } else {
+        weightInBytes -= spilledValue.getWeight();
+        hits += 1;
+      }
+    }
+    if (spilledValue == null) {
+      MISSES.inc();
+      return null;
+    }
+    HITS.inc();
+    try {
+      return spilledValue.decode();
+    } finally {
+      free(spilledValue);
+    }
+  }
+
+  /**
+   * Removes the entry for the key from this tier, if present, and increments the version of the
+   * key so that values evicted from the cache concurrently aren't stored.
+   */
+  void invalidate(Object key) {
+    SpilledValue previous;
+    synchronized (this) {
+      versions[stripe(key)] += 1;
+      previous = remove(key);
+    }
+    free(previous);
+  }
+
+  private @Nullable SpilledValue remove(Object key) {
+    SpilledValue previous = entries.remove(key);
+    if (previous != null) {
+      weightInBytes -= previous.getWeight();
+    }
+    return previous;
+  }
+
+  private static int stripe(Object key) {
+    int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+  }
+
+  /** Frees the direct memory of a value which was removed from this tier. */
+  private static void free(@Nullable SpilledValue spilledValue) {
+    if (spilledValue == null || FREE_DIRECT_BUFFER == null) {
+      return;
+    }
+    try {
+      FREE_DIRECT_BUFFER.invokeExact(spilledValue.encoded);
+    } catch (Throwable t) {
+      LOG.debug("Failed to free a direct buffer, it is freed once it is garbage collected.", t);
+    }
+  }
+
+  /**
+   * Returns a handle which frees the memory of a direct {@link ByteBuffer}, using {@code
+   * Unsafe.invokeCleaner} on Java 9 and later, and the buffer's cleaner on Java 8.
+   */
+  private static @Nullable MethodHandle freeDirectBufferHandle() {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      return lookup.unreflect(invokeCleaner).bindTo(theUnsafe.get(null));
+    } catch (Exception | LinkageError e) {
+      // Java 8 has no Unsafe.invokeCleaner.
+    }
+    try {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(1);
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Method cleanMethod = cleanerMethod.getReturnType().getMethod("clean");
+      MethodHandle cleaner =
+          lookup
+              .unreflect(cleanerMethod)
+              .asType(MethodType.methodType(cleanerMethod.getReturnType(), ByteBuffer.class));
+      return MethodHandles.filterReturnValue(cleaner, lookup.unreflect(cleanMethod));
+    } catch (Exception | LinkageError e) {
+      LOG.info("Off-heap cache buffers are freed once they are garbage collected.", e);
+      return null;
+    }
+  }
+
+  synchronized String describeStats() {
+    long lookups = hits + misses;
+    return String.format(
+        "off-heap used/max %d/%d MB, hit %.2f%%, lookups %d, evictions %d",
+        weightInBytes >> 20,
+        maxWeightInBytes >> 20,
+        lookups == 0 ? 0. : hits * 100. / lookups,
+        lookups,
+        evictions);
+  }
+
+  /** The encoded form of a value along with the function which decodes it. */
+  private static class SpilledValue {
+    private final ByteBuffer encoded;
+    private final Function<ByteString, ?> decoder;
+
+    SpilledValue(ByteBuffer encoded, Function<ByteString, ?> decoder) {
+      this.encoded = encoded;
+      this.decoder = decoder;
+    }
+
+    long getWeight() {
+      return encoded.capacity();
+    }
+
+    /**
+     * Decodes a heap copy of the encoded value, since the decoded value may retain the bytes it was
+     * decoded from while the direct buffer is freed once the value is taken.
+     */
+    Object decode() {
+      return decoder.apply(ByteString.copyFrom(encoded.duplicate()));
+    }
+  }
+}
@@ -0,0 +1,521 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SamplingSizeEstimator;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SizeEstimator;
+import org.apache.beam.runners.core.GlobalCombineFnRunner;
+import org.apache.beam.runners.core.GlobalCombineFnRunners;
+import org.apache.beam.runners.core.NullSideInputReader;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.Weighted;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.sdk.values.WindowedValues;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
+import org.joda.time.Instant;
+
+/**
+ * A {@link GroupingTable} which stores its keys encoded within a single byte array and finds them
+ * through open addressing, as an alternative to {@link PrecombineGroupingTable} for aggregations
+ * over many distinct keys.
+ *
+ * <p>Each entry of the table is a position within a handful of parallel arrays, so a new key costs
+ * its encoded bytes and an accumulator rather than the several objects and the structural value of
+ * a key in a hash map. Elements whose key is already in the table don't allocate anything beyond
+ * what the {@link Coder} and {@link CombineFn} do. The weight of the table accounts for the memory
+ * held by its arrays exactly, only the accumulators are weighed by a {@link SizeEstimator}.
+ *
+ * <p>The table doubles its room for entries as long as the cache has memory left for the larger
+ * arrays, so the number of keys it precombines is bounded by the memory budget of the cache rather
+ * than by a fixed count. It is flushed as a whole, in the order of the encoded keys, when it is
+ * full and can't grow or is over the weight the cache allows it after compacting its
+ * accumulators. Keys are decoded again when they are output, so the table requires a deterministic
+ * key coder, see {@link #supportsKeyCoder}.
+ *
+ * <p>{@link NotThreadSafe} because the caller must use the bundle processing thread when invoking
+ * {@link #put} and {@link #flush}. {@link #shrink} may be called from any thread.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+@NotThreadSafe
+public class OpenAddressingGroupingTable<K, InputT, AccumT>
+    implements GroupingTable<K, InputT, AccumT>,
+        Shrinkable<OpenAddressingGroupingTable<K, InputT, AccumT>>,
+        Weighted {
+
+  /** The experiment which makes combiner lifting use this table when the key coder allows it. */
+  public static final String EXPERIMENT = "use_open_addressing_grouping_table";
+
+  private static final int INITIAL_ENTRIES = 16;
+  private static final int INITIAL_KEY_BYTES = 1024;
+  // The most entries the arrays can make room for, with twice as many slots.
+  private static final int MAX_CAPACITY = 1 << 29;
+  // Ranges of at most this many entries are insertion sorted when outputting.
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  // The bytes held by the arrays of the table for every entry it has room for, besides its key
+  // bytes and accumulator: two slots, the offset, length and hash of the key, the timestamp, the
+  // accumulator size, the dirty flag and the references to the windows and accumulator.
+  @VisibleForTesting
+  static final long BYTES_PER_ENTRY = 2 * 4 + 3 * 4 + 8 + 8 + 1 + 2 * Caches.REFERENCE_SIZE;
+
+  private static final Collection<? extends BoundedWindow> GLOBAL_WINDOWS =
+      Collections.singletonList(GlobalWindow.INSTANCE);
+
+  /**
+   * Returns a grouping table that combines inputs into an accumulator with a sampling {@link
+   * SizeEstimator} for the accumulators. The grouping table uses the cache to defer flushing output
+   * until the cache evicts the table.
+   */
+  public static <K, InputT, AccumT>
+      OpenAddressingGroupingTable<K, InputT, AccumT> combiningAndSampling(
+          PipelineOptions options,
+          Cache<Object, Object> cache,
+          CombineFn<InputT, AccumT, ?> combineFn,
+          Coder<K> keyCoder,
+          double sizeEstimatorSampleRate,
+          boolean isGloballyWindowed) {
+    return new OpenAddressingGroupingTable<>(
+        options,
+        cache,
+        keyCoder,
+        GlobalCombineFnRunners.create(combineFn),
+        new SamplingSizeEstimator(Caches::weigh, sizeEstimatorSampleRate, 1.0),
+        isGloballyWindowed);
+  }
+
+  /**
+   * Whether keys encoded by {@code keyCoder} can be grouped by their encoding, which requires the
+   * coder to be deterministic.
+   */
+  public static boolean supportsKeyCoder(Coder<?> keyCoder) {
+    try {
+      keyCoder.verifyDeterministic();
+      return true;
+    } catch (Coder.NonDeterministicException e) {
+      return false;
+    }
+  }
+
+  private static final class Key implements Weighted {
+    private static final Key INSTANCE = new Key();
+
+    @Override
+    public long getWeight() {
+      // Ignore the actual size of this singleton, see PrecombineGroupingTable.Key.
+      return 0;
+    }
+  }
+
+  private final PipelineOptions options;
+  private final Cache<Key, OpenAddressingGroupingTable<K, InputT, AccumT>> cache;
+  private final Coder<K> keyCoder;
+  private final GlobalCombineFnRunner<InputT, AccumT, ?> combineFn;
+  private final SizeEstimator sizer;
+  private final boolean isGloballyWindowed;
+  private final AtomicLong maxWeight;
+  private final KeyBytesOutputStream keyBytesOutputStream;
+  private long lastWeightForFlush;
+
+  // The entries of the table are indexed by their insertion order. A slot holds the index of its
+  // entry plus one, zero marking an empty slot.
+  private int[] slots;
+  private byte[] keyBytes;
+  private int keyBytesUsed;
+  private int[] keyOffsets;
+  private int[] keyLengths;
+  private int[] keyHashes;
+  // The PGBK output will inherit the timestamp of one of its inputs.
+  private long[] outputTimestamps;
+  private Collection<? extends BoundedWindow>[] windows;
+  private Object[] accumulators;
+  private long[] accumulatorSizes;
+  private boolean[] dirty;
+  private int size;
+  private long accumulatorsWeight;
+
+  OpenAddressingGroupingTable(
+      PipelineOptions options,
+      Cache<?, ?> cache,
+      Coder<K> keyCoder,
+      GlobalCombineFnRunner<InputT, AccumT, ?> combineFn,
+      SizeEstimator sizer,
+      boolean isGloballyWindowed) {
+    this.options = options;
+    this.cache = (Cache<Key, OpenAddressingGroupingTable<K, InputT, AccumT>>) cache;
+    this.keyCoder = keyCoder;
+    this.combineFn = combineFn;
+    this.sizer = sizer;
+    this.isGloballyWindowed = isGloballyWindowed;
+    this.maxWeight = new AtomicLong();
+    this.keyBytesOutputStream = new KeyBytesOutputStream();
+    allocate(INITIAL_ENTRIES, INITIAL_KEY_BYTES);
+    this.cache.put(Key.INSTANCE, this);
+  }
+
+  @Nullable
+  @Override
+  public OpenAddressingGroupingTable<K, InputT, AccumT> shrink() {
+    long currentWeight = maxWeight.updateAndGet(operand -> operand >> 1);
+    // Stop shrinking once the maximum weight is too small to cache anything, the next insertion
+    // will likely flush all entries.
+    if (currentWeight <= 100L) {
+      return null;
+    }
+    return this;
+  }
+
+  @Override
+  public long getWeight() {
+    return maxWeight.get();
+  }
+
+  /** Returns the memory held by this table, estimating only the size of the accumulators. */
+  @VisibleForTesting
+  long getTableWeight() {
+    return keyBytes.length + keyOffsets.length * BYTES_PER_ENTRY + accumulatorsWeight;
+  }
+
+  @VisibleForTesting
+  int size() {
+    return size;
+  }
+
+  @Override
+  public void put(
+      WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    if (size == keyOffsets.length) {
+      if (canGrow()) {
+        grow();
+      } else {
+        // Keep the table registered with the cache, it is only removed when the bundle finishes.
+        output(receiver);
+        lastWeightForFlush = getTableWeight();
+      }
+    }
+    // Ignore timestamp for grouping purposes.
+    // The Pre-combine output will inherit the timestamp of one of its inputs.
+    Collection<? extends BoundedWindow> valueWindows =
+        isGloballyWindowed ? GLOBAL_WINDOWS : value.getWindows();
+    int keyOffset = keyBytesUsed;
+    keyCoder.encode(value.getValue().getKey(), keyBytesOutputStream);
+    int keyLength = keyBytesUsed - keyOffset;
+    int keyHash = hash(keyOffset, keyLength, valueWindows);
+
+    int mask = slots.length - 1;
+    int slot = keyHash & mask;
+    int entry;
+    while ((entry = slots[slot] - 1) >= 0
+        && !matches(entry, keyHash, keyOffset, keyLength, valueWindows)) {
+      slot = (slot + 1) & mask;
+    }
+    if (entry >= 0) {
+      // The key is already in the table, drop its new encoding.
+      keyBytesUsed = keyOffset;
+    } else {
+      entry = size++;
+      slots[slot] = entry + 1;
+      keyOffsets[entry] = keyOffset;
+      keyLengths[entry] = keyLength;
+      keyHashes[entry] = keyHash;
+      outputTimestamps[entry] = value.getTimestamp().getMillis();
+      windows[entry] = valueWindows;
+      AccumT accumulator =
+          combineFn.createAccumulator(options, NullSideInputReader.empty(), valueWindows);
+      accumulators[entry] = accumulator;
+      accumulatorSizes[entry] = sizer.estimateSize(accumulator);
+      accumulatorsWeight += accumulatorSizes[entry];
+    }
+    dirty[entry] = true;
+    updateAccumulator(
+        entry,
+        combineFn.addInput(
+            accumulator(entry),
+            value.getValue().getValue(),
+            options,
+            NullSideInputReader.empty(),
+            windows[entry]));
+
+    if (Caches.shouldUpdateOnSizeChange(lastWeightForFlush, getTableWeight())) {
+      flushIfNeeded(receiver);
+      lastWeightForFlush = getTableWeight();
+    }
+  }
+
+  private void flushIfNeeded(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    long weight = getTableWeight();
+    // Increase the maximum only if we require it
+    maxWeight.accumulateAndGet(weight, (current, update) -> current < update ? update : current);
+
+    // Update the cache to ensure that LRU is handled appropriately and for the cache to have an
+    // opportunity to shrink the maxWeight if necessary.
+    cache.put(Key.INSTANCE, this);
+
+    // Get the updated weight now that the cache may have been shrunk and respect it. Only compact
+    // and output from the bundle processing thread that is inserting elements into the table.
+    long currentMax = maxWeight.get();
+    if (weight > currentMax) {
+      for (int entry = 0; entry < size; entry++) {
+        compact(entry);
+      }
+      if (getTableWeight() > currentMax) {
+        output(receiver);
+        // Release the memory of the table as well since the cache asked for it.
+        allocate(INITIAL_ENTRIES, INITIAL_KEY_BYTES);
+      }
+    }
+  }
+
+  /** Flushes all entries in this table to output. */
+  @Override
+  public void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
+    cache.remove(Key.INSTANCE);
+    output(receiver);
+  }
+
+  /** Outputs all entries in the order of their encoded keys and empties the table. */
+  private void output(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
+    int[] entries = new int[size];
+    for (int entry = 0; entry < size; entry++) {
+      entries[entry] = entry;
+    }
+    sortByKey(entries);
+    for (int entry : entries) {
+      compact(entry);
+      K key =
+          keyCoder.decode(
+              new ByteArrayInputStream(keyBytes, keyOffsets[entry], keyLengths[entry]));
+      KV<K, AccumT> kv = KV.of(key, accumulator(entry));
+      receiver.accept(
+          isGloballyWindowed
+              ? WindowedValues.valueInGlobalWindow(kv)
+              : WindowedValues.of(
+                  kv,
+                  new Instant(outputTimestamps[entry]),
+                  windows[entry],
+                  // The PaneInfo will always be overwritten by the GBK.
+                  PaneInfo.NO_FIRING));
+    }
+    clear();
+  }
+
+  private void compact(int entry) {
+    if (dirty[entry]) {
+      updateAccumulator(
+          entry,
+          combineFn.compact(
+              accumulator(entry), options, NullSideInputReader.empty(), windows[entry]));
+      dirty[entry] = false;
+    }
+  }
+
+  private void updateAccumulator(int entry, AccumT updated) {
+    // An accumulator of a fixed size class which was updated in place keeps its size, which
+    // avoids walking the object graph for every input to primitive combiners like Sum.
+    if (updated != accumulators[entry] || !PrecombineGroupingTable.hasFixedSize(updated)) {
+      long updatedSize = sizer.estimateSize(updated);
+      accumulatorsWeight += updatedSize - accumulatorSizes[entry];
+      accumulatorSizes[entry] = updatedSize;
+    }
+    accumulators[entry] = updated;
+  }
+
+  private AccumT accumulator(int entry) {
+    return (AccumT) accumulators[entry];
+  }
+
+  private int hash(int keyOffset, int keyLength, Collection<? extends BoundedWindow> keyWindows) {
+    int hash = 1;
+    for (int i = keyOffset, end = keyOffset + keyLength; i < end; i++) {
+      hash = 31 * hash + keyBytes[i];
+    }
+    if (!isGloballyWindowed) {
+      hash = 31 * hash + keyWindows.hashCode();
+    }
+    // Spread the bits since the slot is taken from the lowest bits of the hash.
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private boolean matches(
+      int entry,
+      int keyHash,
+      int keyOffset,
+      int keyLength,
+      Collection<? extends BoundedWindow> keyWindows) {
+    if (keyHashes[entry] != keyHash || keyLengths[entry] != keyLength) {
+      return false;
+    }
+    for (int i = 0, entryOffset = keyOffsets[entry]; i < keyLength; i++) {
+      if (keyBytes[entryOffset + i] != keyBytes[keyOffset + i]) {
+        return false;
+      }
+    }
+    return isGloballyWindowed || windows[entry].equals(keyWindows);
+  }
+
+  /** Sorts entries by their encoded keys with a merge sort over the primitive indices. */
+  private void sortByKey(int[] entries) {
+    mergeSort(entries.clone(), entries, 0, entries.length);
+  }
+
+  /**
+   * Sorts {@code src[from, to)} into {@code dst[from, to)}, using {@code src} as scratch space.
+   * Both arrays must hold the same entries in that range.
+   */
+  private void mergeSort(int[] src, int[] dst, int from, int to) {
+    if (to - from <= INSERTION_SORT_THRESHOLD) {
+      for (int i = from + 1; i < to; i++) {
+        int entry = dst[i];
+        int j = i;
+        for (; j > from && compareKeys(dst[j - 1], entry) > 0; j--) {
+          dst[j] = dst[j - 1];
+        }
+        dst[j] = entry;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(dst, src, from, mid);
+    mergeSort(dst, src, mid, to);
+    for (int i = from, left = from, right = mid; i < to; i++) {
+      if (right >= to || (left < mid && compareKeys(src[left], src[right]) <= 0)) {
+        dst[i] = src[left++];
+      } else {
+        dst[i] = src[right++];
+      }
+    }
+  }
+
+  /** Compares the encoded keys of two entries as unsigned bytes. */
+  private int compareKeys(int entry, int otherEntry) {
+    int offset = keyOffsets[entry];
+    int otherOffset = keyOffsets[otherEntry];
+    int length = Math.min(keyLengths[entry], keyLengths[otherEntry]);
+    for (int i = 0; i < length; i++) {
+      int result = Integer.compare(keyBytes[offset + i] & 0xFF, keyBytes[otherOffset + i] & 0xFF);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(keyLengths[entry], keyLengths[otherEntry]);
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private void allocate(int entries, int keyBytesLength) {
+    slots = new int[entries * 2];
+    keyBytes = new byte[keyBytesLength];
+    keyOffsets = new int[entries];
+    keyLengths = new int[entries];
+    keyHashes = new int[entries];
+    outputTimestamps = new long[entries];
+    windows = new Collection[entries];
+    accumulators = new Object[entries];
+    accumulatorSizes = new long[entries];
+    dirty = new boolean[entries];
+    keyBytesUsed = 0;
+    size = 0;
+    accumulatorsWeight = 0;
+  }
+
+  private void clear() {
+    Arrays.fill(slots, 0);
+    Arrays.fill(windows, 0, size, null);
+    Arrays.fill(accumulators, 0, size, null);
+    keyBytesUsed = 0;
+    size = 0;
+    accumulatorsWeight = 0;
+  }
+
+  /**
+   * Whether the cache has memory left for the arrays of a table with twice the room for entries,
+   * besides the weight of this table it already accounts for.
+   */
+  private boolean canGrow() {
+    int entries = keyOffsets.length;
+    if (entries >= MAX_CAPACITY) {
+      return false;
+    }
+    long unaccountedWeight = getTableWeight() + entries * BYTES_PER_ENTRY - maxWeight.get();
+    return unaccountedWeight <= Caches.remainingWeightInBytes(cache);
+  }
+
+  /** Doubles the number of entries the table has room for, keeping the slots at most half full. */
+  private void grow() {
+    int entries = keyOffsets.length * 2;
+    keyOffsets = Arrays.copyOf(keyOffsets, entries);
+    keyLengths = Arrays.copyOf(keyLengths, entries);
+    keyHashes = Arrays.copyOf(keyHashes, entries);
+    outputTimestamps = Arrays.copyOf(outputTimestamps, entries);
+    windows = Arrays.copyOf(windows, entries);
+    accumulators = Arrays.copyOf(accumulators, entries);
+    accumulatorSizes = Arrays.copyOf(accumulatorSizes, entries);
+    dirty = Arrays.copyOf(dirty, entries);
+    slots = new int[entries * 2];
+    int mask = slots.length - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = keyHashes[entry] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+
+  /** Appends the bytes written to it to the encoded keys of the table. */
+  private class KeyBytesOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+      ensureKeyBytes(1);
+      keyBytes[keyBytesUsed++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureKeyBytes(len);
+      System.arraycopy(b, off, keyBytes, keyBytesUsed, len);
+      keyBytesUsed += len;
+    }
+
+    private void ensureKeyBytes(int length) {
+      if (keyBytesUsed + length > keyBytes.length) {
+        keyBytes =
+            Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyBytesUsed + length));
+      }
+    }
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.beam.fn.harness;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -54,7 +56,9 @@ import org.joda.time.Instant;
 })
 @NotThreadSafe
 public class PrecombineGroupingTable<K, InputT, AccumT>
-    implements Shrinkable<PrecombineGroupingTable<K, InputT, AccumT>>, Weighted {
+    implements GroupingTable<K, InputT, AccumT>,
+        Shrinkable<PrecombineGroupingTable<K, InputT, AccumT>>,
+        Weighted {
 
   /**
    * Returns a grouping table that combines inputs into an accumulator. The grouping table uses the
@@ -114,6 +118,34 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
     return maxWeight.get();
   }
 
+  /**
+   * Whether every instance of the class has the same size. This holds for primitive arrays, whose
+   * length can't change, and for classes whose instance fields are all primitives, such as the
+   * accumulators of {@code Sum}, {@code Count} and {@code Mean}.
+   */
+  private static final ClassValue<Boolean> FIXED_SIZE_CLASSES =
+      new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+          if (type.isArray()) {
+            return type.getComponentType().isPrimitive();
+          }
+          for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+              if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                return false;
+              }
+            }
+          }
+          return true;
+        }
+      };
+
+  @VisibleForTesting
+  static boolean hasFixedSize(@Nullable Object value) {
+    return value != null && FIXED_SIZE_CLASSES.get(value.getClass());
+  }
+
   /** Provides client-specific operations for size estimates. */
   @FunctionalInterface
   public interface SizeEstimator {
@@ -315,8 +347,8 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
       this.accumulator =
           combineFn.createAccumulator(
               options, NullSideInputReader.empty(), groupingKey.getWindows());
-      add(initialInputValue);
       this.accumulatorSize = sizer.estimateSize(accumulator);
+      add(initialInputValue);
     }
 
     public GroupingTableKey getGroupingKey() {
@@ -342,20 +374,27 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
 
     public void compact() {
       if (dirty) {
-        accumulator =
+        updateAccumulator(
             combineFn.compact(
-                accumulator, options, NullSideInputReader.empty(), groupingKey.getWindows());
-        accumulatorSize = sizer.estimateSize(accumulator);
+                accumulator, options, NullSideInputReader.empty(), groupingKey.getWindows()));
         dirty = false;
       }
     }
 
     public void add(InputT value) {
       dirty = true;
-      accumulator =
+      updateAccumulator(
           combineFn.addInput(
-              accumulator, value, options, NullSideInputReader.empty(), groupingKey.getWindows());
-      accumulatorSize = sizer.estimateSize(accumulator);
+              accumulator, value, options, NullSideInputReader.empty(), groupingKey.getWindows()));
+    }
+
+    private void updateAccumulator(AccumT updated) {
+      // An accumulator of a fixed size class which was updated in place keeps its size, which
+      // avoids walking the object graph for every input to primitive combiners like Sum.
+      if (updated != accumulator || !hasFixedSize(updated)) {
+        accumulatorSize = sizer.estimateSize(updated);
+      }
+      accumulator = updated;
     }
 
     @Override
@@ -382,6 +421,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
    * full.
    */
   @VisibleForTesting
+  @Override
   public void put(
       WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
       throws Exception {
@@ -479,6 +519,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
   }
 
   /** Flushes all entries in this table to output. */
+  @Override
   public void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
     cache.remove(Key.INSTANCE);
     for (GroupingTableEntry valueToFlush : lruMap.values()) {
@@ -531,7 +572,7 @@ public class PrecombineGroupingTable<K, InputT, AccumT>
 
     private long nextSample = 0;
 
-    private SamplingSizeEstimator(
+    SamplingSizeEstimator(
         SizeEstimator underlying, double minSampleRate, double maxSampleRate) {
       this(underlying, minSampleRate, maxSampleRate, DEFAULT_MIN_SAMPLED, new Random());
     }
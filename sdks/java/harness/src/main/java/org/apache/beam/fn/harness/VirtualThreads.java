@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates executors backed by virtual threads, on Java runtimes which support them.
+ *
+ * <p>The harness is compiled for Java 8, so the virtual thread APIs of Java 21 are looked up
+ * reflectively.
+ *
+ * <p>A virtual thread blocked on a state or data request releases its carrier thread, which lets
+ * the harness process many more concurrent bundles of IO bound DoFns without a platform thread per
+ * bundle. Each task runs on a new thread, so thread-locals such as the {@link
+ * org.apache.beam.sdk.metrics.MetricsEnvironment} state of a bundle only live as long as the
+ * instruction that set them.
+ */
+class VirtualThreads {
+  private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+  /** The experiment which makes the harness handle instructions on virtual threads. */
+  static final String EXPERIMENT = "use_virtual_threads";
+
+  private VirtualThreads() {}
+
+  /**
+   * Returns the executor to handle instructions on, which is a new executor running each
+   * instruction on a virtual thread if the {@link #EXPERIMENT} is enabled and the Java runtime
+   * supports virtual threads, and {@code platformExecutor} otherwise.
+   */
+  static ExecutorService instructionExecutor(
+      PipelineOptions options, ExecutorService platformExecutor) {
+    if (!ExperimentalOptions.hasExperiment(options, EXPERIMENT)) {
+      return platformExecutor;
+    }
+    @Nullable ExecutorService executor = newThreadPerTaskExecutor("instruction-handler-");
+    if (executor == null) {
+      LOG.warn(
+          "Ignoring the {} experiment since virtual threads require Java 21 or later.", EXPERIMENT);
+      return platformExecutor;
+    }
+    LOG.info("Handling instructions on virtual threads.");
+    return executor;
+  }
+
+  /**
+   * Returns an executor which runs each task on a new virtual thread named {@code namePrefix}
+   * followed by a counter, or {@code null} if the Java runtime does not support virtual threads.
+   */
+  static @Nullable ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder =
+          builderClass
+              .getMethod("name", String.class, long.class)
+              .invoke(builder, namePrefix, 0L);
+      ThreadFactory threadFactory =
+          (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+      return (ExecutorService)
+          Executors.class
+              .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+              .invoke(null, threadFactory);
+    } catch (ReflectiveOperationException e) {
+      // Either an older runtime, or one that has virtual threads only as a preview feature.
+      return null;
+    }
+  }
+}
@@ -108,6 +108,11 @@ public class BeamFnControlClient {
         LOG.debug("Received InstructionRequest {}", request);
         executor.execute(
             () -> {
+              // Name the thread after the instruction it handles, so that thread dumps and lull
+              // reports show which instruction a thread is working on.
+              Thread thread = Thread.currentThread();
+              String threadName = thread.getName();
+              thread.setName(threadName + "-" + request.getInstructionId());
               try {
                 // Ensure that we set and clear the MDC since processing the request will occur
                 // in a separate thread.
@@ -119,6 +124,7 @@ public class BeamFnControlClient {
                 throw e;
               } finally {
                 BeamFnLoggingMDC.reset();
+                thread.setName(threadName);
               }
             });
       } finally {
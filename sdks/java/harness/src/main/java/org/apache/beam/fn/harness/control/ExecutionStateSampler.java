@@ -17,8 +17,16 @@
  */
 package org.apache.beam.fn.harness.control;
 
+import static org.apache.beam.sdk.util.Preconditions.checkStateNotNull;
+
 import com.google.auto.value.AutoValue;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,11 +38,15 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 import javax.annotation.concurrent.GuardedBy;
 import org.apache.beam.fn.harness.logging.BeamFnLoggingMDC;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
 import org.apache.beam.runners.core.metrics.MetricsContainerStepMap;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
 import org.apache.beam.runners.core.metrics.MonitoringInfoEncodings;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.metrics.BoundedTrie;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Distribution;
@@ -77,16 +89,39 @@ public class ExecutionStateSampler {
           .appendSeconds()
           .appendSuffix("s")
           .toFormatter();
+  /**
+   * The experiment which counts the bytes allocated by each PTransform, reported under the {@link
+   * MonitoringInfoConstants.Urns#PTRANSFORM_ALLOCATED_BYTES} URN.
+   *
+   * <p>The bytes allocated by the bundle processing thread are read at every execution state
+   * transition, and attributed to the state which was active since the previous transition.
+   * Nothing is attributed while the bundle is processed on a thread whose allocations the JVM
+   * can't measure, such as a virtual thread.
+   */
+  public static final String TRACK_ALLOCATED_BYTES_EXPERIMENT = "track_allocated_bytes";
+
   private final int periodMs;
   private final MillisProvider clock;
+  // Only present when the bytes allocated by each PTransform are tracked.
+  private final @Nullable ShortIdMap shortIds;
+  private final @Nullable LongSupplier currentThreadAllocatedBytes;
 
   @GuardedBy("activeStateTrackers")
   private final Set<ExecutionStateTracker> activeStateTrackers;
 
   private final Future<Void> stateSamplingThread;
 
-  @SuppressWarnings("methodref.receiver.bound" /* Synchronization ensures proper initialization */)
   public ExecutionStateSampler(PipelineOptions options, MillisProvider clock) {
+    this(options, clock, null);
+  }
+
+  /**
+   * Creates a sampler whose trackers report the bytes allocated by each PTransform with short ids
+   * from {@code shortIds}, if enabled by the {@link #TRACK_ALLOCATED_BYTES_EXPERIMENT} experiment.
+   */
+  @SuppressWarnings("methodref.receiver.bound" /* Synchronization ensures proper initialization */)
+  public ExecutionStateSampler(
+      PipelineOptions options, MillisProvider clock, @Nullable ShortIdMap shortIds) {
     String samplingPeriodMills =
         ExperimentalOptions.getExperimentValue(
             options, ExperimentalOptions.STATE_SAMPLING_PERIOD_MILLIS);
@@ -95,6 +130,12 @@ public class ExecutionStateSampler {
             ? DEFAULT_SAMPLING_PERIOD_MS
             : Integer.parseInt(samplingPeriodMills);
     this.clock = clock;
+    this.currentThreadAllocatedBytes =
+        shortIds != null
+                && ExperimentalOptions.hasExperiment(options, TRACK_ALLOCATED_BYTES_EXPERIMENT)
+            ? getCurrentThreadAllocatedBytes()
+            : null;
+    this.shortIds = currentThreadAllocatedBytes == null ? null : shortIds;
     this.activeStateTrackers = new HashSet<>();
     // We specifically synchronize to ensure that this object can complete
     // being published before the state sampler thread starts.
@@ -107,6 +148,48 @@ public class ExecutionStateSampler {
     }
   }
 
+  /**
+   * Returns a supplier of the bytes allocated by the current thread, which supplies a negative
+   * value for threads whose allocations can't be measured, or {@code null} if the JVM can't measure
+   * the bytes allocated by a thread.
+   */
+  private static @Nullable LongSupplier getCurrentThreadAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocatedBytesMXBean =
+          (com.sun.management.ThreadMXBean) threadMXBean;
+      if (allocatedBytesMXBean.isThreadAllocatedMemorySupported()) {
+        if (!allocatedBytesMXBean.isThreadAllocatedMemoryEnabled()) {
+          allocatedBytesMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        try {
+          // Available since Java 14, and doesn't have to look the thread up by its id.
+          MethodHandle getCurrentThreadAllocatedBytes =
+              MethodHandles.publicLookup()
+                  .findVirtual(
+                      com.sun.management.ThreadMXBean.class,
+                      "getCurrentThreadAllocatedBytes",
+                      MethodType.methodType(long.class))
+                  .bindTo(allocatedBytesMXBean);
+          return () -> {
+            try {
+              return (long) getCurrentThreadAllocatedBytes.invokeExact();
+            } catch (Throwable e) {
+              throw new RuntimeException(e);
+            }
+          };
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+          return () -> allocatedBytesMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+      }
+    }
+    LOG.warn(
+        "Not tracking the bytes allocated by each PTransform as requested by the {} experiment, "
+            + "since the JVM does not support measuring the bytes allocated by a thread.",
+        TRACK_ALLOCATED_BYTES_EXPERIMENT);
+    return null;
+  }
+
   /** An {@link ExecutionState} represents the current state of an execution thread. */
   public interface ExecutionState {
 
@@ -285,6 +368,10 @@ public class ExecutionStateSampler {
     private boolean inErrorState = false;
     // Read and written by the ExecutionStateSampler thread
     private long transitionsAtLastSample;
+    // Only present when the bytes allocated by each PTransform are tracked.
+    private final @Nullable Map<String, AllocatedBytes> allocatedBytesByPTransformId;
+    // Read and written by the bundle processing thread, negative when allocations aren't tracked.
+    private long allocatedBytesAtLastTransition;
 
     // Ignore the @UnderInitialization for ExecutionStateTracker since it will be initialized by the
     // time this method returns and no references are leaked to other threads during construction.
@@ -299,6 +386,8 @@ public class ExecutionStateSampler {
       this.currentStateLazy = new AtomicReference<>();
       this.processBundleId = new AtomicReference<>();
       this.metricsContainer = new MetricsContainerForTracker(this);
+      this.allocatedBytesByPTransformId = shortIds == null ? null : new HashMap<>();
+      this.allocatedBytesAtLastTransition = -1;
     }
 
     /**
@@ -331,7 +420,11 @@ public class ExecutionStateSampler {
               ptransformId,
               ptransformUniqueName,
               stateName,
-              metricsContainerRegistry.getContainer(ptransformId));
+              metricsContainerRegistry.getContainer(ptransformId),
+              allocatedBytesByPTransformId == null
+                  ? null
+                  : allocatedBytesByPTransformId.computeIfAbsent(
+                      ptransformId, AllocatedBytes::new));
       executionStates.add(newState);
       return newState;
     }
@@ -421,6 +514,76 @@ public class ExecutionStateSampler {
           processBundleId.get());
     }
 
+    /**
+     * Attributes the bytes allocated by the bundle processing thread since the previous transition
+     * to the current state. Must be invoked before every transition.
+     */
+    private void attributeAllocatedBytes() {
+      LongSupplier allocatedBytesSupplier = currentThreadAllocatedBytes;
+      if (allocatedBytesSupplier == null || allocatedBytesAtLastTransition < 0) {
+        return;
+      }
+      long allocatedBytes = allocatedBytesSupplier.getAsLong();
+      if (allocatedBytes < 0) {
+        return;
+      }
+      ExecutionStateImpl state = currentState;
+      if (state != null && state.allocatedBytes != null) {
+        state.allocatedBytes.add(allocatedBytes - allocatedBytesAtLastTransition);
+      }
+      allocatedBytesAtLastTransition = allocatedBytes;
+    }
+
+    /** The bytes allocated while executing a PTransform, reported as a monitoring info. */
+    private class AllocatedBytes {
+      private final String shortId;
+
+      // Read and written by the bundle processing thread frequently.
+      private long bytes;
+      // Read by the ExecutionStateSampler, written by the bundle processing thread frequently.
+      private final AtomicLong lazyBytes;
+
+      @GuardedBy("this")
+      private boolean hasReportedValue;
+
+      @GuardedBy("this")
+      private long lastReportedValue;
+
+      private AllocatedBytes(String ptransformId) {
+        this.shortId =
+            checkStateNotNull(shortIds)
+                .getOrCreateShortId(
+                    checkStateNotNull(
+                        new SimpleMonitoringInfoBuilder()
+                            .setUrn(MonitoringInfoConstants.Urns.PTRANSFORM_ALLOCATED_BYTES)
+                            .setType(MonitoringInfoConstants.TypeUrns.SUM_INT64_TYPE)
+                            .setLabel(MonitoringInfoConstants.Labels.PTRANSFORM, ptransformId)
+                            .build()));
+        this.lazyBytes = new AtomicLong();
+      }
+
+      private void add(long allocatedBytes) {
+        bytes += allocatedBytes;
+        lazyBytes.lazySet(bytes);
+      }
+
+      private synchronized void updateMonitoringData(Map<String, ByteString> monitoringData) {
+        long bytesReads = lazyBytes.get();
+        if (hasReportedValue && lastReportedValue == bytesReads) {
+          return;
+        }
+        monitoringData.put(shortId, MonitoringInfoEncodings.encodeInt64Counter(bytesReads));
+        lastReportedValue = bytesReads;
+        hasReportedValue = true;
+      }
+
+      private synchronized void reset() {
+        bytes = 0;
+        lazyBytes.set(0);
+        lastReportedValue = 0;
+      }
+    }
+
     /** Returns the ptransform id of the currently executing thread. */
     public @Nullable String getCurrentThreadsPTransformId() {
       if (currentState == null) {
@@ -437,6 +600,8 @@ public class ExecutionStateSampler {
       private final String ptransformUniqueName;
       private final String stateName;
       private final MetricsContainer metricsContainer;
+      // Only present when the bytes allocated by each PTransform are tracked.
+      private final @Nullable AllocatedBytes allocatedBytes;
 
       // Read and written by the bundle processing thread frequently.
       private long msecs;
@@ -456,12 +621,14 @@ public class ExecutionStateSampler {
           String ptransformId,
           String ptransformName,
           String stateName,
-          MetricsContainer metricsContainer) {
+          MetricsContainer metricsContainer,
+          @Nullable AllocatedBytes allocatedBytes) {
         this.shortId = shortId;
         this.ptransformId = ptransformId;
         this.ptransformUniqueName = ptransformName;
         this.stateName = stateName;
         this.metricsContainer = metricsContainer;
+        this.allocatedBytes = allocatedBytes;
         this.lazyMsecs = new AtomicLong();
       }
 
@@ -498,6 +665,7 @@ public class ExecutionStateSampler {
 
       @Override
       public void activate() {
+        attributeAllocatedBytes();
         previousState = currentState;
         currentState = this;
         currentStateLazy.lazySet(this);
@@ -507,6 +675,7 @@ public class ExecutionStateSampler {
 
       @Override
       public void deactivate() {
+        attributeAllocatedBytes();
         currentState = previousState;
         currentStateLazy.lazySet(previousState);
         previousState = null;
@@ -537,6 +706,10 @@ public class ExecutionStateSampler {
       this.startTimeMillis.lazySet(nowMillis);
       this.lastTransitionTimeMillis.lazySet(nowMillis);
       this.trackedThread.lazySet(Thread.currentThread());
+      LongSupplier allocatedBytesSupplier = currentThreadAllocatedBytes;
+      if (allocatedBytesSupplier != null) {
+        this.allocatedBytesAtLastTransition = allocatedBytesSupplier.getAsLong();
+      }
       synchronized (activeStateTrackers) {
         activeStateTrackers.add(this);
       }
@@ -544,16 +717,23 @@ public class ExecutionStateSampler {
 
     @Override
     public void updateIntermediateMonitoringData(Map<String, ByteString> monitoringData) {
-      for (ExecutionStateImpl executionState : executionStates) {
-        executionState.updateMonitoringData(monitoringData);
-      }
+      updateMonitoringData(monitoringData);
     }
 
     @Override
     public void updateFinalMonitoringData(Map<String, ByteString> monitoringData) {
+      updateMonitoringData(monitoringData);
+    }
+
+    private void updateMonitoringData(Map<String, ByteString> monitoringData) {
       for (ExecutionStateImpl executionState : executionStates) {
         executionState.updateMonitoringData(monitoringData);
       }
+      if (allocatedBytesByPTransformId != null) {
+        for (AllocatedBytes allocatedBytes : allocatedBytesByPTransformId.values()) {
+          allocatedBytes.updateMonitoringData(monitoringData);
+        }
+      }
     }
 
     /**
@@ -567,6 +747,11 @@ public class ExecutionStateSampler {
         for (ExecutionStateImpl executionState : executionStates) {
           executionState.reset();
         }
+        if (allocatedBytesByPTransformId != null) {
+          for (AllocatedBytes allocatedBytes : allocatedBytesByPTransformId.values()) {
+            allocatedBytes.reset();
+          }
+        }
         this.transitionsAtLastSample = 0;
       }
       this.processBundleId.lazySet(null);
@@ -575,6 +760,7 @@ public class ExecutionStateSampler {
       this.numTransitions = 0;
       this.numTransitionsLazy.lazySet(0);
       this.lastTransitionTimeMillis.lazySet(0);
+      this.allocatedBytesAtLastTransition = -1;
       this.metricsContainerRegistry.reset();
       this.inErrorState = false;
       BeamFnLoggingMDC.setStateTracker(null);
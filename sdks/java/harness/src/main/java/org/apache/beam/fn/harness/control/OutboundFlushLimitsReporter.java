@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.control;
+
+import static org.apache.beam.sdk.util.Preconditions.checkStateNotNull;
+
+import java.util.Map;
+import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.runners.core.metrics.GaugeData;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
+import org.apache.beam.runners.core.metrics.MonitoringInfoEncodings;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
+import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
+
+/**
+ * Reports the flush limits that an adaptive {@link BeamFnDataOutboundAggregator} chose for the
+ * data endpoint of a transform, as latest value gauges of the transform.
+ */
+class OutboundFlushLimitsReporter implements BundleProgressReporter {
+  private final BeamFnDataOutboundAggregator aggregator;
+  private final String pTransformId;
+  private final String sizeLimitShortId;
+  private final String lingerShortId;
+
+  OutboundFlushLimitsReporter(
+      ShortIdMap shortIds, BeamFnDataOutboundAggregator aggregator, String pTransformId) {
+    this.aggregator = aggregator;
+    this.pTransformId = pTransformId;
+    this.sizeLimitShortId =
+        shortIds.getOrCreateShortId(
+            gauge(MonitoringInfoConstants.Urns.DATA_CHANNEL_FLUSH_SIZE_LIMIT, pTransformId));
+    this.lingerShortId =
+        shortIds.getOrCreateShortId(
+            gauge(MonitoringInfoConstants.Urns.DATA_CHANNEL_FLUSH_LINGER_MSECS, pTransformId));
+  }
+
+  private static MonitoringInfo gauge(String urn, String pTransformId) {
+    return checkStateNotNull(
+        new SimpleMonitoringInfoBuilder()
+            .setUrn(urn)
+            .setType(MonitoringInfoConstants.TypeUrns.LATEST_INT64_TYPE)
+            .setLabel(MonitoringInfoConstants.Labels.PTRANSFORM, pTransformId)
+            .build());
+  }
+
+  @Override
+  public void updateIntermediateMonitoringData(Map<String, ByteString> monitoringData) {
+    report(monitoringData);
+  }
+
+  @Override
+  public void updateFinalMonitoringData(Map<String, ByteString> monitoringData) {
+    report(monitoringData);
+  }
+
+  private void report(Map<String, ByteString> monitoringData) {
+    monitoringData.put(
+        sizeLimitShortId,
+        MonitoringInfoEncodings.encodeInt64Gauge(
+            GaugeData.create(aggregator.getSizeLimit(pTransformId))));
+    monitoringData.put(
+        lingerShortId,
+        MonitoringInfoEncodings.encodeInt64Gauge(GaugeData.create(aggregator.getLingerMillis())));
+  }
+
+  @Override
+  public void reset() {}
+}
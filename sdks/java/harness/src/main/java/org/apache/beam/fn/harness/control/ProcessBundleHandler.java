@@ -385,6 +385,10 @@ public class ProcessBundleHandler {
                                       BeamUrns.getUrn(
                                           StandardRunnerProtocols.Enum
                                               .CONTROL_RESPONSE_ELEMENTS_EMBEDDING))));
+                  if (aggregator.isAdaptive()) {
+                    addBundleProgressReporter.accept(
+                        new OutboundFlushLimitsReporter(shortIds, aggregator, pTransformId));
+                  }
                   return aggregator.registerOutputDataLocation(pTransformId, coder);
                 }
 
@@ -785,7 +789,8 @@ public class ProcessBundleHandler {
             shortIds,
             bundleProgressReporterAndRegistrar,
             bundleDescriptor,
-            dataSampler);
+            dataSampler,
+            options);
     HashSet<String> processedPTransformIds = new HashSet<>();
 
     PTransformFunctionRegistry startFunctionRegistry =
@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.data;
+
+import static org.apache.beam.sdk.util.Preconditions.checkStateNotNull;
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.beam.fn.harness.HandlesSplits;
+import org.apache.beam.fn.harness.control.BundleProgressReporter;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
+import org.apache.beam.runners.core.metrics.MonitoringInfoEncodings;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.util.HistogramData;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
+
+/**
+ * Samples how long the consumers of a bundle take to process an element and reports the latencies
+ * as a histogram per PTransform, under the {@link
+ * MonitoringInfoConstants.Urns#ELEMENT_PROCESSING_LATENCY_MICROS} URN.
+ *
+ * <p>One in every {@code samplingPeriod} elements delivered to a consumer outside of any other
+ * consumer is timed, along with every element it causes to be output downstream, so that each
+ * PTransform sees the same sampling rate as the inputs of the bundle. The latency recorded for a
+ * PTransform excludes the time spent within the consumers it outputs to, so that a slow transform
+ * doesn't make every transform upstream of it look slow as well. Elements which are not sampled
+ * only pay for maintaining a couple of counters.
+ *
+ * <p>Latencies are recorded in microseconds within exponential buckets, from under 2 microseconds
+ * to over an hour. Recording is lock free so the histograms can be reported while the bundle is
+ * being processed.
+ */
+@NotThreadSafe
+class ElementLatencyTracker {
+  static final HistogramData.ExponentialBuckets BUCKET_TYPE =
+      HistogramData.ExponentialBuckets.of(0, 32);
+
+  private final ShortIdMap shortIdMap;
+  private final BundleProgressReporter.Registrar bundleProgressReporterRegistrar;
+  private final int samplingPeriod;
+  private final Map<String, LatencyHistogram> pTransformIdsToHistograms;
+  private int elementsUntilNextSample;
+  private int consumersInProgress;
+  // Whether the element being processed by the outermost consumer in progress is timed.
+  private boolean timingInProgress;
+  // Total time of the timed elements which finished so far, used to exclude the time of nested
+  // consumers from the time of the consumer which output to them.
+  private long finishedNanos;
+
+  ElementLatencyTracker(
+      ShortIdMap shortIdMap,
+      BundleProgressReporter.Registrar bundleProgressReporterRegistrar,
+      int samplingPeriod) {
+    checkArgument(samplingPeriod > 0, "Sampling period must be positive, got %s", samplingPeriod);
+    this.shortIdMap = shortIdMap;
+    this.bundleProgressReporterRegistrar = bundleProgressReporterRegistrar;
+    this.samplingPeriod = samplingPeriod;
+    this.pTransformIdsToHistograms = new HashMap<>();
+    this.elementsUntilNextSample = 1;
+  }
+
+  /**
+   * Returns the sampling period configured with the {@link
+   * PCollectionConsumerRegistry#ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT} experiment, or {@code
+   * 0} if latencies should not be tracked.
+   */
+  static int getSamplingPeriod(PipelineOptions options) {
+    String samplingPeriod =
+        ExperimentalOptions.getExperimentValue(
+            options, PCollectionConsumerRegistry.ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT);
+    return samplingPeriod == null ? 0 : Integer.parseInt(samplingPeriod);
+  }
+
+  /**
+   * Returns a consumer which records the latencies of the sampled elements passed to {@code
+   * consumer} in the histogram of {@code pTransformId}.
+   *
+   * <p>Consumers which handle splits are returned as is, so their latency is attributed to the
+   * consumer which outputs to them.
+   */
+  <T> FnDataReceiver<WindowedValue<T>> wrap(
+      String pTransformId, FnDataReceiver<WindowedValue<T>> consumer) {
+    if (consumer instanceof HandlesSplits) {
+      return consumer;
+    }
+    LatencyHistogram histogram =
+        pTransformIdsToHistograms.computeIfAbsent(
+            pTransformId,
+            id -> {
+              LatencyHistogram newHistogram = new LatencyHistogram(shortIdMap, id);
+              bundleProgressReporterRegistrar.register(newHistogram);
+              return newHistogram;
+            });
+    return input -> {
+      if (consumersInProgress == 0) {
+        timingInProgress = --elementsUntilNextSample <= 0;
+        if (timingInProgress) {
+          elementsUntilNextSample = samplingPeriod;
+        }
+      }
+      consumersInProgress += 1;
+      if (!timingInProgress) {
+        try {
+          consumer.accept(input);
+        } finally {
+          consumersInProgress -= 1;
+        }
+        return;
+      }
+      long finishedNanosAtStart = finishedNanos;
+      long startNanos = System.nanoTime();
+      try {
+        consumer.accept(input);
+      } finally {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        consumersInProgress -= 1;
+        histogram.record(elapsedNanos - (finishedNanos - finishedNanosAtStart));
+        // Replace the time of the nested elements with the time of this element.
+        finishedNanos = finishedNanosAtStart + elapsedNanos;
+      }
+    };
+  }
+
+  /** A lock free histogram of element latencies which reports itself as a monitoring info. */
+  private static class LatencyHistogram implements BundleProgressReporter {
+    private final String shortId;
+    private final AtomicLongArray bucketCounts;
+    private final AtomicLong overflowCount;
+
+    LatencyHistogram(ShortIdMap shortIdMap, String pTransformId) {
+      this.shortId =
+          shortIdMap.getOrCreateShortId(
+              checkStateNotNull(
+                  new SimpleMonitoringInfoBuilder()
+                      .setUrn(MonitoringInfoConstants.Urns.ELEMENT_PROCESSING_LATENCY_MICROS)
+                      .setType(MonitoringInfoConstants.TypeUrns.HISTOGRAM_TYPE)
+                      .setLabel(MonitoringInfoConstants.Labels.PTRANSFORM, pTransformId)
+                      .build()));
+      this.bucketCounts = new AtomicLongArray(BUCKET_TYPE.getNumBuckets());
+      this.overflowCount = new AtomicLong();
+    }
+
+    void record(long nanos) {
+      long micros = nanos / 1000;
+      if (micros >= (1L << BUCKET_TYPE.getNumBuckets())) {
+        overflowCount.incrementAndGet();
+      } else {
+        // Matches BUCKET_TYPE.getBucketIndex without the floating point arithmetic.
+        int bucket = micros < 2 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        bucketCounts.incrementAndGet(bucket);
+      }
+    }
+
+    @Override
+    public void updateIntermediateMonitoringData(Map<String, ByteString> monitoringData) {
+      report(monitoringData);
+    }
+
+    @Override
+    public void updateFinalMonitoringData(Map<String, ByteString> monitoringData) {
+      report(monitoringData);
+    }
+
+    private void report(Map<String, ByteString> monitoringData) {
+      HistogramData histogram = new HistogramData(BUCKET_TYPE);
+      for (int i = 0; i < bucketCounts.length(); i++) {
+        long count = bucketCounts.get(i);
+        if (count > 0) {
+          histogram.incBucketCount(i, count);
+        }
+      }
+      histogram.incTopBucketCount(overflowCount.get());
+      if (histogram.getTotalCount() > 0) {
+        monitoringData.put(shortId, MonitoringInfoEncodings.encodeInt64Histogram(histogram));
+      }
+    }
+
+    @Override
+    public void reset() {
+      for (int i = 0; i < bucketCounts.length(); i++) {
+        bucketCounts.set(i, 0);
+      }
+      overflowCount.set(0);
+    }
+  }
+}
@@ -21,9 +21,11 @@ import com.google.auto.value.AutoValue;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.apache.beam.fn.harness.HandlesSplits;
 import org.apache.beam.fn.harness.control.BundleProgressReporter;
@@ -49,11 +51,15 @@ import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
+import org.apache.beam.sdk.util.construction.PTransformTranslation;
 import org.apache.beam.sdk.util.construction.RehydratedComponents;
 import org.apache.beam.sdk.values.WindowedValue;
 import org.apache.beam.sdk.values.WindowedValues;
 import org.apache.beam.sdk.values.WindowedValues.WindowedValueCoder;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,6 +74,36 @@ import org.slf4j.LoggerFactory;
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 public class PCollectionConsumerRegistry {
+  /**
+   * The experiment which fuses the transforms in {@link #FUSIBLE_TRANSFORM_URNS} into the
+   * transform producing their input.
+   *
+   * <p>A fused transform is invoked without entering its own execution state, which saves two state
+   * transitions per element at every hop of a chain of such transforms. Its processing time and any
+   * error it raises are attributed to the upstream transform instead. Element counts and sampled
+   * byte sizes are still reported for every PCollection.
+   */
+  public static final String FUSE_STATELESS_TRANSFORMS_EXPERIMENT = "fuse_stateless_transforms";
+
+  /**
+   * The experiment which records a histogram of the per element processing latency of each
+   * PTransform, timing one in every {@code N} elements when set to {@code
+   * element_latency_sampling_period=N}. See {@link ElementLatencyTracker}.
+   */
+  public static final String ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT =
+      "element_latency_sampling_period";
+
+  /**
+   * The URNs of the runner provided transforms which are cheap and stateless enough to be fused
+   * into their producer. User DoFns are never fused since their metrics are bound to their
+   * execution state.
+   */
+  static final Set<String> FUSIBLE_TRANSFORM_URNS =
+      ImmutableSet.of(
+          PTransformTranslation.FLATTEN_TRANSFORM_URN,
+          PTransformTranslation.ASSIGN_WINDOWS_TRANSFORM_URN,
+          PTransformTranslation.TO_STRING_TRANSFORM_URN,
+          PTransformTranslation.MAP_WINDOWS_TRANSFORM_URN);
 
   /** Stores metadata about each consumer so that the appropriate metrics tracking can occur. */
   @AutoValue
@@ -100,6 +136,9 @@ public class PCollectionConsumerRegistry {
   private final ProcessBundleDescriptor processBundleDescriptor;
   private final RehydratedComponents rehydratedComponents;
   private final @Nullable DataSampler dataSampler;
+  private final boolean fuseStatelessTransforms;
+  private final Set<String> fusedPTransformIds;
+  private final @Nullable ElementLatencyTracker elementLatencyTracker;
   private static final Logger LOG = LoggerFactory.getLogger(PCollectionConsumerRegistry.class);
 
   public PCollectionConsumerRegistry(
@@ -116,6 +155,28 @@ public class PCollectionConsumerRegistry {
       BundleProgressReporter.Registrar bundleProgressReporterRegistrar,
       ProcessBundleDescriptor processBundleDescriptor,
       @Nullable DataSampler dataSampler) {
+    this(
+        stateTracker,
+        shortIdMap,
+        bundleProgressReporterRegistrar,
+        processBundleDescriptor,
+        dataSampler,
+        null);
+  }
+
+  /**
+   * Creates a registry which enables the optimizations and instrumentation requested by the
+   * {@link #FUSE_STATELESS_TRANSFORMS_EXPERIMENT} and {@link
+   * #ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT} experiments of {@code options}. Neither is enabled
+   * if {@code options} is {@code null}.
+   */
+  public PCollectionConsumerRegistry(
+      ExecutionStateTracker stateTracker,
+      ShortIdMap shortIdMap,
+      BundleProgressReporter.Registrar bundleProgressReporterRegistrar,
+      ProcessBundleDescriptor processBundleDescriptor,
+      @Nullable DataSampler dataSampler,
+      @Nullable PipelineOptions options) {
     this.stateTracker = stateTracker;
     this.shortIdMap = shortIdMap;
     this.pCollectionIdsToConsumers = new HashMap<>();
@@ -130,6 +191,17 @@ public class PCollectionConsumerRegistry {
                 .putAllWindowingStrategies(processBundleDescriptor.getWindowingStrategiesMap())
                 .build());
     this.dataSampler = dataSampler;
+    this.fuseStatelessTransforms =
+        options != null
+            && ExperimentalOptions.hasExperiment(options, FUSE_STATELESS_TRANSFORMS_EXPERIMENT);
+    this.fusedPTransformIds = new HashSet<>();
+    int elementLatencySamplingPeriod =
+        options != null ? ElementLatencyTracker.getSamplingPeriod(options) : 0;
+    this.elementLatencyTracker =
+        elementLatencySamplingPeriod > 0
+            ? new ElementLatencyTracker(
+                shortIdMap, bundleProgressReporterRegistrar, elementLatencySamplingPeriod)
+            : null;
   }
 
   /**
@@ -183,10 +255,21 @@ public class PCollectionConsumerRegistry {
             pTransformUniqueName,
             org.apache.beam.runners.core.metrics.ExecutionStateTracker.PROCESS_STATE_NAME);
 
+    if (elementLatencyTracker != null) {
+      consumer = elementLatencyTracker.wrap(pTransformId, consumer);
+    }
     List<ConsumerAndMetadata> consumerAndMetadatas =
         pCollectionIdsToConsumers.computeIfAbsent(pCollectionId, (unused) -> new ArrayList<>());
     consumerAndMetadatas.add(
         ConsumerAndMetadata.forConsumer(consumer, pTransformId, executionState, stateTracker));
+
+    if (fuseStatelessTransforms) {
+      RunnerApi.PTransform pTransform =
+          processBundleDescriptor.getTransformsMap().get(pTransformId);
+      if (pTransform != null && FUSIBLE_TRANSFORM_URNS.contains(pTransform.getSpec().getUrn())) {
+        fusedPTransformIds.add(pTransformId);
+      }
+    }
   }
 
   /**
@@ -282,6 +365,7 @@ public class PCollectionConsumerRegistry {
     private final @Nullable OutputSampler<T> outputSampler;
     private final String ptransformId;
     private final ExecutionStateTracker executionStateTracker;
+    private final boolean fused;
 
     public MetricTrackingFnDataReceiver(
         String pCollectionId,
@@ -292,6 +376,7 @@ public class PCollectionConsumerRegistry {
       this.executionState = consumerAndMetadata.getExecutionState();
       this.executionStateTracker = consumerAndMetadata.getExecutionStateTracker();
       this.ptransformId = consumerAndMetadata.getPTransformId();
+      this.fused = fusedPTransformIds.contains(ptransformId);
 
       HashMap<String, String> labels = new HashMap<>();
       labels.put(Labels.PCOLLECTION, pCollectionId);
@@ -341,6 +426,19 @@ public class PCollectionConsumerRegistry {
         elementSample = outputSampler.sample(input);
       }
 
+      if (fused) {
+        // Stay within the execution state of the producer, but still attribute any exception to
+        // this transform and its sampled element.
+        try {
+          this.delegate.accept(input);
+        } catch (Exception e) {
+          logAndRethrow(
+              e, executionState, executionStateTracker, ptransformId, outputSampler, elementSample);
+        }
+        this.sampledByteSizeDistribution.finishLazyUpdate();
+        return;
+      }
+
       // Use the ExecutionStateTracker and enter an appropriate state to track the
       // Process Bundle Execution time metric and also ensure user counters can get an appropriate
       // metrics container.
@@ -20,6 +20,7 @@ package org.apache.beam.fn.harness.state;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -33,6 +34,7 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterable;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterables;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Iterables;
 
 /**
@@ -64,6 +66,26 @@ public class BagUserState<T> {
       String instructionId,
       StateKey stateKey,
       Coder<T> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        valueCoder,
+        StateFetchingIterators.DEFAULT_READ_AHEAD_PAGES);
+  }
+
+  /**
+   * The cache must be namespaced for this state object accordingly. Up to {@code readAheadPages}
+   * pages of the persisted values are requested ahead of the one being iterated.
+   */
+  public BagUserState(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasBagUserState(), "Expected BagUserState StateKey but received %s.", stateKey);
     this.cache = cache;
@@ -74,7 +96,7 @@ public class BagUserState<T> {
 
     this.oldValues =
         StateFetchingIterators.readAllAndDecodeStartingFrom(
-            this.cache, beamFnStateClient, request, valueCoder);
+            this.cache, beamFnStateClient, request, valueCoder, readAheadPages);
     this.newValues = new ArrayList<>();
   }
 
@@ -121,18 +143,41 @@ public class BagUserState<T> {
     if (!isCleared && newValues.isEmpty()) {
       return;
     }
+    // The encoded new values, if they had to be encoded to compare them with the persisted values.
+    EncodedValues encodedNewValues = null;
     if (isCleared) {
-      beamFnStateClient.handle(
-          request.toBuilder().setClear(StateClearRequest.getDefaultInstance()));
+      // Skip writes which the cache shows would not change the persisted values, such as a value
+      // state being rewritten with the value it already holds.
+      List<T> persistedValues = oldValues.getCachedValues();
+      if (persistedValues != null && persistedValues.size() == newValues.size()) {
+        if (valueCoder.consistentWithEquals()) {
+          if (persistedValues.equals(newValues)) {
+            return;
+          }
+        } else {
+          encodedNewValues = new EncodedValues(newValues);
+          if (encodedNewValues.encodeTheSameAs(persistedValues)) {
+            return;
+          }
+        }
+      }
+      if (persistedValues == null || !persistedValues.isEmpty()) {
+        beamFnStateClient.handle(
+            request.toBuilder().setClear(StateClearRequest.getDefaultInstance()));
+      }
     }
     if (!newValues.isEmpty()) {
       // Batch values up to a arbitrary limit to reduce overhead of write
       // requests. We treat this limit as strict to ensure that large elements
       // are not batched as they may otherwise exceed runner limits.
       ByteStringOutputStream out = new ByteStringOutputStream();
-      for (T newValue : newValues) {
+      for (int i = 0; i < newValues.size(); i++) {
         int previousSize = out.size();
-        valueCoder.encode(newValue, out);
+        if (encodedNewValues == null) {
+          valueCoder.encode(newValues.get(i), out);
+        } else {
+          encodedNewValues.get(i).writeTo(out);
+        }
         if (out.size() > BAG_APPEND_BATCHING_LIMIT && previousSize > 0) {
           // Respect the batching limit by outputting the previous batch of
           // elements.
@@ -170,4 +215,37 @@ public class BagUserState<T> {
       oldValues.append(newValues);
     }
   }
+
+  /** Values encoded one after another, which can be compared with other values by encoding. */
+  private class EncodedValues {
+    private final ByteString encoded;
+    // The offset at which each value ends.
+    private final int[] ends;
+
+    EncodedValues(List<T> values) throws IOException {
+      ByteStringOutputStream out = new ByteStringOutputStream();
+      ends = new int[values.size()];
+      for (int i = 0; i < values.size(); i++) {
+        valueCoder.encode(values.get(i), out);
+        ends[i] = out.size();
+      }
+      encoded = out.toByteString();
+    }
+
+    ByteString get(int index) {
+      return encoded.substring(index == 0 ? 0 : ends[index - 1], ends[index]);
+    }
+
+    /** Returns whether {@code values} encode to exactly these bytes, stopping at the first miss. */
+    boolean encodeTheSameAs(List<T> values) throws IOException {
+      ByteStringOutputStream out = new ByteStringOutputStream();
+      for (int i = 0; i < ends.length; i++) {
+        valueCoder.encode(values.get(i), out);
+        if (!out.toByteStringAndReset().equals(get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 }
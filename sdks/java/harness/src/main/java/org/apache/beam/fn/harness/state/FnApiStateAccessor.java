@@ -250,6 +250,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
   private final Collection<ThrowingRunnable> stateFinalizers;
   private final Coder<K> keyCoder;
   private final Coder<BoundedWindow> windowCoder;
+  private final int stateReadAheadPages;
 
   private @Nullable Supplier<BoundedWindow> currentWindowSupplier;
   private @Nullable Supplier<ByteString> encodedCurrentKeySupplier;
@@ -280,6 +281,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
     this.keyCoder = keyCoder;
     this.windowCoder = windowCoder;
     this.stateFinalizers = new ArrayList<>();
+    this.stateReadAheadPages = StateFetchingIterators.getReadAheadPages(pipelineOptions);
   }
 
   public void setKeyAndWindowContext(MutatingStateContext<K, BoundedWindow> keyAndWindowContext) {
@@ -398,7 +400,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                               beamFnStateClient,
                               processBundleInstructionId.get(),
                               key,
-                              sideInputSpec.getCoder()));
+                              sideInputSpec.getCoder(),
+                              stateReadAheadPages));
                 case Materializations.MULTIMAP_MATERIALIZATION_URN:
                   return sideInputSpec
                       .getViewFn()
@@ -717,9 +720,12 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                     return new ReadableState<Iterable<Map.Entry<KeyT, ValueT>>>() {
                       @Override
                       public Iterable<Map.Entry<KeyT, ValueT>> read() {
-                        Iterable<KeyT> keys = keys().read();
                         return Iterables.transform(
-                            keys, key -> Maps.immutableEntry(key, get(key).read()));
+                            impl.entries(),
+                            entry ->
+                                Maps.immutableEntry(
+                                    entry.getKey(),
+                                    Iterables.getOnlyElement(entry.getValue(), null)));
                       }
 
                       @Override
@@ -1033,7 +1039,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             beamFnStateClient,
             processBundleInstructionId.get(),
             stateKey,
-            valueCoder);
+            valueCoder,
+            stateReadAheadPages);
     stateFinalizers.add(rval::asyncClose);
     return rval;
   }
@@ -1058,7 +1065,8 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             processBundleInstructionId.get(),
             stateKey,
             keyCoder,
-            valueCoder);
+            valueCoder,
+            stateReadAheadPages);
     stateFinalizers.add(rval::asyncClose);
     return rval;
   }
@@ -41,6 +41,26 @@ public class IterableSideInput<T> implements IterableView<T> {
       String instructionId,
       StateKey stateKey,
       Coder<T> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        valueCoder,
+        StateFetchingIterators.DEFAULT_READ_AHEAD_PAGES);
+  }
+
+  /**
+   * Creates a side input which requests up to {@code readAheadPages} pages of values ahead of the
+   * one being iterated.
+   */
+  public IterableSideInput(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasIterableSideInput(),
         "Expected IterableSideInput StateKey but received %s.",
@@ -50,7 +70,8 @@ public class IterableSideInput<T> implements IterableView<T> {
             cache,
             beamFnStateClient,
             StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build(),
-            valueCoder);
+            valueCoder,
+            readAheadPages);
   }
 
   @Override
@@ -21,8 +21,10 @@ import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Pr
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -58,6 +60,9 @@ import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Maps;
  */
 public class MultimapUserState<K, V> {
 
+  /** The number of keys whose values {@link #entries} requests ahead of the entry being read. */
+  static final int ENTRIES_PREFETCH_WINDOW = 100;
+
   private final Cache<?, ?> cache;
   private final BeamFnStateClient beamFnStateClient;
   private final Coder<K> mapKeyCoder;
@@ -65,6 +70,7 @@ public class MultimapUserState<K, V> {
   private final StateRequest keysStateRequest;
   private final StateRequest userStateRequest;
   private final CachingStateIterable<K> persistedKeys;
+  private final int readAheadPages;
 
   private boolean isClosed;
   private boolean isCleared;
@@ -81,6 +87,28 @@ public class MultimapUserState<K, V> {
       StateKey stateKey,
       Coder<K> mapKeyCoder,
       Coder<V> valueCoder) {
+    this(
+        cache,
+        beamFnStateClient,
+        instructionId,
+        stateKey,
+        mapKeyCoder,
+        valueCoder,
+        StateFetchingIterators.DEFAULT_READ_AHEAD_PAGES);
+  }
+
+  /**
+   * Creates a multimap state which requests up to {@code readAheadPages} pages of keys or values
+   * ahead of the one being iterated.
+   */
+  public MultimapUserState(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      StateKey stateKey,
+      Coder<K> mapKeyCoder,
+      Coder<V> valueCoder,
+      int readAheadPages) {
     checkArgument(
         stateKey.hasMultimapKeysUserState(),
         "Expected MultimapKeysUserState StateKey but received %s.",
@@ -89,12 +117,13 @@ public class MultimapUserState<K, V> {
     this.beamFnStateClient = beamFnStateClient;
     this.mapKeyCoder = mapKeyCoder;
     this.valueCoder = valueCoder;
+    this.readAheadPages = readAheadPages;
 
     this.keysStateRequest =
         StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey).build();
     this.persistedKeys =
         StateFetchingIterators.readAllAndDecodeStartingFrom(
-            cache, beamFnStateClient, keysStateRequest, mapKeyCoder);
+            cache, beamFnStateClient, keysStateRequest, mapKeyCoder, readAheadPages);
 
     StateRequest.Builder userStateRequestBuilder = StateRequest.newBuilder();
     userStateRequestBuilder
@@ -235,6 +264,63 @@ public class MultimapUserState<K, V> {
     };
   }
 
+  /*
+   * Returns an iterable containing all distinct keys in this multimap along with their values.
+   *
+   * <p>The values of up to ENTRIES_PREFETCH_WINDOW keys ahead of the entry being consumed are
+   * prefetched. This issues the state requests for many keys back to back on the state stream,
+   * instead of waiting for the values of each key before requesting those of the next one.
+   */
+  public PrefetchableIterable<Map.Entry<K, PrefetchableIterable<V>>> entries() {
+    checkState(
+        !isClosed,
+        "Multimap user state is no longer usable because it is closed for %s",
+        keysStateRequest.getStateKey());
+    PrefetchableIterable<K> keys = keys();
+    return new PrefetchableIterables.Default<Map.Entry<K, PrefetchableIterable<V>>>() {
+      @Override
+      public PrefetchableIterator<Map.Entry<K, PrefetchableIterable<V>>> createIterator() {
+        return new PrefetchableIterator<Map.Entry<K, PrefetchableIterable<V>>>() {
+          final PrefetchableIterator<K> keysIterator = keys.iterator();
+          final Deque<Map.Entry<K, PrefetchableIterable<V>>> prefetchedEntries =
+              new ArrayDeque<>();
+
+          @Override
+          public boolean isReady() {
+            return !prefetchedEntries.isEmpty() || keysIterator.isReady();
+          }
+
+          @Override
+          public void prefetch() {
+            if (!isReady()) {
+              keysIterator.prefetch();
+            }
+          }
+
+          @Override
+          public boolean hasNext() {
+            while (prefetchedEntries.size() < ENTRIES_PREFETCH_WINDOW
+                && keysIterator.hasNext()) {
+              K key = keysIterator.next();
+              PrefetchableIterable<V> values = get(key);
+              values.prefetch();
+              prefetchedEntries.add(Maps.immutableEntry(key, values));
+            }
+            return !prefetchedEntries.isEmpty();
+          }
+
+          @Override
+          public Map.Entry<K, PrefetchableIterable<V>> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return prefetchedEntries.removeFirst();
+          }
+        };
+      }
+    };
+  }
+
   /*
    * Store a key-value pair in the multimap.
    * Allows duplicate key-value pairs.
@@ -286,13 +372,27 @@ public class MultimapUserState<K, V> {
 
   @SuppressWarnings("FutureReturnValueIgnored")
   private void startStateApiWrites() {
-    // Clear currently persisted key-values
+    // Clear currently persisted key-values, skipping keys which the cache shows are not persisted
+    List<K> cachedKeys = persistedKeys.getCachedValues();
     if (isCleared) {
-      beamFnStateClient.handle(
-          keysStateRequest.toBuilder().setClear(StateClearRequest.getDefaultInstance()));
+      if (cachedKeys == null || !cachedKeys.isEmpty()) {
+        beamFnStateClient.handle(
+            keysStateRequest.toBuilder().setClear(StateClearRequest.getDefaultInstance()));
+      }
     } else if (!pendingRemoves.isEmpty()) {
-      for (K key : pendingRemoves.values()) {
-        StateRequest request = createUserStateRequest(key);
+      Set<Object> cachedKeyStructuralValues = null;
+      if (cachedKeys != null) {
+        cachedKeyStructuralValues = new HashSet<>(cachedKeys.size());
+        for (K key : cachedKeys) {
+          cachedKeyStructuralValues.add(mapKeyCoder.structuralValue(key));
+        }
+      }
+      for (Map.Entry<Object, K> entry : pendingRemoves.entrySet()) {
+        if (cachedKeyStructuralValues != null
+            && !cachedKeyStructuralValues.contains(entry.getKey())) {
+          continue;
+        }
+        StateRequest request = createUserStateRequest(entry.getValue());
         beamFnStateClient.handle(
             request.toBuilder().setClear(StateClearRequest.getDefaultInstance()));
       }
@@ -403,7 +503,8 @@ public class MultimapUserState<K, V> {
                           request.getStateKey().getMultimapUserState().getMapKey()),
                       beamFnStateClient,
                       request,
-                      valueCoder));
+                      valueCoder,
+                      readAheadPages));
             })
         .getValue();
   }
@@ -17,13 +17,18 @@
  */
 package org.apache.beam.fn.harness.state;
 
+import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkArgument;
 import static org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Preconditions.checkState;
 
 import com.google.auto.value.AutoValue;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -31,12 +36,15 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.Cache.Spillable;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.fn.harness.state.StateFetchingIterators.CachingStateIterable.Blocks;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetResponse;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
 import org.apache.beam.sdk.coders.Coder;
@@ -44,11 +52,16 @@ import org.apache.beam.sdk.fn.data.WeightedList;
 import org.apache.beam.sdk.fn.stream.DataStreams.DataStreamDecoder;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterables;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterator;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.util.VarInt;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.base.Throwables;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.AbstractIterator;
+import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.io.ByteStreams;
 
 /**
  * Adapters which convert a logical series of chunks using continuation tokens over the Beam Fn
@@ -59,9 +72,34 @@ import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.Abstra
 })
 public class StateFetchingIterators {
 
+  /**
+   * The experiment setting how many pages of a cached state stream may be requested ahead of the
+   * page being consumed, for example {@code state_read_ahead_pages=4}.
+   */
+  public static final String STATE_READ_AHEAD_PAGES = "state_read_ahead_pages=";
+
+  /** By default only the page after the one being consumed is requested. */
+  public static final int DEFAULT_READ_AHEAD_PAGES = 1;
+
   // do not instantiate
   private StateFetchingIterators() {}
 
+  /** Returns the number of pages to read ahead set with {@link #STATE_READ_AHEAD_PAGES}. */
+  public static int getReadAheadPages(@Nullable PipelineOptions options) {
+    List<String> experiments =
+        options == null ? null : options.as(ExperimentalOptions.class).getExperiments();
+    for (String experiment : experiments == null ? Collections.<String>emptyList() : experiments) {
+      if (experiment.startsWith(STATE_READ_AHEAD_PAGES)) {
+        int readAheadPages =
+            Integer.parseInt(experiment.substring(STATE_READ_AHEAD_PAGES.length()));
+        checkArgument(
+            readAheadPages >= 1, "%s must be at least 1, got %s", experiment, readAheadPages);
+        return readAheadPages;
+      }
+    }
+    return DEFAULT_READ_AHEAD_PAGES;
+  }
+
   /**
    * This adapter handles using the continuation token to provide iteration over all the elements
    * returned by the Beam Fn State API using the supplied state client, state request for the first
@@ -87,11 +125,34 @@ public class StateFetchingIterators {
       BeamFnStateClient beamFnStateClient,
       StateRequest stateRequestForFirstChunk,
       Coder<T> valueCoder) {
+    return readAllAndDecodeStartingFrom(
+        cache, beamFnStateClient, stateRequestForFirstChunk, valueCoder, DEFAULT_READ_AHEAD_PAGES);
+  }
+
+  /**
+   * Like {@link #readAllAndDecodeStartingFrom(Cache, BeamFnStateClient, StateRequest, Coder)}, but
+   * requests up to {@code readAheadPages} pages of the state stream ahead of the page being
+   * consumed.
+   *
+   * <p>Since each page is requested with the continuation token of the page before it, pages are
+   * still requested one after another. Reading ahead issues the request for a page as soon as the
+   * consumer observes the response for the page before it, instead of once the consumer reaches
+   * the end of that page. Pages which have been read ahead are charged to the cache while they are
+   * held by an iterator, so that all iterators sharing the cache also share its room. They are only
+   * requested while the cache has room left to hold them.
+   */
+  public static <T> CachingStateIterable<T> readAllAndDecodeStartingFrom(
+      Cache<?, ?> cache,
+      BeamFnStateClient beamFnStateClient,
+      StateRequest stateRequestForFirstChunk,
+      Coder<T> valueCoder,
+      int readAheadPages) {
     return new CachingStateIterable<>(
         (Cache<IterableCacheKey, Blocks<T>>) cache,
         beamFnStateClient,
         stateRequestForFirstChunk,
-        valueCoder);
+        valueCoder,
+        readAheadPages);
   }
 
   /**
@@ -183,6 +244,54 @@ public class StateFetchingIterators {
     }
   }
 
+  /** Accounts for the bytes of the pages which have been read ahead of the page being consumed. */
+  @VisibleForTesting
+  interface ReadAheadBudget {
+    ReadAheadBudget NONE =
+        new ReadAheadBudget() {
+          @Override
+          public boolean tryReserve(long bytes) {
+            return false;
+          }
+
+          @Override
+          public void release(long bytes) {}
+        };
+
+    /** Charges {@code bytes} and returns {@code true} if there is room for them. */
+    boolean tryReserve(long bytes);
+
+    /** Releases {@code bytes} charged by a successful {@link #tryReserve}. */
+    void release(long bytes);
+  }
+
+  /**
+   * The weight of the pages read ahead by one {@link CachingStateIterable.CachingStateIterator}.
+   *
+   * <p>Stored in the cache for as long as the iterator holds the pages so that they count against
+   * the room left in the cache. If the iterator is abandoned, the entry is evicted like any other.
+   */
+  private static class ReadAheadReservation implements Weighted {
+    private final long weight;
+
+    ReadAheadReservation(long weight) {
+      this.weight = weight;
+    }
+
+    @Override
+    public long getWeight() {
+      return weight;
+    }
+  }
+
+  /** A cache key unique to one {@link CachingStateIterable.CachingStateIterator}. */
+  private static class ReadAheadKey implements Weighted {
+    @Override
+    public long getWeight() {
+      return 0;
+    }
+  }
+
   @VisibleForTesting
   static class IterableCacheKey implements Weighted {
 
@@ -202,17 +311,84 @@ public class StateFetchingIterators {
   /** A mutable iterable that supports prefetch and is backed by a cache. */
   static class CachingStateIterable<T> extends PrefetchableIterables.Default<T> {
 
-    /** Represents a set of elements. */
-    abstract static class Blocks<T> implements Weighted {
+    /**
+     * Represents a set of elements.
+     *
+     * <p>If a value coder is provided, the elements can be moved to the off-heap tier of the cache
+     * in their encoded form.
+     */
+    abstract static class Blocks<T> implements Weighted, Spillable<Blocks<T>> {
+
+      final @Nullable Coder<T> valueCoder;
+
+      Blocks(@Nullable Coder<T> valueCoder) {
+        this.valueCoder = valueCoder;
+      }
 
       public abstract List<Block<T>> getBlocks();
+
+      @Override
+      public @Nullable ByteString encode() {
+        if (valueCoder == null) {
+          return null;
+        }
+        try {
+          ByteStringOutputStream out = new ByteStringOutputStream();
+          List<Block<T>> blocks = getBlocks();
+          VarInt.encode(blocks.size(), out);
+          for (Block<T> block : blocks) {
+            VarInt.encode(block.getWeight(), out);
+            VarInt.encode(block.getValues().size(), out);
+            for (T value : block.getValues()) {
+              valueCoder.encode(value, out);
+            }
+            // The length of the next token plus one, or zero if there is no next token.
+            ByteString nextToken = block.getNextToken();
+            VarInt.encode(nextToken == null ? 0 : nextToken.size() + 1, out);
+            if (nextToken != null) {
+              nextToken.writeTo(out);
+            }
+          }
+          return out.toByteString();
+        } catch (IOException e) {
+          // The elements are evicted instead.
+          return null;
+        }
+      }
+
+      static <T> List<Block<T>> decodeBlocks(ByteString encoded, Coder<T> valueCoder) {
+        try (InputStream in = encoded.newInput()) {
+          int numBlocks = VarInt.decodeInt(in);
+          List<Block<T>> blocks = new ArrayList<>(numBlocks);
+          for (int i = 0; i < numBlocks; ++i) {
+            long weight = VarInt.decodeLong(in);
+            int numValues = VarInt.decodeInt(in);
+            List<T> values = new ArrayList<>(numValues);
+            for (int j = 0; j < numValues; ++j) {
+              values.add(valueCoder.decode(in));
+            }
+            int nextTokenLength = VarInt.decodeInt(in);
+            ByteString nextToken = null;
+            if (nextTokenLength > 0) {
+              byte[] nextTokenBytes = new byte[nextTokenLength - 1];
+              ByteStreams.readFully(in, nextTokenBytes);
+              nextToken = ByteString.copyFrom(nextTokenBytes);
+            }
+            blocks.add(Block.restoredBlock(values, nextToken, weight));
+          }
+          return blocks;
+        } catch (IOException e) {
+          throw new IllegalStateException("Failed to decode blocks restored from off-heap.", e);
+        }
+      }
     }
 
     static class MutatedBlocks<T> extends Blocks<T> {
 
       private final Block<T> wholeBlock;
 
-      MutatedBlocks(Block<T> wholeBlock) {
+      MutatedBlocks(Block<T> wholeBlock, @Nullable Coder<T> valueCoder) {
+        super(valueCoder);
         this.wholeBlock = wholeBlock;
       }
 
@@ -225,6 +401,12 @@ public class StateFetchingIterators {
       public long getWeight() {
         return wholeBlock.getWeight();
       }
+
+      @Override
+      public Function<ByteString, Blocks<T>> decoder() {
+        Coder<T> coder = valueCoder;
+        return encoded -> new MutatedBlocks<>(decodeBlocks(encoded, coder).get(0), coder);
+      }
     }
 
     private static <T> long sumWeight(List<Block<T>> blocks) {
@@ -253,6 +435,11 @@ public class StateFetchingIterators {
       }
 
       BlocksPrefix(List<Block<T>> blocks) {
+        this(blocks, null);
+      }
+
+      BlocksPrefix(List<Block<T>> blocks, @Nullable Coder<T> valueCoder) {
+        super(valueCoder);
         this.blocks = blocks;
       }
 
@@ -263,13 +450,19 @@ public class StateFetchingIterators {
         if (subList.isEmpty()) {
           return null;
         }
-        return new BlocksPrefix<>(subList);
+        return new BlocksPrefix<>(subList, valueCoder);
       }
 
       @Override
       public List<Block<T>> getBlocks() {
         return blocks;
       }
+
+      @Override
+      public Function<ByteString, Blocks<T>> decoder() {
+        Coder<T> coder = valueCoder;
+        return encoded -> new BlocksPrefix<>(decodeBlocks(encoded, coder), coder);
+      }
     }
 
     @AutoValue
@@ -294,6 +487,12 @@ public class StateFetchingIterators {
             values.getBacking(), nextToken, values.getWeight() + Caches.weigh(nextToken));
       }
 
+      static <T> Block<T> restoredBlock(
+          List<T> values, @Nullable ByteString nextToken, long weight) {
+        return new AutoValue_StateFetchingIterators_CachingStateIterable_Block<>(
+            values, nextToken, weight);
+      }
+
       abstract List<T> getValues();
 
       abstract @Nullable ByteString getNextToken();
@@ -306,16 +505,34 @@ public class StateFetchingIterators {
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
     private final Coder<T> valueCoder;
+    private final int readAheadPages;
 
     public CachingStateIterable(
         Cache<IterableCacheKey, Blocks<T>> cache,
         BeamFnStateClient beamFnStateClient,
         StateRequest stateRequestForFirstChunk,
         Coder<T> valueCoder) {
+      this(
+          cache,
+          beamFnStateClient,
+          stateRequestForFirstChunk,
+          valueCoder,
+          DEFAULT_READ_AHEAD_PAGES);
+    }
+
+    public CachingStateIterable(
+        Cache<IterableCacheKey, Blocks<T>> cache,
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        Coder<T> valueCoder,
+        int readAheadPages) {
+      checkArgument(
+          readAheadPages >= 1, "readAheadPages must be at least 1, got %s", readAheadPages);
       this.cache = cache;
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
       this.valueCoder = valueCoder;
+      this.readAheadPages = readAheadPages;
     }
 
     /**
@@ -339,6 +556,7 @@ public class StateFetchingIterators {
       // returning invalid results as part of a future request.
       if (existing.getBlocks().get(existing.getBlocks().size() - 1).getNextToken() != null) {
         cache.remove(IterableCacheKey.INSTANCE);
+        return;
       }
 
       // Combine all the individual blocks into one block containing all the values since
@@ -371,7 +589,9 @@ public class StateFetchingIterators {
         }
       }
 
-      cache.put(IterableCacheKey.INSTANCE, new MutatedBlocks<>(Block.mutatedBlock(allValues)));
+      cache.put(
+          IterableCacheKey.INSTANCE,
+          new MutatedBlocks<>(Block.mutatedBlock(allValues), valueCoder));
     }
 
     /**
@@ -396,7 +616,65 @@ public class StateFetchingIterators {
      * requesting data from the state cache.
      */
     public void clearAndAppend(WeightedList<T> values) {
-      cache.put(IterableCacheKey.INSTANCE, new MutatedBlocks<>(Block.mutatedBlock(values)));
+      cache.put(
+          IterableCacheKey.INSTANCE, new MutatedBlocks<>(Block.mutatedBlock(values), valueCoder));
+    }
+
+    /**
+     * Returns a read-only view of all the values of the iterable if the entire iterable has been
+     * loaded into the cache, or {@code null} otherwise. Never requests data over the Beam Fn State
+     * API.
+     */
+    public @Nullable List<T> getCachedValues() {
+      Blocks<T> existing = cache.peek(IterableCacheKey.INSTANCE);
+      if (existing == null) {
+        return null;
+      }
+      List<Block<T>> blocks = existing.getBlocks();
+      if (blocks.get(blocks.size() - 1).getNextToken() != null) {
+        return null;
+      }
+      if (blocks.size() == 1) {
+        return Collections.unmodifiableList(blocks.get(0).getValues());
+      }
+      return new BlocksView<>(blocks);
+    }
+
+    /** A read-only list of the values of several blocks which doesn't copy them. */
+    private static class BlocksView<T> extends AbstractList<T> {
+      private final List<Block<T>> blocks;
+      // The index of the first value of each block, followed by the total number of values.
+      private final int[] offsets;
+
+      BlocksView(List<Block<T>> blocks) {
+        this.blocks = blocks;
+        this.offsets = new int[blocks.size() + 1];
+        for (int i = 0; i < blocks.size(); ++i) {
+          offsets[i + 1] = offsets[i] + blocks.get(i).getValues().size();
+        }
+      }
+
+      @Override
+      public T get(int index) {
+        if (index < 0 || index >= size()) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        int block = Arrays.binarySearch(offsets, index);
+        if (block < 0) {
+          block = -block - 2;
+        } else {
+          // Skip over empty blocks starting at the same index.
+          while (offsets[block + 1] == index) {
+            ++block;
+          }
+        }
+        return blocks.get(block).getValues().get(index - offsets[block]);
+      }
+
+      @Override
+      public int size() {
+        return offsets[blocks.size()];
+      }
     }
 
     @Override
@@ -436,6 +714,7 @@ public class StateFetchingIterators {
       // returning invalid results as part of a future request.
       if (existing.getBlocks().get(existing.getBlocks().size() - 1).getNextToken() != null) {
         cache.remove(IterableCacheKey.INSTANCE);
+        return;
       }
 
       // Combine all the individual blocks into one block containing all the values since
@@ -452,7 +731,9 @@ public class StateFetchingIterators {
       }
       allValues.addAll(values);
 
-      cache.put(IterableCacheKey.INSTANCE, new MutatedBlocks<>(Block.mutatedBlock(allValues)));
+      cache.put(
+          IterableCacheKey.INSTANCE,
+          new MutatedBlocks<>(Block.mutatedBlock(allValues), valueCoder));
     }
 
     class CachingStateIterator implements PrefetchableIterator<T> {
@@ -464,7 +745,13 @@ public class StateFetchingIterators {
 
       public CachingStateIterator() {
         this.underlyingStateFetchingIterator =
-            new LazyBlockingStateFetchingIterator(beamFnStateClient, stateRequestForFirstChunk);
+            new LazyBlockingStateFetchingIterator(
+                beamFnStateClient,
+                stateRequestForFirstChunk,
+                readAheadPages,
+                readAheadPages > DEFAULT_READ_AHEAD_PAGES
+                    ? new CachedReadAheadBudget()
+                    : ReadAheadBudget.NONE);
         this.dataStreamDecoder =
             new DataStreamDecoder<>(valueCoder, underlyingStateFetchingIterator);
         this.currentBlock =
@@ -544,7 +831,7 @@ public class StateFetchingIterators {
             if (isFirstBlock) {
               cache.put(
                   IterableCacheKey.INSTANCE,
-                  new BlocksPrefix<>(Collections.singletonList(currentBlock)));
+                  new BlocksPrefix<>(Collections.singletonList(currentBlock), valueCoder));
             }
           } else if (isFirstBlock) {
             currentBlock = existing.getBlocks().get(0);
@@ -581,7 +868,7 @@ public class StateFetchingIterators {
                 List<Block<T>> newBlocks = new ArrayList<>(currentBlockIndex + 1);
                 newBlocks.addAll(existing.getBlocks());
                 newBlocks.add(currentBlock);
-                cache.put(IterableCacheKey.INSTANCE, new BlocksPrefix<>(newBlocks));
+                cache.put(IterableCacheKey.INSTANCE, new BlocksPrefix<>(newBlocks, valueCoder));
               }
             }
           }
@@ -607,6 +894,35 @@ public class StateFetchingIterators {
         }
         return currentBlock.getValues().get(currentCachedBlockValueIndex++);
       }
+
+      /** Charges the pages read ahead by this iterator to the cache under a key of its own. */
+      private class CachedReadAheadBudget implements ReadAheadBudget {
+        // Reservations share the state's sub cache with its blocks.
+        private final Cache<Object, Object> reservations =
+            (Cache<Object, Object>) (Cache<?, ?>) cache;
+        private final ReadAheadKey key = new ReadAheadKey();
+        private long reservedBytes;
+
+        @Override
+        public boolean tryReserve(long bytes) {
+          if (Caches.remainingWeightInBytes(cache) < bytes) {
+            return false;
+          }
+          reservedBytes += bytes;
+          reservations.put(key, new ReadAheadReservation(reservedBytes));
+          return true;
+        }
+
+        @Override
+        public void release(long bytes) {
+          reservedBytes -= bytes;
+          if (reservedBytes > 0) {
+            reservations.put(key, new ReadAheadReservation(reservedBytes));
+          } else {
+            reservations.remove(key);
+          }
+        }
+      }
     }
   }
 
@@ -614,21 +930,49 @@ public class StateFetchingIterators {
    * An {@link Iterator} which fetches {@link ByteString} chunks using the State API.
    *
    * <p>This iterator will only request a chunk on first access. Subsequently it eagerly pre-fetches
-   * one future chunk at a time.
+   * one future chunk at a time. {@link #readAhead} requests further chunks, up to the read-ahead
+   * window, whose continuation tokens are known from the responses received so far. Each chunk read
+   * ahead is charged to the {@link ReadAheadBudget} at the size of the chunk before it, until it is
+   * consumed or dropped by seeking.
    */
   @VisibleForTesting
   static class LazyBlockingStateFetchingIterator implements PrefetchableIterator<ByteString> {
 
     private final BeamFnStateClient beamFnStateClient;
     private final StateRequest stateRequestForFirstChunk;
+    private final int readAheadPages;
+    private final ReadAheadBudget readAheadBudget;
     private ByteString continuationToken;
-    private CompletableFuture<StateResponse> prefetchedResponse;
+    // The response for the continuation token, followed by the responses for the chunks after it.
+    private final Deque<CompletableFuture<StateResponse>> prefetchedResponses;
+    // The bytes charged to the read-ahead budget for each of the prefetched responses.
+    private final Deque<Long> reservedBytes;
 
     LazyBlockingStateFetchingIterator(
         BeamFnStateClient beamFnStateClient, StateRequest stateRequestForFirstChunk) {
+      this(
+          beamFnStateClient,
+          stateRequestForFirstChunk,
+          DEFAULT_READ_AHEAD_PAGES,
+          ReadAheadBudget.NONE);
+    }
+
+    /**
+     * Creates an iterator which requests up to {@code readAheadPages} chunks ahead of the one being
+     * consumed, while {@code readAheadBudget} has room for the chunks beyond the next one.
+     */
+    LazyBlockingStateFetchingIterator(
+        BeamFnStateClient beamFnStateClient,
+        StateRequest stateRequestForFirstChunk,
+        int readAheadPages,
+        ReadAheadBudget readAheadBudget) {
       this.beamFnStateClient = beamFnStateClient;
       this.stateRequestForFirstChunk = stateRequestForFirstChunk;
+      this.readAheadPages = readAheadPages;
+      this.readAheadBudget = readAheadBudget;
       this.continuationToken = stateRequestForFirstChunk.getGet().getContinuationToken();
+      this.prefetchedResponses = new ArrayDeque<>(readAheadPages);
+      this.reservedBytes = new ArrayDeque<>(readAheadPages);
     }
 
     /**
@@ -654,11 +998,18 @@ public class StateFetchingIterators {
         return;
       }
       this.continuationToken = continuationToken;
-      this.prefetchedResponse = null;
+      this.prefetchedResponses.clear();
+      for (long bytes : reservedBytes) {
+        if (bytes > 0) {
+          readAheadBudget.release(bytes);
+        }
+      }
+      this.reservedBytes.clear();
     }
 
     @Override
     public boolean isReady() {
+      CompletableFuture<StateResponse> prefetchedResponse = prefetchedResponses.peekFirst();
       if (prefetchedResponse == null) {
         return continuationToken == null;
       }
@@ -667,8 +1018,36 @@ public class StateFetchingIterators {
 
     @Override
     public void prefetch() {
-      if (continuationToken != null && prefetchedResponse == null) {
-        prefetchedResponse = loadPrefetchedResponse(continuationToken);
+      if (continuationToken != null && prefetchedResponses.isEmpty()) {
+        prefetchedResponses.add(loadPrefetchedResponse(continuationToken));
+        // The next chunk would have been requested without reading ahead.
+        reservedBytes.add(0L);
+      }
+      readAhead();
+    }
+
+    /**
+     * Requests the chunks following the last received response, until {@code readAheadPages}
+     * chunks have been requested or the read-ahead budget has no room for another chunk.
+     *
+     * <p>This never blocks, and does nothing unless the next chunk has already been prefetched. It
+     * is called whenever a chunk is consumed.
+     */
+    void readAhead() {
+      while (prefetchedResponses.size() < readAheadPages) {
+        CompletableFuture<StateResponse> last = prefetchedResponses.peekLast();
+        if (last == null || !last.isDone() || last.isCompletedExceptionally()) {
+          return;
+        }
+        StateGetResponse lastResponse = last.join().getGet();
+        ByteString nextToken = lastResponse.getContinuationToken();
+        // Chunks are usually of similar size, so charge the size of the chunk before this one.
+        long bytes = Math.max(1, lastResponse.getData().size());
+        if (ByteString.EMPTY.equals(nextToken) || !readAheadBudget.tryReserve(bytes)) {
+          return;
+        }
+        prefetchedResponses.addLast(loadPrefetchedResponse(nextToken));
+        reservedBytes.addLast(bytes);
       }
     }
 
@@ -693,7 +1072,7 @@ public class StateFetchingIterators {
       prefetch();
       StateResponse stateResponse;
       try {
-        stateResponse = prefetchedResponse.get();
+        stateResponse = prefetchedResponses.getFirst().get();
       } catch (InterruptedException e) {
         Thread.currentThread().interrupt();
         throw new IllegalStateException(e);
@@ -704,7 +1083,11 @@ public class StateFetchingIterators {
         Throwables.throwIfUnchecked(e.getCause());
         throw new IllegalStateException(e.getCause());
       }
-      prefetchedResponse = null;
+      prefetchedResponses.removeFirst();
+      long bytes = reservedBytes.removeFirst();
+      if (bytes > 0) {
+        readAheadBudget.release(bytes);
+      }
 
       ByteString tokenFromResponse = stateResponse.getGet().getContinuationToken();
 
@@ -17,7 +17,6 @@
  */
 package org.apache.beam.fn.harness.status;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -59,23 +58,36 @@ public class BeamFnStatusClient implements AutoCloseable {
   private final MemoryMonitor memoryMonitor;
   private final Cache<?, ?> cache;
 
-  @SuppressFBWarnings("SC_START_IN_CTOR") // for memory monitor thread
   public BeamFnStatusClient(
       ApiServiceDescriptor apiServiceDescriptor,
       Function<ApiServiceDescriptor, ManagedChannel> channelFactory,
       BundleProcessorCache processBundleCache,
       PipelineOptions options,
       Cache<?, ?> cache) {
+    this(
+        apiServiceDescriptor,
+        channelFactory,
+        processBundleCache,
+        cache,
+        MemoryMonitor.fromOptions(options));
+    memoryMonitor.startDaemon();
+  }
+
+  /**
+   * Creates a status client which describes the memory as seen by {@code memoryMonitor}, which
+   * must be run by the caller.
+   */
+  public BeamFnStatusClient(
+      ApiServiceDescriptor apiServiceDescriptor,
+      Function<ApiServiceDescriptor, ManagedChannel> channelFactory,
+      BundleProcessorCache processBundleCache,
+      Cache<?, ?> cache,
+      MemoryMonitor memoryMonitor) {
     this.channel = channelFactory.apply(apiServiceDescriptor);
     this.processBundleCache = processBundleCache;
-    this.memoryMonitor = MemoryMonitor.fromOptions(options);
+    this.memoryMonitor = memoryMonitor;
     this.cache = cache;
     this.inboundObserverCompletion = new CompletableFuture<>();
-    Thread thread = new Thread(memoryMonitor);
-    thread.setDaemon(true);
-    thread.setPriority(Thread.MIN_PRIORITY);
-    thread.setName("MemoryMonitor");
-    thread.start();
 
     // Start the rpc after all the initialization is complete as the InboundObserver
     // may be called any time after this.
@@ -136,15 +148,22 @@ public class BeamFnStatusClient implements AutoCloseable {
     trace.add("========== THREAD DUMP ==========");
     // filter duplicates.
     Map<Stack, List<String>> stacks = new HashMap<>();
-    Thread.getAllStackTraces()
-        .forEach(
-            (thread, elements) -> {
-              if (thread != Thread.currentThread()) {
-                Stack stack = new Stack(elements, thread.getState());
-                stacks.putIfAbsent(stack, new ArrayList<>());
-                stacks.get(stack).add(thread.toString());
-              }
-            });
+    Map<Thread, StackTraceElement[]> threads = new HashMap<>(Thread.getAllStackTraces());
+    // Virtual threads processing bundles are not part of the platform threads above.
+    for (BundleProcessor processor : processBundleCache.getActiveBundleProcessors().values()) {
+      ExecutionStateTrackerStatus status = processor.getStateTracker().getStatus();
+      if (status != null && !threads.containsKey(status.getTrackedThread())) {
+        threads.put(status.getTrackedThread(), status.getTrackedThread().getStackTrace());
+      }
+    }
+    threads.forEach(
+        (thread, elements) -> {
+          if (thread != Thread.currentThread()) {
+            Stack stack = new Stack(elements, thread.getState());
+            stacks.putIfAbsent(stack, new ArrayList<>());
+            stacks.get(stack).add(thread.toString());
+          }
+        });
 
     // Stacks with more threads are printed first.
     stacks.entrySet().stream()
@@ -32,6 +32,7 @@ import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
@@ -74,6 +75,8 @@ import org.slf4j.LoggerFactory;
  *       periods in GC thrashing) / (# monitored periods)}.
  *   <li>If this ratio exceeds a certain threshold, it is assumed that the server is in GC
  *       thrashing.
+ *   <li>Each period in which the server is in GC thrashing, it runs the listeners which were
+ *       {@link #addThrashingListener added} to relieve the memory pressure.
  *   <li>It can also shutdown the current jvm runtime when a threshold of consecutive gc thrashing
  *       count is met. A heap dump is made before shutdown.
  * </ul>
@@ -185,6 +188,9 @@ public class MemoryMonitor implements Runnable {
   private final AtomicDouble maxGCPercentage = new AtomicDouble(0.0);
   private final AtomicInteger numPushbacks = new AtomicInteger(0);
 
+  /** Run by the monitor thread in every period in which the server is in GC thrashing. */
+  private final CopyOnWriteArrayList<Runnable> thrashingListeners = new CopyOnWriteArrayList<>();
+
   /** Wait point for threads in pushback waiting for gc thrashing to pass. */
   private final Object waitingForResources = new Object();
 
@@ -395,6 +401,23 @@ public class MemoryMonitor implements Runnable {
     return isThrashing.get();
   }
 
+  /**
+   * Adds a listener which is run by the monitor thread in every period in which the server is in
+   * GC thrashing, to release memory that the server can do without.
+   */
+  public void addThrashingListener(Runnable listener) {
+    thrashingListeners.add(listener);
+  }
+
+  /** Runs this monitor on a new low priority daemon thread. */
+  public void startDaemon() {
+    Thread thread = new Thread(this);
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.setName("MemoryMonitor");
+    thread.start();
+  }
+
   /**
    * Check if we've observed high gc workload in sufficient sample periods to justify classifying
    * the server as in gc thrashing.
@@ -556,6 +579,13 @@ public class MemoryMonitor implements Runnable {
 
         if (isThrashing.get()) {
           currentThrashingCount++;
+          for (Runnable listener : thrashingListeners) {
+            try {
+              listener.run();
+            } catch (RuntimeException e) {
+              LOG.warn("Failed to relieve memory pressure with {}.", listener, e);
+            }
+          }
 
           if (shutDownAfterNumGCThrashing > 0
               && (currentThrashingCount >= shutDownAfterNumGCThrashing)) {
@@ -20,15 +20,19 @@ package org.apache.beam.fn.harness;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.util.function.Function;
 import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.Cache.Spillable;
 import org.apache.beam.fn.harness.Caches.ClearableCache;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.util.WeightedValue;
+import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -67,6 +71,86 @@ public class CachesTest {
     assertEquals("wasShrunk", cache.peek(shrinkableKey));
   }
 
+  @Test
+  public void testReduceWeight() throws Exception {
+    Shrinkable<Object> shrinkable = () -> WeightedValue.of("wasShrunk", 1);
+    Cache<Object, Object> cache = Caches.forMaximumBytes(8 * MB);
+    cache.put("shrinkable", WeightedValue.of(shrinkable, 2 * MB));
+    cache.put("other", WeightedValue.of("value", 2 * MB));
+
+    // Shrinkable entries are shrunk while other entries are evicted.
+    Caches.reduceWeight(cache, 0.25);
+    assertNull(cache.peek("other"));
+    assertEquals("wasShrunk", cache.peek("shrinkable"));
+    assertThat(Caches.remainingWeightInBytes(cache), greaterThanOrEqualTo(6 * MB));
+  }
+
+  @Test
+  public void testSpillableIsMovedOffHeap() throws Exception {
+    SpillableString spillable = new SpillableString("spilled", MB);
+    Cache<Object, Object> cache = Caches.forMaximumBytes(2 * MB, 4 * MB);
+    cache.put("spillable", spillable);
+    assertSame(spillable, cache.peek("spillable"));
+
+    // The next insertion should cause the value to be moved off-heap
+    cache.put("other", WeightedValue.of("value", MB));
+    assertThat(cache.describeStats(), containsString("off-heap used/max 0/4 MB"));
+    assertEquals(
+        "spilled",
+        ((SpillableString) cache.computeIfAbsent("spillable", SpillableString::unexpectedLoad))
+            .value);
+
+    // Values which are replaced or removed are dropped from the off-heap tier as well
+    cache.put("other", WeightedValue.of("value", MB));
+    cache.remove("spillable");
+    assertNull(cache.peek("spillable"));
+  }
+
+  @Test
+  public void testOffHeapTierDropsValuesOfKeysInvalidatedWhileEvicted() throws Exception {
+    OffHeapCacheTier offHeapTier = new OffHeapCacheTier(4 * MB);
+    long version = offHeapTier.version("key");
+    // The key is removed from the cache after its value was evicted, but before it is spilled.
+    offHeapTier.invalidate("key");
+    offHeapTier.put("key", new SpillableString("stale", MB), version);
+    assertNull(offHeapTier.take("key"));
+    assertThat(offHeapTier.describeStats(), containsString("off-heap used/max 0/4 MB"));
+
+    offHeapTier.put("key", new SpillableString("current", MB), offHeapTier.version("key"));
+    assertEquals("current", ((SpillableString) offHeapTier.take("key")).value);
+    assertNull(offHeapTier.take("key"));
+  }
+
+  private static class SpillableString implements Spillable<SpillableString>, Weighted {
+    private final String value;
+    private final long weight;
+
+    public SpillableString(String value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+
+    @Override
+    public ByteString encode() {
+      return ByteString.copyFromUtf8(value);
+    }
+
+    @Override
+    public Function<ByteString, SpillableString> decoder() {
+      long weight = this.weight;
+      return encoded -> new SpillableString(encoded.toStringUtf8(), weight);
+    }
+
+    @Override
+    public long getWeight() {
+      return weight;
+    }
+
+    static SpillableString unexpectedLoad(Object key) {
+      throw new AssertionError("Unexpected load of " + key);
+    }
+  }
+
   @Test
   public void testEternalCache() throws Exception {
     testCache(Caches.eternal());
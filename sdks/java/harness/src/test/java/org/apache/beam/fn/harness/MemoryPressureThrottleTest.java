@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.beam.fn.harness.status.MemoryMonitor;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.InstructionRequest;
+import org.apache.beam.sdk.function.ThrowingFunction;
+import org.apache.beam.sdk.util.WeightedValue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+/** Tests for {@link MemoryPressureThrottle}. */
+@RunWith(JUnit4.class)
+public class MemoryPressureThrottleTest {
+  private static final InstructionRequest REQUEST =
+      InstructionRequest.newBuilder().setInstructionId("999").build();
+
+  @Test
+  public void testAdmitsBundlesWithoutMemoryPressure() throws Exception {
+    MemoryMonitor memoryMonitor = mock(MemoryMonitor.class);
+    ThrowingFunction<InstructionRequest, String> handler =
+        MemoryPressureThrottle.create(memoryMonitor, Caches.eternal())
+            .throttling(request -> request.getInstructionId());
+
+    assertEquals("999", handler.apply(REQUEST));
+    verify(memoryMonitor, never()).waitForResources(anyString());
+  }
+
+  @Test
+  public void testWaitsForResourcesUnderMemoryPressure() throws Exception {
+    MemoryMonitor memoryMonitor = mock(MemoryMonitor.class);
+    when(memoryMonitor.isThrashing()).thenReturn(true);
+    Runnable processed = mock(Runnable.class);
+    ThrowingFunction<InstructionRequest, String> handler =
+        MemoryPressureThrottle.create(memoryMonitor, Caches.eternal())
+            .throttling(
+                request -> {
+                  processed.run();
+                  return request.getInstructionId();
+                });
+
+    assertEquals("999", handler.apply(REQUEST));
+    InOrder inOrder = inOrder(memoryMonitor, processed);
+    inOrder.verify(memoryMonitor).waitForResources("instruction 999");
+    inOrder.verify(processed).run();
+  }
+
+  @Test
+  public void testReducesCacheUnderMemoryPressure() throws Exception {
+    MemoryMonitor memoryMonitor = mock(MemoryMonitor.class);
+    Cache<Object, Object> cache = Caches.forMaximumBytes(4 << 20);
+    MemoryPressureThrottle.create(memoryMonitor, cache);
+    ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+    verify(memoryMonitor).addThrashingListener(listener.capture());
+
+    cache.put("key", WeightedValue.of("value", 3 << 20));
+    listener.getValue().run();
+    assertNull(cache.peek("key"));
+  }
+}
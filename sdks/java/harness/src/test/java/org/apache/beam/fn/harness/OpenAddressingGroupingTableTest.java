@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.sdk.values.WindowedValues.timestampedValueInGlobalWindow;
+import static org.apache.beam.sdk.values.WindowedValues.valueInGlobalWindow;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.beam.runners.core.GlobalCombineFnRunners;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.sdk.values.WindowedValue;
+import org.apache.beam.sdk.values.WindowedValues;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link OpenAddressingGroupingTable}. */
+@RunWith(JUnit4.class)
+public class OpenAddressingGroupingTableTest {
+
+  private static class TestOutputReceiver<T> implements FnDataReceiver<T> {
+    final List<T> outputElems = new ArrayList<>();
+
+    @Override
+    public void accept(T elem) {
+      outputElems.add(elem);
+    }
+  }
+
+  private static final CombineFn<Integer, Long, Long> COMBINE_FN =
+      new CombineFn<Integer, Long, Long>() {
+
+        @Override
+        public Long createAccumulator() {
+          return 0L;
+        }
+
+        @Override
+        public Long addInput(Long accumulator, Integer input) {
+          return accumulator + input;
+        }
+
+        @Override
+        public Long mergeAccumulators(Iterable<Long> accumulators) {
+          long sum = 0;
+          for (Long part : accumulators) {
+            sum += part;
+          }
+          return sum;
+        }
+
+        @Override
+        public Long extractOutput(Long accumulator) {
+          return accumulator;
+        }
+      };
+
+  private static <K> OpenAddressingGroupingTable<K, Integer, Long> createTable(
+      Cache<?, ?> cache, Coder<K> keyCoder, boolean isGloballyWindowed) {
+    return new OpenAddressingGroupingTable<>(
+        PipelineOptionsFactory.create(),
+        cache,
+        keyCoder,
+        GlobalCombineFnRunners.create(COMBINE_FN),
+        accumulator -> 8L,
+        isGloballyWindowed);
+  }
+
+  @Test
+  public void testCombiningInheritsOneOfTheValuesTimestamps() throws Exception {
+    OpenAddressingGroupingTable<String, Integer, Long> table =
+        createTable(Caches.eternal(), StringUtf8Coder.of(), false);
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 1), new Instant(1)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("B", 9), new Instant(21)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 2), new Instant(1)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("B", 2), new Instant(20)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 4), new Instant(1)), receiver);
+    assertEquals(2, table.size());
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            timestampedValueInGlobalWindow(KV.of("A", 1L + 2 + 4), new Instant(1)),
+            timestampedValueInGlobalWindow(KV.of("B", 9L + 2), new Instant(21))));
+  }
+
+  @Test
+  public void testCombiningGroupsByKeyAndWindow() throws Exception {
+    OpenAddressingGroupingTable<String, Integer, Long> table =
+        createTable(Caches.eternal(), StringUtf8Coder.of(), false);
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+    IntervalWindow first = new IntervalWindow(new Instant(0), new Instant(10));
+    IntervalWindow second = new IntervalWindow(new Instant(10), new Instant(20));
+
+    table.put(
+        WindowedValues.of(KV.of("A", 1), new Instant(1), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValues.of(KV.of("A", 2), new Instant(2), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValues.of(KV.of("A", 4), new Instant(11), second, PaneInfo.NO_FIRING), receiver);
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            WindowedValues.of(KV.of("A", 3L), new Instant(1), first, PaneInfo.NO_FIRING),
+            WindowedValues.of(KV.of("A", 4L), new Instant(11), second, PaneInfo.NO_FIRING)));
+  }
+
+  @Test
+  public void testFlushOutputsInEncodedKeyOrder() throws Exception {
+    OpenAddressingGroupingTable<String, Integer, Long> table =
+        createTable(Caches.eternal(), StringUtf8Coder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+
+    table.put(valueInGlobalWindow(KV.of("c", 1)), receiver);
+    table.put(valueInGlobalWindow(KV.of("a", 2)), receiver);
+    table.put(valueInGlobalWindow(KV.of("b", 3)), receiver);
+    table.put(valueInGlobalWindow(KV.of("a", 4)), receiver);
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        contains(
+            valueInGlobalWindow(KV.of("a", 6L)),
+            valueInGlobalWindow(KV.of("b", 3L)),
+            valueInGlobalWindow(KV.of("c", 1L))));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testFlushesWhenTheCacheShrinksTheTable() throws Exception {
+    OpenAddressingGroupingTable<Integer, Integer, Long> table =
+        createTable(Caches.forMaximumBytes(2500L), VarIntCoder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<Integer, Long>>> receiver = new TestOutputReceiver<>();
+
+    for (int i = 0; i < 1000; i++) {
+      table.put(valueInGlobalWindow(KV.of(i % 100, 1)), receiver);
+    }
+    assertThat(receiver.outputElems, not(empty()));
+
+    // Every input is output exactly once across the partial flushes and the final one.
+    table.flush(receiver);
+    Map<Integer, Long> sums = new HashMap<>();
+    for (WindowedValue<KV<Integer, Long>> output : receiver.outputElems) {
+      sums.merge(output.getValue().getKey(), output.getValue().getValue(), Long::sum);
+    }
+    assertEquals(100, sums.size());
+    for (long sum : sums.values()) {
+      assertEquals(10L, sum);
+    }
+  }
+
+  @Test
+  public void testFlushOutputsManyKeysInEncodedKeyOrder() throws Exception {
+    OpenAddressingGroupingTable<String, Integer, Long> table =
+        createTable(Caches.eternal(), StringUtf8Coder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      keys.add(String.format("%04d", i));
+    }
+    List<String> shuffled = new ArrayList<>(keys);
+    Collections.shuffle(shuffled, new Random(0));
+    for (String key : shuffled) {
+      table.put(valueInGlobalWindow(KV.of(key, 1)), receiver);
+    }
+    table.flush(receiver);
+
+    List<String> outputKeys = new ArrayList<>();
+    for (WindowedValue<KV<String, Long>> output : receiver.outputElems) {
+      outputKeys.add(output.getValue().getKey());
+    }
+    assertEquals(keys, outputKeys);
+  }
+
+  @Test
+  public void testGrowsWithoutAnEntryLimit() throws Exception {
+    OpenAddressingGroupingTable<Integer, Integer, Long> table =
+        createTable(Caches.eternal(), VarIntCoder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<Integer, Long>>> receiver = new TestOutputReceiver<>();
+
+    int keys = 1 << 17;
+    for (int i = 0; i < keys; i++) {
+      table.put(valueInGlobalWindow(KV.of(i, 1)), receiver);
+    }
+    assertThat(receiver.outputElems, empty());
+    assertEquals(keys, table.size());
+
+    table.flush(receiver);
+    assertEquals(keys, receiver.outputElems.size());
+  }
+
+  @Test
+  public void testSizesTableFromTheCacheBudget() throws Exception {
+    long budget = 1L << 20;
+    OpenAddressingGroupingTable<Integer, Integer, Long> table =
+        createTable(Caches.forMaximumBytes(budget), VarIntCoder.of(), true);
+    TestOutputReceiver<WindowedValue<KV<Integer, Long>>> receiver = new TestOutputReceiver<>();
+
+    int keys = 1 << 17;
+    for (int i = 0; i < keys; i++) {
+      table.put(valueInGlobalWindow(KV.of(i, 1)), receiver);
+      assertTrue(table.size() <= budget / OpenAddressingGroupingTable.BYTES_PER_ENTRY);
+    }
+    assertThat(receiver.outputElems, not(empty()));
+
+    // Every input is output exactly once across the partial flushes and the final one.
+    table.flush(receiver);
+    assertEquals(keys, receiver.outputElems.size());
+  }
+
+  @Test
+  public void testSupportsOnlyDeterministicKeyCoders() {
+    assertTrue(OpenAddressingGroupingTable.supportsKeyCoder(StringUtf8Coder.of()));
+    assertFalse(OpenAddressingGroupingTable.supportsKeyCoder(DoubleCoder.of()));
+  }
+}
@@ -28,6 +28,8 @@ import static org.hamcrest.Matchers.in;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -48,6 +50,7 @@ import org.apache.beam.sdk.fn.test.TestExecutors.TestExecutorService;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.WindowedValue;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ArrayListMultimap;
@@ -334,6 +337,41 @@ public class PrecombineGroupingTableTest {
   ////////////////////////////////////////////////////////////////////////////
   // Tests for the sampling size estimator.
 
+  @Test
+  public void testFixedSizeAccumulatorsAreSizedOnce() throws Exception {
+    TestSizeEstimator sizer = new TestSizeEstimator();
+    PrecombineGroupingTable<String, Long, long[]> table =
+        new PrecombineGroupingTable<>(
+            PipelineOptionsFactory.create(),
+            Caches.forMaximumBytes(2500L),
+            StringUtf8Coder.of(),
+            GlobalCombineFnRunners.create(Sum.ofLongs()),
+            sizer,
+            true);
+
+    TestOutputReceiver<WindowedValue<KV<String, long[]>>> receiver = new TestOutputReceiver<>();
+    table.put(valueInGlobalWindow(KV.of("A", 1L)), receiver);
+    int initialCalls = sizer.calls;
+    for (long i = 2; i <= 10; i++) {
+      table.put(valueInGlobalWindow(KV.of("A", i)), receiver);
+    }
+    // Only the grouping keys are sized, since the accumulator is updated in place.
+    assertEquals(initialCalls + 9, sizer.calls);
+
+    table.flush(receiver);
+    assertEquals(1, receiver.outputElems.size());
+    assertEquals(55L, receiver.outputElems.get(0).getValue().getValue()[0]);
+  }
+
+  @Test
+  public void testHasFixedSize() {
+    assertTrue(PrecombineGroupingTable.hasFixedSize(new long[] {1L}));
+    assertTrue(PrecombineGroupingTable.hasFixedSize(1L));
+    assertFalse(PrecombineGroupingTable.hasFixedSize(new Long[] {1L}));
+    assertFalse(PrecombineGroupingTable.hasFixedSize("a"));
+    assertFalse(PrecombineGroupingTable.hasFixedSize(null));
+  }
+
   @Test
   public void testSampleFlatSizes() throws Exception {
     TestSizeEstimator underlying = new TestSizeEstimator();
@@ -466,7 +504,8 @@ public class PrecombineGroupingTableTest {
 
   /**
    * Used to simulate very specific compaction/eviction tests under certain scenarios instead of
-   * relying on JAMM for size estimation. Strings are 10^length and longs are their value.
+   * relying on JAMM for size estimation. Strings are 10^length, longs are their value and long
+   * arrays are 8 bytes per element.
    */
   private static class TestSizeEstimator implements SizeEstimator {
     int calls = 0;
@@ -486,6 +525,8 @@ public class PrecombineGroupingTableTest {
         return (long) Math.pow(10, ((String) element).length());
       } else if (element instanceof Long) {
         return (Long) element;
+      } else if (element instanceof long[]) {
+        return 8L * ((long[]) element).length;
       }
       throw new IllegalArgumentException(
           "Unknown type " + (element == null ? "null" : element.getClass().toString()));
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link VirtualThreads}. */
+@RunWith(JUnit4.class)
+public class VirtualThreadsTest {
+
+  private static boolean runtimeHasVirtualThreads() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testUnsupportedRuntime() {
+    assumeTrue(!runtimeHasVirtualThreads());
+    assertNull(VirtualThreads.newThreadPerTaskExecutor("test-"));
+  }
+
+  @Test
+  public void testInstructionExecutorFallsBackToPlatformThreads() throws Exception {
+    assumeTrue(!runtimeHasVirtualThreads());
+    PipelineOptions options =
+        PipelineOptionsFactory.fromArgs("--experiments=" + VirtualThreads.EXPERIMENT).create();
+    ExecutorService platformExecutor = Executors.newSingleThreadExecutor();
+    try {
+      Thread platformThread = platformExecutor.submit(Thread::currentThread).get();
+      ExecutorService executor = VirtualThreads.instructionExecutor(options, platformExecutor);
+      assertSame(platformExecutor, executor);
+      assertSame(platformThread, executor.submit(Thread::currentThread).get());
+    } finally {
+      platformExecutor.shutdown();
+      platformExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testInstructionExecutorWithoutExperiment() {
+    ExecutorService platformExecutor = Executors.newSingleThreadExecutor();
+    try {
+      assertSame(
+          platformExecutor,
+          VirtualThreads.instructionExecutor(PipelineOptionsFactory.create(), platformExecutor));
+    } finally {
+      platformExecutor.shutdown();
+    }
+  }
+
+  @Test
+  public void testRunsTasksOnVirtualThreads() throws Exception {
+    ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+    // Virtual threads may also be unavailable as a disabled preview feature.
+    assumeTrue(executor != null);
+    try {
+      Thread thread = executor.submit(Thread::currentThread).get();
+      assertEquals(true, Thread.class.getMethod("isVirtual").invoke(thread));
+      assertThat(thread.getName(), startsWith("test-"));
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -128,6 +128,7 @@ public class BeamFnControlClientTest {
           BeamFnApi.InstructionRequest.RequestCase.PROCESS_BUNDLE,
           value -> {
             assertEquals(value.getInstructionId(), BeamFnLoggingMDC.getInstructionId());
+            assertThat(Thread.currentThread().getName(), containsString(value.getInstructionId()));
             return BeamFnApi.InstructionResponse.newBuilder()
                 .setProcessBundle(BeamFnApi.ProcessBundleResponse.getDefaultInstance());
           });
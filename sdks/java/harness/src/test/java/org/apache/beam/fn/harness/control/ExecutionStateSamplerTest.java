@@ -21,10 +21,12 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.mock;
 
 import java.util.HashMap;
@@ -33,7 +35,10 @@ import java.util.concurrent.CountDownLatch;
 import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionState;
 import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionStateTracker;
 import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionStateTrackerStatus;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
 import org.apache.beam.runners.core.metrics.MonitoringInfoEncodings;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.metrics.BoundedTrie;
 import org.apache.beam.sdk.metrics.BoundedTrieResult;
 import org.apache.beam.sdk.metrics.Counter;
@@ -78,6 +83,9 @@ public class ExecutionStateSamplerTest {
       new DelegatingHistogram(
           MetricName.named("foo", "histogram"), HistogramData.LinearBuckets.of(0, 100, 1), false);
 
+  // Keeps the allocations of tests reachable, so that they can't be optimized away.
+  private static Object allocated;
+
   @Rule public ExpectedLogs expectedLogs = ExpectedLogs.none(ExecutionStateSampler.class);
 
   @After
@@ -722,4 +730,81 @@ public class ExecutionStateSamplerTest {
     tracker.reset();
     assertTrue(state1.error());
   }
+
+  @Test
+  public void testAllocatedBytesAttributedToActiveState() throws Exception {
+    MillisProvider clock = mock(MillisProvider.class);
+    ShortIdMap shortIds = new ShortIdMap();
+    ExecutionStateSampler sampler =
+        new ExecutionStateSampler(
+            PipelineOptionsFactory.fromArgs(
+                    "--experiments="
+                        + ExecutionStateSampler.TRACK_ALLOCATED_BYTES_EXPERIMENT
+                        + ",state_sampling_period_millis=10")
+                .create(),
+            clock,
+            shortIds);
+    ExecutionStateTracker tracker = sampler.create();
+    ExecutionState state1 =
+        tracker.create("shortId1", "ptransformId1", "ptransformIdName1", "process");
+    ExecutionState state2 =
+        tracker.create("shortId2", "ptransformId2", "ptransformIdName2", "process");
+
+    tracker.start("bundleId1");
+    state1.activate();
+    state2.activate();
+    allocated = new byte[1 << 20];
+    state2.deactivate();
+    state1.deactivate();
+
+    Map<String, ByteString> finalResults = new HashMap<>();
+    tracker.updateFinalMonitoringData(finalResults);
+    long allocatedBytes1 = allocatedBytes(shortIds, finalResults, "ptransformId1");
+    long allocatedBytes2 = allocatedBytes(shortIds, finalResults, "ptransformId2");
+    assumeTrue(allocatedBytes1 + allocatedBytes2 > 0);
+    assertThat(allocatedBytes2, greaterThan((long) (1 << 20)));
+    assertThat(allocatedBytes1, lessThan((long) (1 << 20)));
+
+    tracker.reset();
+    sampler.stop();
+  }
+
+  @Test
+  public void testAllocatedBytesNotTrackedWithoutShortIds() throws Exception {
+    MillisProvider clock = mock(MillisProvider.class);
+    ExecutionStateSampler sampler =
+        new ExecutionStateSampler(
+            PipelineOptionsFactory.fromArgs(
+                    "--experiments=" + ExecutionStateSampler.TRACK_ALLOCATED_BYTES_EXPERIMENT)
+                .create(),
+            clock);
+    ExecutionStateTracker tracker = sampler.create();
+    ExecutionState state =
+        tracker.create("shortId1", "ptransformId1", "ptransformIdName1", "process");
+
+    tracker.start("bundleId1");
+    state.activate();
+    allocated = new byte[1 << 20];
+    state.deactivate();
+
+    Map<String, ByteString> finalResults = new HashMap<>();
+    tracker.updateFinalMonitoringData(finalResults);
+    assertEquals(ImmutableSet.of("shortId1"), finalResults.keySet());
+
+    tracker.reset();
+    sampler.stop();
+  }
+
+  private static long allocatedBytes(
+      ShortIdMap shortIds, Map<String, ByteString> monitoringData, String ptransformId) {
+    String shortId =
+        shortIds.getOrCreateShortId(
+            new SimpleMonitoringInfoBuilder()
+                .setUrn(MonitoringInfoConstants.Urns.PTRANSFORM_ALLOCATED_BYTES)
+                .setType(MonitoringInfoConstants.TypeUrns.SUM_INT64_TYPE)
+                .setLabel(MonitoringInfoConstants.Labels.PTRANSFORM, ptransformId)
+                .build());
+    ByteString payload = monitoringData.get(shortId);
+    return payload == null ? 0 : MonitoringInfoEncodings.decodeInt64Counter(payload);
+  }
 }
@@ -23,6 +23,8 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
@@ -55,11 +57,13 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleDescriptor;
 import org.apache.beam.model.fnexecution.v1.BeamFnLoggingGrpc;
 import org.apache.beam.model.pipeline.v1.Endpoints;
 import org.apache.beam.model.pipeline.v1.MetricsApi.MonitoringInfo;
+import org.apache.beam.model.pipeline.v1.RunnerApi;
 import org.apache.beam.model.pipeline.v1.RunnerApi.PCollection;
 import org.apache.beam.runners.core.metrics.DistributionData;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Labels;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Urns;
+import org.apache.beam.runners.core.metrics.MonitoringInfoEncodings;
 import org.apache.beam.runners.core.metrics.ShortIdMap;
 import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.coders.IterableCoder;
@@ -69,10 +73,13 @@ import org.apache.beam.sdk.fn.test.TestStreams;
 import org.apache.beam.sdk.metrics.Counter;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.util.HistogramData;
 import org.apache.beam.sdk.util.common.ElementByteSizeObservableIterable;
 import org.apache.beam.sdk.util.common.ElementByteSizeObservableIterator;
+import org.apache.beam.sdk.util.construction.PTransformTranslation;
 import org.apache.beam.sdk.util.construction.SdkComponents;
 import org.apache.beam.sdk.values.WindowedValue;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
@@ -732,4 +739,203 @@ public class PCollectionConsumerRegistryTest {
   }
 
   private abstract static class SplittingReceiver<T> implements FnDataReceiver<T>, HandlesSplits {}
+
+  @Test
+  public void testFusedStatelessTransformStaysInProducerState() throws Exception {
+    ProcessBundleDescriptor descriptor =
+        TEST_DESCRIPTOR
+            .toBuilder()
+            .putTransforms(
+                "flattenTransform",
+                RunnerApi.PTransform.newBuilder()
+                    .setSpec(
+                        RunnerApi.FunctionSpec.newBuilder()
+                            .setUrn(PTransformTranslation.FLATTEN_TRANSFORM_URN))
+                    .build())
+            .build();
+    assertEquals(
+        Arrays.asList("flattenTransform", "pTransformB"),
+        currentPTransformIdsThroughFlatten(descriptor, PipelineOptionsFactory.create()));
+    assertEquals(
+        Arrays.asList(null, "pTransformB"),
+        currentPTransformIdsThroughFlatten(
+            descriptor,
+            PipelineOptionsFactory.fromArgs(
+                    "--experiments="
+                        + PCollectionConsumerRegistry.FUSE_STATELESS_TRANSFORMS_EXPERIMENT)
+                .create()));
+  }
+
+  @Test
+  public void testFusedStatelessTransformSamplesExceptionWithItsTransformId() throws Exception {
+    ProcessBundleDescriptor descriptor =
+        TEST_DESCRIPTOR
+            .toBuilder()
+            .putTransforms(
+                "flattenTransform",
+                RunnerApi.PTransform.newBuilder()
+                    .setSpec(
+                        RunnerApi.FunctionSpec.newBuilder()
+                            .setUrn(PTransformTranslation.FLATTEN_TRANSFORM_URN))
+                    .build())
+            .build();
+    ExecutionStateTracker executionStateTracker = sampler.create();
+    executionStateTracker.start("testBundle");
+    DataSampler dataSampler = new DataSampler();
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            executionStateTracker,
+            new ShortIdMap(),
+            new BundleProgressReporter.InMemory(),
+            descriptor,
+            dataSampler,
+            PipelineOptionsFactory.fromArgs(
+                    "--experiments="
+                        + PCollectionConsumerRegistry.FUSE_STATELESS_TRANSFORMS_EXPERIMENT)
+                .create());
+    RuntimeException exception = new RuntimeException("testException");
+    consumers.register(
+        P_COLLECTION_A,
+        "flattenTransform",
+        "flattenTransformName",
+        (WindowedValue<String> input) -> {
+          throw exception;
+        });
+
+    FnDataReceiver<WindowedValue<String>> wrapperConsumer =
+        (FnDataReceiver<WindowedValue<String>>)
+            (FnDataReceiver) consumers.getMultiplexingConsumer(P_COLLECTION_A);
+    assertSame(
+        exception,
+        assertThrows(
+            RuntimeException.class, () -> wrapperConsumer.accept(valueInGlobalWindow("elem"))));
+    executionStateTracker.reset();
+
+    BeamFnApi.InstructionResponse response =
+        dataSampler
+            .handleDataSampleRequest(
+                BeamFnApi.InstructionRequest.newBuilder()
+                    .setSampleData(BeamFnApi.SampleDataRequest.newBuilder())
+                    .build())
+            .build();
+    BeamFnApi.SampleDataResponse.ElementList elementList =
+        response.getSampleData().getElementSamplesMap().get(P_COLLECTION_A);
+    assertNotNull(elementList);
+    BeamFnApi.SampledElement.Exception expectedException =
+        BeamFnApi.SampledElement.Exception.newBuilder()
+            .setInstructionId("testBundle")
+            .setTransformId("flattenTransform")
+            .setError(exception.toString())
+            .build();
+    assertTrue(
+        elementList.getElementsList().stream()
+            .anyMatch(element -> expectedException.equals(element.getException())));
+  }
+
+  private List<String> currentPTransformIdsThroughFlatten(
+      ProcessBundleDescriptor descriptor, PipelineOptions options) throws Exception {
+    ExecutionStateTracker executionStateTracker = sampler.create();
+    executionStateTracker.start("testBundle");
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            executionStateTracker,
+            new ShortIdMap(),
+            new BundleProgressReporter.InMemory(),
+            descriptor,
+            null,
+            options);
+
+    List<String> currentPTransformIds = new ArrayList<>();
+    consumers.register(
+        P_COLLECTION_A,
+        "flattenTransform",
+        "flattenTransformName",
+        (WindowedValue<String> input) -> {
+          currentPTransformIds.add(executionStateTracker.getCurrentThreadsPTransformId());
+          consumers
+              .getMultiplexingConsumer(P_COLLECTION_B)
+              .accept(valueInGlobalWindow(Arrays.asList(input.getValue())));
+        });
+    consumers.register(
+        P_COLLECTION_B,
+        "pTransformB",
+        "pTransformBName",
+        (WindowedValue<Iterable<String>> input) ->
+            currentPTransformIds.add(executionStateTracker.getCurrentThreadsPTransformId()));
+
+    consumers.getMultiplexingConsumer(P_COLLECTION_A).accept(valueInGlobalWindow("elem"));
+    executionStateTracker.reset();
+    return currentPTransformIds;
+  }
+
+  @Test
+  public void testElementLatencyHistogramsExcludeDownstreamConsumers() throws Exception {
+    ExecutionStateTracker executionStateTracker = sampler.create();
+    ShortIdMap shortIds = new ShortIdMap();
+    BundleProgressReporter.InMemory reporterAndRegistrar = new BundleProgressReporter.InMemory();
+    executionStateTracker.start("testBundle");
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            executionStateTracker,
+            shortIds,
+            reporterAndRegistrar,
+            TEST_DESCRIPTOR,
+            null,
+            PipelineOptionsFactory.fromArgs(
+                    "--experiments="
+                        + PCollectionConsumerRegistry.ELEMENT_LATENCY_SAMPLING_PERIOD_EXPERIMENT
+                        + "=2")
+                .create());
+
+    consumers.register(
+        P_COLLECTION_A,
+        "pTransformA",
+        "pTransformAName",
+        (WindowedValue<String> input) ->
+            consumers
+                .getMultiplexingConsumer(P_COLLECTION_B)
+                .accept(valueInGlobalWindow(Arrays.asList(input.getValue()))));
+    consumers.register(
+        P_COLLECTION_B,
+        "pTransformB",
+        "pTransformBName",
+        (WindowedValue<Iterable<String>> input) -> Thread.sleep(50));
+
+    FnDataReceiver<WindowedValue<?>> consumer = consumers.getMultiplexingConsumer(P_COLLECTION_A);
+    for (int i = 0; i < 4; i++) {
+      consumer.accept(valueInGlobalWindow("elem" + i));
+    }
+
+    Map<String, ByteString> monitoringData = new HashMap<>();
+    reporterAndRegistrar.updateFinalMonitoringData(monitoringData);
+    Map<String, HistogramData> histograms = new HashMap<>();
+    for (Map.Entry<String, ByteString> entry : monitoringData.entrySet()) {
+      MonitoringInfo info = shortIds.get(entry.getKey());
+      if (Urns.ELEMENT_PROCESSING_LATENCY_MICROS.equals(info.getUrn())) {
+        histograms.put(
+            info.getLabelsOrThrow(Labels.PTRANSFORM),
+            MonitoringInfoEncodings.decodeInt64Histogram(entry.getValue()));
+      }
+    }
+    // Every other element is timed, through each of the transforms it reaches.
+    assertEquals(2, histograms.get("pTransformA").getTotalCount());
+    assertEquals(2, histograms.get("pTransformB").getTotalCount());
+    // Sleeping 50ms lands in the buckets from 2^15 micros upwards, and is excluded from the
+    // latency of the upstream transform.
+    assertEquals(2, countAtLeast(histograms.get("pTransformB"), 15));
+    assertEquals(0, countAtLeast(histograms.get("pTransformA"), 15));
+
+    reporterAndRegistrar.reset();
+    monitoringData.clear();
+    reporterAndRegistrar.updateFinalMonitoringData(monitoringData);
+    assertTrue(monitoringData.isEmpty());
+  }
+
+  private static long countAtLeast(HistogramData histogram, int bucketIndex) {
+    long count = histogram.getTopBucketCount();
+    for (int i = bucketIndex; i < histogram.getBucketType().getNumBuckets(); i++) {
+      count += histogram.getCount(i);
+    }
+    return count;
+  }
 }
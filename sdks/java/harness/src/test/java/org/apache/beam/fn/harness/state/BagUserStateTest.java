@@ -29,6 +29,7 @@ import java.io.IOException;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
@@ -280,6 +281,86 @@ public class BagUserStateTest {
     assertNull(fakeClient.getData().get(key("A")));
   }
 
+  @Test
+  public void testRedundantWritesSkippedWhenCached() throws Exception {
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(StringUtf8Coder.of(), ImmutableMap.of(key("A"), asList("A1")));
+    Cache<?, ?> cache = Caches.eternal();
+    {
+      // First user state populates the cache.
+      BagUserState<String> userState =
+          new BagUserState<>(cache, fakeClient, "instructionId", key("A"), StringUtf8Coder.of());
+      assertArrayEquals(new String[] {"A1"}, Iterables.toArray(userState.get(), String.class));
+      userState.asyncClose();
+    }
+    int callCount = fakeClient.getCallCount();
+
+    {
+      // Rewriting the values which are already persisted is skipped.
+      BagUserState<String> userState =
+          new BagUserState<>(cache, fakeClient, "instructionId", key("A"), StringUtf8Coder.of());
+      userState.clear();
+      userState.append("A1");
+      userState.asyncClose();
+    }
+    assertEquals(callCount, fakeClient.getCallCount());
+
+    {
+      // Clearing state which is known to be empty is skipped, only the append is sent.
+      BagUserState<String> userState =
+          new BagUserState<>(
+              Caches.eternal(), fakeClient, "instructionId", key("B"), StringUtf8Coder.of());
+      assertFalse(userState.get().iterator().hasNext());
+      callCount = fakeClient.getCallCount();
+      userState.clear();
+      userState.append("B1");
+      userState.asyncClose();
+    }
+    assertEquals(callCount + 1, fakeClient.getCallCount());
+    assertEquals(encode("A1"), fakeClient.getData().get(key("A")));
+    assertEquals(encode("B1"), fakeClient.getData().get(key("B")));
+  }
+
+  @Test
+  public void testRedundantWritesSkippedByEncodingWhenCached() throws Exception {
+    // Byte arrays aren't consistent with equals, so they are compared by their encoding.
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(
+            ByteArrayCoder.of(), ImmutableMap.of(key("A"), asList(new byte[] {1, 2})));
+    Cache<?, ?> cache = Caches.eternal();
+    {
+      // First user state populates the cache.
+      BagUserState<byte[]> userState =
+          new BagUserState<>(cache, fakeClient, "instructionId", key("A"), ByteArrayCoder.of());
+      assertEquals(1, Iterables.size(userState.get()));
+      userState.asyncClose();
+    }
+    int callCount = fakeClient.getCallCount();
+
+    {
+      // Rewriting an equal array is skipped.
+      BagUserState<byte[]> userState =
+          new BagUserState<>(cache, fakeClient, "instructionId", key("A"), ByteArrayCoder.of());
+      userState.clear();
+      userState.append(new byte[] {1, 2});
+      userState.asyncClose();
+    }
+    assertEquals(callCount, fakeClient.getCallCount());
+
+    {
+      // A changed array is written with the bytes encoded for the comparison.
+      BagUserState<byte[]> userState =
+          new BagUserState<>(cache, fakeClient, "instructionId", key("A"), ByteArrayCoder.of());
+      userState.clear();
+      userState.append(new byte[] {1, 3});
+      userState.asyncClose();
+    }
+    assertEquals(callCount + 2, fakeClient.getCallCount());
+    ByteStringOutputStream out = new ByteStringOutputStream();
+    ByteArrayCoder.of().encode(new byte[] {1, 3}, out);
+    assertEquals(out.toByteString(), fakeClient.getData().get(key("A")));
+  }
+
   private StateKey key(String id) throws IOException {
     return StateKey.newBuilder()
         .setBagUserState(
@@ -24,6 +24,7 @@ import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 
@@ -534,6 +535,75 @@ public class MultimapUserStateTest {
     assertEquals(1, fakeClient.getCallCount());
   }
 
+  @Test
+  public void testEntriesPrefetchesValues() throws Exception {
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(
+            ImmutableMap.of(
+                createMultimapKeyStateKey(),
+                KV.of(ByteArrayCoder.of(), asList(A0, A1, A2)),
+                createMultimapValueStateKey(A0),
+                KV.of(StringUtf8Coder.of(), asList("V0")),
+                createMultimapValueStateKey(A1),
+                KV.of(StringUtf8Coder.of(), asList("V1", "V2")),
+                createMultimapValueStateKey(A2),
+                KV.of(StringUtf8Coder.of(), asList("V3"))));
+    MultimapUserState<byte[], String> userState =
+        new MultimapUserState<>(
+            Caches.eternal(),
+            fakeClient,
+            "instructionId",
+            createMultimapKeyStateKey(),
+            ByteArrayCoder.of(),
+            StringUtf8Coder.of());
+
+    Iterator<Map.Entry<byte[], PrefetchableIterable<String>>> entries =
+        userState.entries().iterator();
+    assertEquals(0, fakeClient.getCallCount());
+    Map.Entry<byte[], PrefetchableIterable<String>> entry = entries.next();
+    // The keys and the values of every key have been requested.
+    assertEquals(4, fakeClient.getCallCount());
+    assertArrayEquals(A0, entry.getKey());
+    assertArrayEquals(new String[] {"V0"}, Iterables.toArray(entry.getValue(), String.class));
+    entry = entries.next();
+    assertArrayEquals(A1, entry.getKey());
+    assertArrayEquals(
+        new String[] {"V1", "V2"}, Iterables.toArray(entry.getValue(), String.class));
+    entry = entries.next();
+    assertArrayEquals(A2, entry.getKey());
+    assertArrayEquals(new String[] {"V3"}, Iterables.toArray(entry.getValue(), String.class));
+    assertFalse(entries.hasNext());
+    assertEquals(4, fakeClient.getCallCount());
+  }
+
+  @Test
+  public void testRemoveOfUnpersistedKeySkippedWhenCached() throws Exception {
+    FakeBeamFnStateClient fakeClient =
+        new FakeBeamFnStateClient(
+            ImmutableMap.of(
+                createMultimapKeyStateKey(),
+                KV.of(ByteArrayCoder.of(), singletonList(A1)),
+                createMultimapValueStateKey(A1),
+                KV.of(StringUtf8Coder.of(), asList("V1"))));
+    MultimapUserState<byte[], String> userState =
+        new MultimapUserState<>(
+            Caches.eternal(),
+            fakeClient,
+            "instructionId",
+            createMultimapKeyStateKey(),
+            ByteArrayCoder.of(),
+            StringUtf8Coder.of());
+    assertArrayEquals(new byte[][] {A1}, Iterables.toArray(userState.keys(), byte[].class));
+    assertEquals(1, fakeClient.getCallCount());
+
+    userState.remove(A1);
+    userState.remove(A2);
+    userState.asyncClose();
+    // Only A1 is persisted so only its values are cleared.
+    assertEquals(2, fakeClient.getCallCount());
+    assertNull(fakeClient.getData().get(createMultimapValueStateKey(A1)));
+  }
+
   @Test
   public void testGetKeysPrefetch() throws Exception {
     FakeBeamFnStateClient fakeClient =
@@ -34,6 +34,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.fn.harness.state.StateFetchingIterators.CachingStateIterable;
@@ -47,6 +48,7 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
 import org.apache.beam.sdk.coders.BigEndianIntegerCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.fn.stream.PrefetchableIterator;
 import org.apache.beam.vendor.grpc.v1p69p0.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v32_1_2_jre.com.google.common.collect.ImmutableMap;
@@ -279,6 +281,24 @@ public class StateFetchingIteratorsTest {
       assertNull(aBlocks.shrink());
     }
 
+    @Test
+    public void testBlocksPrefixSpilling() throws Exception {
+      List<Block<String>> originalBlocks =
+          Arrays.asList(
+              Block.fromValues(Arrays.asList("A", "B"), ByteString.copyFromUtf8("token")),
+              Block.fromValues(Arrays.asList("C"), ByteString.EMPTY),
+              Block.fromValues(Arrays.asList("D"), null));
+      BlocksPrefix<String> blocks = new BlocksPrefix<>(originalBlocks, StringUtf8Coder.of());
+      Blocks<String> restoredBlocks = blocks.decoder().apply(blocks.encode());
+
+      assertThat(restoredBlocks, is(instanceOf(BlocksPrefix.class)));
+      assertEquals(originalBlocks, restoredBlocks.getBlocks());
+      assertEquals(blocks.getWeight(), restoredBlocks.getWeight());
+
+      // Without a coder the blocks are evicted rather than spilled.
+      assertNull(new BlocksPrefix<>(originalBlocks).encode());
+    }
+
     @Test
     public void testBlocksWeight() throws Exception {
       List<Block<String>> originalBlocks =
@@ -462,6 +482,127 @@ public class StateFetchingIteratorsTest {
       assertEquals(ByteString.copyFromUtf8("value" + 44), byteStrings.next());
     }
 
+    @Test
+    public void testReadAhead() throws Exception {
+      AtomicInteger callCount = new AtomicInteger();
+      AtomicLong budget = new AtomicLong(100);
+      LazyBlockingStateFetchingIterator byteStrings =
+          new LazyBlockingStateFetchingIterator(
+              countingStateClient(callCount),
+              StateRequest.getDefaultInstance(),
+              3,
+              sharedBudget(budget));
+      assertEquals(0, callCount.get());
+      byteStrings.prefetch();
+      assertEquals(3, callCount.get()); // the next chunk and the two chunks after it
+      assertEquals(88, budget.get()); // each chunk read ahead is charged 6 bytes
+      assertEquals(ByteString.copyFromUtf8("value" + 0), byteStrings.next());
+      assertEquals(4, callCount.get());
+      // Chunks stay charged until they are consumed
+      assertEquals(82, budget.get());
+      assertEquals(ByteString.copyFromUtf8("value" + 1), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("value" + 2), byteStrings.next());
+      assertEquals(6, callCount.get());
+
+      // Chunks which have been read ahead are dropped and released when seeking
+      byteStrings.seekToContinuationToken(ByteString.copyFromUtf8("42"));
+      assertEquals(100, budget.get());
+      assertEquals(ByteString.copyFromUtf8("value" + 42), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("value" + 43), byteStrings.next());
+    }
+
+    @Test
+    public void testReadAheadStopsWhenBudgetIsExhausted() throws Exception {
+      AtomicInteger callCount = new AtomicInteger();
+      AtomicLong budget = new AtomicLong();
+      LazyBlockingStateFetchingIterator byteStrings =
+          new LazyBlockingStateFetchingIterator(
+              countingStateClient(callCount),
+              StateRequest.getDefaultInstance(),
+              3,
+              sharedBudget(budget));
+      byteStrings.prefetch();
+      assertEquals(1, callCount.get()); // only the next chunk
+      assertEquals(ByteString.copyFromUtf8("value" + 0), byteStrings.next());
+      assertEquals(2, callCount.get());
+
+      // Each chunk is 6 bytes, so one chunk fits beyond the next one
+      budget.set(6);
+      byteStrings.readAhead();
+      assertEquals(3, callCount.get());
+      assertEquals(0, budget.get());
+      assertEquals(ByteString.copyFromUtf8("value" + 1), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("value" + 2), byteStrings.next());
+      assertEquals(ByteString.copyFromUtf8("value" + 3), byteStrings.next());
+    }
+
+    @Test
+    public void testReadAheadBudgetIsSharedBetweenIterators() throws Exception {
+      AtomicInteger callCount = new AtomicInteger();
+      // Room for two chunks beyond the next one in total
+      AtomicLong budget = new AtomicLong(12);
+      LazyBlockingStateFetchingIterator first =
+          new LazyBlockingStateFetchingIterator(
+              countingStateClient(callCount),
+              StateRequest.getDefaultInstance(),
+              3,
+              sharedBudget(budget));
+      LazyBlockingStateFetchingIterator second =
+          new LazyBlockingStateFetchingIterator(
+              countingStateClient(callCount),
+              StateRequest.getDefaultInstance(),
+              3,
+              sharedBudget(budget));
+      first.prefetch();
+      assertEquals(3, callCount.get());
+      second.prefetch();
+      assertEquals(4, callCount.get()); // only the next chunk
+
+      // Dropping the chunks read ahead by the first iterator makes room for the second one
+      first.seekToContinuationToken(null);
+      assertEquals(12, budget.get());
+      second.readAhead();
+      assertEquals(6, callCount.get());
+      assertEquals(0, budget.get());
+      assertEquals(ByteString.copyFromUtf8("value" + 0), second.next());
+    }
+
+    /** A budget which charges all iterators against the bytes left in {@code remainingBytes}. */
+    private StateFetchingIterators.ReadAheadBudget sharedBudget(AtomicLong remainingBytes) {
+      return new StateFetchingIterators.ReadAheadBudget() {
+        @Override
+        public boolean tryReserve(long bytes) {
+          if (remainingBytes.get() < bytes) {
+            return false;
+          }
+          remainingBytes.addAndGet(-bytes);
+          return true;
+        }
+
+        @Override
+        public void release(long bytes) {
+          remainingBytes.addAndGet(bytes);
+        }
+      };
+    }
+
+    private BeamFnStateClient countingStateClient(AtomicInteger callCount) {
+      return requestBuilder -> {
+        callCount.incrementAndGet();
+        int token = 0;
+        if (!ByteString.EMPTY.equals(requestBuilder.getGet().getContinuationToken())) {
+          token = Integer.parseInt(requestBuilder.getGet().getContinuationToken().toStringUtf8());
+        }
+        return CompletableFuture.completedFuture(
+            StateResponse.newBuilder()
+                .setGet(
+                    StateGetResponse.newBuilder()
+                        .setData(ByteString.copyFromUtf8("value" + token))
+                        .setContinuationToken(ByteString.copyFromUtf8(Integer.toString(token + 1))))
+                .build());
+      };
+    }
+
     private void testFetch(ByteString... expected) {
       AtomicInteger callCount = new AtomicInteger();
       BeamFnStateClient fakeStateClient = fakeStateClient(callCount, expected);
@@ -106,6 +106,27 @@ public class MemoryMonitorTest {
     thread.join();
   }
 
+  @Test(timeout = 1000)
+  public void thrashingListenersRunWhileThrashing() throws InterruptedException {
+    MemoryMonitor monitor =
+        MemoryMonitor.forTest(provider, 10, 0, false, 50.0, null, localDumpFolder, false);
+    Semaphore relieved = new Semaphore(0);
+    monitor.addThrashingListener(relieved::release);
+    Thread thread = new Thread(monitor);
+    thread.start();
+    monitor.waitForRunning();
+    assertFalse(relieved.tryAcquire(50, TimeUnit.MILLISECONDS));
+    provider.inGCThrashingState.set(true);
+    monitor.waitForThrashingState(true);
+    assertTrue(relieved.tryAcquire(100, TimeUnit.MILLISECONDS));
+    provider.inGCThrashingState.set(false);
+    monitor.waitForThrashingState(false);
+    relieved.drainPermits();
+    assertFalse(relieved.tryAcquire(50, TimeUnit.MILLISECONDS));
+    monitor.stop();
+    thread.join();
+  }
+
   @Test
   public void heapDumpOnce() throws Exception {
     MemoryMonitor monitor =
@@ -117,6 +117,7 @@ include(":it:splunk")
 include(":it:neo4j")
 include(":runners:core-java")
 include(":runners:direct-java")
+include(":runners:direct-java:jmh")
 include(":runners:extensions-java:metrics")
 /* Begin Flink Runner related settings */
 /* When updating these versions, please make sure that the following files are updated as well: